@@ -0,0 +1,121 @@
+package com.example.orderbook.benchmark;
+
+import com.example.orderbook.audit.AsyncExecutionLog;
+import com.example.orderbook.model.request.OrderType;
+import com.example.orderbook.service.ExecutionLog;
+import com.example.orderbook.service.MarketDataFeed;
+import com.example.orderbook.service.PriceTimePriorityOrderBook;
+import com.example.orderbook.service.SymbolRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recording the executions of a book on the matching thread, before and after the asynchronous execution log.
+ *
+ * Every operation rests a sell order and trades it with a buy order, two events (RESTED, TRADE) per operation:
+ * NONE records nothing, SLF4J formats each event through a logback file appender on the matching thread
+ * (the synchronous logging the engine used to do, see logback-test.xml), ASYNC records them into an AsyncExecutionLog.
+ * Run with the gc profiler to compare the allocation rates as well.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ExecutionLogBenchmark {
+
+	private static final String SECURITY = "BENCH";
+	private static final long PRICE = 100000;
+	private static final long UNITS = 100;
+
+	@Param({"NONE", "SLF4J", "ASYNC"})
+	String log;
+
+	private PriceTimePriorityOrderBook book;
+	private AsyncExecutionLog asyncLog;
+	private Path directory;
+	private int buyer;
+	private int seller;
+	private int security;
+	private long nextOrderId;
+	private long now;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		book = new PriceTimePriorityOrderBook(PriceTimePriorityOrderBook.DEFAULT_MARKET_PROTECTION_BPS, new MarketDataFeed(),
+				1024);
+		SymbolRegistry symbols = book.getSymbols();
+		buyer = symbols.internClient("BUYER");
+		seller = symbols.internClient("SELLER");
+		security = symbols.internSecurity(SECURITY);
+		nextOrderId = 1;
+		now = 1;
+		if ("SLF4J".equals(log)) {
+			book.setExecutionLog(new Slf4jRecorder(symbols));
+		} else if ("ASYNC".equals(log)) {
+			directory = Files.createTempDirectory("execution-log-benchmark");
+			asyncLog = new AsyncExecutionLog(directory.resolve("execution.log"), 1 << 16, 1 << 20);
+			book.setExecutionLog(asyncLog.recorder(0, symbols));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		if (asyncLog != null) {
+			asyncLog.close();
+			System.out.println("execution log stalls " + asyncLog.getStalls());
+			Files.delete(asyncLog.getFile());
+			Files.delete(directory);
+		}
+	}
+
+	/**
+	 * A sell order rests and a buy order trades it.
+	 */
+	@Benchmark
+	public boolean restAndTrade() {
+		book.place(nextOrderId++, seller, security, UNITS, PRICE, false, OrderType.LIMIT_ORDER, now++);
+		return book.place(nextOrderId++, buyer, security, UNITS, PRICE, true, OrderType.LIMIT_ORDER, now++);
+	}
+
+	/**
+	 * Writes every event as a parameterized line through slf4j, on the calling thread.
+	 */
+	private static final class Slf4jRecorder implements ExecutionLog.Recorder {
+
+		private static final Logger logger = LoggerFactory.getLogger("execution-log-benchmark");
+
+		private final SymbolRegistry symbols;
+
+		Slf4jRecorder(SymbolRegistry symbols) {
+			this.symbols = symbols;
+		}
+
+		@Override
+		public void record(ExecutionLog.Event event, int security, long orderId, int client, boolean buying, long price,
+						   long units, long counterpartyOrderId, int counterpartyClient) {
+			logger.info("event={} security={} order={} client={} side={} price={} units={} counterparty={}",
+					event, symbols.securityName(security), orderId, symbols.clientName(client),
+					buying ? "BUY" : "SELL", price, units, counterpartyOrderId);
+		}
+	}
+}
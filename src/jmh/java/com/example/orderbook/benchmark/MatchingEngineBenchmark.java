@@ -0,0 +1,137 @@
+package com.example.orderbook.benchmark;
+
+import com.example.orderbook.journal.FsyncPolicy;
+import com.example.orderbook.journal.MappedJournal;
+import com.example.orderbook.model.ExecutionReport;
+import com.example.orderbook.model.request.OrderType;
+import com.example.orderbook.service.CommandJournal;
+import com.example.orderbook.service.EngineSettings;
+import com.example.orderbook.service.MatchingEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * End to end benchmark of MatchingEngine: request threads submit through the ring buffers and wait for the
+ * shard threads to match, each thread trades its own security so throughput can scale with the shard count.
+ * The journal parameter measures what journaling adds to the latency of an order, the metrics parameter what the
+ * counters and latency histograms of the shards cost, restAndMatchBatch queues orders without waiting for each one
+ * like the batch API does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class MatchingEngineBenchmark {
+
+	static final int BATCH_PAIRS = 1000;
+
+	@Param({"1", "2", "4"})
+	int shards;
+
+	@Param({"BUSY_SPIN", "BLOCKING"})
+	String waitStrategy;
+
+	/**
+	 * NONE or the FsyncPolicy of a journal written to a temporary directory
+	 */
+	@Param({"NONE", "ASYNC", "BATCH"})
+	String journal;
+
+	/**
+	 * orderbook.metrics.enabled
+	 */
+	@Param({"true", "false"})
+	boolean metrics;
+
+	private MatchingEngine engine;
+	private MappedJournal mappedJournal;
+	private Path journalDirectory;
+
+	@Setup(Level.Trial)
+	public void startEngine() throws IOException {
+		CommandJournal commandJournal = CommandJournal.NONE;
+		if (!"NONE".equals(journal)) {
+			journalDirectory = Files.createTempDirectory("journal");
+			mappedJournal = new MappedJournal(journalDirectory, shards, 1 << 26, FsyncPolicy.of(journal), 10);
+			commandJournal = mappedJournal;
+		}
+		engine = new MatchingEngine(new EngineSettings()
+				.shards(shards)
+				.waitStrategy(waitStrategy)
+				.journal(commandJournal)
+				.metricsEnabled(metrics));
+		engine.start();
+	}
+
+	@TearDown(Level.Trial)
+	public void stopEngine() throws InterruptedException, IOException {
+		engine.stop();
+		if (mappedJournal != null) {
+			mappedJournal.close();
+			try (Stream<Path> files = Files.walk(journalDirectory)) {
+				files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+			}
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Trader {
+
+		private static final AtomicInteger THREADS = new AtomicInteger();
+
+		final String securityId = "SEC" + THREADS.incrementAndGet();
+		long now;
+	}
+
+	/**
+	 * A bid rests on the book of the thread's security and is filled by the next ask.
+	 */
+	@Benchmark
+	public ExecutionReport restAndMatch(Trader trader) {
+		engine.placeOrder(engine.nextOrderId(trader.securityId), "BUYER", trader.securityId, 100, 1000,
+				true, OrderType.LIMIT_ORDER, trader.now++);
+		return engine.placeOrder(engine.nextOrderId(trader.securityId), "SELLER", trader.securityId, 100, 1000,
+				false, OrderType.LIMIT_ORDER, trader.now++);
+	}
+
+	/**
+	 * The same flow queued BATCH_PAIRS pairs at a time, waiting once for the whole batch.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(BATCH_PAIRS)
+	public Object restAndMatchBatch(Trader trader) {
+		CompletableFuture<?>[] futures = new CompletableFuture<?>[2 * BATCH_PAIRS];
+		for (int i = 0; i < BATCH_PAIRS; i++) {
+			futures[2 * i] = engine.placeOrderAsync(engine.nextOrderId(trader.securityId), "BUYER", trader.securityId,
+					100, 1000, true, OrderType.LIMIT_ORDER, trader.now++);
+			futures[2 * i + 1] = engine.placeOrderAsync(engine.nextOrderId(trader.securityId), "SELLER",
+					trader.securityId, 100, 1000, false, OrderType.LIMIT_ORDER, trader.now++);
+		}
+		return CompletableFuture.allOf(futures).join();
+	}
+}
@@ -0,0 +1,217 @@
+package com.example.orderbook.benchmark;
+
+import com.example.orderbook.model.ExecutionReport;
+import com.example.orderbook.model.Order;
+import com.example.orderbook.model.request.OrderType;
+import com.example.orderbook.service.PriceTimePriorityOrderBook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the matching path of PriceTimePriorityOrderBook (buyTrade / sellTrade) on one security,
+ * at book depths from 10 to 1M resting orders.
+ *
+ * The book is filled once per trial with depth orders split over both sides, every benchmark leaves the
+ * book as deep as it found it: aggressive orders replenish the liquidity they took and passive orders
+ * are cancelled again, so the reported cost of an operation includes its counterpart. The mixed flow keeps
+ * up to LIVE_ORDERS of its passive orders resting on top of the setup's orders.
+ *
+ * Throughput, average time and sampled percentiles are reported for each benchmark, allocation rate
+ * comes from the gc profiler (see the benchmark profile in pom.xml).
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class OrderBookBenchmark {
+
+	private static final String SECURITY = "BENCH";
+	private static final String BUYER = "BUYER";
+	private static final String SELLER = "SELLER";
+	private static final String BID_TRADER = "BID_TRADER";
+	private static final String ASK_TRADER = "ASK_TRADER";
+	private static final int UNITS = 100;
+	/** prices in ticks of the default PriceScale */
+	private static final long BEST_BID = 99900;
+	private static final long BEST_ASK = 100100;
+	private static final long TICK = 100;
+	private static final int MAX_LEVELS = 1000;
+	private static final int SWEEP_LEVELS = 5;
+	private static final int LIVE_ORDERS = 1024;
+
+	/** total number of resting orders, half on each side */
+	@Param({"10", "1000", "100000", "1000000"})
+	int depth;
+
+	private PriceTimePriorityOrderBook book;
+	private SplittableRandom random;
+	private long nextOrderId;
+	private long now;
+
+	/** price levels per side and the number of orders the setup rests at each level */
+	private int levels;
+	private int[] ordersAtLevel;
+
+	/** resting bids created by the setup, amended in place of each other by the amend benchmark */
+	private long[] bidIds;
+
+	/** passive orders added by the mixed flow and not cancelled yet */
+	private long[] liveIds;
+	private boolean[] liveBuying;
+	private int liveCount;
+
+	@Setup(Level.Trial)
+	public void fillBook() {
+		book = new PriceTimePriorityOrderBook();
+		random = new SplittableRandom(42);
+		nextOrderId = 1;
+		now = 1;
+		int perSide = Math.max(1, depth / 2);
+		levels = Math.min(perSide, MAX_LEVELS);
+		ordersAtLevel = new int[levels];
+		bidIds = new long[perSide];
+		for (int i = 0; i < perSide; i++) {
+			int level = i % levels;
+			ordersAtLevel[level]++;
+			bidIds[i] = rest(BUYER, bidPrice(level), true);
+			rest(SELLER, askPrice(level), false);
+		}
+		liveIds = new long[LIVE_ORDERS];
+		liveBuying = new boolean[LIVE_ORDERS];
+		liveCount = 0;
+	}
+
+	/**
+	 * A non marketable bid joins a random level of the ladder and is cancelled again.
+	 */
+	@Benchmark
+	public boolean passiveAddAndCancel() {
+		long orderId = rest(BID_TRADER, bidPrice(random.nextInt(levels)), true);
+		return book.cancelOrder(orderId);
+	}
+
+	/**
+	 * A resting bid moves to another level of the ladder through update (remove and add, loses priority).
+	 */
+	@Benchmark
+	public ExecutionReport amendPrice() {
+		long orderId = bidIds[random.nextInt(bidIds.length)];
+		return book.amend(orderId, UNITS, bidPrice(random.nextInt(levels)), now++);
+	}
+
+	/**
+	 * A limit sell sweeps the best SWEEP_LEVELS bid levels, then the swept bids are put back.
+	 */
+	@Benchmark
+	public ExecutionReport aggressiveSweep() {
+		int swept = Math.min(SWEEP_LEVELS, levels);
+		long units = 0;
+		for (int level = 0; level < swept; level++) {
+			units += ordersAtLevel[level] * UNITS;
+		}
+		ExecutionReport report = book.sellTrade(order(SELLER, units, bidPrice(swept - 1), false, OrderType.LIMIT_ORDER));
+		for (int level = 0; level < swept; level++) {
+			for (int i = 0; i < ordersAtLevel[level]; i++) {
+				rest(BUYER, bidPrice(level), true);
+			}
+		}
+		return report;
+	}
+
+	/**
+	 * A market sell takes the first bid of the book, the bid is put back at the end of its level.
+	 */
+	@Benchmark
+	public ExecutionReport marketOrder() {
+		ExecutionReport report = book.sellTrade(order(SELLER, UNITS, 0, false, OrderType.MARKET_ORDER));
+		rest(BUYER, BEST_BID, true);
+		return report;
+	}
+
+	/**
+	 * Order flow resembling a quoting market: mostly passive adds and cancels, some amends,
+	 * a few market orders hitting the top of either side.
+	 * Passive orders stay behind the top level so market orders only take (and put back) the setup's orders.
+	 */
+	@Benchmark
+	public Object mixedFlow() {
+		int dice = random.nextInt(100);
+		if (dice < 45) {
+			if (liveCount < LIVE_ORDERS) {
+				boolean buying = random.nextBoolean();
+				int level = passiveLevel();
+				liveBuying[liveCount] = buying;
+				liveIds[liveCount++] = buying ? rest(BID_TRADER, bidPrice(level), true) : rest(ASK_TRADER, askPrice(level), false);
+				return null;
+			}
+			return cancelLive();
+		}
+		if (dice < 85) {
+			return liveCount > 0 ? cancelLive() : passiveAddAndCancel();
+		}
+		if (dice < 95) {
+			if (liveCount == 0) {
+				return amendPrice();
+			}
+			int i = random.nextInt(liveCount);
+			int level = passiveLevel();
+			return book.amend(liveIds[i], UNITS, liveBuying[i] ? bidPrice(level) : askPrice(level), now++);
+		}
+		if (random.nextBoolean()) {
+			return marketOrder();
+		}
+		ExecutionReport report = book.buyTrade(order(BUYER, UNITS, 0, true, OrderType.MARKET_ORDER));
+		rest(SELLER, BEST_ASK, false);
+		return report;
+	}
+
+	private int passiveLevel() {
+		return levels > 1 ? 1 + random.nextInt(levels - 1) : 0;
+	}
+
+	private boolean cancelLive() {
+		int i = random.nextInt(liveCount);
+		long orderId = liveIds[i];
+		liveCount--;
+		liveIds[i] = liveIds[liveCount];
+		liveBuying[i] = liveBuying[liveCount];
+		return book.cancelOrder(orderId);
+	}
+
+	private long rest(String clientId, long price, boolean buying) {
+		Order order = order(clientId, UNITS, price, buying, OrderType.LIMIT_ORDER);
+		if (buying) {
+			book.buyTrade(order);
+		} else {
+			book.sellTrade(order);
+		}
+		return order.getOrderId();
+	}
+
+	private Order order(String clientId, long units, long price, boolean buying, OrderType orderType) {
+		return new Order(nextOrderId++, clientId, SECURITY, units, price, buying, orderType, now++);
+	}
+
+	private static long bidPrice(int level) {
+		return BEST_BID - level * TICK;
+	}
+
+	private static long askPrice(int level) {
+		return BEST_ASK + level * TICK;
+	}
+}
@@ -0,0 +1,110 @@
+package com.example.orderbook.benchmark;
+
+import com.example.orderbook.model.request.OrderType;
+import com.example.orderbook.service.EngineSettings;
+import com.example.orderbook.service.MatchingEngine;
+import com.example.orderbook.service.SnapshotStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Restart-to-ready time of a MatchingEngine recovering its books from snapshots, the target being a few seconds for
+ * 10M resting orders.
+ *
+ * The trial rests the orders on the books of SECURITIES securities, bids and asks over LEVELS price levels each,
+ * snapshots them and stops the engine. Every invocation then starts a new engine on the snapshots, timed until it
+ * accepts orders, and stops it. The snapshot benchmark measures the snapshot of the full books, its capture on the
+ * matching threads included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class SnapshotBenchmark {
+
+	private static final int SHARDS = 4;
+	private static final int SECURITIES = 100;
+	private static final int LEVELS = 500;
+	private static final long MID_PRICE = 100000;
+	private static final int BATCH = 10000;
+
+	@Param({"1000000", "10000000"})
+	int orders;
+
+	private Path directory;
+	private SnapshotStore snapshots;
+	private MatchingEngine engine;
+
+	@Setup(Level.Trial)
+	public void restOrders() throws Exception {
+		directory = Files.createTempDirectory("snapshot-benchmark");
+		snapshots = new SnapshotStore(directory);
+		engine = newEngine();
+		engine.start();
+		CompletableFuture<?>[] futures = new CompletableFuture<?>[BATCH];
+		for (int i = 0; i < orders; i++) {
+			String securityId = "SEC" + (i % SECURITIES);
+			boolean buying = (i & 1) == 0;
+			long price = buying ? MID_PRICE - 1 - (i / 2) % LEVELS : MID_PRICE + 1 + (i / 2) % LEVELS;
+			futures[i % BATCH] = engine.placeOrderAsync(engine.nextOrderId(securityId), "CLIENT" + (i % 1000),
+					securityId, 100, price, buying, OrderType.LIMIT_ORDER, i);
+			if (i % BATCH == BATCH - 1) {
+				CompletableFuture.allOf(futures).join();
+			}
+		}
+		CompletableFuture.allOf(futures).join();
+		engine.snapshot();
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteSnapshots() throws Exception {
+		engine.stop();
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	/**
+	 * Snapshots every shard of the running engine.
+	 */
+	@Benchmark
+	public void snapshot() throws IOException {
+		engine.snapshot();
+	}
+
+	/**
+	 * Starts an engine on the snapshots, ready to match once start returns.
+	 */
+	@Benchmark
+	public MatchingEngine restartToReady() throws InterruptedException {
+		MatchingEngine restarted = newEngine();
+		restarted.start();
+		restarted.stop();
+		return restarted;
+	}
+
+	private MatchingEngine newEngine() {
+		return new MatchingEngine(new EngineSettings().shards(SHARDS).snapshots(snapshots));
+	}
+}
@@ -0,0 +1,68 @@
+package com.example.orderbook.benchmark;
+
+import com.example.orderbook.replay.OrderFlowGenerator;
+import com.example.orderbook.replay.RecordedCommand;
+import com.example.orderbook.service.MarketDataFeed;
+import com.example.orderbook.service.OrderStorage;
+import com.example.orderbook.service.PriceTimePriorityOrderBook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PriceTimePriorityOrderBook under the synthetic flow of OrderFlowGenerator: Zipfian securities, random walk prices,
+ * limit, market, amend and cancel commands, per number of securities and order storage.
+ *
+ * The flow is generated once per trial so the measurement does not include the generator, each operation applies
+ * the next command. When the flow is exhausted the book is cleared and the flow starts over, the same orderIds
+ * are then valid again.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SyntheticFlowBenchmark {
+
+	private static final int COMMANDS = 1 << 21;
+	private static final int CLIENTS = 1000;
+
+	@Param({"10", "1000", "10000"})
+	int securities;
+
+	@Param({"HEAP", "OFF_HEAP"})
+	String storage;
+
+	private RecordedCommand[] flow;
+	private PriceTimePriorityOrderBook book;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void generateFlow() {
+		flow = new OrderFlowGenerator(42, securities, CLIENTS).next(COMMANDS).toArray(new RecordedCommand[0]);
+		book = new PriceTimePriorityOrderBook(PriceTimePriorityOrderBook.DEFAULT_MARKET_PROTECTION_BPS,
+				new MarketDataFeed(), 0, OrderStorage.of(storage));
+		next = 0;
+	}
+
+	@Benchmark
+	public boolean command() {
+		if (next == flow.length) {
+			book.clear();
+			next = 0;
+		}
+		return OrderFlowGenerator.execute(flow[next++], book);
+	}
+}
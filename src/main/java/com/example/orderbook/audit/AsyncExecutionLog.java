@@ -0,0 +1,353 @@
+package com.example.orderbook.audit;
+
+import com.example.orderbook.model.PriceScale;
+import com.example.orderbook.pipeline.Sequence;
+import com.example.orderbook.service.ExecutionLog;
+import com.example.orderbook.service.SymbolRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ExecutionLog appending the events of the shards to a file as structured text lines, written by a background thread.
+ *
+ * Each shard records into its own single producer ring of fixed-size slots: the matching thread stamps the event
+ * and copies its primitive fields into the next slot, it takes no lock, allocates nothing and only waits when the
+ * writer is a whole ring behind (counted by getStalls). The writer thread drains the rings, formats the events into
+ * a direct buffer without allocating either and writes the buffer when it is full or when the rings are empty,
+ * so the disk gets large batched writes whatever the rate of events. One line per event:
+ * <pre>
+ * time=1602835200000 shard=0 event=TRADE security=REL order=42 client=C1 side=BUY price=100.50 units=10 counterparty=17 counterpartyClient=C2
+ * </pre>
+ * time in epoch milliseconds, price in decimals of the security, counterparty fields only for trades.
+ * Nothing is forced to the disk, close() drains the rings and closes the file.
+ */
+public class AsyncExecutionLog implements ExecutionLog, Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(AsyncExecutionLog.class);
+
+	/** longs per slot of a ring */
+	private static final int SLOT = 8;
+	private static final int TIME = 0;
+	private static final int ORDER_ID = 1;
+	private static final int COUNTERPARTY_ORDER_ID = 2;
+	private static final int PRICE = 3;
+	private static final int UNITS = 4;
+	/** security number in the high half, client number in the low half */
+	private static final int SYMBOLS = 5;
+	/** counterparty client number in the high half, event ordinal and side in the low half */
+	private static final int FLAGS = 6;
+
+	private static final Event[] EVENTS = Event.values();
+	/** longest name written, longer names are cut */
+	private static final int MAX_NAME = 256;
+	private static final int MAX_LINE = 256 + 3 * MAX_NAME;
+	private static final long IDLE_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+	private static final long[] POWERS_OF_TEN = new long[PriceScale.MAX_DECIMALS + 1];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	private final Path file;
+	private final FileChannel channel;
+	private final int ringSize;
+	private final ByteBuffer buffer;
+	private volatile ShardRing[] rings = new ShardRing[0];
+	private final Thread writer;
+	private volatile boolean running = true;
+	private volatile long writeErrors;
+
+	/**
+	 * @param file
+	 * 			file the events are appended to, created if needed
+	 * @param ringSize
+	 * 			events each shard may record ahead of the writer, a power of two
+	 * @param bufferSize
+	 * 			bytes formatted before they are written to the file
+	 */
+	public AsyncExecutionLog(Path file, int ringSize, int bufferSize) throws IOException {
+		if (ringSize < 1 || Integer.bitCount(ringSize) != 1) {
+			throw new IllegalArgumentException("ring size must be a power of two");
+		}
+		if (bufferSize < MAX_LINE) {
+			throw new IllegalArgumentException("buffer size must be at least " + MAX_LINE);
+		}
+		if (file.getParent() != null) {
+			Files.createDirectories(file.getParent());
+		}
+		this.file = file;
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+		this.ringSize = ringSize;
+		this.buffer = ByteBuffer.allocateDirect(bufferSize);
+		this.writer = new Thread(this::run, "execution-log");
+		writer.setDaemon(true);
+		writer.start();
+		logger.info("execution log appending to {}", file);
+	}
+
+	@Override
+	public synchronized Recorder recorder(int shardId, SymbolRegistry symbols) {
+		ShardRing ring = new ShardRing(shardId, ringSize, symbols);
+		ShardRing[] grown = Arrays.copyOf(rings, rings.length + 1);
+		grown[rings.length] = ring;
+		rings = grown;
+		return ring;
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * @return
+	 * 		number of events recorded by every shard so far
+	 */
+	public long getRecordedCount() {
+		long recorded = 0;
+		for (ShardRing ring : rings) {
+			recorded += ring.published.get() + 1;
+		}
+		return recorded;
+	}
+
+	/**
+	 * @return
+	 * 		number of times a matching thread waited for the writer because its ring was full
+	 */
+	public long getStalls() {
+		long stalls = 0;
+		for (ShardRing ring : rings) {
+			stalls += ring.stalls;
+		}
+		return stalls;
+	}
+
+	/**
+	 * @return
+	 * 		number of failed writes to the file, the events of a failed write are lost
+	 */
+	public long getWriteErrors() {
+		return writeErrors;
+	}
+
+	/**
+	 * Writes the events recorded so far and closes the file, to be called once the shards are stopped.
+	 */
+	@Override
+	public void close() throws IOException {
+		running = false;
+		LockSupport.unpark(writer);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		channel.close();
+	}
+
+	private void run() {
+		while (running) {
+			if (drain() == 0) {
+				write();
+				LockSupport.parkNanos(IDLE_NANOS);
+			}
+		}
+		while (drain() > 0) {
+			// the events recorded before close
+		}
+		write();
+	}
+
+	/**
+	 * Formats the events published by every ring into the buffer.
+	 * @return
+	 * 		number of events formatted
+	 */
+	private int drain() {
+		int drained = 0;
+		for (ShardRing ring : rings) {
+			long available = ring.published.get();
+			for (long sequence = ring.consumed.get() + 1; sequence <= available; sequence++) {
+				if (buffer.remaining() < MAX_LINE) {
+					write();
+				}
+				format(ring, sequence);
+				ring.consumed.set(sequence);
+				drained++;
+			}
+		}
+		return drained;
+	}
+
+	private void write() {
+		buffer.flip();
+		try {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} catch (IOException e) {
+			writeErrors++;
+			logger.error("execution log write to {} failed", file, e);
+		}
+		buffer.clear();
+	}
+
+	private void format(ShardRing ring, long sequence) {
+		long[] slots = ring.slots;
+		int base = (int) (sequence & ring.mask) * SLOT;
+		int security = (int) (slots[base + SYMBOLS] >>> 32);
+		long flags = slots[base + FLAGS];
+		Event event = EVENTS[(int) flags >>> 1];
+		putAscii("time=");
+		putLong(slots[base + TIME]);
+		putAscii(" shard=");
+		putLong(ring.shardId);
+		putAscii(" event=");
+		putAscii(event.name());
+		putAscii(" security=");
+		putName(ring.symbols.securityName(security));
+		putAscii(" order=");
+		putLong(slots[base + ORDER_ID]);
+		putAscii(" client=");
+		putName(ring.symbols.clientName((int) slots[base + SYMBOLS]));
+		putAscii((flags & 1) != 0 ? " side=BUY price=" : " side=SELL price=");
+		putDecimal(slots[base + PRICE], ring.decimals(security));
+		putAscii(" units=");
+		putLong(slots[base + UNITS]);
+		if (event == Event.TRADE) {
+			putAscii(" counterparty=");
+			putLong(slots[base + COUNTERPARTY_ORDER_ID]);
+			putAscii(" counterpartyClient=");
+			putName(ring.symbols.clientName((int) (flags >> 32)));
+		}
+		buffer.put((byte) '\n');
+	}
+
+	private void putAscii(String text) {
+		for (int i = 0; i < text.length(); i++) {
+			buffer.put((byte) text.charAt(i));
+		}
+	}
+
+	/**
+	 * Writes a name as is, characters outside ASCII and whitespace as '?' so a line stays one record.
+	 */
+	private void putName(String name) {
+		int length = Math.min(name.length(), MAX_NAME);
+		for (int i = 0; i < length; i++) {
+			char c = name.charAt(i);
+			buffer.put(c > ' ' && c < 0x7f ? (byte) c : (byte) '?');
+		}
+	}
+
+	private void putLong(long value) {
+		if (value < 0) {
+			buffer.put((byte) '-');
+			value = -value;
+		}
+		int digits = 1;
+		for (long rest = value / 10; rest > 0; rest /= 10) {
+			digits++;
+		}
+		putDigits(value, digits);
+	}
+
+	/**
+	 * Writes the lowest digits of a positive value, zero padded.
+	 */
+	private void putDigits(long value, int digits) {
+		int end = buffer.position() + digits;
+		for (int i = end - 1; i >= end - digits; i--) {
+			buffer.put(i, (byte) ('0' + value % 10));
+			value /= 10;
+		}
+		buffer.position(end);
+	}
+
+	private void putDecimal(long ticks, int decimals) {
+		if (decimals == 0) {
+			putLong(ticks);
+			return;
+		}
+		if (ticks < 0) {
+			buffer.put((byte) '-');
+			ticks = -ticks;
+		}
+		putLong(ticks / POWERS_OF_TEN[decimals]);
+		buffer.put((byte) '.');
+		putDigits(ticks % POWERS_OF_TEN[decimals], decimals);
+	}
+
+	/**
+	 * Events recorded by the matching thread of one shard, read by the writer thread.
+	 */
+	private static final class ShardRing implements Recorder {
+
+		private final int shardId;
+		private final SymbolRegistry symbols;
+		private final long[] slots;
+		private final int mask;
+		/** last sequence recorded, written by the matching thread */
+		private final Sequence published = new Sequence();
+		/** last sequence formatted, written by the writer thread */
+		private final Sequence consumed = new Sequence();
+		/** last sequence claimed, only used by the matching thread */
+		private long claimed = Sequence.INITIAL_VALUE;
+		private long stalls;
+		/** decimals of the price of each security number, -1 until first needed, only used by the writer thread */
+		private int[] decimals = new int[0];
+
+		ShardRing(int shardId, int size, SymbolRegistry symbols) {
+			this.shardId = shardId;
+			this.symbols = symbols;
+			this.slots = new long[size * SLOT];
+			this.mask = size - 1;
+		}
+
+		@Override
+		public void record(Event event, int security, long orderId, int client, boolean buying, long price, long units,
+						   long counterpartyOrderId, int counterpartyClient) {
+			long sequence = ++claimed;
+			while (sequence - consumed.get() > slots.length / SLOT) {
+				stalls++;
+				Thread.yield();
+			}
+			int base = (int) (sequence & mask) * SLOT;
+			slots[base + TIME] = System.currentTimeMillis();
+			slots[base + ORDER_ID] = orderId;
+			slots[base + COUNTERPARTY_ORDER_ID] = counterpartyOrderId;
+			slots[base + PRICE] = price;
+			slots[base + UNITS] = units;
+			slots[base + SYMBOLS] = (long) security << 32 | (client & 0xFFFFFFFFL);
+			slots[base + FLAGS] = (long) counterpartyClient << 32 | event.ordinal() << 1 | (buying ? 1 : 0);
+			published.set(sequence);
+		}
+
+		private int decimals(int security) {
+			if (security >= decimals.length) {
+				int length = decimals.length;
+				decimals = Arrays.copyOf(decimals, Math.max(security + 1, length << 1));
+				Arrays.fill(decimals, length, decimals.length, -1);
+			}
+			if (decimals[security] < 0) {
+				decimals[security] = PriceScale.of(symbols.securityName(security)).getDecimals();
+			}
+			return decimals[security];
+		}
+	}
+}
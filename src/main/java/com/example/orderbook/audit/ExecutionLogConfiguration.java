@@ -0,0 +1,26 @@
+package com.example.orderbook.audit;
+
+import com.example.orderbook.service.ExecutionLog;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Execution log of the matching engine, an AsyncExecutionLog when orderbook.execution-log.enabled is set,
+ * no log otherwise. Spring closes the AsyncExecutionLog after the engine depending on it is stopped.
+ */
+@Configuration
+public class ExecutionLogConfiguration {
+
+	@Bean
+	public ExecutionLog executionLog(@Value("${orderbook.execution-log.enabled:false}") boolean enabled,
+									 @Value("${orderbook.execution-log.file:execution.log}") String file,
+									 @Value("${orderbook.execution-log.ring-size:65536}") int ringSize,
+									 @Value("${orderbook.execution-log.buffer-size:1048576}") int bufferSize)
+			throws IOException {
+		return enabled ? new AsyncExecutionLog(Paths.get(file), ringSize, bufferSize) : ExecutionLog.NONE;
+	}
+}
@@ -2,21 +2,36 @@ package com.example.orderbook.controller;
 
 import com.example.orderbook.*;
 import com.example.orderbook.exception.TradeException;
+import com.example.orderbook.model.MarketDataEvent;
 import com.example.orderbook.model.Order;
+import com.example.orderbook.model.request.BatchCommand;
+import com.example.orderbook.model.request.OrderFilter;
 import com.example.orderbook.model.request.OrderRequest;
 import com.example.orderbook.model.request.OrderType;
 import com.example.orderbook.model.request.UpdateOrderRequest;
+import com.example.orderbook.service.MarketDataFeed;
+import com.example.orderbook.service.MarketDataSubscription;
 import com.example.orderbook.service.OrderBookService;
-import com.example.orderbook.service.PriceTimePriorityOrderBook;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 
 @RestController
@@ -25,23 +40,148 @@ public class OrderBookController {
 
     Logger logger = LoggerFactory.getLogger(OrderBookService.class);
 
-    @Autowired
-    PriceTimePriorityOrderBook orders;
+    private static final String NDJSON = "application/x-ndjson";
 
     @Autowired
     OrderBookService orderBookService;
 
-    @GetMapping("/getOrders/{securityId}")
-    public ResponseEntity getOrdersBySecurity(@PathVariable String securityId) {
-        List<Order> orders = orders = orderBookService.listOrdersBySecurity(securityId);
-        return new ResponseEntity<>(orders, HttpStatus.OK);
+    private final ObjectMapper objectMapper;
+
+    /**
+     * @param objectMappers
+     *          the ObjectMapper of the application, a default one where Jackson is not auto-configured
+     */
+    public OrderBookController(ObjectProvider<ObjectMapper> objectMappers) {
+        this.objectMapper = objectMappers.getIfAvailable(ObjectMapper::new);
     }
 
+    /**
+     * Streams the resting orders of a security, see streamOrders.
+     */
+    @GetMapping("/getOrders/{securityId}")
+    public void getOrdersBySecurity(@PathVariable String securityId,
+                                    @RequestParam(required = false) String side,
+                                    @RequestParam(required = false) String clientId,
+                                    @RequestParam(required = false) Double minValue,
+                                    @RequestParam(required = false) Double maxValue,
+                                    @RequestParam(defaultValue = "0") int limit,
+                                    @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                    HttpServletResponse response) throws IOException {
+        streamOrders(securityId, new OrderFilter(OrderFilter.side(side), clientId, minValue, maxValue, limit), accept,
+                response);
+    }
 
+    /**
+     * Streams the resting orders of every security as of one point in time, see streamOrders.
+     */
     @GetMapping("/getOrders")
-    public ResponseEntity getOrders() {
-        List<Order> orders = orders = orderBookService.listOrders();
-        return new ResponseEntity<>(orders, HttpStatus.OK);
+    public void getOrders(@RequestParam(required = false) String side,
+                          @RequestParam(required = false) String clientId,
+                          @RequestParam(required = false) Double minValue,
+                          @RequestParam(required = false) Double maxValue,
+                          @RequestParam(defaultValue = "0") int limit,
+                          @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                          HttpServletResponse response) throws IOException {
+        streamOrders(null, new OrderFilter(OrderFilter.side(side), clientId, minValue, maxValue, limit), accept,
+                response);
+    }
+
+    /**
+     * Writes the orders to the response as they are read from a view of the books, a JSON array or one order per
+     * line when application/x-ndjson is accepted. The orders are not collected first, the response is sent in
+     * chunks of the generator buffer from the first orders on. A failure before the first chunk gets the usual
+     * error response, later the response is cut short.
+     */
+    private void streamOrders(String securityId, OrderFilter filter, String accept, HttpServletResponse response)
+            throws IOException {
+        boolean ndjson = accept != null && accept.contains(NDJSON);
+        response.setContentType(ndjson ? NDJSON : MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        ObjectWriter writer = objectMapper.writerFor(Order.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        // not closed on failure, so nothing buffered reaches the response before an error response
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream());
+        if (ndjson) {
+            generator.setRootValueSeparator(null);
+        } else {
+            generator.writeStartArray();
+        }
+        orderBookService.streamOrders(securityId, filter, order -> {
+            writer.writeValue(generator, order);
+            if (ndjson) {
+                generator.writeRaw('\n');
+            }
+        });
+        if (!ndjson) {
+            generator.writeEndArray();
+        }
+        generator.close();
+    }
+
+    /**
+     * Pages through a view of the resting orders taken at one point in time, see OrderBookService.listOrderPage.
+     */
+    @GetMapping("/getOrderPage")
+    public ResponseEntity getOrderPage(@RequestParam(required = false) String securityId,
+                                       @RequestParam(required = false) Long viewId,
+                                       @RequestParam(defaultValue = "0") int offset,
+                                       @RequestParam(defaultValue = "1000") int limit) {
+        return new ResponseEntity<>(orderBookService.listOrderPage(securityId, viewId, offset, limit), HttpStatus.OK);
+    }
+
+    @GetMapping("/getDepth/{securityId}")
+    public ResponseEntity getDepth(@PathVariable String securityId,
+                                   @RequestParam(defaultValue = "10") int levels) {
+        return new ResponseEntity<>(orderBookService.getDepth(securityId, levels), HttpStatus.OK);
+    }
+
+    @GetMapping("/getTopOfBook/{securityId}")
+    public ResponseEntity getTopOfBook(@PathVariable String securityId) {
+        return new ResponseEntity<>(orderBookService.getTopOfBook(securityId), HttpStatus.OK);
+    }
+
+    @GetMapping("/getOrderCount")
+    public ResponseEntity getOrderCount() {
+        return new ResponseEntity<>(orderBookService.countOrders(), HttpStatus.OK);
+    }
+
+    @GetMapping("/getPipelineStats")
+    public ResponseEntity getPipelineStats() {
+        return new ResponseEntity<>(orderBookService.pipelineStats(), HttpStatus.OK);
+    }
+
+    @GetMapping("/getMetrics")
+    public ResponseEntity getMetrics() {
+        return new ResponseEntity<>(orderBookService.metrics(), HttpStatus.OK);
+    }
+
+    /**
+     * Streams the changes of the books as server-sent events, the state of the books first.
+     * Each event is named after its type and carries the sequence of its security as id.
+     */
+    @GetMapping(path = "/marketData", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter marketData(@RequestParam(required = false) String securityId) {
+        SseEmitter emitter = new SseEmitter(0L);
+        MarketDataSubscription subscription = orderBookService.subscribeMarketData(securityId, new MarketDataFeed.Sink() {
+            @Override
+            public void send(List<MarketDataEvent> events) throws IOException {
+                for (MarketDataEvent event : events) {
+                    emitter.send(SseEmitter.event()
+                            .id(Long.toString(event.getSequence()))
+                            .name(event.getType().name())
+                            .data(event, MediaType.APPLICATION_JSON));
+                }
+            }
+
+            @Override
+            public void close(String reason) {
+                logger.info("market data subscription closed : {}", reason);
+                emitter.complete();
+            }
+        });
+        emitter.onCompletion(() -> subscription.close("client disconnected"));
+        emitter.onTimeout(() -> subscription.close("timeout"));
+        emitter.onError(e -> subscription.close("client error " + e.getMessage()));
+        return emitter;
     }
 
     @PostMapping("/addOrder")
@@ -57,6 +197,34 @@ public class OrderBookController {
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
 
+    /**
+     * Executes add, update and cancel commands sent as a JSON array, one result per command in the same order.
+     */
+    @PostMapping(path = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity batch(@RequestBody List<BatchCommand> commands) {
+        return new ResponseEntity<>(orderBookService.submitBatch(commands), HttpStatus.OK);
+    }
+
+    /**
+     * Same as batch for commands sent as newline delimited JSON, one command per line.
+     */
+    @PostMapping(path = "/batch", consumes = NDJSON)
+    public ResponseEntity batchNdjson(@RequestBody String body) {
+        List<BatchCommand> commands = new ArrayList<>();
+        String[] lines = body.split("\r?\n");
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i].trim().isEmpty()) {
+                continue;
+            }
+            try {
+                commands.add(objectMapper.readValue(lines[i], BatchCommand.class));
+            } catch (IOException e) {
+                throw new TradeException("line " + (i + 1) + " is not a valid command - " + e.getMessage());
+            }
+        }
+        return new ResponseEntity<>(orderBookService.submitBatch(commands), HttpStatus.OK);
+    }
+
     @PostMapping("/updateOrder")
     public ResponseEntity updateOrder(@Valid @RequestBody UpdateOrderRequest orderRequest){
         String response = orderBookService.updateOrder(orderRequest);
@@ -71,4 +239,11 @@ public class OrderBookController {
         return new ResponseEntity<>("Order Cancellation request received", HttpStatus.OK);
     }
 
+    @GetMapping("/cancelOrders/{clientId}")
+    public ResponseEntity cancelClientOrders(@PathVariable(required = true) String clientId,
+                                             @RequestParam(required = false) String securityId) {
+        int cancelled = orderBookService.cancelClientOrders(clientId, securityId);
+        return new ResponseEntity<>("Orders Cancelled - " + cancelled, HttpStatus.OK);
+    }
+
 }
@@ -0,0 +1,170 @@
+package com.example.orderbook.gateway;
+
+import com.example.orderbook.model.ExecutionReport;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One client connection of the OrderGateway.
+ *
+ * Requests are read and decoded by the selector thread. Answers are encoded by the threads completing the
+ * orders straight into the output buffer and written at once, only what the socket does not take is left
+ * to the selector thread. A client whose answers fill the output buffer is disconnected.
+ */
+class GatewayConnection {
+
+	private final OrderGateway gateway;
+	private final SocketChannel channel;
+	private final SelectionKey key;
+	final ByteBuffer in;
+	private final ByteBuffer out;
+	private boolean writePending;
+	private volatile boolean closed;
+
+	/** securityIds already decoded by this connection, keyed by their 8 bytes */
+	private final Map<Long, String> securityIds = new HashMap<>();
+	private long lastClientHigh;
+	private long lastClientLow;
+	private String lastClientId;
+
+	GatewayConnection(OrderGateway gateway, SocketChannel channel, SelectionKey key, int bufferSize) {
+		this.gateway = gateway;
+		this.channel = channel;
+		this.key = key;
+		this.in = ByteBuffer.allocateDirect(bufferSize);
+		this.out = ByteBuffer.allocateDirect(bufferSize);
+	}
+
+	SocketChannel channel() {
+		return channel;
+	}
+
+	SelectionKey key() {
+		return key;
+	}
+
+	boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Decodes the securityId of a request, the String is created once per security and connection.
+	 */
+	String securityId(int position) {
+		long packed = in.getLong(position);
+		String securityId = securityIds.get(packed);
+		if (securityId == null) {
+			securityId = GatewayProtocol.getText(in, position, GatewayProtocol.SECURITY_ID_LENGTH);
+			securityIds.put(packed, securityId);
+		}
+		return securityId;
+	}
+
+	/**
+	 * Decodes the clientId of a request, a connection usually trades for one client.
+	 */
+	String clientId(int position) {
+		long high = in.getLong(position);
+		long low = in.getLong(position + 8);
+		if (lastClientId == null || high != lastClientHigh || low != lastClientLow) {
+			lastClientId = GatewayProtocol.getText(in, position, GatewayProtocol.CLIENT_ID_LENGTH);
+			lastClientHigh = high;
+			lastClientLow = low;
+		}
+		return lastClientId;
+	}
+
+	/**
+	 * Answers a request with the execution report of its order.
+	 */
+	synchronized void sendExecution(long requestId, ExecutionReport report) {
+		if (!reserve(GatewayProtocol.HEADER_LENGTH + GatewayProtocol.EXECUTION_LENGTH)) {
+			return;
+		}
+		GatewayProtocol.putExecution(out, requestId, report.getOrderId(), report.getFilledUnits(),
+				report.getRemainingUnits(), report.getNotional(),
+				report.isRested() ? GatewayProtocol.STATUS_RESTED : GatewayProtocol.STATUS_DONE);
+		flush();
+	}
+
+	synchronized void sendCancelled(long requestId, long orderId) {
+		if (!reserve(GatewayProtocol.HEADER_LENGTH + GatewayProtocol.EXECUTION_LENGTH)) {
+			return;
+		}
+		GatewayProtocol.putExecution(out, requestId, orderId, 0, 0, 0, GatewayProtocol.STATUS_CANCELLED);
+		flush();
+	}
+
+	synchronized void sendReject(long requestId, long orderId, String text) {
+		if (!reserve(GatewayProtocol.HEADER_LENGTH + GatewayProtocol.MAX_REJECT_LENGTH)) {
+			return;
+		}
+		GatewayProtocol.putReject(out, requestId, orderId, text);
+		flush();
+	}
+
+	/**
+	 * Writes what the socket takes of the output buffer, called by the selector thread when it is writable.
+	 */
+	synchronized void flush() {
+		if (closed) {
+			return;
+		}
+		out.flip();
+		try {
+			channel.write(out);
+		} catch (IOException e) {
+			out.clear();
+			gateway.close(this, "write failed: " + e.getMessage());
+			return;
+		}
+		out.compact();
+		boolean pending = out.position() > 0;
+		if (pending != writePending) {
+			writePending = pending;
+			gateway.requestInterest(this);
+		}
+	}
+
+	/**
+	 * @return
+	 * 		true while answers wait for the socket to become writable
+	 */
+	synchronized boolean hasPendingWrite() {
+		return writePending;
+	}
+
+	/**
+	 * @return
+	 * 		false if the connection is closed or its client does not read its answers fast enough
+	 */
+	private boolean reserve(int length) {
+		if (closed) {
+			return false;
+		}
+		if (out.remaining() < length) {
+			gateway.close(this, "slow consumer, " + out.position() + " bytes of answers not read");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return
+	 * 		false if the connection was already closed
+	 */
+	boolean markClosed() {
+		synchronized (this) {
+			if (closed) {
+				return false;
+			}
+			closed = true;
+			return true;
+		}
+	}
+}
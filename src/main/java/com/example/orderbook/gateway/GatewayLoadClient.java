@@ -0,0 +1,188 @@
+package com.example.orderbook.gateway;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Load generator of the OrderGateway, run against a started application:
+ * <pre>
+ * java -cp target/classes com.example.orderbook.gateway.GatewayLoadClient [host] [port] [connections] [orders] [window]
+ * </pre>
+ * Each connection sends orders pairs of a buy and a matching sell on its own security, keeping at most window
+ * requests without an answer, then prints the throughput and the latency percentiles from request to answer.
+ */
+public class GatewayLoadClient {
+
+	private final String host;
+	private final int port;
+	private final int connections;
+	private final int orders;
+	private final int window;
+
+	/**
+	 * @param orders
+	 * 			orders sent per connection, an even number
+	 * @param window
+	 * 			requests a connection sends ahead of their answers
+	 */
+	public GatewayLoadClient(String host, int port, int connections, int orders, int window) {
+		if (connections <= 0 || orders <= 0 || window <= 0) {
+			throw new IllegalArgumentException("connections, orders and window must be greater than zero");
+		}
+		this.host = host;
+		this.port = port;
+		this.connections = connections;
+		this.orders = orders + orders % 2;
+		this.window = window;
+	}
+
+	public static void main(String[] args) throws Exception {
+		GatewayLoadClient client = new GatewayLoadClient(args.length > 0 ? args[0] : "localhost",
+				args.length > 1 ? Integer.parseInt(args[1]) : 9090,
+				args.length > 2 ? Integer.parseInt(args[2]) : 4,
+				args.length > 3 ? Integer.parseInt(args[3]) : 100000,
+				args.length > 4 ? Integer.parseInt(args[4]) : 64);
+		System.out.println(client.run());
+	}
+
+	/**
+	 * Sends the load from one thread per connection and waits for every answer.
+	 */
+	public Result run() throws Exception {
+		ExecutorService threads = Executors.newFixedThreadPool(connections);
+		try {
+			List<Future<long[]>> futures = new ArrayList<>();
+			long start = System.nanoTime();
+			for (int i = 0; i < connections; i++) {
+				final int connection = i;
+				futures.add(threads.submit(() -> trade(connection)));
+			}
+			List<long[]> latencies = new ArrayList<>();
+			for (Future<long[]> future : futures) {
+				latencies.add(future.get());
+			}
+			return new Result(latencies, System.nanoTime() - start);
+		} finally {
+			threads.shutdown();
+		}
+	}
+
+	/**
+	 * @return
+	 * 		the latency of every request in nanoseconds, a rejected request counts as a negative latency
+	 */
+	private long[] trade(int connection) throws IOException {
+		String securityId = "LOAD" + connection;
+		long[] sentAt = new long[orders];
+		long[] latencies = new long[orders];
+		ByteBuffer out = ByteBuffer.allocateDirect(window * (GatewayProtocol.HEADER_LENGTH + GatewayProtocol.NEW_ORDER_LENGTH));
+		ByteBuffer in = ByteBuffer.allocateDirect(64 * 1024);
+		try (SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port))) {
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			int sent = 0;
+			int answered = 0;
+			while (answered < orders) {
+				out.clear();
+				while (sent < orders && sent - answered < window) {
+					boolean buying = sent % 2 == 0;
+					GatewayProtocol.putNewOrder(out, sent, buying ? "BUYER" + connection : "SELLER" + connection,
+							securityId, 10, 1000, buying, false);
+					sentAt[sent++] = System.nanoTime();
+				}
+				out.flip();
+				while (out.hasRemaining()) {
+					channel.write(out);
+				}
+				if (channel.read(in) < 0) {
+					throw new IOException("connection closed by the gateway");
+				}
+				in.flip();
+				while (in.remaining() >= GatewayProtocol.HEADER_LENGTH) {
+					int position = in.position();
+					int length = in.getShort(position) & 0xffff;
+					if (in.remaining() < GatewayProtocol.HEADER_LENGTH + length) {
+						break;
+					}
+					int type = position + GatewayProtocol.HEADER_LENGTH;
+					int requestId = (int) in.getLong(type + 1);
+					long latency = System.nanoTime() - sentAt[requestId];
+					latencies[requestId] = in.get(type) == GatewayProtocol.REJECT ? -latency : latency;
+					answered++;
+					in.position(position + GatewayProtocol.HEADER_LENGTH + length);
+				}
+				in.compact();
+			}
+		}
+		return latencies;
+	}
+
+	/**
+	 * Throughput and latency of a run.
+	 */
+	public static class Result {
+
+		private final long[] latencies;
+		private final int rejected;
+		private final long elapsedNanos;
+
+		Result(List<long[]> perConnection, long elapsedNanos) {
+			int count = 0;
+			for (long[] latencies : perConnection) {
+				count += latencies.length;
+			}
+			this.latencies = new long[count];
+			int rejected = 0;
+			int i = 0;
+			for (long[] latencies : perConnection) {
+				for (long latency : latencies) {
+					if (latency < 0) {
+						rejected++;
+					}
+					this.latencies[i++] = Math.abs(latency);
+				}
+			}
+			Arrays.sort(this.latencies);
+			this.rejected = rejected;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		public int getOrders() {
+			return latencies.length;
+		}
+
+		public int getRejected() {
+			return rejected;
+		}
+
+		public double getOrdersPerSecond() {
+			return latencies.length * 1e9 / elapsedNanos;
+		}
+
+		/**
+		 * @param percentile
+		 * 			between 0 and 100
+		 * @return
+		 * 		latency in microseconds
+		 */
+		public double getLatencyMicros(double percentile) {
+			int index = (int) Math.min(latencies.length - 1, Math.ceil(percentile / 100 * latencies.length) - 1);
+			return latencies[Math.max(0, index)] / 1000.0;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d orders, %d rejected, %.0f orders/s, latency us p50=%.1f p99=%.1f p99.9=%.1f max=%.1f",
+					latencies.length, rejected, getOrdersPerSecond(), getLatencyMicros(50), getLatencyMicros(99),
+					getLatencyMicros(99.9), getLatencyMicros(100));
+		}
+	}
+}
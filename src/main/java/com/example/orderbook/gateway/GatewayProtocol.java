@@ -0,0 +1,143 @@
+package com.example.orderbook.gateway;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The fixed-layout binary protocol of the order entry gateway.
+ *
+ * Every message is a frame: an unsigned short length of what follows, a type byte and the body of the type.
+ * Numbers are big endian, prices are in ticks of the security (see PriceScale) and text fields are ASCII,
+ * padded with spaces to their width. The client chooses a requestId per request, echoed by the answer.
+ *
+ * <pre>
+ * client to gateway
+ *   NEW_ORDER 'N'  requestId:8 units:8 price:8 side:1 ('B'/'S') orderType:1 ('L'/'M') securityId:8 clientId:16
+ *   AMEND     'A'  requestId:8 orderId:8 units:8 price:8 (0 keeps the price)
+ *   CANCEL    'C'  requestId:8 orderId:8
+ * gateway to client
+ *   EXECUTION 'E'  requestId:8 orderId:8 filledUnits:8 remainingUnits:8 notional:8 status:1
+ *   REJECT    'J'  requestId:8 orderId:8 (0 if none) textLength:2 text
+ * </pre>
+ * Answers of one connection come back in the order the requests of each security were sent.
+ */
+public final class GatewayProtocol {
+
+	public static final byte NEW_ORDER = 'N';
+	public static final byte AMEND = 'A';
+	public static final byte CANCEL = 'C';
+	public static final byte EXECUTION = 'E';
+	public static final byte REJECT = 'J';
+
+	public static final byte BUY = 'B';
+	public static final byte SELL = 'S';
+	public static final byte LIMIT = 'L';
+	public static final byte MARKET = 'M';
+
+	/** the order rests in the book after the request */
+	public static final byte STATUS_RESTED = 'R';
+	/** nothing of the order rests: it was filled, or its unfilled market remainder was cancelled */
+	public static final byte STATUS_DONE = 'D';
+	/** answer to a CANCEL */
+	public static final byte STATUS_CANCELLED = 'C';
+
+	public static final int SECURITY_ID_LENGTH = 8;
+	public static final int CLIENT_ID_LENGTH = 16;
+	public static final int MAX_TEXT_LENGTH = 256;
+
+	/** size of the length prefix of a frame */
+	public static final int HEADER_LENGTH = 2;
+	public static final int NEW_ORDER_LENGTH = 1 + 8 + 8 + 8 + 1 + 1 + SECURITY_ID_LENGTH + CLIENT_ID_LENGTH;
+	public static final int AMEND_LENGTH = 1 + 8 + 8 + 8 + 8;
+	public static final int CANCEL_LENGTH = 1 + 8 + 8;
+	public static final int EXECUTION_LENGTH = 1 + 8 + 8 + 8 + 8 + 8 + 1;
+	public static final int MAX_REJECT_LENGTH = 1 + 8 + 8 + 2 + MAX_TEXT_LENGTH;
+
+	private GatewayProtocol() {
+	}
+
+	/**
+	 * @return
+	 * 		the frame length a request type must have, -1 for an unknown type
+	 */
+	public static int requestLength(byte type) {
+		switch (type) {
+			case NEW_ORDER:
+				return NEW_ORDER_LENGTH;
+			case AMEND:
+				return AMEND_LENGTH;
+			case CANCEL:
+				return CANCEL_LENGTH;
+			default:
+				return -1;
+		}
+	}
+
+	public static void putNewOrder(ByteBuffer buffer, long requestId, String clientId, String securityId, long units,
+								   long price, boolean buying, boolean market) {
+		buffer.putShort((short) NEW_ORDER_LENGTH).put(NEW_ORDER).putLong(requestId).putLong(units).putLong(price)
+				.put(buying ? BUY : SELL).put(market ? MARKET : LIMIT);
+		putText(buffer, securityId, SECURITY_ID_LENGTH);
+		putText(buffer, clientId, CLIENT_ID_LENGTH);
+	}
+
+	public static void putAmend(ByteBuffer buffer, long requestId, long orderId, long units, long price) {
+		buffer.putShort((short) AMEND_LENGTH).put(AMEND).putLong(requestId).putLong(orderId).putLong(units).putLong(price);
+	}
+
+	public static void putCancel(ByteBuffer buffer, long requestId, long orderId) {
+		buffer.putShort((short) CANCEL_LENGTH).put(CANCEL).putLong(requestId).putLong(orderId);
+	}
+
+	public static void putExecution(ByteBuffer buffer, long requestId, long orderId, long filledUnits,
+									long remainingUnits, long notional, byte status) {
+		buffer.putShort((short) EXECUTION_LENGTH).put(EXECUTION).putLong(requestId).putLong(orderId)
+				.putLong(filledUnits).putLong(remainingUnits).putLong(notional).put(status);
+	}
+
+	/**
+	 * @param text
+	 * 			the reason, truncated to MAX_TEXT_LENGTH bytes
+	 */
+	public static void putReject(ByteBuffer buffer, long requestId, long orderId, String text) {
+		byte[] bytes = (text == null ? "" : text).getBytes(StandardCharsets.US_ASCII);
+		int length = Math.min(bytes.length, MAX_TEXT_LENGTH);
+		buffer.putShort((short) (1 + 8 + 8 + 2 + length)).put(REJECT).putLong(requestId).putLong(orderId)
+				.putShort((short) length).put(bytes, 0, length);
+	}
+
+	/**
+	 * Writes a text field, padded with spaces, an ASCII text longer than the field is rejected.
+	 */
+	public static void putText(ByteBuffer buffer, String text, int width) {
+		if (text.length() > width) {
+			throw new IllegalArgumentException(text + " is longer than " + width + " characters");
+		}
+		for (int i = 0; i < width; i++) {
+			buffer.put(i < text.length() ? (byte) text.charAt(i) : (byte) ' ');
+		}
+	}
+
+	/**
+	 * Reads a text field at an absolute position, without its padding.
+	 */
+	public static String getText(ByteBuffer buffer, int position, int width) {
+		int length = width;
+		while (length > 0 && (buffer.get(position + length - 1) == ' ' || buffer.get(position + length - 1) == 0)) {
+			length--;
+		}
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = (char) (buffer.get(position + i) & 0x7f);
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Reads the text of a REJECT frame whose type byte is at an absolute position.
+	 */
+	public static String getRejectText(ByteBuffer buffer, int typePosition) {
+		int length = buffer.getShort(typePosition + 17) & 0xffff;
+		return getText(buffer, typePosition + 19, length);
+	}
+}
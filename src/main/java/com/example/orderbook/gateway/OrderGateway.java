@@ -0,0 +1,284 @@
+package com.example.orderbook.gateway;
+
+import com.example.orderbook.model.ExecutionReport;
+import com.example.orderbook.model.request.OrderType;
+import com.example.orderbook.service.OrderBookService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * TCP order entry gateway speaking the binary GatewayProtocol, next to the REST API.
+ *
+ * One selector thread accepts the connections, reads the requests into a direct buffer per connection and
+ * queues them to the engine through the asynchronous entry points of OrderBookService, without waiting for
+ * the answer of a request before reading the next one. The threads completing the orders write the answers
+ * (see GatewayConnection), so nothing on the path of an order is parsed as text or goes through a servlet.
+ *
+ * Disabled unless orderbook.gateway.enabled is set, port 0 binds an ephemeral port (see getPort).
+ */
+@Component
+public class OrderGateway {
+
+	private final Logger logger = LoggerFactory.getLogger(OrderGateway.class);
+
+	private final OrderBookService orderBookService;
+	private final boolean enabled;
+	private final int port;
+	private final int bufferSize;
+
+	private final Queue<GatewayConnection> interestChanges = new ConcurrentLinkedQueue<>();
+	private Selector selector;
+	private ServerSocketChannel server;
+	private Thread thread;
+	private volatile boolean running;
+
+	/**
+	 * @param bufferSize
+	 * 			size of the input and output buffers of a connection, the output bounds the unread answers
+	 */
+	@Autowired
+	public OrderGateway(OrderBookService orderBookService,
+						@Value("${orderbook.gateway.enabled:false}") boolean enabled,
+						@Value("${orderbook.gateway.port:9090}") int port,
+						@Value("${orderbook.gateway.buffer-size:262144}") int bufferSize) {
+		if (bufferSize < GatewayProtocol.HEADER_LENGTH + GatewayProtocol.MAX_REJECT_LENGTH) {
+			throw new IllegalArgumentException("orderbook.gateway.buffer-size is too small");
+		}
+		this.orderBookService = orderBookService;
+		this.enabled = enabled;
+		this.port = port;
+		this.bufferSize = bufferSize;
+	}
+
+	@PostConstruct
+	public synchronized void start() throws IOException {
+		if (!enabled || running) {
+			return;
+		}
+		selector = Selector.open();
+		server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress(port));
+		server.configureBlocking(false);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+		running = true;
+		thread = new Thread(this::run, "order-gateway");
+		thread.setDaemon(true);
+		thread.start();
+		logger.info("order gateway listening on port {}", getPort());
+	}
+
+	@PreDestroy
+	public synchronized void stop() throws InterruptedException, IOException {
+		if (!running) {
+			return;
+		}
+		running = false;
+		selector.wakeup();
+		thread.join(10000);
+		for (SelectionKey key : selector.keys()) {
+			if (key.attachment() instanceof GatewayConnection) {
+				close((GatewayConnection) key.attachment(), "shutdown");
+			}
+		}
+		server.close();
+		selector.close();
+	}
+
+	/**
+	 * @return
+	 * 		the port the gateway listens on, -1 when it is not started
+	 */
+	public int getPort() {
+		try {
+			return running ? ((InetSocketAddress) server.getLocalAddress()).getPort() : -1;
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+
+	private void run() {
+		while (running) {
+			try {
+				selector.select();
+				applyInterestChanges();
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						accept();
+					} else {
+						GatewayConnection connection = (GatewayConnection) key.attachment();
+						if (key.isReadable()) {
+							read(connection);
+						}
+						if (key.isValid() && key.isWritable()) {
+							connection.flush();
+						}
+					}
+				}
+			} catch (ClosedSelectorException e) {
+				return;
+			} catch (IOException e) {
+				logger.error("order gateway selector failed", e);
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = server.accept();
+		if (channel == null) {
+			return;
+		}
+		channel.configureBlocking(false);
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+		key.attach(new GatewayConnection(this, channel, key, bufferSize));
+		logger.info("order gateway connection from {}", channel.getRemoteAddress());
+	}
+
+	private void read(GatewayConnection connection) {
+		ByteBuffer in = connection.in;
+		int read;
+		try {
+			read = connection.channel().read(in);
+		} catch (IOException e) {
+			close(connection, "read failed: " + e.getMessage());
+			return;
+		}
+		if (read < 0) {
+			close(connection, "closed by the client");
+			return;
+		}
+		in.flip();
+		while (in.remaining() >= GatewayProtocol.HEADER_LENGTH) {
+			int position = in.position();
+			int length = in.getShort(position) & 0xffff;
+			if (in.remaining() < GatewayProtocol.HEADER_LENGTH + length) {
+				break;
+			}
+			int type = position + GatewayProtocol.HEADER_LENGTH;
+			if (length == 0 || GatewayProtocol.requestLength(in.get(type)) != length) {
+				close(connection, "malformed frame of length " + length);
+				return;
+			}
+			dispatch(connection, in, type);
+			in.position(position + GatewayProtocol.HEADER_LENGTH + length);
+		}
+		in.compact();
+	}
+
+	/**
+	 * Queues one request to the engine, its answer is sent when the order completes.
+	 * @param type
+	 * 			position of the type byte of the request
+	 */
+	private void dispatch(GatewayConnection connection, ByteBuffer in, int type) {
+		long requestId = in.getLong(type + 1);
+		long orderId = 0;
+		try {
+			switch (in.get(type)) {
+				case GatewayProtocol.NEW_ORDER: {
+					long units = in.getLong(type + 9);
+					long price = in.getLong(type + 17);
+					boolean buying = in.get(type + 25) == GatewayProtocol.BUY;
+					OrderType orderType = in.get(type + 26) == GatewayProtocol.MARKET ? OrderType.MARKET_ORDER
+							: OrderType.LIMIT_ORDER;
+					String securityId = connection.securityId(type + 27);
+					String clientId = connection.clientId(type + 27 + GatewayProtocol.SECURITY_ID_LENGTH);
+					if (securityId.isEmpty() || clientId.isEmpty()) {
+						connection.sendReject(requestId, 0, "clientId and securityId are mandatory");
+						return;
+					}
+					answer(connection, requestId, 0,
+							orderBookService.placeOrderAsync(clientId, securityId, units, price, buying, orderType));
+					break;
+				}
+				case GatewayProtocol.AMEND:
+					orderId = in.getLong(type + 9);
+					answer(connection, requestId, orderId,
+							orderBookService.amendOrderAsync(orderId, in.getLong(type + 17), in.getLong(type + 25)));
+					break;
+				default:
+					orderId = in.getLong(type + 9);
+					answer(connection, requestId, orderId, orderBookService.cancelOrderAsync(orderId));
+					break;
+			}
+		} catch (RuntimeException e) {
+			connection.sendReject(requestId, orderId, e.getMessage());
+		}
+	}
+
+	private static void answer(GatewayConnection connection, long requestId, long orderId,
+							   CompletableFuture<Object> future) {
+		future.whenComplete((result, error) -> {
+			if (error != null) {
+				Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+				connection.sendReject(requestId, orderId, cause.getMessage());
+			} else if (result instanceof ExecutionReport) {
+				connection.sendExecution(requestId, (ExecutionReport) result);
+			} else if (Boolean.TRUE.equals(result)) {
+				connection.sendCancelled(requestId, orderId);
+			} else {
+				connection.sendReject(requestId, orderId, "Order not found - " + orderId);
+			}
+		});
+	}
+
+	/**
+	 * Asks the selector thread to watch, or stop watching, a connection for writability.
+	 */
+	void requestInterest(GatewayConnection connection) {
+		interestChanges.add(connection);
+		if (Thread.currentThread() != thread) {
+			selector.wakeup();
+		}
+	}
+
+	private void applyInterestChanges() {
+		GatewayConnection connection;
+		while ((connection = interestChanges.poll()) != null) {
+			SelectionKey key = connection.key();
+			if (key.isValid()) {
+				key.interestOps(connection.hasPendingWrite()
+						? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+			}
+		}
+	}
+
+	void close(GatewayConnection connection, String reason) {
+		if (!connection.markClosed()) {
+			return;
+		}
+		connection.key().cancel();
+		try {
+			connection.channel().close();
+		} catch (IOException e) {
+			logger.warn("order gateway connection close failed", e);
+		}
+		logger.info("order gateway connection closed: {}", reason);
+	}
+}
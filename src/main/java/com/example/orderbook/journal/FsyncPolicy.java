@@ -0,0 +1,26 @@
+package com.example.orderbook.journal;
+
+/**
+ * When journaled commands are forced from the mapped segment to the disk.
+ * EVERY_COMMAND forces after each command, BATCH forces once per batch of commands taken from the ring buffer
+ * (group commit), ASYNC leaves it to a background thread running every fsync interval and to the OS.
+ * Commands are visible to a restarted process as soon as they are written in every case, the policy only
+ * decides what survives a crash of the machine.
+ */
+public enum FsyncPolicy {
+	EVERY_COMMAND,
+	BATCH,
+	ASYNC;
+
+	/**
+	 * @param name
+	 * 			EVERY_COMMAND, BATCH or ASYNC, case insensitive
+	 */
+	public static FsyncPolicy of(String name) {
+		try {
+			return valueOf(name.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("unknown fsync policy " + name);
+		}
+	}
+}
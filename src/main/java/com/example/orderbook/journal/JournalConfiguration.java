@@ -0,0 +1,55 @@
+package com.example.orderbook.journal;
+
+import com.example.orderbook.service.CommandJournal;
+import com.example.orderbook.service.OrderIdService;
+import com.example.orderbook.service.SnapshotStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Journal of the matching engine, a MappedJournal when orderbook.journal.enabled is set, no journal otherwise,
+ * the snapshots the engine recovers from together with the journal, and the orderId generator
+ * persisting its reserved id blocks so ids stay unique across restarts.
+ * Spring closes the MappedJournal after the engine depending on it is stopped.
+ */
+@Configuration
+public class JournalConfiguration {
+
+	@Bean
+	public CommandJournal commandJournal(@Value("${orderbook.journal.enabled:false}") boolean enabled,
+										 @Value("${orderbook.journal.dir:journal}") String directory,
+										 @Value("${orderbook.journal.segment-size:67108864}") int segmentSize,
+										 @Value("${orderbook.journal.fsync:ASYNC}") String fsyncPolicy,
+										 @Value("${orderbook.journal.fsync-interval-ms:10}") long fsyncIntervalMillis,
+										 @Value("${orderbook.engine.shards:4}") int shardCount) throws IOException {
+		if (!enabled) {
+			return CommandJournal.NONE;
+		}
+		return new MappedJournal(Paths.get(directory), shardCount, segmentSize, FsyncPolicy.of(fsyncPolicy),
+				fsyncIntervalMillis);
+	}
+
+	@Bean
+	public SnapshotStore snapshotStore(@Value("${orderbook.snapshot.enabled:false}") boolean enabled,
+									   @Value("${orderbook.snapshot.dir:snapshot}") String directory) {
+		return enabled ? new SnapshotStore(Paths.get(directory)) : SnapshotStore.NONE;
+	}
+
+	/**
+	 * The generator of the orderIds of this context, every context has its own.
+	 * @param directory
+	 * 			where the reserved id blocks are persisted, empty to not persist them
+	 */
+	@Bean
+	public OrderIdService orderIdService(@Value("${orderbook.orderid.dir:}") String directory) throws IOException {
+		OrderIdService orderIds = new OrderIdService();
+		if (!directory.isEmpty()) {
+			orderIds.persistTo(Paths.get(directory));
+		}
+		return orderIds;
+	}
+}
@@ -0,0 +1,56 @@
+package com.example.orderbook.journal;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads back the journal of one shard, segment after segment, in sequence order.
+ */
+public class JournalReader {
+
+	private final Path directory;
+
+	/**
+	 * @param directory
+	 * 			the directory of the shard, see MappedJournal.shardDirectory
+	 */
+	public JournalReader(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Hands every complete record from a sequence on to the consumer, stopping at the end of the journal
+	 * or at the first torn record.
+	 * @param fromSequence
+	 * 			first sequence of interest, earlier records are skipped
+	 * @param consumer
+	 * 			called with a reused record
+	 * @return
+	 * 		sequence of the last record read, fromSequence - 1 if there was none
+	 */
+	public long read(long fromSequence, Consumer<JournalRecord> consumer) throws IOException {
+		List<Path> segments = JournalSegment.list(directory);
+		JournalRecord record = new JournalRecord();
+		long lastSequence = fromSequence - 1;
+		for (int i = 0; i < segments.size(); i++) {
+			// a segment only holds sequences below the first one of the next segment
+			if (i + 1 < segments.size() && JournalSegment.firstSequence(segments.get(i + 1)) <= fromSequence) {
+				continue;
+			}
+			try (JournalSegment segment = JournalSegment.open(segments.get(i), false)) {
+				while (segment.read(record)) {
+					if (record.getSequence() >= fromSequence) {
+						consumer.accept(record);
+						lastSequence = record.getSequence();
+					}
+				}
+				if (!segment.isSealed()) {
+					break;
+				}
+			}
+		}
+		return lastSequence;
+	}
+}
@@ -0,0 +1,129 @@
+package com.example.orderbook.journal;
+
+import com.example.orderbook.model.request.OrderType;
+import com.example.orderbook.service.CommandType;
+import com.example.orderbook.service.OrderCommand;
+
+/**
+ * A command read back from the journal. The reader reuses one instance for every record,
+ * consumers copy what they need to keep.
+ */
+public class JournalRecord {
+
+	long sequence;
+	CommandType type;
+	long orderId;
+	String clientId;
+	String securityId;
+	long units;
+	long price;
+	double value = Double.NaN;
+	boolean buying;
+	OrderType orderType;
+	long timestamp;
+
+	void clear() {
+		orderId = 0;
+		clientId = null;
+		securityId = null;
+		units = 0;
+		price = 0;
+		value = Double.NaN;
+		buying = false;
+		orderType = null;
+		timestamp = 0;
+	}
+
+	/**
+	 * Fills a command with this record, to replay it.
+	 */
+	void fill(OrderCommand command) {
+		switch (type) {
+			case ADD:
+				command.add(orderId, clientId, securityId, units, price, buying, orderType, timestamp);
+				break;
+			case UPDATE:
+				if (Double.isNaN(value)) {
+					command.update(orderId, units, price, timestamp);
+				} else {
+					command.updateValue(orderId, securityId, units, value, timestamp);
+				}
+				break;
+			case CANCEL:
+				command.cancel(orderId);
+				break;
+			case CANCEL_CLIENT:
+				command.cancelClient(clientId, securityId);
+				break;
+			default:
+				throw new IllegalStateException("record not replayable " + this);
+		}
+	}
+
+	/**
+	 * @return
+	 * 		position of the command in the journal of its shard, starting at 1
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	public CommandType getType() {
+		return type;
+	}
+
+	public long getOrderId() {
+		return orderId;
+	}
+
+	public String getClientId() {
+		return clientId;
+	}
+
+	/**
+	 * @return
+	 * 		the security, null for a mass cancel over every security
+	 */
+	public String getSecurityId() {
+		return securityId;
+	}
+
+	public long getUnits() {
+		return units;
+	}
+
+	/**
+	 * @return
+	 * 		price in ticks of the security
+	 */
+	public long getPrice() {
+		return price;
+	}
+
+	/**
+	 * @return
+	 * 		decimal price of an UPDATE converted by the matching stage, NaN when the price is in ticks
+	 */
+	public double getValue() {
+		return value;
+	}
+
+	public boolean isBuying() {
+		return buying;
+	}
+
+	public OrderType getOrderType() {
+		return orderType;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	@Override
+	public String toString() {
+		return sequence + " " + type + " ORDERID=" + orderId + " CLIENT=" + clientId + " SECURITY=" + securityId
+				+ " UNITS=" + units + " PRICE=" + price + " ISBUYING=" + (buying ? "YES" : "NO")
+				+ " ORDERTYPE=" + orderType;
+	}
+}
@@ -0,0 +1,357 @@
+package com.example.orderbook.journal;
+
+import com.example.orderbook.model.request.OrderType;
+import com.example.orderbook.service.CommandType;
+import com.example.orderbook.service.OrderCommand;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * One memory-mapped, append-only file of the journal of a shard.
+ *
+ * Layout: a header (magic, version, sequence of the first record) followed by records
+ * [int length][int crc32 of the body][body]. The body is the sequence, the command type and the fields
+ * of that type, strings as a short byte length followed by UTF-8 bytes (-1 for null).
+ * An UPDATE carries the decimal price the matching stage converts and the security it checks since version 2,
+ * older segments are still read and a new segment is started after them.
+ * The length of a record is written after its body, a length of 0 is the end of the written part
+ * and END_OF_SEGMENT marks a segment closed by rolling. A record whose checksum does not match
+ * is a torn write of a crash and ends the segment as well.
+ *
+ * Not thread safe, a segment is written by the journal stage of its shard only.
+ */
+final class JournalSegment implements Closeable {
+
+	static final String SUFFIX = ".journal";
+
+	private static final int MAGIC = 0x4F424A4C;
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 16;
+	private static final int RECORD_HEADER_SIZE = 8;
+	private static final int END_OF_SEGMENT = -1;
+	private static final byte BUYING = 1;
+	private static final byte MARKET = 2;
+	private static final CommandType[] TYPES = CommandType.values();
+
+	private final Path path;
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final ByteBuffer checksumView;
+	private final CRC32 crc = new CRC32();
+	private final long firstSequence;
+	private final int version;
+	private long lastSequence;
+	private boolean sealed;
+
+	private JournalSegment(Path path, FileChannel channel, MappedByteBuffer buffer, long firstSequence, int version) {
+		this.path = path;
+		this.channel = channel;
+		this.buffer = buffer;
+		this.checksumView = buffer.duplicate();
+		this.firstSequence = firstSequence;
+		this.version = version;
+		this.lastSequence = firstSequence - 1;
+	}
+
+	/**
+	 * Creates and maps a new segment file.
+	 * @param firstSequence
+	 * 			sequence of the first record it will hold, also its file name
+	 * @param size
+	 * 			capacity of the segment in bytes
+	 */
+	static JournalSegment create(Path directory, long firstSequence, int size) throws IOException {
+		Path path = directory.resolve(String.format("%020d%s", firstSequence, SUFFIX));
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		buffer.putInt(MAGIC).putInt(VERSION).putLong(firstSequence);
+		return new JournalSegment(path, channel, buffer, firstSequence, VERSION);
+	}
+
+	/**
+	 * Maps an existing segment.
+	 * @param writable
+	 * 			true to append to the segment, it is then positioned after its last complete record,
+	 * 			false to read it from its first record
+	 */
+	static JournalSegment open(Path path, boolean writable) throws IOException {
+		FileChannel channel = writable
+				? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+				: FileChannel.open(path, StandardOpenOption.READ);
+		MappedByteBuffer buffer = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+				0, channel.size());
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) < 1
+				|| buffer.getInt(4) > VERSION) {
+			channel.close();
+			throw new IOException("not a journal segment " + path);
+		}
+		JournalSegment segment = new JournalSegment(path, channel, buffer, buffer.getLong(8), buffer.getInt(4));
+		segment.buffer.position(HEADER_SIZE);
+		if (writable) {
+			JournalRecord record = new JournalRecord();
+			while (segment.read(record)) {
+				// skips to the end of the written part
+			}
+			if (segment.version < VERSION) {
+				// records are only appended in the current layout
+				segment.seal();
+			}
+		}
+		return segment;
+	}
+
+	/**
+	 * @return
+	 * 		the segment files of a directory in journal order
+	 */
+	static List<Path> list(Path directory) throws IOException {
+		if (!Files.isDirectory(directory)) {
+			return Collections.emptyList();
+		}
+		List<Path> segments = new ArrayList<>();
+		try (Stream<Path> files = Files.list(directory)) {
+			files.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).forEach(segments::add);
+		}
+		Collections.sort(segments);
+		return segments;
+	}
+
+	/**
+	 * @return
+	 * 		the sequence of the first record of a segment file, from its name
+	 */
+	static long firstSequence(Path segment) {
+		String name = segment.getFileName().toString();
+		return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+	}
+
+	/**
+	 * Reads the record at the current position.
+	 * @return
+	 * 		false at the end of the written part of the segment, the position then stays on it
+	 */
+	boolean read(JournalRecord record) {
+		int position = buffer.position();
+		if (sealed || buffer.capacity() - position < RECORD_HEADER_SIZE) {
+			return false;
+		}
+		int length = buffer.getInt(position);
+		if (length == END_OF_SEGMENT) {
+			sealed = true;
+			return false;
+		}
+		if (length <= 0 || length > buffer.capacity() - position - RECORD_HEADER_SIZE
+				|| checksum(position + RECORD_HEADER_SIZE, length) != buffer.getInt(position + 4)) {
+			return false;
+		}
+		buffer.position(position + RECORD_HEADER_SIZE);
+		record.clear();
+		record.sequence = buffer.getLong();
+		record.type = TYPES[buffer.get()];
+		switch (record.type) {
+			case ADD:
+				record.orderId = buffer.getLong();
+				record.timestamp = buffer.getLong();
+				record.units = buffer.getLong();
+				record.price = buffer.getLong();
+				byte flags = buffer.get();
+				record.buying = (flags & BUYING) != 0;
+				record.orderType = (flags & MARKET) != 0 ? OrderType.MARKET_ORDER : OrderType.LIMIT_ORDER;
+				record.clientId = getString();
+				record.securityId = getString();
+				break;
+			case UPDATE:
+				record.orderId = buffer.getLong();
+				record.timestamp = buffer.getLong();
+				record.units = buffer.getLong();
+				record.price = buffer.getLong();
+				if (version > 1) {
+					record.value = buffer.getDouble();
+					record.securityId = getString();
+				}
+				break;
+			case CANCEL:
+				record.orderId = buffer.getLong();
+				break;
+			case CANCEL_CLIENT:
+				record.clientId = getString();
+				record.securityId = getString();
+				break;
+			default:
+				break;
+		}
+		buffer.position(position + RECORD_HEADER_SIZE + length);
+		lastSequence = record.sequence;
+		return true;
+	}
+
+	/**
+	 * Appends a command after the last record.
+	 * @return
+	 * 		false if the segment has no room left for it
+	 */
+	boolean append(long sequence, OrderCommand command) {
+		int length = 9;
+		switch (command.getType()) {
+			case ADD:
+				length += 33 + encodedLength(command.getClientId()) + encodedLength(command.getSecurityId());
+				break;
+			case UPDATE:
+				length += 40 + encodedLength(command.getSecurityId());
+				break;
+			case CANCEL:
+				length += 8;
+				break;
+			case CANCEL_CLIENT:
+				length += encodedLength(command.getClientId()) + encodedLength(command.getSecurityId());
+				break;
+			default:
+				throw new IllegalArgumentException("command not journaled " + command.getType());
+		}
+		int position = buffer.position();
+		// keeps room for the end of segment marker
+		if (buffer.capacity() - position < RECORD_HEADER_SIZE + length + 4) {
+			return false;
+		}
+		buffer.position(position + RECORD_HEADER_SIZE);
+		buffer.putLong(sequence);
+		buffer.put((byte) command.getType().ordinal());
+		switch (command.getType()) {
+			case ADD:
+				buffer.putLong(command.getOrderId());
+				buffer.putLong(command.getTimestamp());
+				buffer.putLong(command.getUnits());
+				buffer.putLong(command.getPrice());
+				buffer.put((byte) ((command.isBuying() ? BUYING : 0)
+						| (command.getOrderType() == OrderType.MARKET_ORDER ? MARKET : 0)));
+				putString(command.getClientId());
+				putString(command.getSecurityId());
+				break;
+			case UPDATE:
+				buffer.putLong(command.getOrderId());
+				buffer.putLong(command.getTimestamp());
+				buffer.putLong(command.getUnits());
+				buffer.putLong(command.getPrice());
+				buffer.putDouble(command.getValue());
+				putString(command.getSecurityId());
+				break;
+			case CANCEL:
+				buffer.putLong(command.getOrderId());
+				break;
+			default:
+				putString(command.getClientId());
+				putString(command.getSecurityId());
+				break;
+		}
+		buffer.putInt(position + 4, checksum(position + RECORD_HEADER_SIZE, length));
+		buffer.putInt(position, length);
+		lastSequence = sequence;
+		return true;
+	}
+
+	/**
+	 * Marks the segment as complete, readers move on to the next segment.
+	 */
+	void seal() {
+		buffer.putInt(buffer.position(), END_OF_SEGMENT);
+		sealed = true;
+	}
+
+	boolean isSealed() {
+		return sealed;
+	}
+
+	/**
+	 * Writes the dirty pages of the segment to the disk.
+	 */
+	void force() {
+		buffer.force();
+	}
+
+	Path getPath() {
+		return path;
+	}
+
+	long getFirstSequence() {
+		return firstSequence;
+	}
+
+	/**
+	 * @return
+	 * 		sequence of the last record read or written, firstSequence - 1 if there is none
+	 */
+	long getLastSequence() {
+		return lastSequence;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private int checksum(int offset, int length) {
+		checksumView.limit(offset + length).position(offset);
+		crc.reset();
+		crc.update(checksumView);
+		return (int) crc.getValue();
+	}
+
+	private static boolean isAscii(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			if (value.charAt(i) >= 0x80) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int encodedLength(String value) {
+		if (value == null) {
+			return 2;
+		}
+		int bytes = isAscii(value) ? value.length() : value.getBytes(StandardCharsets.UTF_8).length;
+		if (bytes > Short.MAX_VALUE) {
+			throw new IllegalArgumentException("value too long to be journaled");
+		}
+		return 2 + bytes;
+	}
+
+	private void putString(String value) {
+		if (value == null) {
+			buffer.putShort((short) -1);
+		} else if (isAscii(value)) {
+			buffer.putShort((short) value.length());
+			for (int i = 0; i < value.length(); i++) {
+				buffer.put((byte) value.charAt(i));
+			}
+		} else {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			buffer.putShort((short) bytes.length);
+			buffer.put(bytes);
+		}
+	}
+
+	private String getString() {
+		int length = buffer.getShort();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,134 @@
+package com.example.orderbook.journal;
+
+import com.example.orderbook.service.CommandJournal;
+import com.example.orderbook.service.OrderCommand;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Write-ahead journal of the commands accepted by the matching shards, each shard appending to its own
+ * memory-mapped segments under directory/shard-{id}.
+ *
+ * The journal stage of a shard runs before its matching stage, so a command reaches the book only once
+ * it is written to the journal. Writing is a copy into the mapped segment, the cost of getting it on the disk
+ * depends on the FsyncPolicy.
+ */
+public class MappedJournal implements CommandJournal, Closeable {
+
+	private final Logger logger = LoggerFactory.getLogger(MappedJournal.class);
+
+	private final Path directory;
+	private final ShardJournal[] shards;
+	private final ScheduledExecutorService fsyncThread;
+
+	/**
+	 * @param directory
+	 * 			root directory of the journal
+	 * @param shardCount
+	 * 			number of matching shards
+	 * @param segmentSize
+	 * 			size in bytes of a segment file
+	 * @param fsyncPolicy
+	 * 			when written commands are forced to the disk
+	 * @param fsyncIntervalMillis
+	 * 			period of the background force of the ASYNC policy
+	 */
+	public MappedJournal(Path directory, int shardCount, int segmentSize, FsyncPolicy fsyncPolicy,
+						 long fsyncIntervalMillis) throws IOException {
+		this.directory = directory;
+		this.shards = new ShardJournal[shardCount];
+		for (int i = 0; i < shardCount; i++) {
+			shards[i] = new ShardJournal(shardDirectory(directory, i), segmentSize, fsyncPolicy);
+		}
+		if (fsyncPolicy == FsyncPolicy.ASYNC) {
+			fsyncThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "journal-fsync");
+				thread.setDaemon(true);
+				return thread;
+			});
+			fsyncThread.scheduleWithFixedDelay(this::forceAll, fsyncIntervalMillis, fsyncIntervalMillis,
+					TimeUnit.MILLISECONDS);
+		} else {
+			fsyncThread = null;
+		}
+		logger.info("journal opened in {} with {} fsync", directory, fsyncPolicy);
+	}
+
+	/**
+	 * @return
+	 * 		the directory holding the segments of a shard
+	 */
+	public static Path shardDirectory(Path directory, int shardId) {
+		return directory.resolve("shard-" + shardId);
+	}
+
+	@Override
+	public long append(int shardId, OrderCommand command) {
+		return shards[shardId].append(command);
+	}
+
+	@Override
+	public void flush(int shardId) {
+		shards[shardId].flush();
+	}
+
+	@Override
+	public long replay(int shardId, long fromSequence, Consumer<OrderCommand> consumer) throws IOException {
+		OrderCommand command = new OrderCommand();
+		return new JournalReader(shards[shardId].getDirectory()).read(fromSequence, record -> {
+			record.fill(command);
+			consumer.accept(command);
+		});
+	}
+
+	/**
+	 * Deletes the segments of a shard only holding commands up to the sequence, the current segment is kept.
+	 */
+	@Override
+	public void truncate(int shardId, long sequence) throws IOException {
+		shards[shardId].truncate(sequence);
+	}
+
+	/**
+	 * @return
+	 * 		sequence the next command of a shard will get
+	 */
+	public long getNextSequence(int shardId) {
+		return shards[shardId].getNextSequence();
+	}
+
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Forces and closes every segment, to be called once the shards are stopped.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (fsyncThread != null) {
+			fsyncThread.shutdownNow();
+		}
+		for (ShardJournal shard : shards) {
+			shard.close();
+		}
+	}
+
+	private void forceAll() {
+		for (ShardJournal shard : shards) {
+			try {
+				shard.force();
+			} catch (RuntimeException e) {
+				logger.warn("journal fsync failed in {}", shard.getDirectory(), e);
+			}
+		}
+	}
+}
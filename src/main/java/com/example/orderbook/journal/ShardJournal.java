@@ -0,0 +1,129 @@
+package com.example.orderbook.journal;
+
+import com.example.orderbook.service.OrderCommand;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The journal of one shard: a directory of segments written in sequence order, a new segment
+ * being started when the current one is full.
+ *
+ * Written by the journal stage of the shard, force may additionally be called by the async fsync thread.
+ */
+final class ShardJournal implements Closeable {
+
+	private final Path directory;
+	private final int segmentSize;
+	private final FsyncPolicy fsyncPolicy;
+	private volatile JournalSegment segment;
+	private long nextSequence;
+	private boolean dirty;
+
+	/**
+	 * Opens the journal of a shard, appending after the last complete record of a previous run.
+	 */
+	ShardJournal(Path directory, int segmentSize, FsyncPolicy fsyncPolicy) throws IOException {
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.fsyncPolicy = fsyncPolicy;
+		Files.createDirectories(directory);
+		List<Path> segments = JournalSegment.list(directory);
+		if (segments.isEmpty()) {
+			nextSequence = 1;
+			segment = JournalSegment.create(directory, nextSequence, segmentSize);
+		} else {
+			JournalSegment last = JournalSegment.open(segments.get(segments.size() - 1), true);
+			nextSequence = last.getLastSequence() + 1;
+			if (last.isSealed()) {
+				last.close();
+				last = JournalSegment.create(directory, nextSequence, segmentSize);
+			}
+			segment = last;
+		}
+	}
+
+	/**
+	 * Appends a command, rolling to a new segment when the current one is full.
+	 * @return
+	 * 		the sequence of the command
+	 * @throws UncheckedIOException
+	 * 		if a new segment cannot be created, the command must then not be executed
+	 */
+	long append(OrderCommand command) {
+		if (!segment.append(nextSequence, command)) {
+			roll();
+			if (!segment.append(nextSequence, command)) {
+				throw new IllegalStateException("command larger than a journal segment " + command);
+			}
+		}
+		if (fsyncPolicy == FsyncPolicy.EVERY_COMMAND) {
+			segment.force();
+		} else {
+			dirty = true;
+		}
+		return nextSequence++;
+	}
+
+	/**
+	 * End of a batch of commands, group commit of the BATCH policy.
+	 */
+	void flush() {
+		if (dirty && fsyncPolicy == FsyncPolicy.BATCH) {
+			segment.force();
+			dirty = false;
+		}
+	}
+
+	void force() {
+		segment.force();
+	}
+
+	/**
+	 * Deletes the segments only holding sequences up to the given one. Called off the journal stage,
+	 * it only touches segments that are followed by another one, which are sealed and closed.
+	 */
+	void truncate(long sequence) throws IOException {
+		List<Path> segments = JournalSegment.list(directory);
+		for (int i = 0; i + 1 < segments.size(); i++) {
+			if (JournalSegment.firstSequence(segments.get(i + 1)) > sequence + 1) {
+				break;
+			}
+			Files.deleteIfExists(segments.get(i));
+		}
+	}
+
+	/**
+	 * @return
+	 * 		sequence the next command will get, one more than the last journaled command
+	 */
+	long getNextSequence() {
+		return nextSequence;
+	}
+
+	Path getDirectory() {
+		return directory;
+	}
+
+	@Override
+	public void close() throws IOException {
+		segment.force();
+		segment.close();
+	}
+
+	private void roll() {
+		JournalSegment full = segment;
+		full.seal();
+		full.force();
+		try {
+			segment = JournalSegment.create(directory, nextSequence, segmentSize);
+			full.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException("cannot roll journal segment in " + directory, e);
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package com.example.orderbook.metrics;
+
+/**
+ * Histogram of latencies in nanoseconds with a fixed relative precision, in the manner of HdrHistogram.
+ *
+ * Values below SUB_BUCKETS are counted exactly, larger values in buckets of SUB_BUCKETS / 2 linear sub-buckets per
+ * power of two, so a recorded value is known to within 1/64 (1.6%) of itself whatever its magnitude, from nanoseconds
+ * to hours, in a fixed array of counts allocated up front. Recording is a few shifts and an increment, it does not
+ * allocate.
+ *
+ * Single writer: only one thread records into a histogram. Other threads may read it or add it to another histogram
+ * at any time, they see the counts recorded so far, possibly missing the most recent ones.
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 7;
+	/** values counted one by one */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int HALF = SUB_BUCKETS >> 1;
+	/** exact buckets, then HALF buckets for each power of two up to 2^63 */
+	private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - 1 - SUB_BUCKET_BITS) * HALF;
+
+	private final long[] counts = new long[BUCKETS];
+	private long count;
+	private long sum;
+	private long max;
+
+	/**
+	 * @param nanos
+	 * 			the latency, negative values are counted as 0
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		counts[indexOf(value)]++;
+		sum += value;
+		if (value > max) {
+			max = value;
+		}
+		count++;
+	}
+
+	/**
+	 * Adds the counts of another histogram to this one.
+	 */
+	public void add(LatencyHistogram other) {
+		long[] otherCounts = other.counts;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] += otherCounts[i];
+		}
+		count += other.count;
+		sum += other.sum;
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * @return
+	 * 		number of values recorded
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return
+	 * 		highest value recorded, 0 when empty
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * @return
+	 * 		mean of the values recorded, 0 when empty
+	 */
+	public double getMean() {
+		return count == 0 ? 0 : (double) sum / count;
+	}
+
+	/**
+	 * @param percentile
+	 * 			between 0 and 100
+	 * @return
+	 * 		the highest value of the bucket holding the value at the percentile, at most getMax(), 0 when empty
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("percentile must be between 0 and 100");
+		}
+		long total = 0;
+		for (long c : counts) {
+			total += c;
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(highestValueOf(i), max);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * @return
+	 * 		bucket of a positive value: the value itself below SUB_BUCKETS, then HALF buckets per power of two
+	 */
+	static int indexOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		// shift bringing the value into [HALF, SUB_BUCKETS)
+		int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return SUB_BUCKETS + (shift - 1) * HALF + (int) (value >>> shift) - HALF;
+	}
+
+	/**
+	 * @return
+	 * 		highest value counted in a bucket
+	 */
+	static long highestValueOf(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = (index - SUB_BUCKETS) / HALF + 1;
+		long subBucket = (index - SUB_BUCKETS) % HALF + HALF;
+		// wraps to Long.MAX_VALUE for the last bucket
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,105 @@
+package com.example.orderbook.model;
+
+import com.example.orderbook.model.request.BatchCommand;
+
+import java.io.Serializable;
+
+/**
+ * Outcome of one command of a batch, results are returned in the order of the commands.
+ * value is the decimal transaction value of the fills, like the answer of a single addOrder or updateOrder.
+ */
+public class BatchResult implements Serializable {
+	private static final long serialVersionUID = 2880734613526512742L;
+
+	private final int index;
+	private final BatchCommand.Action action;
+	private final Long orderId;
+	private final boolean accepted;
+	private final String message;
+	private final long filledUnits;
+	private final double value;
+	private final boolean rested;
+
+	private BatchResult(int index, BatchCommand.Action action, Long orderId, boolean accepted, String message,
+						long filledUnits, double value, boolean rested) {
+		this.index = index;
+		this.action = action;
+		this.orderId = orderId;
+		this.accepted = accepted;
+		this.message = message;
+		this.filledUnits = filledUnits;
+		this.value = value;
+		this.rested = rested;
+	}
+
+	/**
+	 * @param report
+	 * 			execution of an ADD or UPDATE
+	 */
+	public static BatchResult executed(int index, BatchCommand.Action action, ExecutionReport report) {
+		return new BatchResult(index, action, report.getOrderId(), true, null, report.getFilledUnits(),
+				PriceScale.of(report.getSecurityId()).toValue(report.getNotional()), report.isRested());
+	}
+
+	public static BatchResult cancelled(int index, long orderId) {
+		return new BatchResult(index, BatchCommand.Action.CANCEL, orderId, true, null, 0, 0, false);
+	}
+
+	public static BatchResult rejected(int index, BatchCommand.Action action, Long orderId, String message) {
+		return new BatchResult(index, action, orderId, false, message, 0, 0, false);
+	}
+
+	/**
+	 * @return
+	 * 		position of the command in the batch, from 0
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	public BatchCommand.Action getAction() {
+		return action;
+	}
+
+	/**
+	 * @return
+	 * 		the orderId of the command, generated for an ADD
+	 */
+	public Long getOrderId() {
+		return orderId;
+	}
+
+	public boolean isAccepted() {
+		return accepted;
+	}
+
+	/**
+	 * @return
+	 * 		why the command was rejected, null if it was accepted
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	public long getFilledUnits() {
+		return filledUnits;
+	}
+
+	public double getValue() {
+		return value;
+	}
+
+	/**
+	 * @return
+	 * 		true if the order rests in the book after the command
+	 */
+	public boolean isRested() {
+		return rested;
+	}
+
+	@Override
+	public String toString() {
+		return index + " " + action + " ORDERID=" + orderId + (accepted ? " ACCEPTED FILLED=" + filledUnits
+				+ " VALUE=" + value + " RESTED=" + (rested ? "YES" : "NO") : " REJECTED " + message);
+	}
+}
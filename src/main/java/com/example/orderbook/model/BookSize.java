@@ -0,0 +1,49 @@
+package com.example.orderbook.model;
+
+import java.io.Serializable;
+
+/**
+ * Number of resting orders and of price levels on each side of the book of a security.
+ */
+public class BookSize implements Serializable {
+	private static final long serialVersionUID = 3318570469712958202L;
+
+	private final String securityId;
+	private final int bidOrders;
+	private final int bidLevels;
+	private final int askOrders;
+	private final int askLevels;
+
+	public BookSize(String securityId, int bidOrders, int bidLevels, int askOrders, int askLevels) {
+		this.securityId = securityId;
+		this.bidOrders = bidOrders;
+		this.bidLevels = bidLevels;
+		this.askOrders = askOrders;
+		this.askLevels = askLevels;
+	}
+
+	public String getSecurityId() {
+		return securityId;
+	}
+
+	public int getBidOrders() {
+		return bidOrders;
+	}
+
+	public int getBidLevels() {
+		return bidLevels;
+	}
+
+	public int getAskOrders() {
+		return askOrders;
+	}
+
+	public int getAskLevels() {
+		return askLevels;
+	}
+
+	@Override
+	public String toString() {
+		return "SECURITY=" + securityId + " BIDS=" + bidOrders + "/" + bidLevels + " ASKS=" + askOrders + "/" + askLevels;
+	}
+}
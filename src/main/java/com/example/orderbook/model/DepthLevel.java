@@ -0,0 +1,59 @@
+package com.example.orderbook.model;
+
+import java.io.Serializable;
+
+/**
+ * One price level of the L2 depth of a book: the aggregate of the orders resting at a price.
+ */
+public class DepthLevel implements Serializable {
+	private static final long serialVersionUID = 4529137790584013641L;
+
+	private final long price;
+	private final double value;
+	private final long units;
+	private final int orders;
+
+	public DepthLevel(long price, double value, long units, int orders) {
+		this.price = price;
+		this.value = value;
+		this.units = units;
+		this.orders = orders;
+	}
+
+	/**
+	 * @return
+	 * 		price in ticks of the security
+	 */
+	public long getPrice() {
+		return price;
+	}
+
+	/**
+	 * @return
+	 * 		the decimal price, only for display
+	 */
+	public double getValue() {
+		return value;
+	}
+
+	/**
+	 * @return
+	 * 		units resting at the price
+	 */
+	public long getUnits() {
+		return units;
+	}
+
+	/**
+	 * @return
+	 * 		orders resting at the price
+	 */
+	public int getOrders() {
+		return orders;
+	}
+
+	@Override
+	public String toString() {
+		return "PRICE=" + price + " UNITS=" + units + " ORDERS=" + orders;
+	}
+}
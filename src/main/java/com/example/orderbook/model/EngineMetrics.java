@@ -0,0 +1,85 @@
+package com.example.orderbook.model;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Instrumentation of the matching engine since it started: counters, latencies measured by the matching shards,
+ * the backlog of each shard and the size of every book.
+ */
+public class EngineMetrics implements Serializable {
+	private static final long serialVersionUID = 5106286309853375322L;
+
+	private final long orders;
+	private final long fills;
+	private final long rejects;
+	private final long selfTradeBlocks;
+	private final Map<String, LatencyStats> latency;
+	private final Map<String, Long> queueSizes;
+	private final List<BookSize> books;
+
+	public EngineMetrics(long orders, long fills, long rejects, long selfTradeBlocks, Map<String, LatencyStats> latency,
+						 Map<String, Long> queueSizes, List<BookSize> books) {
+		this.orders = orders;
+		this.fills = fills;
+		this.rejects = rejects;
+		this.selfTradeBlocks = selfTradeBlocks;
+		this.latency = latency;
+		this.queueSizes = queueSizes;
+		this.books = books;
+	}
+
+	/**
+	 * @return
+	 * 		number of new orders matched by the books
+	 */
+	public long getOrders() {
+		return orders;
+	}
+
+	/**
+	 * @return
+	 * 		number of fills of new and amended orders against resting orders
+	 */
+	public long getFills() {
+		return fills;
+	}
+
+	/**
+	 * @return
+	 * 		number of commands rejected, by validation, by the journal or by the book
+	 */
+	public long getRejects() {
+		return rejects;
+	}
+
+	/**
+	 * @return
+	 * 		number of orders rejected because their client rests orders on the opposite side, counted in getRejects
+	 */
+	public long getSelfTradeBlocks() {
+		return selfTradeBlocks;
+	}
+
+	/**
+	 * @return
+	 * 		latencies in nanoseconds: add, amend and cancel inside the book, match from the submission of a command
+	 * 		to the end of its matching
+	 */
+	public Map<String, LatencyStats> getLatency() {
+		return latency;
+	}
+
+	/**
+	 * @return
+	 * 		commands submitted to each shard and not published yet, by pipeline name
+	 */
+	public Map<String, Long> getQueueSizes() {
+		return queueSizes;
+	}
+
+	public List<BookSize> getBooks() {
+		return books;
+	}
+}
@@ -0,0 +1,90 @@
+package com.example.orderbook.model;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of an order sent to the book: the fills it got, in execution order, and what became of its remainder.
+ * Prices are in ticks of the security and the notional in ticks times units, see PriceScale.
+ */
+public class ExecutionReport implements Serializable {
+	private static final long serialVersionUID = 4120667893415960853L;
+
+	private final long orderId;
+	private final String securityId;
+	private final boolean buying;
+	private final List<Fill> fills;
+	private final long filledUnits;
+	private final long remainingUnits;
+	private final long notional;
+	private final boolean rested;
+
+	public ExecutionReport(long orderId, String securityId, boolean buying, Fill[] fills, long filledUnits,
+						   long remainingUnits, long notional, boolean rested) {
+		this.orderId = orderId;
+		this.securityId = securityId;
+		this.buying = buying;
+		this.fills = fills.length == 0 ? Collections.<Fill>emptyList() : Collections.unmodifiableList(Arrays.asList(fills));
+		this.filledUnits = filledUnits;
+		this.remainingUnits = remainingUnits;
+		this.notional = notional;
+		this.rested = rested;
+	}
+
+	public long getOrderId() {
+		return orderId;
+	}
+
+	public String getSecurityId() {
+		return securityId;
+	}
+
+	public boolean isBuying() {
+		return buying;
+	}
+
+	/**
+	 * @return
+	 * 		the fills against resting orders, best price first and FIFO within a price
+	 */
+	public List<Fill> getFills() {
+		return fills;
+	}
+
+	public long getFilledUnits() {
+		return filledUnits;
+	}
+
+	/**
+	 * @return
+	 * 		units not filled, resting in the book or cancelled (see isRested)
+	 */
+	public long getRemainingUnits() {
+		return remainingUnits;
+	}
+
+	/**
+	 * @return
+	 * 		sum of price times units of the fills, the transaction value in ticks times units
+	 */
+	public long getNotional() {
+		return notional;
+	}
+
+	/**
+	 * @return
+	 * 		true if the remaining units rest in the book, false if nothing remains or the remainder was cancelled
+	 */
+	public boolean isRested() {
+		return rested;
+	}
+
+	@Override
+	public String toString() {
+		return "ORDERID=" + orderId + " SECURITY=" + securityId + " FILLED=" + filledUnits
+				+ " REMAINING=" + remainingUnits + " NOTIONAL=" + notional + " RESTED=" + (rested ? "YES" : "NO")
+				+ " FILLS=" + fills;
+	}
+}
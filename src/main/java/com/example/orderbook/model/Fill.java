@@ -0,0 +1,51 @@
+package com.example.orderbook.model;
+
+import java.io.Serializable;
+
+/**
+ * One execution of an incoming order against a resting (maker) order, at the price of the resting order.
+ */
+public class Fill implements Serializable {
+	private static final long serialVersionUID = -3391760245367415021L;
+
+	private final long makerOrderId;
+	private final String makerClientId;
+	private final long price;
+	private final long units;
+
+	public Fill(long makerOrderId, String makerClientId, long price, long units) {
+		this.makerOrderId = makerOrderId;
+		this.makerClientId = makerClientId;
+		this.price = price;
+		this.units = units;
+	}
+
+	/**
+	 * @return
+	 * 		orderId of the resting counterparty order
+	 */
+	public long getMakerOrderId() {
+		return makerOrderId;
+	}
+
+	public String getMakerClientId() {
+		return makerClientId;
+	}
+
+	/**
+	 * @return
+	 * 		price in ticks of the security
+	 */
+	public long getPrice() {
+		return price;
+	}
+
+	public long getUnits() {
+		return units;
+	}
+
+	@Override
+	public String toString() {
+		return "MAKER=" + makerOrderId + " CLIENT=" + makerClientId + " PRICE=" + price + " UNITS=" + units;
+	}
+}
@@ -0,0 +1,69 @@
+package com.example.orderbook.model;
+
+import com.example.orderbook.metrics.LatencyHistogram;
+
+import java.io.Serializable;
+
+/**
+ * Summary of a latency histogram, in nanoseconds.
+ */
+public class LatencyStats implements Serializable {
+	private static final long serialVersionUID = -6017734120931540688L;
+
+	private final long count;
+	private final double mean;
+	private final long p50;
+	private final long p90;
+	private final long p99;
+	private final long p999;
+	private final long max;
+
+	public LatencyStats(long count, double mean, long p50, long p90, long p99, long p999, long max) {
+		this.count = count;
+		this.mean = mean;
+		this.p50 = p50;
+		this.p90 = p90;
+		this.p99 = p99;
+		this.p999 = p999;
+		this.max = max;
+	}
+
+	public static LatencyStats of(LatencyHistogram histogram) {
+		return new LatencyStats(histogram.getCount(), histogram.getMean(), histogram.getValueAtPercentile(50),
+				histogram.getValueAtPercentile(90), histogram.getValueAtPercentile(99),
+				histogram.getValueAtPercentile(99.9), histogram.getMax());
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	public long getP50() {
+		return p50;
+	}
+
+	public long getP90() {
+		return p90;
+	}
+
+	public long getP99() {
+		return p99;
+	}
+
+	public long getP999() {
+		return p999;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return "COUNT=" + count + " MEAN=" + (long) mean + " P50=" + p50 + " P99=" + p99 + " MAX=" + max;
+	}
+}
@@ -0,0 +1,167 @@
+package com.example.orderbook.model;
+
+import java.io.Serializable;
+
+/**
+ * One change of the book of a security, as published on the market data feed.
+ *
+ * Events of a security carry increasing sequence numbers, assigned by the matching thread of the security.
+ * A level event carries the absolute state of the level after the change (aggregate units and order count),
+ * so a client keeping a local book sets the level on LEVEL_ADDED and LEVEL_CHANGED and deletes it on LEVEL_REMOVED.
+ * SNAPSHOT starts the full state of a security: the client clears its book of the security and the LEVEL_ADDED
+ * events of the same sequence that follow rebuild it.
+ *
+ * Prices are in ticks of the security, value is the decimal price (see PriceScale).
+ */
+public class MarketDataEvent implements Serializable {
+	private static final long serialVersionUID = -6610387125092915428L;
+
+	public enum Type {
+		SNAPSHOT,
+		LEVEL_ADDED,
+		LEVEL_CHANGED,
+		LEVEL_REMOVED,
+		TRADE
+	}
+
+	private final Type type;
+	private final String securityId;
+	private final long sequence;
+	private final boolean buying;
+	private final long price;
+	private final long units;
+	private final int orders;
+	private final long makerOrderId;
+	private final long takerOrderId;
+
+	private MarketDataEvent(Type type, String securityId, long sequence, boolean buying, long price, long units,
+							int orders, long makerOrderId, long takerOrderId) {
+		this.type = type;
+		this.securityId = securityId;
+		this.sequence = sequence;
+		this.buying = buying;
+		this.price = price;
+		this.units = units;
+		this.orders = orders;
+		this.makerOrderId = makerOrderId;
+		this.takerOrderId = takerOrderId;
+	}
+
+	/**
+	 * @param sequence
+	 * 			sequence of the last event of the security, the snapshot replaces every event up to it
+	 */
+	public static MarketDataEvent snapshot(String securityId, long sequence) {
+		return new MarketDataEvent(Type.SNAPSHOT, securityId, sequence, false, 0, 0, 0, 0, 0);
+	}
+
+	/**
+	 * @param buying
+	 * 			true for a bid level, false for an ask level
+	 * @param units
+	 * 			units resting at the price after the change, 0 for a removed level
+	 * @param orders
+	 * 			orders resting at the price after the change
+	 */
+	public static MarketDataEvent level(Type type, String securityId, long sequence, boolean buying, long price,
+										long units, int orders) {
+		return new MarketDataEvent(type, securityId, sequence, buying, price, units, orders, 0, 0);
+	}
+
+	/**
+	 * @param buying
+	 * 			side of the incoming (taker) order
+	 */
+	public static MarketDataEvent trade(String securityId, long sequence, boolean buying, long price, long units,
+										long makerOrderId, long takerOrderId) {
+		return new MarketDataEvent(Type.TRADE, securityId, sequence, buying, price, units, 0, makerOrderId, takerOrderId);
+	}
+
+	/**
+	 * Merges a newer event of the same level into this one, for a subscriber that has not been sent this one yet.
+	 * @return
+	 * 		the event to send instead of both, a level the subscriber has not seen yet stays LEVEL_ADDED
+	 */
+	public MarketDataEvent conflate(MarketDataEvent newer) {
+		if (type == Type.LEVEL_ADDED && newer.type == Type.LEVEL_CHANGED) {
+			return level(Type.LEVEL_ADDED, newer.securityId, newer.sequence, newer.buying, newer.price, newer.units,
+					newer.orders);
+		}
+		return newer;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public String getSecurityId() {
+		return securityId;
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return
+	 * 		side of the level, or of the taker order for a trade
+	 */
+	public boolean isBuying() {
+		return buying;
+	}
+
+	/**
+	 * @return
+	 * 		price in ticks of the security
+	 */
+	public long getPrice() {
+		return price;
+	}
+
+	/**
+	 * @return
+	 * 		the decimal price, only for display
+	 */
+	public double getValue() {
+		return PriceScale.of(securityId).toValue(price);
+	}
+
+	/**
+	 * @return
+	 * 		units resting at the level, or traded
+	 */
+	public long getUnits() {
+		return units;
+	}
+
+	/**
+	 * @return
+	 * 		orders resting at the level, 0 for a trade
+	 */
+	public int getOrders() {
+		return orders;
+	}
+
+	/**
+	 * @return
+	 * 		resting order of a trade, 0 for other events
+	 */
+	public long getMakerOrderId() {
+		return makerOrderId;
+	}
+
+	/**
+	 * @return
+	 * 		incoming order of a trade, 0 for other events
+	 */
+	public long getTakerOrderId() {
+		return takerOrderId;
+	}
+
+	@Override
+	public String toString() {
+		return sequence + " " + type + " SECURITY=" + securityId + " ISBUYING=" + (buying ? "YES" : "NO")
+				+ " PRICE=" + price + " UNITS=" + units + " ORDERS=" + orders
+				+ (type == Type.TRADE ? " MAKER=" + makerOrderId + " TAKER=" + takerOrderId : "");
+	}
+}
@@ -1,8 +1,8 @@
 package com.example.orderbook.model;
 
 import com.example.orderbook.model.request.OrderType;
-import com.example.orderbook.service.OrderIdService;
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import javax.validation.constraints.NotBlank;
@@ -12,33 +12,34 @@ import java.util.Date;
 
 
 /**
- * Represents a buy or sell Order. handles concurrent users by synchronizing the
- * amount of securities placed in this order in get and set methods
+ * Represents a buy or sell Order. an order is only mutated by the matching shard owning its security
  * Handles updating an order by means of a unique orderId
  * priorityTime is used for ordering, displayTime  is used for latest update time.
+ * price is in ticks of the security (see PriceScale) and units are whole units, value is the decimal price for display.
  */
 public class Order implements Serializable {
 	private static final long serialVersionUID = 8822833371248140397L;
 
-	private Long orderId;
+	private long orderId;
 	private String clientId;
 	private String securityId;
-	private Integer units;
-	private Double value;
-	private Boolean isBuying;
+	private long units;
+	private long price;
+	private boolean isBuying;
 	private OrderType orderType;
-	private Long priorityTime;
-	private Long displayTime;
+	private long priorityTime;
+	private long displayTime;
 
 	/**
-	 *  This constructor is for new order creation, it generates a new orderId
+	 *  Creates an order with its orderId, new orders take theirs from MatchingEngine.nextOrderId so the id routes
+	 *  to the shard of the security
 	 */
-	public Order (String clientId, String securityId, Integer units, Double value, boolean isBuying, OrderType orderType, long timestamp){
-		this.orderId = OrderIdService.getInstance().getId();
+	public Order (long orderId, String clientId, String securityId, long units, long price, boolean isBuying, OrderType orderType, long timestamp){
+		this.orderId = orderId;
 		this.clientId = clientId;
 		this.securityId = securityId;
 		this.units = units;
-		this.value = value;
+		this.price = price;
 		this.isBuying = isBuying;
 		this.orderType = orderType;
 		this.priorityTime = timestamp;
@@ -46,25 +47,34 @@ public class Order implements Serializable {
 
 	}
 
+	/**
+	 *  Copies an order, for handing out an order of a book that reuses its orders
+	 */
+	public Order (Order order){
+		this(order.orderId, order.clientId, order.securityId, order.units, order.price, order.isBuying, order.orderType,
+				order.priorityTime);
+		this.displayTime = order.displayTime;
+	}
 
 	/**
-	 *  This constructor is for order updation, it accepts orderId as a parameter
+	 * Turns this instance into a new order, only used by books drawing their orders from a pool once the previous
+	 * order held by the instance left the book.
 	 */
-	public Order (Long orderId, String clientId, String securityId, Integer units, Double value, boolean isBuying, OrderType orderType, long timestamp){
+	public void reset(long orderId, String clientId, String securityId, long units, long price, boolean isBuying,
+					  OrderType orderType, long timestamp){
 		this.orderId = orderId;
 		this.clientId = clientId;
 		this.securityId = securityId;
 		this.units = units;
-		this.value = value;
+		this.price = price;
 		this.isBuying = isBuying;
 		this.orderType = orderType;
 		this.priorityTime = timestamp;
 		this.displayTime = timestamp;
-
 	}
 
 
-	public Long getOrderId() {
+	public long getOrderId() {
 		return orderId;
 	}
 
@@ -76,26 +86,33 @@ public class Order implements Serializable {
 		return securityId;
 	}
 
-	public Integer getUnits() {
-		synchronized(units){
-			return units;
-		}
+	public long getUnits() {
+		return units;
 	}
 
-	public void setUnits(Integer units) {
-		synchronized(units){
-			this.units = units;
-		}
+	public void setUnits(long units) {
+		this.units = units;
 	}
 
-	public void setDisplayTime(Long milliseconds) {
-		synchronized(displayTime){
-			this.displayTime = milliseconds;
-		}
+	public void setDisplayTime(long milliseconds) {
+		this.displayTime = milliseconds;
 	}
 
-	public Double getValue() {
-		return value;
+	/**
+	 * @return
+	 * 		the price in ticks of the security
+	 */
+	@JsonIgnore
+	public long getPrice() {
+		return price;
+	}
+
+	/**
+	 * @return
+	 * 		the decimal price, only for display
+	 */
+	public double getValue() {
+		return PriceScale.of(securityId).toValue(price);
 	}
 
 	public boolean isBuying() {
@@ -105,23 +122,19 @@ public class Order implements Serializable {
 		return orderType;
 	}
 
-	public Long getDisplayTime() {
-		synchronized(displayTime){
-			return displayTime;
-		}
+	public long getDisplayTime() {
+		return displayTime;
 	}
 
-	public Long getPriorityTime() {
-		synchronized(priorityTime){
-			return priorityTime;
-		}
+	public long getPriorityTime() {
+		return priorityTime;
 	}
 
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + ((orderId == null) ? 0 : orderId.hashCode());
+		result = prime * result + Long.hashCode(orderId);
 		return result;
 	}
 
@@ -134,19 +147,14 @@ public class Order implements Serializable {
 		if (getClass() != obj.getClass())
 			return false;
 		Order other = (Order) obj;
-		if (orderId == null) {
-			if (other.orderId != null)
-				return false;
-		} else if (!orderId.equals(other.orderId))
-			return false;
-		return true;
+		return orderId == other.orderId;
 	}
 
 
 	@Override
 	public String toString() {
 		return "ORDERID="+ orderId +" CLIENT=" + clientId + " SECURITY=" + securityId
-				+ " UNITS=" + units + " VALUE=" + value + " ISBUYING="
+				+ " UNITS=" + units + " PRICE=" + price + " ISBUYING="
 				+ (isBuying? "YES":"NO") + ", TIMESTAMP=" + displayTime + ", ORDERTYPE= " + orderType ;
 	}
 
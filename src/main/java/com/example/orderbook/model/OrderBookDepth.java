@@ -0,0 +1,48 @@
+package com.example.orderbook.model;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The L2 view of the book of a security: the best price levels of each side, best price first.
+ */
+public class OrderBookDepth implements Serializable {
+	private static final long serialVersionUID = -2263904561843379920L;
+
+	private final String securityId;
+	private final long sequence;
+	private final List<DepthLevel> bids;
+	private final List<DepthLevel> asks;
+
+	public OrderBookDepth(String securityId, long sequence, List<DepthLevel> bids, List<DepthLevel> asks) {
+		this.securityId = securityId;
+		this.sequence = sequence;
+		this.bids = bids;
+		this.asks = asks;
+	}
+
+	public String getSecurityId() {
+		return securityId;
+	}
+
+	/**
+	 * @return
+	 * 		market data sequence of the security the depth was taken at
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	public List<DepthLevel> getBids() {
+		return bids;
+	}
+
+	public List<DepthLevel> getAsks() {
+		return asks;
+	}
+
+	@Override
+	public String toString() {
+		return "SECURITY=" + securityId + " SEQUENCE=" + sequence + " BIDS=" + bids + " ASKS=" + asks;
+	}
+}
@@ -0,0 +1,62 @@
+package com.example.orderbook.model;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A page of the resting orders of a view of the books, every page of a view lists the orders as they were when
+ * the view was taken. The next page is requested with the viewId and offset + the number of orders of this page.
+ */
+public class OrderPage implements Serializable {
+	private static final long serialVersionUID = 6051792174329035611L;
+
+	private final long viewId;
+	private final long takenAt;
+	private final int offset;
+	private final int total;
+	private final List<Order> orders;
+
+	public OrderPage(long viewId, long takenAt, int offset, int total, List<Order> orders) {
+		this.viewId = viewId;
+		this.takenAt = takenAt;
+		this.offset = offset;
+		this.total = total;
+		this.orders = orders;
+	}
+
+	public long getViewId() {
+		return viewId;
+	}
+
+	/**
+	 * @return
+	 * 		epoch milliseconds of the view
+	 */
+	public long getTakenAt() {
+		return takenAt;
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * @return
+	 * 		number of orders of the whole view
+	 */
+	public int getTotal() {
+		return total;
+	}
+
+	public List<Order> getOrders() {
+		return orders;
+	}
+
+	/**
+	 * @return
+	 * 		true if no order of the view follows this page
+	 */
+	public boolean isLast() {
+		return offset + orders.size() >= total;
+	}
+}
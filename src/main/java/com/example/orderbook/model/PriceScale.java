@@ -0,0 +1,105 @@
+package com.example.orderbook.model;
+
+import com.example.orderbook.exception.TradeException;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fixed-point representation of the prices of a security.
+ *
+ * The engine only works with prices in ticks (long), a tick being 10^-decimals of the currency,
+ * and with notional values in ticks times units. Decimal prices only exist at the REST boundary:
+ * requests convert them with toTicks and responses convert back with toValue.
+ *
+ * Securities trade in cents (2 decimals) unless registered with another number of decimals,
+ * see orderbook.price.decimals in application.properties.
+ */
+public final class PriceScale {
+
+	public static final int DEFAULT_DECIMALS = 2;
+	public static final int MAX_DECIMALS = 9;
+
+	private static final PriceScale[] SCALES = new PriceScale[MAX_DECIMALS + 1];
+	private static final BigDecimal MAX_TICKS = BigDecimal.valueOf(Long.MAX_VALUE);
+	private static final Map<String, PriceScale> SECURITIES = new ConcurrentHashMap<>();
+
+	static {
+		long ticksPerUnit = 1;
+		for (int decimals = 0; decimals <= MAX_DECIMALS; decimals++) {
+			SCALES[decimals] = new PriceScale(decimals, ticksPerUnit);
+			ticksPerUnit *= 10;
+		}
+	}
+
+	private final int decimals;
+	private final long ticksPerUnit;
+
+	private PriceScale(int decimals, long ticksPerUnit) {
+		this.decimals = decimals;
+		this.ticksPerUnit = ticksPerUnit;
+	}
+
+	/**
+	 * @param securityId
+	 * 			The security id, case insensitive
+	 * @return
+	 * 		the scale registered for the security, or the default one
+	 */
+	public static PriceScale of(String securityId) {
+		PriceScale scale = securityId == null ? null : SECURITIES.get(securityId.toUpperCase(Locale.ROOT));
+		return scale == null ? SCALES[DEFAULT_DECIMALS] : scale;
+	}
+
+	/**
+	 * Sets the tick size of a security, to be done before it trades.
+	 * @param securityId
+	 * 			The security id, case insensitive
+	 * @param decimals
+	 * 			number of decimals of a price, the tick is 10^-decimals
+	 */
+	public static void register(String securityId, int decimals) {
+		if (decimals < 0 || decimals > MAX_DECIMALS) {
+			throw new IllegalArgumentException("decimals must be between 0 and " + MAX_DECIMALS + " - " + securityId);
+		}
+		SECURITIES.put(securityId.toUpperCase(Locale.ROOT), SCALES[decimals]);
+	}
+
+	public int getDecimals() {
+		return decimals;
+	}
+
+	/**
+	 * @param value
+	 * 			a decimal price
+	 * @return
+	 * 		the price in ticks
+	 * @throws TradeException
+	 * 		if the price is not a finite number, not a multiple of the tick or too large for a long number of ticks
+	 */
+	public long toTicks(double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			throw new TradeException("value " + value + " is not a price");
+		}
+		BigDecimal ticks = BigDecimal.valueOf(value).movePointRight(decimals);
+		if (ticks.signum() != 0 && ticks.stripTrailingZeros().scale() > 0) {
+			throw new TradeException("value " + value + " must be a multiple of the price tick " + toValue(1));
+		}
+		if (ticks.abs().compareTo(MAX_TICKS) > 0) {
+			throw new TradeException("value " + value + " exceeds the highest price " + toValue(Long.MAX_VALUE));
+		}
+		return ticks.longValue();
+	}
+
+	/**
+	 * @param ticks
+	 * 			a price in ticks, or a notional in ticks times units
+	 * @return
+	 * 		the decimal value
+	 */
+	public double toValue(long ticks) {
+		return ticks / (double) ticksPerUnit;
+	}
+}
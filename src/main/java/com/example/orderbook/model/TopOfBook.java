@@ -0,0 +1,99 @@
+package com.example.orderbook.model;
+
+import java.io.Serializable;
+
+/**
+ * The best bid and the best ask of a security, immutable so it can be read from any thread.
+ *
+ * A side without orders has a price, units and order count of 0.
+ */
+public class TopOfBook implements Serializable {
+	private static final long serialVersionUID = 7716120934851245093L;
+
+	private final String securityId;
+	private final long sequence;
+	private final long bidPrice;
+	private final long bidUnits;
+	private final int bidOrders;
+	private final long askPrice;
+	private final long askUnits;
+	private final int askOrders;
+
+	public TopOfBook(String securityId, long sequence, long bidPrice, long bidUnits, int bidOrders,
+					 long askPrice, long askUnits, int askOrders) {
+		this.securityId = securityId;
+		this.sequence = sequence;
+		this.bidPrice = bidPrice;
+		this.bidUnits = bidUnits;
+		this.bidOrders = bidOrders;
+		this.askPrice = askPrice;
+		this.askUnits = askUnits;
+		this.askOrders = askOrders;
+	}
+
+	public String getSecurityId() {
+		return securityId;
+	}
+
+	/**
+	 * @return
+	 * 		market data sequence of the security at the last change of the top of book
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return
+	 * 		best bid in ticks of the security
+	 */
+	public long getBidPrice() {
+		return bidPrice;
+	}
+
+	/**
+	 * @return
+	 * 		the decimal best bid, only for display
+	 */
+	public double getBidValue() {
+		return PriceScale.of(securityId).toValue(bidPrice);
+	}
+
+	public long getBidUnits() {
+		return bidUnits;
+	}
+
+	public int getBidOrders() {
+		return bidOrders;
+	}
+
+	/**
+	 * @return
+	 * 		best ask in ticks of the security
+	 */
+	public long getAskPrice() {
+		return askPrice;
+	}
+
+	/**
+	 * @return
+	 * 		the decimal best ask, only for display
+	 */
+	public double getAskValue() {
+		return PriceScale.of(securityId).toValue(askPrice);
+	}
+
+	public long getAskUnits() {
+		return askUnits;
+	}
+
+	public int getAskOrders() {
+		return askOrders;
+	}
+
+	@Override
+	public String toString() {
+		return "SECURITY=" + securityId + " SEQUENCE=" + sequence + " BID=" + bidUnits + "@" + bidPrice
+				+ " ASK=" + askUnits + "@" + askPrice;
+	}
+}
@@ -0,0 +1,96 @@
+package com.example.orderbook.model.request;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.io.Serializable;
+
+/**
+ * One command of a batch: a new order (ADD), an amendment (UPDATE) or a cancellation (CANCEL).
+ *
+ * ADD carries the fields of an OrderRequest, UPDATE those of an UpdateOrderRequest and CANCEL only the orderId.
+ * value is the decimal price, the value of an UPDATE is converted on the shard with the tick of the security the order
+ * rests on, and an UPDATE whose securityId is not that security is rejected.
+ */
+public class BatchCommand implements Serializable {
+	private static final long serialVersionUID = -4619230517725016448L;
+
+	public enum Action {
+		ADD,
+		UPDATE,
+		CANCEL
+	}
+
+	private final Action action;
+	private final Long orderId;
+	private final String clientId;
+	private final String securityId;
+	private final Integer units;
+	private final Double value;
+	private final Boolean isBuying;
+	private final OrderType orderType;
+
+	public BatchCommand(@JsonProperty("action") Action action, @JsonProperty("orderId") Long orderId,
+						@JsonProperty("clientId") String clientId, @JsonProperty("securityId") String securityId,
+						@JsonProperty("units") Integer units, @JsonProperty("value") Double value,
+						@JsonProperty("isBuying") Boolean isBuying, @JsonProperty("orderType") OrderType orderType) {
+		this.action = action;
+		this.orderId = orderId;
+		this.clientId = clientId;
+		this.securityId = securityId;
+		this.units = units;
+		this.value = value;
+		this.isBuying = isBuying;
+		this.orderType = orderType;
+	}
+
+	public static BatchCommand add(String clientId, String securityId, int units, Double value, boolean isBuying,
+								   OrderType orderType) {
+		return new BatchCommand(Action.ADD, null, clientId, securityId, units, value, isBuying, orderType);
+	}
+
+	public static BatchCommand update(long orderId, int units, Double value) {
+		return new BatchCommand(Action.UPDATE, orderId, null, null, units, value, null, null);
+	}
+
+	public static BatchCommand cancel(long orderId) {
+		return new BatchCommand(Action.CANCEL, orderId, null, null, null, null, null, null);
+	}
+
+	public Action getAction() {
+		return action;
+	}
+
+	public Long getOrderId() {
+		return orderId;
+	}
+
+	public String getClientId() {
+		return clientId;
+	}
+
+	public String getSecurityId() {
+		return securityId;
+	}
+
+	public Integer getUnits() {
+		return units;
+	}
+
+	public Double getValue() {
+		return value;
+	}
+
+	public Boolean getIsBuying() {
+		return isBuying;
+	}
+
+	public OrderType getOrderType() {
+		return orderType;
+	}
+
+	@Override
+	public String toString() {
+		return action + " ORDERID=" + orderId + " CLIENT=" + clientId + " SECURITY=" + securityId
+				+ " UNITS=" + units + " VALUE=" + value + " ISBUYING=" + isBuying + " ORDERTYPE " + orderType;
+	}
+}
@@ -0,0 +1,114 @@
+package com.example.orderbook.model.request;
+
+import com.example.orderbook.exception.TradeException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Locale;
+
+/**
+ * Selects the resting orders listed by the order queries: a side, a client, a price range and at most limit orders.
+ * Every criterion is optional. The books apply it while they capture their orders, skipping the price levels
+ * out of the range, so orders left out are never copied.
+ */
+public class OrderFilter {
+
+	/**
+	 * Filter keeping every order.
+	 */
+	public static final OrderFilter NONE = new OrderFilter(null, null, null, null, 0);
+
+	private final Boolean buying;
+	private final String clientId;
+	private final Double minValue;
+	private final Double maxValue;
+	private final int limit;
+
+	/**
+	 * @param buying
+	 * 			true for the buy orders only, false for the sell orders only, null for both
+	 * @param clientId
+	 * 			the client of the orders, null for every client
+	 * @param minValue
+	 * 			lowest decimal price, null for no lower bound
+	 * @param maxValue
+	 * 			highest decimal price, null for no upper bound
+	 * @param limit
+	 * 			most orders listed, 0 for no limit
+	 */
+	public OrderFilter(Boolean buying, String clientId, Double minValue, Double maxValue, int limit) {
+		if (limit < 0) {
+			throw new TradeException("limit must not be negative");
+		}
+		if (minValue != null && maxValue != null && minValue > maxValue) {
+			throw new TradeException("minValue must not be greater than maxValue");
+		}
+		this.buying = buying;
+		this.clientId = clientId;
+		this.minValue = minValue;
+		this.maxValue = maxValue;
+		this.limit = limit;
+	}
+
+	/**
+	 * @param side
+	 * 			BUY or SELL in any case, null for both sides
+	 * @return
+	 * 		the side as expected by the constructor
+	 */
+	public static Boolean side(String side) {
+		if (side == null || side.isEmpty()) {
+			return null;
+		}
+		switch (side.toUpperCase(Locale.ROOT)) {
+			case "BUY":
+				return Boolean.TRUE;
+			case "SELL":
+				return Boolean.FALSE;
+			default:
+				throw new TradeException("side must be BUY or SELL - " + side);
+		}
+	}
+
+	/**
+	 * @return
+	 * 		true if the orders of a side are listed
+	 */
+	public boolean includes(boolean buying) {
+		return this.buying == null || this.buying == buying;
+	}
+
+	public String getClientId() {
+		return clientId;
+	}
+
+	/**
+	 * @param decimals
+	 * 			decimals of the price of the security
+	 * @return
+	 * 		lowest price in ticks, Long.MIN_VALUE without a lower bound
+	 */
+	public long minTicks(int decimals) {
+		return minValue == null ? Long.MIN_VALUE
+				: BigDecimal.valueOf(minValue).movePointRight(decimals).setScale(0, RoundingMode.CEILING).longValue();
+	}
+
+	/**
+	 * @param decimals
+	 * 			decimals of the price of the security
+	 * @return
+	 * 		highest price in ticks, Long.MAX_VALUE without an upper bound
+	 */
+	public long maxTicks(int decimals) {
+		return maxValue == null ? Long.MAX_VALUE
+				: BigDecimal.valueOf(maxValue).movePointRight(decimals).setScale(0, RoundingMode.FLOOR).longValue();
+	}
+
+	/**
+	 * @return
+	 * 		most orders listed, Integer.MAX_VALUE without a limit
+	 */
+	public int getLimit() {
+		return limit == 0 ? Integer.MAX_VALUE : limit;
+	}
+}
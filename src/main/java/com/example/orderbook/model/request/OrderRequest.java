@@ -1,5 +1,7 @@
 package com.example.orderbook.model.request;
 
+import com.example.orderbook.model.PriceScale;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import javax.validation.constraints.Min;
@@ -10,6 +12,7 @@ import java.io.Serializable;
 
 /**
  * Request Object for accepting new buy/sell orders
+ * value is the decimal price of the request, getPrice converts it to ticks of the security for the engine
  */
 public class OrderRequest implements Serializable {
 	private static final long serialVersionUID = 8822833371248140397L;
@@ -77,6 +80,24 @@ public class OrderRequest implements Serializable {
 		return value;
 	}
 
+	/**
+	 * @return
+	 * 		units as the quantity of the engine
+	 */
+	@JsonIgnore
+	public long getQuantity() {
+		return units;
+	}
+
+	/**
+	 * @return
+	 * 		value in ticks of the security, 0 if no value is given
+	 */
+	@JsonIgnore
+	public long getPrice() {
+		return value == null ? 0 : PriceScale.of(securityId).toTicks(value);
+	}
+
 	public boolean isBuying() {
 		return isBuying;
 	}
@@ -1,5 +1,8 @@
 package com.example.orderbook.model.request;
 
+import com.example.orderbook.exception.TradeException;
+import com.example.orderbook.model.PriceScale;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import javax.validation.constraints.Min;
@@ -9,6 +12,7 @@ import java.io.Serializable;
 
 /**
  * Request Object for accepting orders updation
+ * value is the decimal price of the request, getPrice converts it to ticks of the security of the order
  */
 public class UpdateOrderRequest implements Serializable {
 	private static final long serialVersionUID = 8822833371248140397L;
@@ -51,6 +55,30 @@ public class UpdateOrderRequest implements Serializable {
 		return value;
 	}
 
+	/**
+	 * @return
+	 * 		units as the quantity of the engine
+	 */
+	@JsonIgnore
+	public long getQuantity() {
+		return units;
+	}
+
+	/**
+	 * @param scale
+	 * 			the price scale of the security of the order
+	 * @return
+	 * 		value in ticks, 0 if no value is given to keep the price of the order
+	 * @throws TradeException
+	 * 		if the value is not greater than zero
+	 */
+	public long getPrice(PriceScale scale) {
+		if (value != null && value <= 0) {
+			throw new TradeException("value must be greater than zero, leave it out to keep the price of the order");
+		}
+		return value == null ? 0 : scale.toTicks(value);
+	}
+
 
 	@Override
 	public int hashCode() {
@@ -0,0 +1,51 @@
+package com.example.orderbook.pipeline;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Parks waiting stages on a condition, producers and stages signal it when they make progress.
+ * Cheapest on CPU, adds the wake-up latency of a parked thread.
+ */
+public class BlockingWaitStrategy implements WaitStrategy {
+
+	private static final long MAX_WAIT_MICROS = 1000;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition progress = lock.newCondition();
+	private volatile int waiters;
+
+	@Override
+	public long waitFor(long sequence, SequenceBarrier barrier) throws InterruptedException {
+		long available = barrier.getAvailable(sequence);
+		if (available >= sequence) {
+			return available;
+		}
+		lock.lock();
+		try {
+			waiters++;
+			while ((available = barrier.getAvailable(sequence)) < sequence && !barrier.isAlerted()) {
+				// bounded wait, a missed signal only costs MAX_WAIT_MICROS
+				progress.await(MAX_WAIT_MICROS, TimeUnit.MICROSECONDS);
+			}
+		} finally {
+			waiters--;
+			lock.unlock();
+		}
+		return available;
+	}
+
+	@Override
+	public void signalAllWhenBlocking() {
+		if (waiters == 0) {
+			return;
+		}
+		lock.lock();
+		try {
+			progress.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+}
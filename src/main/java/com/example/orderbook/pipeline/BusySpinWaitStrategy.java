@@ -0,0 +1,20 @@
+package com.example.orderbook.pipeline;
+
+/**
+ * Spins on the barrier, for stages pinned to dedicated cores.
+ */
+public class BusySpinWaitStrategy implements WaitStrategy {
+
+	@Override
+	public long waitFor(long sequence, SequenceBarrier barrier) {
+		long available;
+		while ((available = barrier.getAvailable(sequence)) < sequence && !barrier.isAlerted()) {
+			// spin
+		}
+		return available;
+	}
+
+	@Override
+	public void signalAllWhenBlocking() {
+	}
+}
@@ -0,0 +1,17 @@
+package com.example.orderbook.pipeline;
+
+/**
+ * Work done by one stage of a pipeline on every entry of the ring buffer, in sequence order.
+ */
+public interface EventHandler<E> {
+
+	/**
+	 * @param event
+	 * 			the ring buffer entry, owned by this stage for the duration of the call
+	 * @param sequence
+	 * 			sequence of the entry
+	 * @param endOfBatch
+	 * 			true for the last entry currently available to the stage, a good time to flush
+	 */
+	void onEvent(E event, long sequence, boolean endOfBatch);
+}
@@ -0,0 +1,161 @@
+package com.example.orderbook.pipeline;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A ring buffer followed by a chain of stages, each stage running on its own thread and processing an entry
+ * only after the previous stage is done with it (LMAX disruptor style).
+ *
+ * Usage: add the stages with then, start, and publish entries with next / get / publish.
+ */
+public class Pipeline<E> {
+
+	private final String name;
+	private final RingBuffer<E> ringBuffer;
+	private final WaitStrategy waitStrategy;
+	private final List<StageProcessor<E>> stages = new ArrayList<>();
+	private final List<Thread> threads = new ArrayList<>();
+	private volatile boolean alerted;
+
+	/**
+	 * @param name
+	 * 			prefix of the stage thread names
+	 * @param factory
+	 * 			creates the reusable entries
+	 * @param ringSize
+	 * 			number of entries, a power of two
+	 * @param waitStrategy
+	 * 			how stages wait for entries
+	 */
+	public Pipeline(String name, Supplier<E> factory, int ringSize, WaitStrategy waitStrategy) {
+		this.name = name;
+		this.waitStrategy = waitStrategy;
+		this.ringBuffer = new RingBuffer<>(factory, ringSize, waitStrategy);
+	}
+
+	/**
+	 * Appends a stage, it sees every entry after the stages added before it.
+	 */
+	public Pipeline<E> then(String stageName, EventHandler<E> handler) {
+		if (!threads.isEmpty()) {
+			throw new IllegalStateException("pipeline " + name + " already started");
+		}
+		SequenceBarrier barrier;
+		if (stages.isEmpty()) {
+			barrier = new SequenceBarrier() {
+				@Override
+				public long getAvailable(long sequence) {
+					return ringBuffer.getHighestPublished(sequence);
+				}
+
+				@Override
+				public boolean isAlerted() {
+					return alerted;
+				}
+			};
+		} else {
+			Sequence previous = stages.get(stages.size() - 1).getSequence();
+			barrier = new SequenceBarrier() {
+				@Override
+				public long getAvailable(long sequence) {
+					return previous.get();
+				}
+
+				@Override
+				public boolean isAlerted() {
+					return alerted;
+				}
+			};
+		}
+		StageProcessor<E> stage = new StageProcessor<>(stageName, ringBuffer, barrier, handler, waitStrategy);
+		stages.add(stage);
+		ringBuffer.setGatingSequence(stage.getSequence());
+		return this;
+	}
+
+	public void start() {
+		if (stages.isEmpty()) {
+			throw new IllegalStateException("pipeline " + name + " has no stage");
+		}
+		for (StageProcessor<E> stage : stages) {
+			Thread thread = new Thread(stage, name + "-" + stage.getName());
+			thread.setDaemon(true);
+			threads.add(thread);
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+	}
+
+	/**
+	 * Waits until every published entry went through all stages, then stops the stage threads.
+	 */
+	public void halt() throws InterruptedException {
+		Sequence last = stages.get(stages.size() - 1).getSequence();
+		while (last.get() < ringBuffer.getCursor()) {
+			Thread.sleep(1);
+		}
+		alerted = true;
+		waitStrategy.signalAllWhenBlocking();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+	}
+
+	/**
+	 * @return
+	 * 		the sequence of a free entry, waiting while the ring is full
+	 */
+	public long next() {
+		return ringBuffer.next();
+	}
+
+	public E get(long sequence) {
+		return ringBuffer.get(sequence);
+	}
+
+	public void publish(long sequence) {
+		ringBuffer.publish(sequence);
+	}
+
+	public int getRingSize() {
+		return ringBuffer.getBufferSize();
+	}
+
+	/**
+	 * @return
+	 * 		the highest claimed sequence
+	 */
+	public long getCursor() {
+		return ringBuffer.getCursor();
+	}
+
+	/**
+	 * @return
+	 * 		for each stage, in pipeline order, how many claimed entries it has not processed yet
+	 */
+	public Map<String, Long> getStageLag() {
+		long cursor = ringBuffer.getCursor();
+		Map<String, Long> lag = new LinkedHashMap<>();
+		for (StageProcessor<E> stage : stages) {
+			lag.put(stage.getName(), cursor - stage.getSequence().get());
+		}
+		return lag;
+	}
+
+	/**
+	 * @return
+	 * 		claimed entries the last stage has not processed yet
+	 */
+	public long getBacklog() {
+		return ringBuffer.getCursor() - stages.get(stages.size() - 1).getSequence().get();
+	}
+
+	public PipelineStats getStats() {
+		return new PipelineStats(name, ringBuffer.getBufferSize(), ringBuffer.getCursor(), getStageLag());
+	}
+}
@@ -0,0 +1,37 @@
+package com.example.orderbook.pipeline;
+
+import java.util.Map;
+
+/**
+ * Point in time view of a pipeline: claimed sequence and how far behind it each stage is.
+ */
+public class PipelineStats {
+
+	private final String name;
+	private final int ringSize;
+	private final long cursor;
+	private final Map<String, Long> stageLag;
+
+	public PipelineStats(String name, int ringSize, long cursor, Map<String, Long> stageLag) {
+		this.name = name;
+		this.ringSize = ringSize;
+		this.cursor = cursor;
+		this.stageLag = stageLag;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getRingSize() {
+		return ringSize;
+	}
+
+	public long getCursor() {
+		return cursor;
+	}
+
+	public Map<String, Long> getStageLag() {
+		return stageLag;
+	}
+}
@@ -0,0 +1,126 @@
+package com.example.orderbook.pipeline;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Pre-allocated ring of reusable entries shared by many producers and a chain of stages.
+ *
+ * Producers claim a sequence with a CAS on the cursor, fill the entry at that sequence and publish it.
+ * Because producers may publish out of order, each slot records the lap of the last sequence published in it,
+ * so stages only read the contiguous run of published entries.
+ * A producer never claims a slot the last stage (the gating sequence) has not processed yet.
+ */
+public class RingBuffer<E> {
+
+	private final Object[] entries;
+	private final int mask;
+	private final int indexShift;
+	private final AtomicIntegerArray published;
+	private final Sequence cursor = new Sequence();
+	private final Sequence gatingCache = new Sequence();
+	private final WaitStrategy waitStrategy;
+	private volatile Sequence gatingSequence = new Sequence(Long.MAX_VALUE);
+
+	/**
+	 * @param factory
+	 * 			creates the entries, called size times up front
+	 * @param size
+	 * 			number of entries, must be a power of two
+	 * @param waitStrategy
+	 * 			signalled on every publish
+	 */
+	public RingBuffer(Supplier<E> factory, int size, WaitStrategy waitStrategy) {
+		if (size < 1 || Integer.bitCount(size) != 1) {
+			throw new IllegalArgumentException("ring size must be a power of two");
+		}
+		this.entries = new Object[size];
+		for (int i = 0; i < size; i++) {
+			entries[i] = factory.get();
+		}
+		this.mask = size - 1;
+		this.indexShift = Integer.numberOfTrailingZeros(size);
+		this.published = new AtomicIntegerArray(size);
+		for (int i = 0; i < size; i++) {
+			published.set(i, -1);
+		}
+		this.waitStrategy = waitStrategy;
+	}
+
+	public int getBufferSize() {
+		return entries.length;
+	}
+
+	/**
+	 * @return
+	 * 		the highest sequence claimed by a producer, published or not
+	 */
+	public long getCursor() {
+		return cursor.get();
+	}
+
+	/**
+	 * The sequence producers must not lap, the one of the last stage of the pipeline.
+	 */
+	void setGatingSequence(Sequence sequence) {
+		this.gatingSequence = sequence;
+	}
+
+	/**
+	 * Claims the next entry, waiting while the ring is full.
+	 * @return
+	 * 		the claimed sequence, to be published once the entry is filled
+	 */
+	public long next() {
+		while (true) {
+			long current = cursor.get();
+			long next = current + 1;
+			long wrapPoint = next - entries.length;
+			long cachedGating = gatingCache.get();
+			if (wrapPoint > cachedGating || cachedGating > current) {
+				long gating = Math.min(gatingSequence.get(), current);
+				if (wrapPoint > gating) {
+					// ring full, let the stages make progress
+					LockSupport.parkNanos(1);
+					continue;
+				}
+				gatingCache.set(gating);
+			}
+			if (cursor.compareAndSet(current, next)) {
+				return next;
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	public E get(long sequence) {
+		return (E) entries[(int) sequence & mask];
+	}
+
+	/**
+	 * Makes a filled entry visible to the first stage.
+	 */
+	public void publish(long sequence) {
+		published.lazySet((int) sequence & mask, (int) (sequence >>> indexShift));
+		waitStrategy.signalAllWhenBlocking();
+	}
+
+	boolean isPublished(long sequence) {
+		return published.get((int) sequence & mask) == (int) (sequence >>> indexShift);
+	}
+
+	/**
+	 * @return
+	 * 		the highest sequence of the contiguous run of published entries starting at lowerBound
+	 */
+	long getHighestPublished(long lowerBound) {
+		long claimed = cursor.get();
+		for (long sequence = lowerBound; sequence <= claimed; sequence++) {
+			if (!isPublished(sequence)) {
+				return sequence - 1;
+			}
+		}
+		return claimed;
+	}
+}
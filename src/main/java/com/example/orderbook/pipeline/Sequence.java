@@ -0,0 +1,71 @@
+package com.example.orderbook.pipeline;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Position of a producer or a stage in the ring buffer, padded against false sharing with neighbouring sequences.
+ *
+ * The value is a field of the sequence itself, between the padding of two superclasses: the JVM lays the fields of a
+ * superclass out before those of its subclasses, so 56 bytes of padding lie on each side of the value and no other
+ * hot field shares its cache line.
+ */
+public class Sequence extends RightPadding {
+
+	public static final long INITIAL_VALUE = -1L;
+
+	private static final AtomicLongFieldUpdater<Value> VALUE = AtomicLongFieldUpdater.newUpdater(Value.class, "value");
+
+	public Sequence() {
+		this(INITIAL_VALUE);
+	}
+
+	public Sequence(long initialValue) {
+		VALUE.lazySet(this, initialValue);
+	}
+
+	public long get() {
+		return value;
+	}
+
+	/**
+	 * Ordered store, makes every write done before it visible to a thread reading the new value.
+	 */
+	public void set(long sequence) {
+		VALUE.lazySet(this, sequence);
+	}
+
+	public boolean compareAndSet(long expected, long sequence) {
+		return VALUE.compareAndSet(this, expected, sequence);
+	}
+
+	@Override
+	public String toString() {
+		return Long.toString(get());
+	}
+}
+
+/**
+ * padding before the value of a Sequence
+ */
+abstract class LeftPadding {
+
+	@SuppressWarnings("unused")
+	protected long p1, p2, p3, p4, p5, p6, p7;
+}
+
+/**
+ * the value of a Sequence, updated through Sequence.VALUE
+ */
+abstract class Value extends LeftPadding {
+
+	protected volatile long value;
+}
+
+/**
+ * padding after the value of a Sequence
+ */
+abstract class RightPadding extends Value {
+
+	@SuppressWarnings("unused")
+	protected long p9, p10, p11, p12, p13, p14, p15;
+}
@@ -0,0 +1,21 @@
+package com.example.orderbook.pipeline;
+
+/**
+ * What a stage waits on: either the published entries of the ring buffer or the sequence of the previous stage.
+ */
+public interface SequenceBarrier {
+
+	/**
+	 * @param sequence
+	 * 			the next sequence the stage wants to process
+	 * @return
+	 * 		the highest sequence the stage may process, lower than the requested one if it is not available yet
+	 */
+	long getAvailable(long sequence);
+
+	/**
+	 * @return
+	 * 		true once the pipeline is halting, waiting stages must return
+	 */
+	boolean isAlerted();
+}
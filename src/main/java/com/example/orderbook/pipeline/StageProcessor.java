@@ -0,0 +1,68 @@
+package com.example.orderbook.pipeline;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs one stage of a pipeline on its own thread: waits on its barrier, hands every available entry to its
+ * handler in sequence order and then advances its own sequence, releasing the entries to the next stage.
+ */
+class StageProcessor<E> implements Runnable {
+
+	private final Logger logger = LoggerFactory.getLogger(StageProcessor.class);
+
+	private final String name;
+	private final RingBuffer<E> ringBuffer;
+	private final SequenceBarrier barrier;
+	private final EventHandler<E> handler;
+	private final WaitStrategy waitStrategy;
+	private final Sequence sequence = new Sequence();
+
+	StageProcessor(String name, RingBuffer<E> ringBuffer, SequenceBarrier barrier, EventHandler<E> handler,
+				   WaitStrategy waitStrategy) {
+		this.name = name;
+		this.ringBuffer = ringBuffer;
+		this.barrier = barrier;
+		this.handler = handler;
+		this.waitStrategy = waitStrategy;
+	}
+
+	String getName() {
+		return name;
+	}
+
+	Sequence getSequence() {
+		return sequence;
+	}
+
+	@Override
+	public void run() {
+		long next = sequence.get() + 1;
+		while (true) {
+			long available;
+			try {
+				available = waitStrategy.waitFor(next, barrier);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			if (available < next) {
+				if (barrier.isAlerted()) {
+					return;
+				}
+				continue;
+			}
+			while (next <= available) {
+				try {
+					handler.onEvent(ringBuffer.get(next), next, next == available);
+				} catch (RuntimeException e) {
+					// a failing entry must not stall the pipeline
+					logger.error("stage {} failed on sequence {}", name, next, e);
+				}
+				next++;
+			}
+			sequence.set(available);
+			waitStrategy.signalAllWhenBlocking();
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package com.example.orderbook.pipeline;
+
+/**
+ * How a stage waits for entries to become available.
+ * BUSY_SPIN gives the lowest latency and burns a core per stage, YIELDING gives the core away between checks,
+ * BLOCKING parks the stage thread until a producer or the previous stage signals progress.
+ */
+public interface WaitStrategy {
+
+	/**
+	 * @return
+	 * 		the highest available sequence, which is at least the requested one unless the barrier got alerted
+	 */
+	long waitFor(long sequence, SequenceBarrier barrier) throws InterruptedException;
+
+	/**
+	 * Called after publishing or processing entries, wakes stages blocked in waitFor.
+	 */
+	void signalAllWhenBlocking();
+
+	/**
+	 * @param name
+	 * 			BUSY_SPIN, YIELDING or BLOCKING
+	 */
+	static WaitStrategy of(String name) {
+		switch (name.trim().toUpperCase()) {
+			case "BUSY_SPIN":
+				return new BusySpinWaitStrategy();
+			case "YIELDING":
+				return new YieldingWaitStrategy();
+			case "BLOCKING":
+				return new BlockingWaitStrategy();
+			default:
+				throw new IllegalArgumentException("unknown wait strategy " + name);
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package com.example.orderbook.pipeline;
+
+/**
+ * Spins for a while then yields the core between checks of the barrier.
+ */
+public class YieldingWaitStrategy implements WaitStrategy {
+
+	private static final int SPIN_TRIES = 100;
+
+	@Override
+	public long waitFor(long sequence, SequenceBarrier barrier) {
+		int counter = SPIN_TRIES;
+		long available;
+		while ((available = barrier.getAvailable(sequence)) < sequence && !barrier.isAlerted()) {
+			if (counter > 0) {
+				counter--;
+			} else {
+				Thread.yield();
+			}
+		}
+		return available;
+	}
+
+	@Override
+	public void signalAllWhenBlocking() {
+	}
+}
@@ -0,0 +1,397 @@
+package com.example.orderbook.replay;
+
+import com.example.orderbook.exception.TradeException;
+import com.example.orderbook.model.request.OrderType;
+import com.example.orderbook.service.PriceTimePriorityOrderBook;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generates a synthetic order flow for benchmarks and soak tests, as the RecordedCommands of a recording:
+ * <ul>
+ *     <li>securities picked with a Zipfian popularity, the k-th most popular one in proportion to 1 / k^exponent</li>
+ *     <li>clients picked uniformly</li>
+ *     <li>the mid price of each security walks one tick up or down on each of its orders, limit orders are priced
+ *     around it: mostly passive a few ticks behind the mid, a configurable share marketable through it</li>
+ *     <li>LIMIT, MARKET, UPDATE and CANCEL commands in configurable proportions, amendments and cancellations
+ *     target orders the flow created, the oldest ones first once maxLiveOrders are alive</li>
+ *     <li>arrivals as a Poisson process alternating between a calm rate and bursts at burstFactor times the rate,
+ *     with exponentially distributed calm and burst durations</li>
+ * </ul>
+ * The flow is a function of the seed and the settings only, the same generator settings give the same commands.
+ * The orderIds are numbered from 1 by the generator, OrderFlowReplayer maps them to those of the engine, execute
+ * applies them directly to a PriceTimePriorityOrderBook. Writing a flow to a file replays it through the REST API:
+ * <pre>
+ * java -cp target/classes com.example.orderbook.replay.OrderFlowGenerator flow.ndjson [commands] [securities] [clients] [seed]
+ * java -cp target/classes com.example.orderbook.replay.OrderFlowReplayer flow.ndjson 1 http://localhost:8080
+ * </pre>
+ * Settings are changed before the first command is generated. Not thread safe.
+ */
+public class OrderFlowGenerator {
+
+	/** mid price of the securities at the start, in ticks of the default PriceScale */
+	private static final long INITIAL_MID = 10000;
+	private static final long MIN_MID = 100;
+	private static final long MICROS_PER_SECOND = 1_000_000;
+	private static final ObjectWriter JSON = new ObjectMapper().writerFor(RecordedCommand.class);
+
+	private final SplittableRandom random;
+	private final String[] securityIds;
+	private final String[] clientIds;
+	private final long[] mids;
+	/** cumulative popularity of the securities, by rank */
+	private double[] popularity;
+
+	private int limitWeight = 60;
+	private int marketWeight = 5;
+	private int amendWeight = 15;
+	private int cancelWeight = 20;
+	private double marketableShare = 0.1;
+	private int maxPassiveTicks = 20;
+	private int maxLots = 10;
+	private int lotSize = 10;
+
+	private double ratePerSecond = 10_000;
+	private double burstFactor = 10;
+	private long meanCalmMicros = 1_000_000;
+	private long meanBurstMicros = 50_000;
+
+	private long time;
+	private boolean bursting;
+	private long stateEnd = -1;
+	private long nextOrderId = 1;
+
+	/** orders created by the flow and not cancelled by it, in a ring of creation order */
+	private long[] liveIds;
+	private int[] liveSecurities;
+	private boolean[] liveBuying;
+	private int liveHead;
+	private int liveCount;
+
+	/**
+	 * @param seed
+	 * 			seed of every random choice of the flow
+	 * @param securities
+	 * 			number of securities, named SYN1 to SYN{securities} from the most to the least popular
+	 * @param clients
+	 * 			number of clients, named CLIENT1 to CLIENT{clients}
+	 */
+	public OrderFlowGenerator(long seed, int securities, int clients) {
+		if (securities <= 0 || clients <= 0) {
+			throw new IllegalArgumentException("securities and clients must be greater than zero");
+		}
+		this.random = new SplittableRandom(seed);
+		this.securityIds = new String[securities];
+		this.mids = new long[securities];
+		for (int i = 0; i < securities; i++) {
+			securityIds[i] = "SYN" + (i + 1);
+			mids[i] = INITIAL_MID;
+		}
+		this.clientIds = new String[clients];
+		for (int i = 0; i < clients; i++) {
+			clientIds[i] = "CLIENT" + (i + 1);
+		}
+		zipfExponent(1.0);
+		maxLiveOrders(100_000);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("usage: OrderFlowGenerator flow.ndjson [commands] [securities] [clients] [seed]");
+			System.exit(1);
+		}
+		int commands = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+		int securities = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+		int clients = args.length > 3 ? Integer.parseInt(args[3]) : 500;
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : 42;
+		Path file = Paths.get(args[0]);
+		new OrderFlowGenerator(seed, securities, clients).write(file, commands);
+		System.out.println("wrote " + commands + " commands to " + file);
+	}
+
+	/**
+	 * @param exponent
+	 * 			skew of the popularity of the securities, 0 for uniform, around 1 for a realistic market
+	 */
+	public OrderFlowGenerator zipfExponent(double exponent) {
+		if (exponent < 0) {
+			throw new IllegalArgumentException("zipf exponent must not be negative");
+		}
+		double[] cumulative = new double[securityIds.length];
+		double total = 0;
+		for (int rank = 1; rank <= cumulative.length; rank++) {
+			total += 1 / Math.pow(rank, exponent);
+			cumulative[rank - 1] = total;
+		}
+		for (int i = 0; i < cumulative.length; i++) {
+			cumulative[i] /= total;
+		}
+		popularity = cumulative;
+		return this;
+	}
+
+	/**
+	 * Relative weights of the commands, e.g. 60, 5, 15, 20 for 60% limit orders.
+	 */
+	public OrderFlowGenerator mix(int limit, int market, int amend, int cancel) {
+		if (limit < 0 || market < 0 || amend < 0 || cancel < 0 || limit + market == 0) {
+			throw new IllegalArgumentException("weights must not be negative and new orders must have a weight");
+		}
+		this.limitWeight = limit;
+		this.marketWeight = market;
+		this.amendWeight = amend;
+		this.cancelWeight = cancel;
+		return this;
+	}
+
+	/**
+	 * @param marketableShare
+	 * 			share of the limit orders priced through the mid, likely to trade on arrival
+	 * @param maxPassiveTicks
+	 * 			furthest distance from the mid of a passive limit order, in ticks
+	 */
+	public OrderFlowGenerator pricing(double marketableShare, int maxPassiveTicks) {
+		if (marketableShare < 0 || marketableShare > 1 || maxPassiveTicks <= 0) {
+			throw new IllegalArgumentException("marketable share must be between 0 and 1, passive ticks positive");
+		}
+		this.marketableShare = marketableShare;
+		this.maxPassiveTicks = maxPassiveTicks;
+		return this;
+	}
+
+	/**
+	 * @param lotSize
+	 * 			units of a lot, orders are for 1 to maxLots lots
+	 */
+	public OrderFlowGenerator quantities(int lotSize, int maxLots) {
+		if (lotSize <= 0 || maxLots <= 0) {
+			throw new IllegalArgumentException("lot size and lots must be greater than zero");
+		}
+		this.lotSize = lotSize;
+		this.maxLots = maxLots;
+		return this;
+	}
+
+	/**
+	 * @param ratePerSecond
+	 * 			commands per second outside of bursts
+	 * @param burstFactor
+	 * 			rate of a burst relative to ratePerSecond, 1 for a plain Poisson process
+	 * @param meanCalmMicros
+	 * 			mean time between two bursts
+	 * @param meanBurstMicros
+	 * 			mean duration of a burst
+	 */
+	public OrderFlowGenerator arrivals(double ratePerSecond, double burstFactor, long meanCalmMicros,
+									   long meanBurstMicros) {
+		if (ratePerSecond <= 0 || burstFactor < 1 || meanCalmMicros <= 0 || meanBurstMicros <= 0) {
+			throw new IllegalArgumentException("rate and durations must be positive, burst factor at least 1");
+		}
+		this.ratePerSecond = ratePerSecond;
+		this.burstFactor = burstFactor;
+		this.meanCalmMicros = meanCalmMicros;
+		this.meanBurstMicros = meanBurstMicros;
+		return this;
+	}
+
+	/**
+	 * @param maxLiveOrders
+	 * 			orders the flow keeps track of for its amendments and cancellations, once reached a new order
+	 * 			gives way to the cancellation of the oldest one so the book stays bounded
+	 */
+	public OrderFlowGenerator maxLiveOrders(int maxLiveOrders) {
+		if (maxLiveOrders <= 0) {
+			throw new IllegalArgumentException("max live orders must be greater than zero");
+		}
+		this.liveIds = new long[maxLiveOrders];
+		this.liveSecurities = new int[maxLiveOrders];
+		this.liveBuying = new boolean[maxLiveOrders];
+		this.liveHead = 0;
+		this.liveCount = 0;
+		return this;
+	}
+
+	/**
+	 * @return
+	 * 		the ids of the securities from the most to the least popular
+	 */
+	public List<String> getSecurityIds() {
+		return Arrays.asList(securityIds);
+	}
+
+	/**
+	 * @return
+	 * 		the next command of the flow, at a later or equal time than the previous one
+	 */
+	public RecordedCommand next() {
+		time = nextArrival();
+		int pick = random.nextInt(limitWeight + marketWeight + amendWeight + cancelWeight);
+		if (pick < limitWeight + marketWeight || liveCount == 0) {
+			if (liveCount == liveIds.length) {
+				return cancel(0);
+			}
+			return add(pick >= limitWeight && pick < limitWeight + marketWeight ? OrderType.MARKET_ORDER
+					: OrderType.LIMIT_ORDER);
+		}
+		int live = random.nextInt(liveCount);
+		return pick < limitWeight + marketWeight + amendWeight ? amend(live) : cancel(live);
+	}
+
+	/**
+	 * @return
+	 * 		the next commands of the flow
+	 */
+	public List<RecordedCommand> next(int count) {
+		List<RecordedCommand> commands = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			commands.add(next());
+		}
+		return commands;
+	}
+
+	/**
+	 * Writes the next commands of the flow to a file in the format of OrderFlowRecorder.
+	 */
+	public void write(Path file, int count) throws IOException {
+		if (file.getParent() != null) {
+			Files.createDirectories(file.getParent());
+		}
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			for (int i = 0; i < count; i++) {
+				writer.write(JSON.writeValueAsString(next()));
+				writer.newLine();
+			}
+		}
+	}
+
+	/**
+	 * Applies a command directly to a book, with the orderId of the command and its time as timestamp.
+	 * @return
+	 * 		false if the book rejected the command or found no order to amend or cancel
+	 */
+	public static boolean execute(RecordedCommand command, PriceTimePriorityOrderBook book) {
+		try {
+			switch (command.getAction()) {
+				case ADD:
+					book.place(command.getOrderId(), command.getClientId(), command.getSecurityId(), command.getUnits(),
+							command.getPrice(), command.getIsBuying(), command.getOrderType(), command.getTime());
+					return true;
+				case UPDATE:
+					return book.amend(command.getOrderId(), command.getUnits(), command.getPrice(),
+							command.getTime()) != null;
+				case CANCEL:
+					return book.cancelOrder(command.getOrderId());
+				default:
+					return false;
+			}
+		} catch (IllegalArgumentException | TradeException e) {
+			// self-trades and invalid amendments, rejected as the engine would
+			return false;
+		}
+	}
+
+	private RecordedCommand add(OrderType orderType) {
+		int security = security();
+		boolean buying = random.nextBoolean();
+		long mid = walk(security);
+		long price = 0;
+		if (orderType == OrderType.LIMIT_ORDER) {
+			price = limitPrice(mid, buying);
+		}
+		long orderId = nextOrderId++;
+		if (orderType == OrderType.LIMIT_ORDER) {
+			int slot = (liveHead + liveCount++) % liveIds.length;
+			liveIds[slot] = orderId;
+			liveSecurities[slot] = security;
+			liveBuying[slot] = buying;
+		}
+		return RecordedCommand.add(time, orderId, clientIds[random.nextInt(clientIds.length)], securityIds[security],
+				units(), price, buying, orderType);
+	}
+
+	/**
+	 * @param live
+	 * 			position of the order among the live orders, 0 for the oldest
+	 */
+	private RecordedCommand amend(int live) {
+		int slot = (liveHead + live) % liveIds.length;
+		int security = liveSecurities[slot];
+		long price = random.nextBoolean() ? 0 : limitPrice(walk(security), liveBuying[slot]);
+		return RecordedCommand.update(time, liveIds[slot], securityIds[security], units(), price);
+	}
+
+	private RecordedCommand cancel(int live) {
+		int slot = (liveHead + live) % liveIds.length;
+		long orderId = liveIds[slot];
+		// the oldest order takes the place of the cancelled one
+		liveIds[slot] = liveIds[liveHead];
+		liveSecurities[slot] = liveSecurities[liveHead];
+		liveBuying[slot] = liveBuying[liveHead];
+		liveHead = (liveHead + 1) % liveIds.length;
+		liveCount--;
+		return RecordedCommand.cancel(time, orderId);
+	}
+
+	private int security() {
+		int index = Arrays.binarySearch(popularity, random.nextDouble());
+		return Math.min(index >= 0 ? index : -index - 1, popularity.length - 1);
+	}
+
+	/**
+	 * Moves the mid of a security one tick up, down or not at all.
+	 * @return
+	 * 		the new mid
+	 */
+	private long walk(int security) {
+		long mid = Math.max(MIN_MID, mids[security] + random.nextInt(3) - 1);
+		mids[security] = mid;
+		return mid;
+	}
+
+	private long limitPrice(long mid, boolean buying) {
+		long ticks = 1 + random.nextInt(maxPassiveTicks);
+		boolean marketable = random.nextDouble() < marketableShare;
+		return buying == marketable ? mid + ticks : Math.max(1, mid - ticks);
+	}
+
+	private long units() {
+		return (long) lotSize * (1 + random.nextInt(maxLots));
+	}
+
+	/**
+	 * @return
+	 * 		time of the next arrival in microseconds, the process switching between calm and burst at stateEnd
+	 */
+	private long nextArrival() {
+		long now = time;
+		while (true) {
+			if (stateEnd < now) {
+				stateEnd = now + exponential(bursting ? meanBurstMicros : meanCalmMicros);
+			}
+			double rate = bursting ? ratePerSecond * burstFactor : ratePerSecond;
+			long arrival = now + exponential(MICROS_PER_SECOND / rate);
+			if (arrival <= stateEnd) {
+				return arrival;
+			}
+			// memoryless: the arrivals after the switch are drawn again at the new rate
+			now = stateEnd;
+			bursting = !bursting;
+			stateEnd = -1;
+		}
+	}
+
+	private long exponential(double mean) {
+		return (long) (-mean * Math.log(1 - random.nextDouble()));
+	}
+}
@@ -0,0 +1,166 @@
+package com.example.orderbook.replay;
+
+import com.example.orderbook.model.request.OrderType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the commands received by OrderBookService to a file, one RecordedCommand as JSON per line (NDJSON),
+ * for OrderFlowReplayer to play them again.
+ *
+ * Commands are recorded in the order they are handed to the engine, the commands of concurrent callers are
+ * serialized by the recorder. The file is buffered and only complete once the recorder is closed.
+ */
+public class OrderFlowRecorder implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(OrderFlowRecorder.class);
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	/**
+	 * Recorder that records nothing.
+	 */
+	public static final OrderFlowRecorder NONE = new OrderFlowRecorder();
+
+	private final Path file;
+	private final BufferedWriter writer;
+	private final ObjectWriter json = MAPPER.writerFor(RecordedCommand.class);
+	private final long start = System.nanoTime();
+	private long recorded;
+	private boolean failed;
+
+	private OrderFlowRecorder() {
+		this.file = null;
+		this.writer = null;
+	}
+
+	/**
+	 * @param file
+	 * 			the recording, replaced if it exists
+	 */
+	public OrderFlowRecorder(Path file) throws IOException {
+		if (file.getParent() != null) {
+			Files.createDirectories(file.getParent());
+		}
+		this.file = file;
+		this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		logger.info("recording the order flow to {}", file);
+	}
+
+	public boolean isEnabled() {
+		return writer != null;
+	}
+
+	/**
+	 * @param orderId
+	 * 			the orderId given to the order
+	 * @param price
+	 * 			limit price in ticks, 0 for a market order
+	 */
+	public synchronized void recordAdd(long orderId, String clientId, String securityId, long units, long price, boolean buying,
+						  OrderType orderType) {
+		if (writer != null) {
+			write(RecordedCommand.add(now(), orderId, clientId, securityId, units, price, buying, orderType));
+		}
+	}
+
+	/**
+	 * @param securityId
+	 * 			security of the order when known, null otherwise
+	 * @param price
+	 * 			new price in ticks, 0 to keep the price of the order
+	 */
+	public synchronized void recordUpdate(long orderId, String securityId, long units, long price) {
+		if (writer != null) {
+			write(RecordedCommand.update(now(), orderId, securityId, units, price));
+		}
+	}
+
+	/**
+	 * @param securityId
+	 * 			security the order is expected to rest on, null when not given
+	 * @param value
+	 * 			new decimal price, converted by the engine with the scale of the security of the order
+	 */
+	public synchronized void recordUpdateValue(long orderId, String securityId, long units, double value) {
+		if (writer != null) {
+			write(RecordedCommand.updateValue(now(), orderId, securityId, units, value));
+		}
+	}
+
+	public synchronized void recordCancel(long orderId) {
+		if (writer != null) {
+			write(RecordedCommand.cancel(now(), orderId));
+		}
+	}
+
+	/**
+	 * @return
+	 * 		number of commands recorded so far
+	 */
+	public synchronized long getRecordedCount() {
+		return recorded;
+	}
+
+	/**
+	 * Writes the commands still buffered and closes the file.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (writer != null) {
+			writer.close();
+			logger.info("recorded {} commands to {}", recorded, file);
+		}
+	}
+
+	/**
+	 * @return
+	 * 		the commands of a recording, in recording order
+	 */
+	public static List<RecordedCommand> read(Path file) throws IOException {
+		List<RecordedCommand> commands = new ArrayList<>();
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				if (!line.trim().isEmpty()) {
+					commands.add(MAPPER.readValue(line, RecordedCommand.class));
+				}
+			}
+		}
+		return commands;
+	}
+
+	private long now() {
+		return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+	}
+
+	/**
+	 * A command that cannot be written stops the recording, the commands after it would not replay the same.
+	 */
+	private void write(RecordedCommand command) {
+		if (failed) {
+			return;
+		}
+		try {
+			writer.write(json.writeValueAsString(command));
+			writer.newLine();
+			recorded++;
+		} catch (IOException e) {
+			failed = true;
+			logger.error("recording to {} failed, the commands are no longer recorded", file, e);
+		}
+	}
+}
@@ -0,0 +1,307 @@
+package com.example.orderbook.replay;
+
+import com.example.orderbook.metrics.LatencyHistogram;
+import com.example.orderbook.model.LatencyStats;
+import com.example.orderbook.model.request.BatchCommand;
+import com.example.orderbook.service.EngineSettings;
+import com.example.orderbook.service.MarketDataFeed;
+import com.example.orderbook.service.MatchingEngine;
+import com.example.orderbook.service.OrderBookService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a recording of OrderFlowRecorder again, against an OrderBookService in process or an application over HTTP:
+ * <pre>
+ * java -cp target/classes com.example.orderbook.replay.OrderFlowReplayer recording.ndjson [speed] [target] [runs]
+ * </pre>
+ * speed 1 keeps the timing of the recording, 10 plays it ten times faster and 0 as fast as possible (default).
+ * target is the url of an application, e.g. http://localhost:8080, or in-process (default) for a new MatchingEngine
+ * of 4 shards per run. Each run prints its throughput, latency percentiles and the digests of its outcome,
+ * in process every run after the first must produce the same digests.
+ *
+ * The commands are sent one after the other, each as a batch of one command, waiting for its result. The UPDATEs
+ * and CANCELs of the recording are sent to the orderId the run gave to the order of the recording, so a replay does
+ * not depend on the orderIds of the engine, those of orders created before the recording started find no order.
+ * Paced runs measure the latency of a command from the time it was due, so a command delayed by the previous one
+ * counts its wait.
+ *
+ * Two digests qualify a run: the trades digest covers the outcome of every command (accepted, filled units and value,
+ * rested), the book digest the orders resting at the end, in the order of getOrders. Neither covers times.
+ */
+public class OrderFlowReplayer {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	/** sent for an order the recording did not create, found by no engine so every run gets the same outcome */
+	private static final long UNKNOWN_ORDER = Long.MAX_VALUE;
+
+	private final List<RecordedCommand> commands;
+	private final double speed;
+
+	/**
+	 * @param speed
+	 * 			factor applied to the timing of the recording, 0 to send the commands as fast as possible
+	 */
+	public OrderFlowReplayer(List<RecordedCommand> commands, double speed) {
+		if (speed < 0) {
+			throw new IllegalArgumentException("speed must not be negative");
+		}
+		this.commands = commands;
+		this.speed = speed;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 0) {
+			System.err.println("usage: OrderFlowReplayer recording.ndjson [speed] [url|in-process] [runs]");
+			System.exit(1);
+		}
+		OrderFlowReplayer replayer = new OrderFlowReplayer(OrderFlowRecorder.read(Paths.get(args[0])),
+				args.length > 1 ? Double.parseDouble(args[1]) : 0);
+		String target = args.length > 2 ? args[2] : "in-process";
+		int runs = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+		Result first = null;
+		for (int run = 1; run <= runs; run++) {
+			Result result;
+			if ("in-process".equals(target)) {
+				MatchingEngine engine = new MatchingEngine(new EngineSettings());
+				engine.start();
+				try {
+					result = replayer.replay(inProcess(new OrderBookService(engine, new MarketDataFeed())));
+				} finally {
+					engine.stop();
+				}
+			} else {
+				result = replayer.replay(http(target));
+			}
+			System.out.println("run " + run + ": " + result);
+			if (first == null) {
+				first = result;
+			} else if (!result.isIdenticalTo(first)) {
+				System.out.println("run " + run + " differs from run 1");
+				System.exit(2);
+			}
+		}
+	}
+
+	/**
+	 * Where the commands are replayed.
+	 */
+	public interface Target {
+
+		/**
+		 * @return
+		 * 		the BatchResult of the command as JSON
+		 */
+		JsonNode submit(BatchCommand command) throws IOException;
+
+		/**
+		 * @return
+		 * 		the resting orders as JSON, as listed by getOrders
+		 */
+		JsonNode orders() throws IOException;
+	}
+
+	public static Target inProcess(OrderBookService service) {
+		return new Target() {
+			@Override
+			public JsonNode submit(BatchCommand command) {
+				return MAPPER.valueToTree(service.submitBatch(Collections.singletonList(command)).get(0));
+			}
+
+			@Override
+			public JsonNode orders() {
+				return MAPPER.valueToTree(service.listOrders());
+			}
+		};
+	}
+
+	/**
+	 * @param url
+	 * 			base url of the application, e.g. http://localhost:8080
+	 */
+	public static Target http(String url) {
+		String base = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+		return new Target() {
+			@Override
+			public JsonNode submit(BatchCommand command) throws IOException {
+				HttpURLConnection connection = (HttpURLConnection) new URL(base + "/batch").openConnection();
+				connection.setRequestMethod("POST");
+				connection.setRequestProperty("Content-Type", "application/json");
+				connection.setDoOutput(true);
+				try (OutputStream out = connection.getOutputStream()) {
+					out.write(MAPPER.writeValueAsBytes(Collections.singletonList(command)));
+				}
+				return read(connection).get(0);
+			}
+
+			@Override
+			public JsonNode orders() throws IOException {
+				return read((HttpURLConnection) new URL(base + "/getOrders").openConnection());
+			}
+		};
+	}
+
+	private static JsonNode read(HttpURLConnection connection) throws IOException {
+		int status = connection.getResponseCode();
+		if (status != HttpURLConnection.HTTP_OK) {
+			throw new IOException("HTTP " + status + " from " + connection.getURL());
+		}
+		try (InputStream in = connection.getInputStream()) {
+			return MAPPER.readTree(in);
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	/**
+	 * Sends every command of the recording to a target, then reads the resting orders.
+	 */
+	public Result replay(Target target) throws IOException {
+		MessageDigest trades = sha256();
+		LatencyHistogram latencies = new LatencyHistogram();
+		// orderIds of the recording to those of this run, and the security of each order for its amendments
+		Map<Long, Long> orderIds = new HashMap<>();
+		Map<Long, Long> recordedIds = new HashMap<>();
+		Map<Long, String> securities = new HashMap<>();
+		int rejected = 0;
+		long start = System.nanoTime();
+		for (RecordedCommand command : commands) {
+			long due = speed == 0 ? System.nanoTime() : start + (long) (command.getTime() * 1000 / speed);
+			for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+				LockSupport.parkNanos(wait);
+			}
+			long sent = speed == 0 ? System.nanoTime() : due;
+			long orderId = orderIds.getOrDefault(command.getOrderId(), UNKNOWN_ORDER);
+			String securityId = command.getSecurityId() != null ? command.getSecurityId()
+					: securities.get(command.getOrderId());
+			JsonNode result = target.submit(command.toBatchCommand(orderId, securityId));
+			latencies.record(System.nanoTime() - sent);
+
+			boolean accepted = result.path("accepted").asBoolean();
+			if (!accepted) {
+				rejected++;
+			}
+			if (command.getAction() == BatchCommand.Action.ADD && result.hasNonNull("orderId")) {
+				long newId = result.path("orderId").asLong();
+				orderIds.put(command.getOrderId(), newId);
+				recordedIds.put(newId, command.getOrderId());
+				securities.put(command.getOrderId(), command.getSecurityId());
+			}
+			update(trades, command.getAction() + " " + accepted + " " + result.path("filledUnits").asLong() + " "
+					+ result.path("value").asDouble() + " " + result.path("rested").asBoolean());
+		}
+		long elapsed = System.nanoTime() - start;
+
+		MessageDigest book = sha256();
+		for (JsonNode order : target.orders()) {
+			long orderId = order.path("orderId").asLong();
+			update(book, recordedIds.getOrDefault(orderId, orderId) + " " + order.path("clientId").asText() + " "
+					+ order.path("securityId").asText() + " " + order.path("units").asLong() + " "
+					+ order.path("price").asLong() + " " + order.path("buying").asBoolean());
+		}
+		return new Result(commands.size(), rejected, elapsed, latencies, hex(trades), hex(book));
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void update(MessageDigest digest, String line) {
+		digest.update(line.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) '\n');
+	}
+
+	private static String hex(MessageDigest digest) {
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest()) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * Throughput, latency and outcome of a run.
+	 */
+	public static class Result {
+
+		private final int commands;
+		private final int rejected;
+		private final long elapsedNanos;
+		private final LatencyStats latency;
+		private final String tradesDigest;
+		private final String bookDigest;
+
+		Result(int commands, int rejected, long elapsedNanos, LatencyHistogram latencies, String tradesDigest,
+			   String bookDigest) {
+			this.commands = commands;
+			this.rejected = rejected;
+			this.elapsedNanos = elapsedNanos;
+			this.latency = LatencyStats.of(latencies);
+			this.tradesDigest = tradesDigest;
+			this.bookDigest = bookDigest;
+		}
+
+		public int getCommands() {
+			return commands;
+		}
+
+		public int getRejected() {
+			return rejected;
+		}
+
+		public double getCommandsPerSecond() {
+			return elapsedNanos == 0 ? 0 : commands * 1e9 / elapsedNanos;
+		}
+
+		/**
+		 * @return
+		 * 		latency of the commands in nanoseconds
+		 */
+		public LatencyStats getLatency() {
+			return latency;
+		}
+
+		public String getTradesDigest() {
+			return tradesDigest;
+		}
+
+		public String getBookDigest() {
+			return bookDigest;
+		}
+
+		/**
+		 * @return
+		 * 		true if both runs had the same outcome for every command and left the same orders resting
+		 */
+		public boolean isIdenticalTo(Result other) {
+			return tradesDigest.equals(other.tradesDigest) && bookDigest.equals(other.bookDigest);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d commands, %d rejected, %.0f commands/s, latency us p50=%.1f p99=%.1f p99.9=%.1f "
+							+ "max=%.1f, trades %s, book %s", commands, rejected, getCommandsPerSecond(),
+					latency.getP50() / 1000.0, latency.getP99() / 1000.0, latency.getP999() / 1000.0,
+					latency.getMax() / 1000.0, tradesDigest, bookDigest);
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package com.example.orderbook.replay;
+
+import com.example.orderbook.model.PriceScale;
+import com.example.orderbook.model.request.BatchCommand;
+import com.example.orderbook.model.request.OrderType;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.io.Serializable;
+
+/**
+ * One inbound command of a recording, as received by OrderBookService: a new order (ADD), an amendment (UPDATE)
+ * or a cancellation (CANCEL), with the time it was received.
+ *
+ * Prices are in ticks of the security as the engine got them, an UPDATE of a batch keeps the decimal value it was
+ * received with instead, the engine converts it with the scale of the security of the order. The orderId of an ADD is the one the engine gave the
+ * order, so the UPDATEs and CANCELs of the recording can be pointed at the order the replay creates in its place.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RecordedCommand implements Serializable {
+	private static final long serialVersionUID = 2280418836530918453L;
+
+	private final long time;
+	private final BatchCommand.Action action;
+	private final long orderId;
+	private final String clientId;
+	private final String securityId;
+	private final long units;
+	private final long price;
+	private final Boolean isBuying;
+	private final OrderType orderType;
+	private final Double value;
+
+	public RecordedCommand(@JsonProperty("time") long time, @JsonProperty("action") BatchCommand.Action action,
+						   @JsonProperty("orderId") long orderId, @JsonProperty("clientId") String clientId,
+						   @JsonProperty("securityId") String securityId, @JsonProperty("units") long units,
+						   @JsonProperty("price") long price, @JsonProperty("isBuying") Boolean isBuying,
+						   @JsonProperty("orderType") OrderType orderType, @JsonProperty("value") Double value) {
+		this.time = time;
+		this.action = action;
+		this.orderId = orderId;
+		this.clientId = clientId;
+		this.securityId = securityId;
+		this.units = units;
+		this.price = price;
+		this.isBuying = isBuying;
+		this.orderType = orderType;
+		this.value = value;
+	}
+
+	public static RecordedCommand add(long time, long orderId, String clientId, String securityId, long units,
+									  long price, boolean buying, OrderType orderType) {
+		return new RecordedCommand(time, BatchCommand.Action.ADD, orderId, clientId, securityId, units, price, buying,
+				orderType, null);
+	}
+
+	/**
+	 * @param securityId
+	 * 			security of the order when the receiver knew it, null otherwise
+	 * @param price
+	 * 			new price in ticks, 0 to keep the price of the order
+	 */
+	public static RecordedCommand update(long time, long orderId, String securityId, long units, long price) {
+		return new RecordedCommand(time, BatchCommand.Action.UPDATE, orderId, null, securityId, units, price, null,
+				null, null);
+	}
+
+	/**
+	 * @param securityId
+	 * 			security the order is expected to rest on, null when not given
+	 * @param value
+	 * 			new decimal price
+	 */
+	public static RecordedCommand updateValue(long time, long orderId, String securityId, long units, double value) {
+		return new RecordedCommand(time, BatchCommand.Action.UPDATE, orderId, null, securityId, units, 0, null,
+				null, value);
+	}
+
+	public static RecordedCommand cancel(long time, long orderId) {
+		return new RecordedCommand(time, BatchCommand.Action.CANCEL, orderId, null, null, 0, 0, null, null, null);
+	}
+
+	/**
+	 * @param orderId
+	 * 			the orderId the command is sent with, ignored for an ADD
+	 * @param securityId
+	 * 			security of the order of an UPDATE to convert its price, null when unknown (default tick)
+	 * @return
+	 * 		the command as a command of a batch, with a decimal price
+	 */
+	public BatchCommand toBatchCommand(long orderId, String securityId) {
+		switch (action) {
+			case ADD:
+				return BatchCommand.add(clientId, this.securityId, Math.toIntExact(units),
+						orderType == OrderType.LIMIT_ORDER ? PriceScale.of(this.securityId).toValue(price) : null,
+						isBuying, orderType);
+			case UPDATE:
+				return new BatchCommand(BatchCommand.Action.UPDATE, orderId, null, securityId, Math.toIntExact(units),
+						value != null ? value : price == 0 ? null : PriceScale.of(securityId).toValue(price), null, null);
+			default:
+				return BatchCommand.cancel(orderId);
+		}
+	}
+
+	/**
+	 * @return
+	 * 		microseconds since the recording started
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	public BatchCommand.Action getAction() {
+		return action;
+	}
+
+	public long getOrderId() {
+		return orderId;
+	}
+
+	public String getClientId() {
+		return clientId;
+	}
+
+	public String getSecurityId() {
+		return securityId;
+	}
+
+	public long getUnits() {
+		return units;
+	}
+
+	/**
+	 * @return
+	 * 		price in ticks of the security
+	 */
+	public long getPrice() {
+		return price;
+	}
+
+	/**
+	 * @return
+	 * 		decimal price of an UPDATE recorded with one, null otherwise
+	 */
+	public Double getValue() {
+		return value;
+	}
+
+	public Boolean getIsBuying() {
+		return isBuying;
+	}
+
+	public OrderType getOrderType() {
+		return orderType;
+	}
+
+	@Override
+	public String toString() {
+		return action + " TIME=" + time + " ORDERID=" + orderId + " CLIENT=" + clientId + " SECURITY=" + securityId
+				+ " UNITS=" + units + " PRICE=" + price;
+	}
+}
@@ -0,0 +1,23 @@
+package com.example.orderbook.replay;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Recorder of the order flow received by OrderBookService, an OrderFlowRecorder writing to orderbook.recording.file
+ * when orderbook.recording.enabled is set, NONE otherwise. Spring closes the recorder on shutdown.
+ */
+@Configuration
+public class RecordingConfiguration {
+
+	@Bean
+	public OrderFlowRecorder orderFlowRecorder(@Value("${orderbook.recording.enabled:false}") boolean enabled,
+											   @Value("${orderbook.recording.file:recording.ndjson}") String file)
+			throws IOException {
+		return enabled ? new OrderFlowRecorder(Paths.get(file)) : OrderFlowRecorder.NONE;
+	}
+}
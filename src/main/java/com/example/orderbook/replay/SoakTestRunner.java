@@ -0,0 +1,252 @@
+package com.example.orderbook.replay;
+
+import com.example.orderbook.metrics.LatencyHistogram;
+import com.example.orderbook.service.MarketDataFeed;
+import com.example.orderbook.service.OrderStorage;
+import com.example.orderbook.service.PriceTimePriorityOrderBook;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Soak test of a PriceTimePriorityOrderBook under the synthetic flow of OrderFlowGenerator, as fast as one thread
+ * can apply it, for a given duration:
+ * <pre>
+ * java -Xmx2g -Dlogback.configurationFile=src/jmh/resources/logback-test.xml -cp target/classes:... \
+ *     com.example.orderbook.replay.SoakTestRunner [seconds] [securities] [clients] [seed] [HEAP|OFF_HEAP]
+ * </pre>
+ * seconds 600, 5000 securities, 1000 clients, seed 42 and HEAP by default; the logging configuration keeps the book
+ * from logging every order.
+ *
+ * Every interval prints the throughput, the heap in use and the heap left after the last collection, the resting
+ * orders and the collector pauses of the interval. The summary reports the steady state, the intervals after the
+ * warm-up: mean and lowest throughput, growth of the heap left after collection and the pause percentiles.
+ *
+ * The generator allocates its commands as it goes, so the collections seen include its garbage. Pauses come from the
+ * notifications of the collectors, the cycles of a concurrent collector are not counted as pauses.
+ */
+public class SoakTestRunner {
+
+	private static final long INTERVAL_SECONDS = 10;
+	private static final long BYTES_PER_MB = 1024 * 1024;
+
+	private final OrderFlowGenerator generator;
+	private final PriceTimePriorityOrderBook book;
+	private final long seconds;
+	private final long warmupSeconds;
+	/** pauses in nanoseconds, recorded by the notification thread of the collectors */
+	private final LatencyHistogram pauses = new LatencyHistogram();
+	/** pauses since the last interval was printed, guarded by pauses like the histogram */
+	private long intervalPauses;
+	private long intervalMaxPause;
+
+	/**
+	 * @param seconds
+	 * 			duration of the test
+	 * @param warmupSeconds
+	 * 			first part of the test left out of the steady state
+	 */
+	public SoakTestRunner(OrderFlowGenerator generator, PriceTimePriorityOrderBook book, long seconds,
+						  long warmupSeconds) {
+		if (seconds <= 0 || warmupSeconds < 0 || warmupSeconds >= seconds) {
+			throw new IllegalArgumentException("the test must last longer than its warm-up");
+		}
+		this.generator = generator;
+		this.book = book;
+		this.seconds = seconds;
+		this.warmupSeconds = warmupSeconds;
+	}
+
+	public static void main(String[] args) {
+		long seconds = args.length > 0 ? Long.parseLong(args[0]) : 600;
+		OrderFlowGenerator generator = new OrderFlowGenerator(args.length > 3 ? Long.parseLong(args[3]) : 42,
+				args.length > 1 ? Integer.parseInt(args[1]) : 5000,
+				args.length > 2 ? Integer.parseInt(args[2]) : 1000);
+		OrderStorage storage = args.length > 4 ? OrderStorage.of(args[4]) : OrderStorage.HEAP;
+		PriceTimePriorityOrderBook book = new PriceTimePriorityOrderBook(
+				PriceTimePriorityOrderBook.DEFAULT_MARKET_PROTECTION_BPS, new MarketDataFeed(), 0, storage);
+		System.out.println(new SoakTestRunner(generator, book, seconds, Math.min(60, seconds / 5)).run());
+	}
+
+	/**
+	 * Applies the flow until the duration is over, printing each interval.
+	 */
+	public Result run() {
+		List<NotificationEmitter> emitters = new ArrayList<>();
+		NotificationListener listener = this::onCollection;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			if (collector instanceof NotificationEmitter) {
+				((NotificationEmitter) collector).addNotificationListener(listener, null, null);
+				emitters.add((NotificationEmitter) collector);
+			}
+		}
+		try {
+			return soak();
+		} finally {
+			for (NotificationEmitter emitter : emitters) {
+				try {
+					emitter.removeNotificationListener(listener);
+				} catch (Exception e) {
+					// the listener goes with the runner
+				}
+			}
+		}
+	}
+
+	private Result soak() {
+		long start = System.nanoTime();
+		long end = start + TimeUnit.SECONDS.toNanos(seconds);
+		long steadyStart = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+		long intervalNanos = TimeUnit.SECONDS.toNanos(Math.max(1, Math.min(INTERVAL_SECONDS, seconds / 10)));
+		long intervalStart = start;
+		long intervalCommands = 0;
+		Result result = new Result();
+		for (long now = start; now < end; ) {
+			// the clock is read every 1024 commands
+			for (int i = 0; i < 1024; i++) {
+				OrderFlowGenerator.execute(generator.next(), book);
+			}
+			intervalCommands += 1024;
+			now = System.nanoTime();
+			if (now - intervalStart >= intervalNanos || now >= end) {
+				long pauseCount;
+				long maxPause;
+				synchronized (pauses) {
+					pauseCount = intervalPauses;
+					maxPause = intervalMaxPause;
+					intervalPauses = 0;
+					intervalMaxPause = 0;
+				}
+				double throughput = intervalCommands * 1e9 / (now - intervalStart);
+				long liveHeap = heapAfterCollection();
+				boolean steady = intervalStart >= steadyStart;
+				System.out.println(String.format(Locale.ROOT, "%5ds %10.0f commands/s  heap %5d MB  after gc %5d MB  "
+								+ "resting %8d  gc pauses %3d max %4.1f ms%s",
+						TimeUnit.NANOSECONDS.toSeconds(now - start), throughput, heapUsed() / BYTES_PER_MB,
+						liveHeap / BYTES_PER_MB, book.getIndexedOrderCount(), pauseCount, maxPause / 1e6,
+						steady ? "" : "  (warm-up)"));
+				if (steady) {
+					result.addInterval(throughput, liveHeap, now - intervalStart);
+				}
+				intervalStart = now;
+				intervalCommands = 0;
+			}
+		}
+		synchronized (pauses) {
+			result.pauses.add(pauses);
+		}
+		return result;
+	}
+
+	private void onCollection(Notification notification, Object handback) {
+		if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+			return;
+		}
+		GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from(
+				(CompositeData) notification.getUserData());
+		if (info.getGcAction().toLowerCase(Locale.ROOT).contains("concurrent")
+				|| info.getGcName().toLowerCase(Locale.ROOT).contains("cycles")) {
+			return;
+		}
+		long pause = TimeUnit.MILLISECONDS.toNanos(info.getGcInfo().getDuration());
+		synchronized (pauses) {
+			pauses.record(pause);
+			intervalPauses++;
+			intervalMaxPause = Math.max(intervalMaxPause, pause);
+		}
+	}
+
+	private static long heapUsed() {
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	/**
+	 * @return
+	 * 		bytes of the heap pools in use right after their last collection, what the collector could not free
+	 */
+	private static long heapAfterCollection() {
+		long used = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			MemoryUsage usage = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+			if (usage != null) {
+				used += usage.getUsed();
+			}
+		}
+		return used;
+	}
+
+	/**
+	 * Steady state of a soak test, the intervals after the warm-up.
+	 */
+	public static class Result {
+
+		private final LatencyHistogram pauses = new LatencyHistogram();
+		private int intervals;
+		private double throughputSum;
+		private double minThroughput = Double.MAX_VALUE;
+		private long firstLiveHeap;
+		private long lastLiveHeap;
+		private long steadyNanos;
+
+		void addInterval(double throughput, long liveHeap, long nanos) {
+			if (intervals++ == 0) {
+				firstLiveHeap = liveHeap;
+			}
+			lastLiveHeap = liveHeap;
+			throughputSum += throughput;
+			minThroughput = Math.min(minThroughput, throughput);
+			steadyNanos += nanos;
+		}
+
+		/**
+		 * @return
+		 * 		mean throughput of the steady state intervals
+		 */
+		public double getCommandsPerSecond() {
+			return intervals == 0 ? 0 : throughputSum / intervals;
+		}
+
+		public double getMinCommandsPerSecond() {
+			return intervals == 0 ? 0 : minThroughput;
+		}
+
+		/**
+		 * @return
+		 * 		growth of the heap left after collection over the steady state, in bytes
+		 */
+		public long getHeapGrowth() {
+			return lastLiveHeap - firstLiveHeap;
+		}
+
+		/**
+		 * @return
+		 * 		collector pauses of the whole test, in nanoseconds
+		 */
+		public LatencyHistogram getPauses() {
+			return pauses;
+		}
+
+		@Override
+		public String toString() {
+			double minutes = steadyNanos / 6e10;
+			return String.format(Locale.ROOT, "steady state: %.0f commands/s (lowest interval %.0f), heap after gc "
+							+ "grew %d MB (%.1f MB/min), gc pauses %d total %.0f ms p99 %.1f ms max %.1f ms",
+					getCommandsPerSecond(), getMinCommandsPerSecond(), getHeapGrowth() / BYTES_PER_MB,
+					minutes == 0 ? 0 : getHeapGrowth() / (double) BYTES_PER_MB / minutes, pauses.getCount(),
+					pauses.getMean() * pauses.getCount() / 1e6, pauses.getValueAtPercentile(99) / 1e6,
+					pauses.getMax() / 1e6);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package com.example.orderbook.service;
+
+/**
+ * One side (bids or asks) of the book of a security as seen by PriceTimePriorityOrderBook: a ladder of price levels
+ * with the units and number of orders resting at each price, whatever stores the orders themselves.
+ *
+ * Levels are addressed by their distance from the top of the book, 0 being the best price.
+ * The orders of a side are reached through the OrderStore that created it.
+ */
+interface BookSide {
+
+	boolean isBuying();
+
+	boolean isEmpty();
+
+	/**
+	 * @return
+	 * 		number of resting orders on this side
+	 */
+	int size();
+
+	/**
+	 * @return
+	 * 		number of distinct price levels on this side
+	 */
+	int depth();
+
+	/**
+	 * @param index
+	 * 			0 for the best level, 1 for the next best one and so on
+	 * @return
+	 * 		the price of the level in ticks
+	 */
+	long levelPrice(int index);
+
+	/**
+	 * @return
+	 * 		sum of the units resting at the level
+	 */
+	long levelQuantity(int index);
+
+	/**
+	 * @return
+	 * 		number of orders resting at the level
+	 */
+	int levelOrders(int index);
+
+	/**
+	 * @param price
+	 * 			price in ticks
+	 * @return
+	 * 		the index of the level of the price, -1 if no order rests at that price
+	 */
+	int levelOf(long price);
+
+	/**
+	 * @param price
+	 * 			price of a level that just changed, possibly removed
+	 * @return
+	 * 		true if the level is the best one of this side or was better than the remaining best one
+	 */
+	boolean isAtOrBetterThanBest(long price);
+
+	/**
+	 * @param client
+	 * 			number of the client (see SymbolRegistry), negative for an unknown client
+	 * @return
+	 * 		true if the client has at least one order resting on this side
+	 */
+	boolean hasClient(int client);
+}
@@ -0,0 +1,306 @@
+package com.example.orderbook.service;
+
+import com.example.orderbook.model.Order;
+import com.example.orderbook.model.request.OrderType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Point-in-time view of the resting orders of a book, for queries.
+ *
+ * The matching thread captures the orders field by field into flat arrays between two commands, one pass over the
+ * book without creating an Order per order, and hands the view out. The view is immutable, so a reader pages through
+ * it, creates the Orders of a page and serializes them on its own thread while matching goes on. The orders are
+ * listed as by getAllOrders: every buy order then every sell order, each side in priority order, security by security.
+ */
+public final class BookView {
+
+	private final long id;
+	private final long takenAt;
+	private final int size;
+	private final int buyCount;
+	private final long[] orderIds;
+	private final String[] clientIds;
+	private final String[] securityIds;
+	private final long[] units;
+	private final long[] prices;
+	private final OrderType[] orderTypes;
+	private final long[] priorityTimes;
+	private final long[] displayTimes;
+
+	private BookView(long id, long takenAt, Builder builder) {
+		this.id = id;
+		this.takenAt = takenAt;
+		this.size = builder.size;
+		this.buyCount = builder.buyCount < 0 ? builder.size : builder.buyCount;
+		this.orderIds = builder.orderIds;
+		this.clientIds = builder.clientIds;
+		this.securityIds = builder.securityIds;
+		this.units = builder.units;
+		this.prices = builder.prices;
+		this.orderTypes = builder.orderTypes;
+		this.priorityTimes = builder.priorityTimes;
+		this.displayTimes = builder.displayTimes;
+	}
+
+	/**
+	 * Puts the views of several shards together, taken at one cut of the command flow (see MatchingEngine.viewAll).
+	 * @param id
+	 * 			id of the merged view
+	 * @param limit
+	 * 			most orders kept
+	 * @return
+	 * 		the buy orders of every view followed by their sell orders, the first limit of them
+	 */
+	static BookView merge(long id, List<BookView> views, int limit) {
+		long total = 0;
+		long takenAt = 0;
+		for (BookView view : views) {
+			total += view.size;
+			takenAt = Math.max(takenAt, view.takenAt);
+		}
+		Builder builder = new Builder((int) Math.min(total, limit));
+		for (BookView view : views) {
+			builder.copy(view, 0, view.buyCount, limit);
+		}
+		builder.endBuys();
+		for (BookView view : views) {
+			builder.copy(view, view.buyCount, view.size, limit);
+		}
+		return new BookView(id, takenAt, builder);
+	}
+
+	/**
+	 * @return
+	 * 		the same orders under another id
+	 */
+	BookView withId(long id) {
+		// the columns are never written once captured, they are shared
+		Builder builder = new Builder(0);
+		builder.size = size;
+		builder.buyCount = buyCount;
+		builder.orderIds = orderIds;
+		builder.clientIds = clientIds;
+		builder.securityIds = securityIds;
+		builder.units = units;
+		builder.prices = prices;
+		builder.orderTypes = orderTypes;
+		builder.priorityTimes = priorityTimes;
+		builder.displayTimes = displayTimes;
+		return new BookView(id, takenAt, builder);
+	}
+
+	/**
+	 * @return
+	 * 		id of the view, given by the MatchingEngine
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * @return
+	 * 		epoch milliseconds of the capture
+	 */
+	public long getTakenAt() {
+		return takenAt;
+	}
+
+	/**
+	 * @return
+	 * 		number of orders in the view
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return
+	 * 		number of buy orders, listed before the sell orders
+	 */
+	public int getBuyCount() {
+		return buyCount;
+	}
+
+	/**
+	 * @param index
+	 * 			position of the order in the view
+	 * @return
+	 * 		a new Order with the state of the order at the time of the view
+	 */
+	public Order order(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("order " + index + " of a view of " + size);
+		}
+		Order order = new Order(orderIds[index], clientIds[index], securityIds[index], units[index], prices[index],
+				index < buyCount, orderTypes[index], priorityTimes[index]);
+		order.setDisplayTime(displayTimes[index]);
+		return order;
+	}
+
+	/**
+	 * @param offset
+	 * 			position of the first order of the page
+	 * @param limit
+	 * 			maximum number of orders of the page
+	 * @return
+	 * 		the orders of the page, empty past the end of the view
+	 */
+	public List<Order> orders(int offset, int limit) {
+		if (offset < 0 || limit < 0) {
+			throw new IllegalArgumentException("offset and limit must not be negative");
+		}
+		int end = (int) Math.min(size, (long) offset + limit);
+		if (offset >= end) {
+			return Collections.emptyList();
+		}
+		List<Order> orders = new ArrayList<>(end - offset);
+		for (int i = offset; i < end; i++) {
+			orders.add(order(i));
+		}
+		return orders;
+	}
+
+	/**
+	 * @return
+	 * 		every order of the view
+	 */
+	public List<Order> orders() {
+		return orders(0, size);
+	}
+
+	/*
+	 * columns of an order, read by the SnapshotStore writing a view without creating an Order per order
+	 */
+
+	long orderId(int index) {
+		return orderIds[index];
+	}
+
+	String clientId(int index) {
+		return clientIds[index];
+	}
+
+	String securityId(int index) {
+		return securityIds[index];
+	}
+
+	long units(int index) {
+		return units[index];
+	}
+
+	long price(int index) {
+		return prices[index];
+	}
+
+	OrderType orderType(int index) {
+		return orderTypes[index];
+	}
+
+	long priorityTime(int index) {
+		return priorityTimes[index];
+	}
+
+	long displayTime(int index) {
+		return displayTimes[index];
+	}
+
+	/**
+	 * Columns of a view being captured, grown as orders are added. Used by the matching thread only.
+	 */
+	static final class Builder {
+
+		private int size;
+		/** -1 while buy orders are added */
+		private int buyCount = -1;
+		private long[] orderIds;
+		private String[] clientIds;
+		private String[] securityIds;
+		private long[] units;
+		private long[] prices;
+		private OrderType[] orderTypes;
+		private long[] priorityTimes;
+		private long[] displayTimes;
+
+		/**
+		 * @param capacity
+		 * 			orders expected, the columns grow beyond
+		 */
+		Builder(int capacity) {
+			orderIds = new long[capacity];
+			clientIds = new String[capacity];
+			securityIds = new String[capacity];
+			units = new long[capacity];
+			prices = new long[capacity];
+			orderTypes = new OrderType[capacity];
+			priorityTimes = new long[capacity];
+			displayTimes = new long[capacity];
+		}
+
+		/**
+		 * Adds the current order of a store.
+		 */
+		void add(OrderStore store) {
+			int i = claim();
+			orderIds[i] = store.orderId();
+			clientIds[i] = store.clientId();
+			securityIds[i] = store.securityId();
+			units[i] = store.units();
+			prices[i] = store.price();
+			orderTypes[i] = store.orderType();
+			priorityTimes[i] = store.priorityTime();
+			displayTimes[i] = store.displayTime();
+		}
+
+		/**
+		 * @return
+		 * 		number of orders added so far
+		 */
+		int size() {
+			return size;
+		}
+
+		/**
+		 * The orders added from now on are sell orders.
+		 */
+		void endBuys() {
+			buyCount = size;
+		}
+
+		BookView build() {
+			return new BookView(0, System.currentTimeMillis(), this);
+		}
+
+		private void copy(BookView view, int from, int to, int limit) {
+			for (int j = from; j < to && size < limit; j++) {
+				int i = claim();
+				orderIds[i] = view.orderIds[j];
+				clientIds[i] = view.clientIds[j];
+				securityIds[i] = view.securityIds[j];
+				units[i] = view.units[j];
+				prices[i] = view.prices[j];
+				orderTypes[i] = view.orderTypes[j];
+				priorityTimes[i] = view.priorityTimes[j];
+				displayTimes[i] = view.displayTimes[j];
+			}
+		}
+
+		private int claim() {
+			if (size == orderIds.length) {
+				int capacity = Math.max(16, size << 1);
+				orderIds = Arrays.copyOf(orderIds, capacity);
+				clientIds = Arrays.copyOf(clientIds, capacity);
+				securityIds = Arrays.copyOf(securityIds, capacity);
+				units = Arrays.copyOf(units, capacity);
+				prices = Arrays.copyOf(prices, capacity);
+				orderTypes = Arrays.copyOf(orderTypes, capacity);
+				priorityTimes = Arrays.copyOf(priorityTimes, capacity);
+				displayTimes = Arrays.copyOf(displayTimes, capacity);
+			}
+			return size++;
+		}
+	}
+}
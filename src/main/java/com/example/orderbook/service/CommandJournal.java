@@ -0,0 +1,58 @@
+package com.example.orderbook.service;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Journaling stage of the matching pipeline, sees every valid command before it reaches the book.
+ */
+public interface CommandJournal {
+
+	/**
+	 * Journal that records nothing.
+	 */
+	CommandJournal NONE = new CommandJournal() {
+		@Override
+		public long append(int shardId, OrderCommand command) {
+			return 0;
+		}
+
+		@Override
+		public void flush(int shardId) {
+		}
+	};
+
+	/**
+	 * @param shardId
+	 * 			the shard whose pipeline journals the command
+	 * @param command
+	 * 			the command, only valid for the duration of the call
+	 * @return
+	 * 		sequence of the command in the journal of the shard, 0 if it is not journaled
+	 */
+	long append(int shardId, OrderCommand command);
+
+	/**
+	 * Called at the end of each batch of commands of a shard.
+	 */
+	void flush(int shardId);
+
+	/**
+	 * Hands the commands journaled by a shard back, in journal order, to rebuild its book on startup.
+	 * @param fromSequence
+	 * 			first sequence to replay, earlier commands are covered by a snapshot
+	 * @param consumer
+	 * 			called with a reused command
+	 * @return
+	 * 		sequence of the last command replayed, fromSequence - 1 if there was none
+	 */
+	default long replay(int shardId, long fromSequence, Consumer<OrderCommand> consumer) throws IOException {
+		return fromSequence - 1;
+	}
+
+	/**
+	 * Commands of a shard up to a sequence are covered by a snapshot, the journal may drop them.
+	 */
+	default void truncate(int shardId, long sequence) throws IOException {
+	}
+}
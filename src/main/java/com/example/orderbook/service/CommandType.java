@@ -0,0 +1,12 @@
+package com.example.orderbook.service;
+
+/**
+ * Kind of command flowing through the matching pipeline of a shard
+ */
+public enum CommandType {
+    ADD,
+    UPDATE,
+    CANCEL,
+    CANCEL_CLIENT,
+    QUERY
+}
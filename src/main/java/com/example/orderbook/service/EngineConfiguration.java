@@ -0,0 +1,38 @@
+package com.example.orderbook.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings of the MatchingEngine, from the orderbook.engine properties and the journal, snapshots, orderIds,
+ * market data feed and execution log of the application.
+ */
+@Configuration
+public class EngineConfiguration {
+
+	@Bean
+	public EngineSettings engineSettings(@Value("${orderbook.engine.shards:4}") int shards,
+										 @Value("${orderbook.engine.ring-size:4096}") int ringSize,
+										 @Value("${orderbook.engine.wait-strategy:BLOCKING}") String waitStrategy,
+										 @Value("${orderbook.market.protection-bps:500}") long marketProtectionBps,
+										 @Value("${orderbook.engine.order-pool-size:0}") int orderPoolSize,
+										 @Value("${orderbook.engine.order-storage:HEAP}") String orderStorage,
+										 @Value("${orderbook.metrics.enabled:true}") boolean metricsEnabled,
+										 CommandJournal journal, SnapshotStore snapshots, OrderIdService orderIds,
+										 MarketDataFeed marketData, ExecutionLog executionLog) {
+		return new EngineSettings()
+				.shards(shards)
+				.ringSize(ringSize)
+				.waitStrategy(waitStrategy)
+				.marketProtectionBps(marketProtectionBps)
+				.orderPoolSize(orderPoolSize)
+				.orderStorage(OrderStorage.of(orderStorage))
+				.metricsEnabled(metricsEnabled)
+				.journal(journal)
+				.snapshots(snapshots)
+				.orderIds(orderIds)
+				.marketData(marketData)
+				.executionLog(executionLog);
+	}
+}
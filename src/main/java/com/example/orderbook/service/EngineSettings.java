@@ -0,0 +1,190 @@
+package com.example.orderbook.service;
+
+/**
+ * Settings of a MatchingEngine: the shards, their books and the components they record to.
+ *
+ * Every setting has the default of application.properties, without journal, snapshots nor execution log, so an engine
+ * for a test or a benchmark only sets what it needs:
+ * <pre>
+ * new MatchingEngine(new EngineSettings().shards(2).ringSize(64))
+ * </pre>
+ * The application builds them from its properties and components in EngineConfiguration.
+ */
+public class EngineSettings {
+
+	private int shards = 4;
+	private int ringSize = 4096;
+	private String waitStrategy = "BLOCKING";
+	private long marketProtectionBps = PriceTimePriorityOrderBook.DEFAULT_MARKET_PROTECTION_BPS;
+	private int orderPoolSize;
+	private OrderStorage orderStorage = OrderStorage.HEAP;
+	private boolean metricsEnabled = true;
+	private CommandJournal journal = CommandJournal.NONE;
+	private SnapshotStore snapshots = SnapshotStore.NONE;
+	private OrderIdService orderIds = new OrderIdService();
+	private MarketDataFeed marketData;
+	private ExecutionLog executionLog = ExecutionLog.NONE;
+
+	/**
+	 * @param shards
+	 * 			number of single threaded matching shards, securities are hashed to a shard
+	 */
+	public EngineSettings shards(int shards) {
+		if (shards <= 0 || shards > OrderIdService.MAX_SHARDS) {
+			throw new IllegalArgumentException("orderbook.engine.shards must be between 1 and " + OrderIdService.MAX_SHARDS);
+		}
+		this.shards = shards;
+		return this;
+	}
+
+	/**
+	 * @param ringSize
+	 * 			command entries of the ring buffer of each shard, a power of two
+	 */
+	public EngineSettings ringSize(int ringSize) {
+		this.ringSize = ringSize;
+		return this;
+	}
+
+	/**
+	 * @param waitStrategy
+	 * 			how the pipeline stages wait for commands: BUSY_SPIN, YIELDING or BLOCKING (see WaitStrategy)
+	 */
+	public EngineSettings waitStrategy(String waitStrategy) {
+		this.waitStrategy = waitStrategy;
+		return this;
+	}
+
+	/**
+	 * @param marketProtectionBps
+	 * 			basis points away from the best opposite price a market order sweeps to at most
+	 */
+	public EngineSettings marketProtectionBps(long marketProtectionBps) {
+		this.marketProtectionBps = marketProtectionBps;
+		return this;
+	}
+
+	/**
+	 * @param orderPoolSize
+	 * 			orders pre-allocated by the book of each shard, 0 to allocate every order (see OrderPool)
+	 */
+	public EngineSettings orderPoolSize(int orderPoolSize) {
+		this.orderPoolSize = orderPoolSize;
+		return this;
+	}
+
+	/**
+	 * @param orderStorage
+	 * 			where the books keep their resting orders: HEAP or OFF_HEAP (see OrderStorage)
+	 */
+	public EngineSettings orderStorage(OrderStorage orderStorage) {
+		this.orderStorage = orderStorage;
+		return this;
+	}
+
+	/**
+	 * @param metricsEnabled
+	 * 			true for the shards to count the commands and measure their latencies, see MatchingEngine.getMetrics
+	 */
+	public EngineSettings metricsEnabled(boolean metricsEnabled) {
+		this.metricsEnabled = metricsEnabled;
+		return this;
+	}
+
+	/**
+	 * @param journal
+	 * 			write-ahead journal of the commands, see JournalConfiguration
+	 */
+	public EngineSettings journal(CommandJournal journal) {
+		this.journal = journal;
+		return this;
+	}
+
+	/**
+	 * @param snapshots
+	 * 			snapshots of the books, the books are recovered from them and the journal on start
+	 */
+	public EngineSettings snapshots(SnapshotStore snapshots) {
+		this.snapshots = snapshots;
+		return this;
+	}
+
+	/**
+	 * @param orderIds
+	 * 			generator of the orderIds, resumed after the recovered ones, a generator of the engine's own by default
+	 */
+	public EngineSettings orderIds(OrderIdService orderIds) {
+		this.orderIds = orderIds;
+		return this;
+	}
+
+	/**
+	 * @param marketData
+	 * 			feed the books publish their changes to, a feed of the engine's own by default
+	 */
+	public EngineSettings marketData(MarketDataFeed marketData) {
+		this.marketData = marketData;
+		return this;
+	}
+
+	/**
+	 * @param executionLog
+	 * 			audit trail of the executions of the books, see ExecutionLogConfiguration
+	 */
+	public EngineSettings executionLog(ExecutionLog executionLog) {
+		this.executionLog = executionLog;
+		return this;
+	}
+
+	public int getShards() {
+		return shards;
+	}
+
+	public int getRingSize() {
+		return ringSize;
+	}
+
+	public String getWaitStrategy() {
+		return waitStrategy;
+	}
+
+	public long getMarketProtectionBps() {
+		return marketProtectionBps;
+	}
+
+	public int getOrderPoolSize() {
+		return orderPoolSize;
+	}
+
+	public OrderStorage getOrderStorage() {
+		return orderStorage;
+	}
+
+	public boolean isMetricsEnabled() {
+		return metricsEnabled;
+	}
+
+	public CommandJournal getJournal() {
+		return journal;
+	}
+
+	public SnapshotStore getSnapshots() {
+		return snapshots;
+	}
+
+	public OrderIdService getOrderIds() {
+		return orderIds;
+	}
+
+	/**
+	 * @return
+	 * 		the feed of the settings, a new one each time none was set
+	 */
+	public MarketDataFeed getMarketData() {
+		return marketData != null ? marketData : new MarketDataFeed();
+	}
+
+	public ExecutionLog getExecutionLog() {
+		return executionLog;
+	}
+}
@@ -0,0 +1,69 @@
+package com.example.orderbook.service;
+
+/**
+ * Audit trail of what the books execute: orders resting, trades, cancellations, amendments and rejections,
+ * separate from the diagnostic logging of the classes.
+ *
+ * Each matching shard records its events through its own Recorder, called by the matching thread of the book
+ * with primitive values only, so an implementation can hand them to another thread without allocating
+ * (see AsyncExecutionLog). Events of the journal replayed on startup are not recorded again.
+ */
+public interface ExecutionLog {
+
+	/**
+	 * Log that records nothing.
+	 */
+	ExecutionLog NONE = (shardId, symbols) -> Recorder.NONE;
+
+	/**
+	 * @param shardId
+	 * 			the shard whose matching thread records through the returned recorder
+	 * @param symbols
+	 * 			names of the security and client numbers of the events
+	 * @return
+	 * 		the recorder of the shard, only to be used by its matching thread
+	 */
+	Recorder recorder(int shardId, SymbolRegistry symbols);
+
+	enum Event {
+		/** an order, or what remains of it after matching, rests in the book */
+		RESTED,
+		/** a taker order traded against a resting order, the counterparty */
+		TRADE,
+		/** a resting order was cancelled, or the unfilled remainder of a market order */
+		CANCELLED,
+		/** a resting order was amended to a new quantity and price */
+		AMENDED,
+		/** an order was rejected by the book, a client trading against itself */
+		REJECTED
+	}
+
+	/**
+	 * Records the events of one book, not thread safe.
+	 */
+	interface Recorder {
+
+		Recorder NONE = (event, security, orderId, client, buying, price, units, counterpartyOrderId,
+						 counterpartyClient) -> {
+		};
+
+		/**
+		 * @param security
+		 * 			number of the security (see SymbolRegistry)
+		 * @param client
+		 * 			number of the client of the order
+		 * @param buying
+		 * 			side of the order, of the taker for a TRADE
+		 * @param price
+		 * 			price in ticks of the security: of the order, of the execution for a TRADE
+		 * @param units
+		 * 			units rested, traded, cancelled or amended to
+		 * @param counterpartyOrderId
+		 * 			the resting order of a TRADE, 0 for the other events
+		 * @param counterpartyClient
+		 * 			number of the client of the resting order of a TRADE, SymbolRegistry.NONE for the other events
+		 */
+		void record(Event event, int security, long orderId, int client, boolean buying, long price, long units,
+					long counterpartyOrderId, int counterpartyClient);
+	}
+}
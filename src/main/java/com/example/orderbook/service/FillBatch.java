@@ -0,0 +1,135 @@
+package com.example.orderbook.service;
+
+import com.example.orderbook.model.ExecutionReport;
+import com.example.orderbook.model.Fill;
+import com.example.orderbook.model.Order;
+
+/**
+ * Reusable buffer collecting the fills of one incoming order while it sweeps the book.
+ *
+ * Fills are kept in parallel primitive arrays that only grow, so sweeping does not allocate per fill,
+ * the ExecutionReport handed to the caller is built once the sweep is over, from the fills and the fate of the order
+ * recorded by complete.
+ * Owned by one PriceTimePriorityOrderBook and cleared before every order, or copied into the entry of a command
+ * so the report is built off the matching thread, not thread safe.
+ */
+class FillBatch {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private long[] makerOrderIds = new long[INITIAL_CAPACITY];
+	private String[] makerClientIds = new String[INITIAL_CAPACITY];
+	private long[] prices = new long[INITIAL_CAPACITY];
+	private long[] units = new long[INITIAL_CAPACITY];
+	private int size;
+	private long filledUnits;
+	private long notional;
+	private long orderId;
+	private String securityId;
+	private boolean buying;
+	private long remainingUnits;
+	private boolean rested;
+
+	void clear() {
+		for (int i = 0; i < size; i++) {
+			makerClientIds[i] = null;
+		}
+		size = 0;
+		filledUnits = 0;
+		notional = 0;
+		securityId = null;
+	}
+
+	void add(long makerOrderId, String makerClientId, long price, long quantity) {
+		if (size == makerOrderIds.length) {
+			grow();
+		}
+		makerOrderIds[size] = makerOrderId;
+		makerClientIds[size] = makerClientId;
+		prices[size] = price;
+		units[size] = quantity;
+		size++;
+		filledUnits += quantity;
+		notional = Math.addExact(notional, Math.multiplyExact(price, quantity));
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	long getFilledUnits() {
+		return filledUnits;
+	}
+
+	long getNotional() {
+		return notional;
+	}
+
+	/**
+	 * Records the fate of the incoming order once its sweep is over.
+	 * @param order
+	 * 			the incoming order, its units being what remains after the sweep
+	 * @param rested
+	 * 			true if the remainder was queued in the book
+	 */
+	void complete(Order order, boolean rested) {
+		this.orderId = order.getOrderId();
+		this.securityId = order.getSecurityId();
+		this.buying = order.isBuying();
+		this.remainingUnits = order.getUnits();
+		this.rested = rested;
+	}
+
+	/**
+	 * Replaces the content of this batch by the one of another batch, growing only if that one holds more fills.
+	 */
+	void copyFrom(FillBatch other) {
+		clear();
+		while (makerOrderIds.length < other.size) {
+			grow();
+		}
+		System.arraycopy(other.makerOrderIds, 0, makerOrderIds, 0, other.size);
+		System.arraycopy(other.makerClientIds, 0, makerClientIds, 0, other.size);
+		System.arraycopy(other.prices, 0, prices, 0, other.size);
+		System.arraycopy(other.units, 0, units, 0, other.size);
+		size = other.size;
+		filledUnits = other.filledUnits;
+		notional = other.notional;
+		orderId = other.orderId;
+		securityId = other.securityId;
+		buying = other.buying;
+		remainingUnits = other.remainingUnits;
+		rested = other.rested;
+	}
+
+	/**
+	 * Copies the fills and the fate of the order recorded by complete into a report owned by the caller.
+	 */
+	ExecutionReport toReport() {
+		Fill[] fills = new Fill[size];
+		for (int i = 0; i < size; i++) {
+			fills[i] = new Fill(makerOrderIds[i], makerClientIds[i], prices[i], units[i]);
+		}
+		return new ExecutionReport(orderId, securityId, buying, fills, filledUnits, remainingUnits, notional, rested);
+	}
+
+	private void grow() {
+		int capacity = makerOrderIds.length << 1;
+		long[] grownIds = new long[capacity];
+		String[] grownClients = new String[capacity];
+		long[] grownPrices = new long[capacity];
+		long[] grownUnits = new long[capacity];
+		System.arraycopy(makerOrderIds, 0, grownIds, 0, size);
+		System.arraycopy(makerClientIds, 0, grownClients, 0, size);
+		System.arraycopy(prices, 0, grownPrices, 0, size);
+		System.arraycopy(units, 0, grownUnits, 0, size);
+		makerOrderIds = grownIds;
+		makerClientIds = grownClients;
+		prices = grownPrices;
+		units = grownUnits;
+	}
+}
@@ -0,0 +1,186 @@
+package com.example.orderbook.service;
+
+import com.example.orderbook.model.Order;
+import com.example.orderbook.model.request.OrderType;
+
+/**
+ * The HEAP OrderStore: Order objects queued in OrderNodes of the price levels of OrderBookSides,
+ * indexed by orderId in an OrderIndex.
+ *
+ * Without a pool the store keeps the instances it is given, so a resting order is the one the caller traded.
+ * With an OrderPool every order is copied into a pooled node, given back to the pool when the order leaves the book.
+ */
+final class HeapOrderStore implements OrderStore {
+
+	private final OrderIndex index = new OrderIndex();
+	/** nodes and orders reused for the resting orders, null when every order is allocated */
+	private final OrderPool pool;
+	private OrderNode current;
+
+	/**
+	 * @param poolSize
+	 * 			number of orders pre-allocated, 0 to keep the orders given to add
+	 */
+	HeapOrderStore(int poolSize) {
+		this.pool = poolSize == 0 ? null : new OrderPool(poolSize);
+	}
+
+	@Override
+	public BookSide newSide(boolean buying) {
+		return new OrderBookSide(buying);
+	}
+
+	@Override
+	public void add(BookSide side, Order order, int client, int security) {
+		OrderNode node;
+		if (pool == null) {
+			node = new OrderNode(order, null);
+		} else {
+			node = pool.acquire();
+			node.order.reset(order.getOrderId(), order.getClientId(), order.getSecurityId(), order.getUnits(),
+					order.getPrice(), order.isBuying(), order.getOrderType(), order.getPriorityTime());
+			node.order.setDisplayTime(order.getDisplayTime());
+		}
+		node.client = client;
+		node.security = security;
+		((OrderBookSide) side).add(node);
+		index.put(order.getOrderId(), node);
+	}
+
+	@Override
+	public int size() {
+		return index.size();
+	}
+
+	@Override
+	public void clear() {
+		if (pool != null) {
+			// every resting node is indexed, the sides linking them are dropped by the book
+			index.forEach(pool::release);
+		}
+		index.clear();
+		current = null;
+	}
+
+	/**
+	 * @return
+	 * 		number of orders the pool had no free node for, 0 without a pool
+	 */
+	long getPoolMisses() {
+		return pool == null ? 0 : pool.getMisses();
+	}
+
+	@Override
+	public boolean seek(long orderId) {
+		current = index.get(orderId);
+		return current != null;
+	}
+
+	@Override
+	public boolean seekLevel(BookSide side, int index) {
+		OrderBookSide orderBookSide = (OrderBookSide) side;
+		current = index < orderBookSide.depth() ? orderBookSide.levelAt(index).peek() : null;
+		return current != null;
+	}
+
+	@Override
+	public boolean seekClient(BookSide side, int client) {
+		current = ((OrderBookSide) side).clientOrders(client);
+		return current != null;
+	}
+
+	@Override
+	public boolean next() {
+		current = current.next;
+		return current != null;
+	}
+
+	@Override
+	public long orderId() {
+		return current.order.getOrderId();
+	}
+
+	@Override
+	public String clientId() {
+		return current.order.getClientId();
+	}
+
+	@Override
+	public String securityId() {
+		return current.order.getSecurityId();
+	}
+
+	@Override
+	public int client() {
+		return current.client;
+	}
+
+	@Override
+	public int security() {
+		return current.security;
+	}
+
+	@Override
+	public long units() {
+		return current.order.getUnits();
+	}
+
+	@Override
+	public long price() {
+		return current.order.getPrice();
+	}
+
+	@Override
+	public boolean isBuying() {
+		return current.order.isBuying();
+	}
+
+	@Override
+	public OrderType orderType() {
+		return current.order.getOrderType();
+	}
+
+	@Override
+	public long priorityTime() {
+		return current.order.getPriorityTime();
+	}
+
+	@Override
+	public long displayTime() {
+		return current.order.getDisplayTime();
+	}
+
+	@Override
+	public Order order() {
+		return pool == null ? current.order : new Order(current.order);
+	}
+
+	@Override
+	public void fill(BookSide side, long units) {
+		Order order = current.order;
+		order.setUnits(order.getUnits() - units);
+		current.level.reduce(units);
+		if (order.getUnits() == 0) {
+			remove(side);
+		}
+	}
+
+	@Override
+	public void reduce(BookSide side, long units, long displayTime) {
+		Order order = current.order;
+		current.level.reduce(order.getUnits() - units);
+		order.setUnits(units);
+		order.setDisplayTime(displayTime);
+	}
+
+	@Override
+	public void remove(BookSide side) {
+		OrderNode node = current;
+		current = null;
+		((OrderBookSide) side).remove(node);
+		index.remove(node.order.getOrderId(), node);
+		if (pool != null) {
+			pool.release(node);
+		}
+	}
+}
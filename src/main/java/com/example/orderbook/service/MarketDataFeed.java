@@ -0,0 +1,131 @@
+package com.example.orderbook.service;
+
+import com.example.orderbook.model.MarketDataEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Publishes the changes of the books to market data subscribers.
+ *
+ * The books publish from their matching threads, an event is only built while someone subscribes.
+ * Publishing never waits for a subscriber: events are queued per subscription and sent by a pool of
+ * delivery threads, level events of a subscriber that falls behind are conflated (see MarketDataSubscription).
+ */
+@Component
+public class MarketDataFeed {
+
+	public static final int DEFAULT_MAX_PENDING_TRADES = 10000;
+
+	/**
+	 * Receiver of the events of a subscription, called by one delivery thread at a time.
+	 */
+	public interface Sink {
+
+		/**
+		 * @param events
+		 * 			events in publication order, level events conflated
+		 * @throws IOException
+		 * 		when the subscriber is gone, the subscription is then closed
+		 */
+		void send(List<MarketDataEvent> events) throws IOException;
+
+		/**
+		 * The subscription is closed, by the subscriber or because it fell too far behind.
+		 */
+		void close(String reason);
+	}
+
+	private final Logger logger = LoggerFactory.getLogger(MarketDataFeed.class);
+
+	private final List<MarketDataSubscription> subscriptions = new CopyOnWriteArrayList<>();
+	private final int maxPendingTrades;
+	private ExecutorService delivery;
+
+	public MarketDataFeed() {
+		this(DEFAULT_MAX_PENDING_TRADES);
+	}
+
+	/**
+	 * @param maxPendingTrades
+	 * 			trades a subscriber may be behind before it is disconnected
+	 */
+	@Autowired
+	public MarketDataFeed(@Value("${orderbook.marketdata.max-pending-trades:10000}") int maxPendingTrades) {
+		this.maxPendingTrades = maxPendingTrades;
+	}
+
+	/**
+	 * @return
+	 * 		true if an event would reach someone, books skip building events otherwise
+	 */
+	boolean hasSubscribers() {
+		return !subscriptions.isEmpty();
+	}
+
+	/**
+	 * Queues an event for every subscriber of its security, called by the matching threads.
+	 */
+	void publish(MarketDataEvent event) {
+		for (MarketDataSubscription subscription : subscriptions) {
+			subscription.offer(event);
+		}
+	}
+
+	/**
+	 * Registers a subscriber, events are queued from now on and delivered once the subscription is started
+	 * with the current state of the books.
+	 * @param securityId
+	 * 			the security to follow, null for every security
+	 */
+	public MarketDataSubscription subscribe(String securityId, Sink sink) {
+		MarketDataSubscription subscription = new MarketDataSubscription(this, securityId, sink, executor(),
+				maxPendingTrades);
+		subscriptions.add(subscription);
+		logger.info("market data subscription to {}, {} subscribers", securityId == null ? "all securities" : securityId,
+				subscriptions.size());
+		return subscription;
+	}
+
+	void unsubscribe(MarketDataSubscription subscription) {
+		subscriptions.remove(subscription);
+	}
+
+	/**
+	 * @return
+	 * 		number of open subscriptions
+	 */
+	public int getSubscriberCount() {
+		return subscriptions.size();
+	}
+
+	@PreDestroy
+	public synchronized void close() {
+		for (MarketDataSubscription subscription : subscriptions) {
+			subscription.close("shutdown");
+		}
+		if (delivery != null) {
+			delivery.shutdown();
+		}
+	}
+
+	private synchronized ExecutorService executor() {
+		if (delivery == null) {
+			delivery = Executors.newCachedThreadPool(runnable -> {
+				Thread thread = new Thread(runnable, "market-data");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return delivery;
+	}
+}
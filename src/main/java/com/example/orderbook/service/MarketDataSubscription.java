@@ -0,0 +1,206 @@
+package com.example.orderbook.service;
+
+import com.example.orderbook.model.MarketDataEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * The events waiting to be sent to one subscriber of the MarketDataFeed.
+ *
+ * While a batch is being sent, new events wait in an insertion ordered map: an event of a level that is already
+ * waiting replaces it and takes the place of the latest event (conflation), so a slow subscriber gets the latest
+ * state of every level that changed instead of every change, still in increasing sequences. Trades are never conflated, a subscriber more than maxPendingTrades trades behind is closed.
+ *
+ * Until started, events are only queued; start sends the state of the books first and drops the queued events
+ * that state already includes.
+ */
+public class MarketDataSubscription {
+
+	private final MarketDataFeed feed;
+	private final String securityId;
+	private final MarketDataFeed.Sink sink;
+	private final Executor delivery;
+	private final int maxPendingTrades;
+
+	private final LinkedHashMap<Object, MarketDataEvent> pending = new LinkedHashMap<>();
+	private int pendingTrades;
+	private boolean started;
+	private boolean sending;
+	private boolean closed;
+
+	MarketDataSubscription(MarketDataFeed feed, String securityId, MarketDataFeed.Sink sink, Executor delivery,
+						   int maxPendingTrades) {
+		this.feed = feed;
+		this.securityId = securityId;
+		this.sink = sink;
+		this.delivery = delivery;
+		this.maxPendingTrades = maxPendingTrades;
+	}
+
+	/**
+	 * @return
+	 * 		the security followed, null for every security
+	 */
+	public String getSecurityId() {
+		return securityId;
+	}
+
+	/**
+	 * Queues an event, called by the matching threads.
+	 */
+	void offer(MarketDataEvent event) {
+		if (securityId != null && !securityId.equalsIgnoreCase(event.getSecurityId())) {
+			return;
+		}
+		String reason = null;
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			if (event.getType() == MarketDataEvent.Type.TRADE) {
+				if (++pendingTrades > maxPendingTrades) {
+					reason = "slow consumer, more than " + maxPendingTrades + " trades behind";
+				} else {
+					pending.put(event, event);
+				}
+			} else {
+				// the conflated event moves behind the events queued since, so they keep increasing sequences
+				LevelKey key = new LevelKey(event);
+				MarketDataEvent waiting = pending.remove(key);
+				pending.put(key, waiting == null ? event : waiting.conflate(event));
+			}
+			if (reason == null) {
+				scheduleDelivery();
+			}
+		}
+		if (reason != null) {
+			close(reason);
+		}
+	}
+
+	/**
+	 * Sends the state of the books, then the queued events that are more recent.
+	 * @param snapshot
+	 * 			SNAPSHOT events of the followed securities, each followed by the levels of the security
+	 */
+	public void start(List<MarketDataEvent> snapshot) {
+		Map<String, Long> sequences = new HashMap<>();
+		for (MarketDataEvent event : snapshot) {
+			if (event.getType() == MarketDataEvent.Type.SNAPSHOT) {
+				sequences.put(event.getSecurityId(), event.getSequence());
+			}
+		}
+		synchronized (this) {
+			Iterator<MarketDataEvent> iterator = pending.values().iterator();
+			while (iterator.hasNext()) {
+				MarketDataEvent event = iterator.next();
+				Long sequence = sequences.get(event.getSecurityId());
+				if (sequence != null && event.getSequence() <= sequence) {
+					iterator.remove();
+					if (event.getType() == MarketDataEvent.Type.TRADE) {
+						pendingTrades--;
+					}
+				}
+			}
+			// the snapshot goes first, the delivery thread starts with the queued events once it is sent
+			sending = true;
+		}
+		try {
+			sink.send(snapshot);
+		} catch (Exception e) {
+			close("send failed: " + e.getMessage());
+			return;
+		}
+		synchronized (this) {
+			started = true;
+			sending = false;
+			scheduleDelivery();
+		}
+	}
+
+	/**
+	 * Stops the subscription, the sink is told once.
+	 */
+	public void close(String reason) {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			pending.clear();
+		}
+		feed.unsubscribe(this);
+		sink.close(reason);
+	}
+
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Starts a delivery thread unless one is already sending, holding the lock.
+	 */
+	private void scheduleDelivery() {
+		if (started && !sending && !closed && !pending.isEmpty()) {
+			sending = true;
+			delivery.execute(this::deliver);
+		}
+	}
+
+	private void deliver() {
+		while (true) {
+			List<MarketDataEvent> batch;
+			synchronized (this) {
+				if (closed || pending.isEmpty()) {
+					sending = false;
+					return;
+				}
+				batch = new ArrayList<>(pending.values());
+				pending.clear();
+				pendingTrades = 0;
+			}
+			try {
+				sink.send(batch);
+			} catch (Exception e) {
+				close("send failed: " + e.getMessage());
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Identity of a price level in the pending map.
+	 */
+	private static final class LevelKey {
+
+		private final String securityId;
+		private final boolean buying;
+		private final long price;
+
+		LevelKey(MarketDataEvent event) {
+			this.securityId = event.getSecurityId();
+			this.buying = event.isBuying();
+			this.price = event.getPrice();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof LevelKey)) {
+				return false;
+			}
+			LevelKey other = (LevelKey) obj;
+			return price == other.price && buying == other.buying && securityId.equals(other.securityId);
+		}
+
+		@Override
+		public int hashCode() {
+			return (securityId.hashCode() * 31 + Long.hashCode(price)) * 31 + (buying ? 1 : 0);
+		}
+	}
+}
@@ -0,0 +1,437 @@
+package com.example.orderbook.service;
+
+import com.example.orderbook.metrics.LatencyHistogram;
+import com.example.orderbook.model.BookSize;
+import com.example.orderbook.model.EngineMetrics;
+import com.example.orderbook.model.ExecutionReport;
+import com.example.orderbook.model.LatencyStats;
+import com.example.orderbook.model.Order;
+import com.example.orderbook.model.OrderBookDepth;
+import com.example.orderbook.model.TopOfBook;
+import com.example.orderbook.model.request.OrderFilter;
+import com.example.orderbook.model.request.OrderType;
+import com.example.orderbook.pipeline.PipelineStats;
+import com.example.orderbook.pipeline.WaitStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Sharded single-writer matching engine.
+ *
+ * Securities are hashed to a fixed set of MatchingShards, each one owning the books of its securities behind a
+ * ring buffer pipeline, so matching for a security never runs concurrently and different securities match in parallel.
+ * Callers submit commands and wait for their result, exceptions thrown by the book are rethrown to the caller.
+ */
+@Service
+public class MatchingEngine {
+
+	Logger logger = LoggerFactory.getLogger(MatchingEngine.class);
+
+	private final MatchingShard[] shards;
+	private final CommandJournal journal;
+	private final SnapshotStore snapshots;
+	private final OrderIdService orderIds;
+	/** numbers of the securities and clients, given at submission and shared by the books of every shard */
+	private final SymbolRegistry symbols = new SymbolRegistry();
+	private final AtomicLong nextViewId = new AtomicLong(1);
+
+	/**
+	 * @param settings
+	 * 			shards, books and components of the engine, see EngineConfiguration
+	 */
+	@Autowired
+	public MatchingEngine(EngineSettings settings) {
+		this.journal = settings.getJournal();
+		this.snapshots = settings.getSnapshots();
+		this.orderIds = settings.getOrderIds();
+		MarketDataFeed marketData = settings.getMarketData();
+		this.shards = new MatchingShard[settings.getShards()];
+		for (int i = 0; i < shards.length; i++) {
+			shards[i] = new MatchingShard(i, settings.getRingSize(), WaitStrategy.of(settings.getWaitStrategy()), journal,
+					settings.getMarketProtectionBps(), marketData, settings.getOrderPoolSize(), settings.getOrderStorage(),
+					symbols, settings.getExecutionLog(), settings.isMetricsEnabled());
+		}
+	}
+
+	/**
+	 * Recovers the books from the snapshots and the journal, then starts the shards.
+	 * The shard count must not change between runs, the journal and the snapshots are kept per shard.
+	 */
+	@PostConstruct
+	public void start() {
+		long start = System.nanoTime();
+		boolean recovered = false;
+		for (MatchingShard shard : shards) {
+			try {
+				long highestOrderId = shard.recover(snapshots);
+				orderIds.resumeAfter(shard.getShardId(), highestOrderId);
+				recovered |= highestOrderId >= 0;
+			} catch (IOException e) {
+				throw new UncheckedIOException("cannot recover the book of shard " + shard.getShardId(), e);
+			}
+		}
+		if (recovered) {
+			logger.info("books recovered in {} ms", (System.nanoTime() - start) / 1000000);
+		}
+		for (MatchingShard shard : shards) {
+			shard.start();
+		}
+		logger.info("matching engine started with {} shards", shards.length);
+	}
+
+	/**
+	 * Snapshots the book of every shard and drops the journal the kept snapshots cover.
+	 * Each book is captured by its own matching thread between two commands, matching goes on on the other shards,
+	 * writing the captures and forcing the files to the disk is done by the calling thread.
+	 */
+	public void snapshot() throws IOException {
+		if (!snapshots.isEnabled()) {
+			throw new IllegalStateException("snapshots are not enabled");
+		}
+		List<CompletableFuture<Object>> futures = new ArrayList<>(shards.length);
+		for (MatchingShard shard : shards) {
+			futures.add(shard.submitSnapshot(snapshots));
+		}
+		for (int i = 0; i < shards.length; i++) {
+			Path file = snapshots.write(i, (SnapshotStore.Capture) await(futures.get(i)));
+			long coveredSequence = snapshots.publish(i, file);
+			journal.truncate(i, coveredSequence);
+		}
+	}
+
+	@PreDestroy
+	public void stop() throws InterruptedException {
+		for (MatchingShard shard : shards) {
+			shard.stop();
+		}
+	}
+
+	public int getShardCount() {
+		return shards.length;
+	}
+
+	/**
+	 * @return
+	 * 		the registry interning the securityIds and clientIds submitted to this engine
+	 */
+	public SymbolRegistry getSymbols() {
+		return symbols;
+	}
+
+	/**
+	 * @return
+	 * 		the shard owning the book of a security, securities differing only by case share a shard
+	 */
+	int shardOf(String securityId) {
+		int security = symbols.findSecurity(securityId);
+		int hash = security < 0 ? SymbolRegistry.hash(securityId) : symbols.securityHash(security);
+		return (hash & Integer.MAX_VALUE) % shards.length;
+	}
+
+	/**
+	 * @return
+	 * 		the shard encoded in an orderId, or null for an id no shard of this engine could have generated
+	 */
+	private MatchingShard shardOfOrder(long orderId) {
+		int shardId = OrderIdService.shardOf(orderId);
+		return orderId >= 0 && shardId < shards.length ? shards[shardId] : null;
+	}
+
+	/**
+	 * @return
+	 * 		a new orderId for an order of the security, routed to its shard by later commands
+	 */
+	public long nextOrderId(String securityId) {
+		return orderIds.nextId(shardOf(securityId));
+	}
+
+	/**
+	 * Adds a new order to the book of its security, a market order fills what it can and never rests.
+	 * @param orderId
+	 * 			an id generated for the security, see nextOrderId
+	 * @param price
+	 * 			limit price in ticks of the security, ignored for market orders
+	 * @return
+	 * 		the fills of the order and the fate of its remainder
+	 */
+	public ExecutionReport placeOrder(long orderId, String clientId, String securityId, long units, long price,
+						   boolean buying, OrderType orderType, long timestamp) {
+		return (ExecutionReport) await(placeOrderAsync(orderId, clientId, securityId, units, price, buying, orderType,
+				timestamp));
+	}
+
+	/**
+	 * Queues a new order without waiting for it, orders queued by a thread are matched in the order they were queued.
+	 * @return
+	 * 		completed with the ExecutionReport of the order, or exceptionally when it is rejected
+	 */
+	public CompletableFuture<Object> placeOrderAsync(long orderId, String clientId, String securityId, long units,
+													 long price, boolean buying, OrderType orderType, long timestamp) {
+		int shardId = shardOf(securityId);
+		if (OrderIdService.shardOf(orderId) != shardId) {
+			throw new IllegalArgumentException("orderId " + orderId + " was not generated for security " + securityId);
+		}
+		return shards[shardId].submitAdd(orderId, clientId, securityId, units, price, buying, orderType, timestamp);
+	}
+
+	/**
+	 * Amends a resting order on the shard encoded in its orderId.
+	 * @param price
+	 * 			new price in ticks, 0 to keep the price
+	 * @return
+	 * 		the fills of the amended order, or null if the order does not rest
+	 */
+	public ExecutionReport amendOrder(long orderId, long units, long price, long timestamp) {
+		return (ExecutionReport) await(amendOrderAsync(orderId, units, price, timestamp));
+	}
+
+	/**
+	 * Queues an amendment without waiting for it.
+	 * @return
+	 * 		completed with the ExecutionReport of the amended order, or null if the order does not rest
+	 */
+	public CompletableFuture<Object> amendOrderAsync(long orderId, long units, long price, long timestamp) {
+		MatchingShard shard = shardOfOrder(orderId);
+		return shard == null ? CompletableFuture.completedFuture(null) : shard.submitUpdate(orderId, units, price, timestamp);
+	}
+
+	/**
+	 * Queues an amendment with a decimal price without waiting for it, the shard converts the price with the scale of
+	 * the security the order rests on.
+	 * @param securityId
+	 * 			the security the order is expected to rest on, the amendment is rejected if it rests on another one,
+	 * 			null to not check it
+	 * @param value
+	 * 			new decimal price, 0 to keep the price
+	 * @return
+	 * 		completed with the ExecutionReport of the amended order, or null if the order does not rest
+	 */
+	public CompletableFuture<Object> amendOrderAsync(long orderId, String securityId, long units, double value,
+													 long timestamp) {
+		MatchingShard shard = shardOfOrder(orderId);
+		return shard == null ? CompletableFuture.completedFuture(null)
+				: shard.submitUpdate(orderId, securityId, units, value, timestamp);
+	}
+
+	/**
+	 * Looks a resting order up on the shard encoded in its orderId.
+	 * @return
+	 * 		the order, or null if it does not rest
+	 */
+	public Order findOrder(long orderId) {
+		MatchingShard shard = shardOfOrder(orderId);
+		return shard == null ? null : (Order) await(shard.submit(book -> book.findOrderByOrderId(orderId)));
+	}
+
+	/**
+	 * Reads the best bid and ask of a security in O(1) from the cache maintained by its shard, without waiting
+	 * for the commands queued before.
+	 * @return
+	 * 		the top of book, or null if the security never had an order
+	 */
+	public TopOfBook getTopOfBook(String securityId) {
+		return shards[shardOf(securityId)].getTopOfBook(securityId);
+	}
+
+	/**
+	 * @param levels
+	 * 			maximum number of price levels per side
+	 * @return
+	 * 		the aggregated price levels of a security, taken between two commands of its shard
+	 */
+	public OrderBookDepth getDepth(String securityId, int levels) {
+		return execute(securityId, book -> book.getDepth(securityId, levels));
+	}
+
+	/**
+	 * Cancels a resting order on the shard encoded in its orderId.
+	 * @return
+	 * 		true if the order was found
+	 */
+	public boolean cancelOrder(long orderId) {
+		return (Boolean) await(cancelOrderAsync(orderId));
+	}
+
+	/**
+	 * Queues a cancellation without waiting for it.
+	 * @return
+	 * 		completed with true if the order was found
+	 */
+	public CompletableFuture<Object> cancelOrderAsync(long orderId) {
+		MatchingShard shard = shardOfOrder(orderId);
+		return shard == null ? CompletableFuture.completedFuture(false) : shard.submitCancel(orderId);
+	}
+
+	/**
+	 * Cancels the orders of a client in one security, or in every security when securityId is null.
+	 * @return
+	 * 		number of cancelled orders
+	 */
+	public int cancelClientOrders(String clientId, String securityId) {
+		if (securityId != null) {
+			return (Integer) await(shards[shardOf(securityId)].submitCancelClient(clientId, securityId));
+		}
+		List<CompletableFuture<Object>> futures = new ArrayList<>(shards.length);
+		for (MatchingShard shard : shards) {
+			futures.add(shard.submitCancelClient(clientId, null));
+		}
+		int cancelled = 0;
+		for (CompletableFuture<Object> future : futures) {
+			cancelled += (Integer) await(future);
+		}
+		return cancelled;
+	}
+
+	/**
+	 * Executes an action on the shard owning a security and waits for its result.
+	 * @param securityId
+	 * 			the security the action works on
+	 * @param action
+	 * 			the action, executed by the matching stage of the shard
+	 * @return
+	 * 		the result of the action
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T execute(String securityId, Function<PriceTimePriorityOrderBook, T> action) {
+		return (T) await(shards[shardOf(securityId)].submit(action));
+	}
+
+	/**
+	 * Executes an action on every shard and waits for all of them.
+	 * @param action
+	 * 			the action, executed once by the matching stage of each shard
+	 * @return
+	 * 		the results in shard order
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> List<T> executeOnAll(Function<PriceTimePriorityOrderBook, T> action) {
+		List<CompletableFuture<Object>> futures = new ArrayList<>(shards.length);
+		for (MatchingShard shard : shards) {
+			futures.add(shard.submit(action));
+		}
+		List<T> results = new ArrayList<>(shards.length);
+		for (CompletableFuture<Object> future : futures) {
+			results.add((T) await(future));
+		}
+		return results;
+	}
+
+	/**
+	 * Captures the resting orders of a security between two of its commands.
+	 * @param securityId
+	 * 			The security id
+	 * @return
+	 * 		a view of the orders of the security, empty if it has none
+	 */
+	public BookView view(String securityId) {
+		return view(securityId, OrderFilter.NONE);
+	}
+
+	/**
+	 * Captures the resting orders of a security selected by a filter between two of its commands.
+	 */
+	public BookView view(String securityId, OrderFilter filter) {
+		return execute(securityId, book -> book.view(securityId, filter)).withId(nextViewId.getAndIncrement());
+	}
+
+	/**
+	 * Captures the resting orders of every book at one cut of the command flow, without holding matching. The view
+	 * is queued on every shard back to back and each shard captures its books when it reaches the view in its ring,
+	 * the position claimed at submission. The part of a shard holds exactly the commands queued on it before the
+	 * view, so every command acknowledged before the call is in the view and no shard waits for another one, the
+	 * orders are turned into Orders by the reader of the view.
+	 * @return
+	 * 		a view of the orders of every book, buy orders first
+	 */
+	public BookView viewAll() {
+		return viewAll(OrderFilter.NONE);
+	}
+
+	/**
+	 * Captures the resting orders of every book selected by a filter at one cut of the command flow, as viewAll.
+	 * Each shard captures up to the limit of the filter, enough for the first orders of the merged view.
+	 */
+	public BookView viewAll(OrderFilter filter) {
+		List<BookView> views = executeOnAll(book -> book.view(null, filter));
+		return BookView.merge(nextViewId.getAndIncrement(), views, filter.getLimit());
+	}
+
+	/**
+	 * @return
+	 * 		ring size, claimed sequence and per stage lag of the pipeline of every shard
+	 */
+	public List<PipelineStats> getPipelineStats() {
+		List<PipelineStats> stats = new ArrayList<>(shards.length);
+		for (MatchingShard shard : shards) {
+			stats.add(shard.getStats());
+		}
+		return stats;
+	}
+
+	/**
+	 * Counters, latencies and queue sizes are read from the shards without waiting for them,
+	 * the book sizes are taken by each shard between two commands.
+	 * @return
+	 * 		the metrics of every shard together, all zero when the engine is not instrumented
+	 */
+	public EngineMetrics getMetrics() {
+		LatencyHistogram add = new LatencyHistogram();
+		LatencyHistogram amend = new LatencyHistogram();
+		LatencyHistogram cancel = new LatencyHistogram();
+		LatencyHistogram match = new LatencyHistogram();
+		long orders = 0;
+		long fills = 0;
+		long rejects = 0;
+		long selfTradeBlocks = 0;
+		Map<String, Long> queueSizes = new LinkedHashMap<>();
+		for (MatchingShard shard : shards) {
+			ShardMetrics metrics = shard.getMetrics();
+			add.add(metrics.add);
+			amend.add(metrics.amend);
+			cancel.add(metrics.cancel);
+			match.add(metrics.match);
+			orders += metrics.orders;
+			fills += metrics.fills;
+			rejects += metrics.rejects;
+			selfTradeBlocks += metrics.selfTradeBlocks;
+			queueSizes.put("matching-shard-" + shard.getShardId(), shard.getQueueSize());
+		}
+		Map<String, LatencyStats> latency = new LinkedHashMap<>();
+		latency.put("add", LatencyStats.of(add));
+		latency.put("amend", LatencyStats.of(amend));
+		latency.put("cancel", LatencyStats.of(cancel));
+		latency.put("match", LatencyStats.of(match));
+		List<BookSize> books = new ArrayList<>();
+		for (List<BookSize> shardBooks : executeOnAll(PriceTimePriorityOrderBook::getBookSizes)) {
+			books.addAll(shardBooks);
+		}
+		return new EngineMetrics(orders, fills, rejects, selfTradeBlocks, latency, queueSizes, books);
+	}
+
+	private static Object await(CompletableFuture<Object> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+}
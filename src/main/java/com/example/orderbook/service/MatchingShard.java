@@ -0,0 +1,341 @@
+package com.example.orderbook.service;
+
+import com.example.orderbook.exception.TradeException;
+import com.example.orderbook.model.TopOfBook;
+import com.example.orderbook.model.request.OrderType;
+import com.example.orderbook.pipeline.Pipeline;
+import com.example.orderbook.pipeline.PipelineStats;
+import com.example.orderbook.pipeline.WaitStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * The owner of the books of all securities hashed to it.
+ *
+ * Commands are written into the reusable entries of a ring buffer and go through four stages, each on its own thread:
+ * validation, journaling, matching and result publication. Only the matching stage touches the
+ * PriceTimePriorityOrderBook, so the book is mutated by a single thread and needs no locking.
+ * The matching stage copies the fills of a new order into its entry and the publication stage builds the report,
+ * so with an order pool the matching thread does not allocate for a new order.
+ */
+class MatchingShard {
+
+	private final Logger logger = LoggerFactory.getLogger(MatchingShard.class);
+
+	private final int shardId;
+	private final PriceTimePriorityOrderBook book;
+	private final SymbolRegistry symbols;
+	private final ExecutionLog executionLog;
+	/** counters and latencies of the commands matched since start, recorded when instrumented */
+	private final ShardMetrics metrics = new ShardMetrics();
+	private final boolean instrumented;
+	private final Pipeline<OrderCommand> pipeline;
+	private final CommandJournal journal;
+	/** journal sequence of the last command applied to the book, only used by the matching stage */
+	private long appliedSequence;
+
+	/**
+	 * @param orderPoolSize
+	 * 			orders pre-allocated by the book, 0 to allocate every order
+	 * @param storage
+	 * 			where the book keeps its resting orders
+	 * @param symbols
+	 * 			numbers of the securities and clients, shared by the shards of the engine
+	 * @param executionLog
+	 * 			audit trail the book records its executions to once recovered
+	 * @param instrumented
+	 * 			true to count the commands and measure their latencies (see ShardMetrics)
+	 */
+	MatchingShard(int shardId, int ringSize, WaitStrategy waitStrategy, CommandJournal journal, long marketProtectionBps,
+				  MarketDataFeed marketData, int orderPoolSize, OrderStorage storage, SymbolRegistry symbols,
+				  ExecutionLog executionLog, boolean instrumented) {
+		this.shardId = shardId;
+		this.symbols = symbols;
+		this.executionLog = executionLog;
+		this.instrumented = instrumented;
+		this.book = new PriceTimePriorityOrderBook(marketProtectionBps, marketData, orderPoolSize, storage, symbols);
+		this.journal = journal;
+		this.pipeline = new Pipeline<>("matching-shard-" + shardId, OrderCommand::new, ringSize, waitStrategy)
+				.then("validation", (command, sequence, endOfBatch) -> validate(command))
+				.then("journal", this::journal)
+				.then("matching", (command, sequence, endOfBatch) -> matchAndMeasure(command))
+				.then("publication", (command, sequence, endOfBatch) -> publishResult(command));
+	}
+
+	/**
+	 * Starts the pipeline, the executions of the book are recorded from now on, not those replayed by recover.
+	 */
+	void start() {
+		book.setExecutionLog(executionLog.recorder(shardId, symbols));
+		pipeline.start();
+	}
+
+	/**
+	 * Rebuilds the book before the shard starts: loads its latest snapshot and replays the journal after it.
+	 * @return
+	 * 		the highest orderId traded by the book
+	 */
+	long recover(SnapshotStore snapshots) throws IOException {
+		appliedSequence = snapshots.load(shardId, book);
+		long lastSequence = journal.replay(shardId, appliedSequence + 1, command -> {
+			intern(command);
+			match(command);
+			command.clear();
+		});
+		if (lastSequence > appliedSequence) {
+			logger.info("shard {} replayed journal from {} to {}", shardId, appliedSequence + 1, lastSequence);
+			appliedSequence = lastSequence;
+		}
+		return book.getHighestOrderId();
+	}
+
+	/**
+	 * Stops the shard once every command already published has been executed.
+	 */
+	void stop() throws InterruptedException {
+		pipeline.halt();
+	}
+
+	int getShardId() {
+		return shardId;
+	}
+
+	/**
+	 * @return
+	 * 		the cached top of book of a security, read without entering the pipeline
+	 */
+	TopOfBook getTopOfBook(String securityId) {
+		return book.getTopOfBook(securityId);
+	}
+
+	PipelineStats getStats() {
+		return pipeline.getStats();
+	}
+
+	/**
+	 * @return
+	 * 		the counters and latencies of the shard, still written by its matching thread
+	 */
+	ShardMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return
+	 * 		commands published to the ring and not completed yet
+	 */
+	long getQueueSize() {
+		return pipeline.getBacklog();
+	}
+
+	CompletableFuture<Object> submitAdd(long orderId, String clientId, String securityId, long units, long price,
+										boolean buying, OrderType orderType, long timestamp) {
+		// interned before claiming the entry, registering a new symbol must not hold up the ring
+		int client = symbols.internClient(clientId);
+		int security = symbols.internSecurity(securityId);
+		long sequence = pipeline.next();
+		OrderCommand command = pipeline.get(sequence);
+		command.add(orderId, clientId, securityId, units, price, buying, orderType, timestamp);
+		command.client = client;
+		command.security = security;
+		return publish(sequence, command);
+	}
+
+	/**
+	 * Numbers the client and the security of an ADD read back from the journal, new commands are numbered by
+	 * submitAdd on the thread submitting them so the matching stage only uses ints.
+	 * A missing id is left NONE for the validation stage to reject.
+	 */
+	private void intern(OrderCommand command) {
+		if (command.type == CommandType.ADD) {
+			command.client = symbols.internClient(command.clientId);
+			command.security = symbols.internSecurity(command.securityId);
+		}
+	}
+
+	CompletableFuture<Object> submitUpdate(long orderId, long units, long price, long timestamp) {
+		long sequence = pipeline.next();
+		OrderCommand command = pipeline.get(sequence);
+		command.update(orderId, units, price, timestamp);
+		return publish(sequence, command);
+	}
+
+	/**
+	 * Queues an update with a decimal price, converted by the matching stage with the scale of the security of the
+	 * order (see OrderCommand.updateValue)
+	 */
+	CompletableFuture<Object> submitUpdate(long orderId, String securityId, long units, double value, long timestamp) {
+		long sequence = pipeline.next();
+		OrderCommand command = pipeline.get(sequence);
+		command.updateValue(orderId, securityId, units, value, timestamp);
+		return publish(sequence, command);
+	}
+
+	CompletableFuture<Object> submitCancel(long orderId) {
+		long sequence = pipeline.next();
+		OrderCommand command = pipeline.get(sequence);
+		command.cancel(orderId);
+		return publish(sequence, command);
+	}
+
+	CompletableFuture<Object> submitCancelClient(String clientId, String securityId) {
+		long sequence = pipeline.next();
+		OrderCommand command = pipeline.get(sequence);
+		command.cancelClient(clientId, securityId);
+		return publish(sequence, command);
+	}
+
+	/**
+	 * Queues an action against the book of this shard.
+	 * @param action
+	 * 			executed by the matching stage
+	 * @return
+	 * 		completed with the result of the action, or exceptionally with what it threw
+	 */
+	CompletableFuture<Object> submit(Function<PriceTimePriorityOrderBook, ?> action) {
+		long sequence = pipeline.next();
+		OrderCommand command = pipeline.get(sequence);
+		command.query(action);
+		return publish(sequence, command);
+	}
+
+	/**
+	 * Queues the capture of the book, taken by the matching stage between two commands.
+	 * @return
+	 * 		completed with the capture, see SnapshotStore.write
+	 */
+	CompletableFuture<Object> submitSnapshot(SnapshotStore snapshots) {
+		return submit(book -> snapshots.capture(appliedSequence, book));
+	}
+
+	private CompletableFuture<Object> publish(long sequence, OrderCommand command) {
+		CompletableFuture<Object> future = new CompletableFuture<>();
+		command.future = future;
+		if (instrumented) {
+			command.submitNanos = System.nanoTime();
+		}
+		pipeline.publish(sequence);
+		return future;
+	}
+
+	/**
+	 * Stage 1: rejects malformed commands before they are journaled
+	 */
+	private void validate(OrderCommand command) {
+		switch (command.type) {
+			case ADD:
+				if (command.clientId == null || command.securityId == null || command.orderType == null) {
+					command.error = new TradeException("clientId, securityId and orderType are mandatory");
+				} else if (command.units <= 0) {
+					command.error = new TradeException("units must be greater than zero");
+				} else if (command.orderType == OrderType.LIMIT_ORDER && command.price <= 0) {
+					command.error = new TradeException("Value is mandatory for LIMIT ORDERs and must be greater than zero ");
+				}
+				break;
+			case UPDATE:
+				if (command.units <= 0) {
+					command.error = new TradeException("units must be greater than zero");
+				}
+				break;
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * Stage 2: journals every accepted command that changes the book, a command that cannot be journaled is rejected
+	 */
+	private void journal(OrderCommand command, long sequence, boolean endOfBatch) {
+		if (!command.isRejected() && command.type != CommandType.QUERY) {
+			try {
+				command.sequence = journal.append(shardId, command);
+			} catch (RuntimeException e) {
+				logger.error("journal failed on shard {}, rejecting {}", shardId, command, e);
+				command.error = e;
+			}
+		}
+		if (endOfBatch) {
+			try {
+				journal.flush(shardId);
+			} catch (RuntimeException e) {
+				logger.error("journal flush failed on shard {}", shardId, e);
+			}
+		}
+	}
+
+	/**
+	 * Stage 3: matches the command and, when instrumented, records its outcome and latencies.
+	 * Commands replayed by recover are matched without being measured.
+	 */
+	private void matchAndMeasure(OrderCommand command) {
+		if (!instrumented) {
+			match(command);
+			return;
+		}
+		long selfTradeBlocks = book.getSelfTradeBlockCount();
+		long start = System.nanoTime();
+		match(command);
+		metrics.record(command, start, System.nanoTime());
+		if (book.getSelfTradeBlockCount() != selfTradeBlocks) {
+			metrics.selfTradeBlocks++;
+		}
+	}
+
+	/**
+	 * Applies the command to the book, the only stage touching it
+	 */
+	private void match(OrderCommand command) {
+		if (command.isRejected()) {
+			return;
+		}
+		if (command.sequence > 0) {
+			appliedSequence = command.sequence;
+		}
+		try {
+			switch (command.type) {
+				case ADD:
+					book.place(command.orderId, command.client, command.security, command.units, command.price,
+							command.buying, command.orderType, command.timestamp);
+					command.fills.copyFrom(book.getFills());
+					break;
+				case UPDATE:
+					command.result = Double.isNaN(command.value)
+							? book.amend(command.orderId, command.units, command.price, command.timestamp)
+							: book.amend(command.orderId, command.securityId, command.units, command.value,
+									command.timestamp);
+					break;
+				case CANCEL:
+					command.result = book.cancelOrder(command.orderId);
+					break;
+				case CANCEL_CLIENT:
+					command.result = book.cancelClientOrders(command.clientId, command.securityId);
+					break;
+				case QUERY:
+					command.result = command.action.apply(book);
+					break;
+			}
+		} catch (RuntimeException e) {
+			logger.debug("command failed on shard {}", shardId, e);
+			command.error = e;
+		}
+	}
+
+	/**
+	 * Stage 4: completes the caller's future off the matching thread and releases the entry
+	 */
+	private void publishResult(OrderCommand command) {
+		CompletableFuture<Object> future = command.future;
+		if (command.isRejected()) {
+			future.completeExceptionally(command.error);
+		} else if (command.type == CommandType.ADD) {
+			future.complete(command.fills.toReport());
+		} else {
+			future.complete(command.result);
+		}
+		command.clear();
+	}
+}
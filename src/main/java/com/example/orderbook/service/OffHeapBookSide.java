@@ -0,0 +1,220 @@
+package com.example.orderbook.service;
+
+import java.util.Arrays;
+
+/**
+ * One side of the book of a security for the OffHeapOrderStore.
+ *
+ * The ladder of levels is kept on the heap like the one of OrderBookSide, worst price first, with the same trade-off
+ * of an O(L) shift when a level is created for an indexed access to the levels, but a level only holds
+ * its aggregates and the record numbers of its first and last orders: the FIFO of a level and the list of the
+ * orders of a client are linked by record numbers inside the records. The most recent order of each client is
+ * found by the number of the client (see SymbolRegistry) in clientHeads.
+ *
+ * Not thread safe, only used by the matching thread of the book.
+ */
+final class OffHeapBookSide implements BookSide {
+
+	static final int NONE = -1;
+	private static final int INITIAL_LEVELS = 16;
+	private static final int MAX_SPARE_LEVELS = 64;
+
+	/**
+	 * The orders resting at one price.
+	 */
+	static final class Level {
+		long price;
+		int head = NONE;
+		int tail = NONE;
+		int size;
+		long quantity;
+	}
+
+	private final boolean buying;
+	private Level[] levels = new Level[INITIAL_LEVELS];
+	private int levelCount;
+	private int orderCount;
+	private final Level[] spareLevels = new Level[MAX_SPARE_LEVELS];
+	private int spareCount;
+	/** most recent record of each client number, NONE if the client does not rest on this side */
+	private int[] clientHeads = new int[0];
+
+	OffHeapBookSide(boolean buying) {
+		this.buying = buying;
+	}
+
+	@Override
+	public boolean isBuying() {
+		return buying;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return orderCount == 0;
+	}
+
+	@Override
+	public int size() {
+		return orderCount;
+	}
+
+	@Override
+	public int depth() {
+		return levelCount;
+	}
+
+	@Override
+	public long levelPrice(int index) {
+		return levelAt(index).price;
+	}
+
+	@Override
+	public long levelQuantity(int index) {
+		return levelAt(index).quantity;
+	}
+
+	@Override
+	public int levelOrders(int index) {
+		return levelAt(index).size;
+	}
+
+	@Override
+	public int levelOf(long price) {
+		int index = search(price);
+		return index < 0 ? -1 : levelCount - 1 - index;
+	}
+
+	@Override
+	public boolean isAtOrBetterThanBest(long price) {
+		return levelCount == 0 || compare(price, levels[levelCount - 1].price) >= 0;
+	}
+
+	@Override
+	public boolean hasClient(int client) {
+		return clientHead(client) != NONE;
+	}
+
+	Level levelAt(int index) {
+		return levels[levelCount - 1 - index];
+	}
+
+	/**
+	 * @return
+	 * 		the level of a price an order rests at
+	 */
+	Level level(long price) {
+		if (levels[levelCount - 1].price == price) {
+			return levels[levelCount - 1];
+		}
+		return levels[search(price)];
+	}
+
+	/**
+	 * @return
+	 * 		the level of a price, created if no order rests at that price
+	 */
+	Level levelFor(long price) {
+		int index = search(price);
+		if (index >= 0) {
+			return levels[index];
+		}
+		Level level = newLevel(price);
+		insertLevel(-(index + 1), level);
+		return level;
+	}
+
+	/**
+	 * Accounts for an order queued in a level by the store.
+	 */
+	void added() {
+		orderCount++;
+	}
+
+	/**
+	 * Accounts for an order unlinked from a level by the store, dropping the level if it became empty.
+	 */
+	void removed(Level level) {
+		orderCount--;
+		if (level.size == 0) {
+			removeLevel(level);
+		}
+	}
+
+	/**
+	 * @param client
+	 * 			number of the client, negative for an unknown client
+	 * @return
+	 * 		the most recent record of the client on this side, NONE if it has none
+	 */
+	int clientHead(int client) {
+		return client < 0 || client >= clientHeads.length ? NONE : clientHeads[client];
+	}
+
+	void setClientHead(int client, int record) {
+		if (client >= clientHeads.length) {
+			int length = clientHeads.length;
+			clientHeads = Arrays.copyOf(clientHeads, Math.max(client + 1, length << 1));
+			Arrays.fill(clientHeads, length, clientHeads.length, NONE);
+		}
+		clientHeads[client] = record;
+	}
+
+	private int search(long price) {
+		int low = 0;
+		int high = levelCount - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compare(levels[mid].price, price);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * @return
+	 * 		a negative integer if price one is worse than price two for this side, positive if it is better
+	 */
+	private int compare(long one, long two) {
+		return buying ? Long.compare(one, two) : Long.compare(two, one);
+	}
+
+	private void insertLevel(int index, Level level) {
+		if (levelCount == levels.length) {
+			levels = Arrays.copyOf(levels, levels.length << 1);
+		}
+		System.arraycopy(levels, index, levels, index + 1, levelCount - index);
+		levels[index] = level;
+		levelCount++;
+	}
+
+	private void removeLevel(Level level) {
+		int index = levels[levelCount - 1] == level ? levelCount - 1 : search(level.price);
+		System.arraycopy(levels, index + 1, levels, index, levelCount - index - 1);
+		levels[--levelCount] = null;
+		if (spareCount < MAX_SPARE_LEVELS) {
+			spareLevels[spareCount++] = level;
+		}
+	}
+
+	private Level newLevel(long price) {
+		Level level;
+		if (spareCount == 0) {
+			level = new Level();
+		} else {
+			level = spareLevels[--spareCount];
+			spareLevels[spareCount] = null;
+		}
+		level.price = price;
+		level.head = NONE;
+		level.tail = NONE;
+		level.size = 0;
+		level.quantity = 0;
+		return level;
+	}
+}
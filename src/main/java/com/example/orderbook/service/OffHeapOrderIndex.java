@@ -0,0 +1,153 @@
+package com.example.orderbook.service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The orderId index of the OffHeapOrderStore: orderIds to record numbers in an open addressing hash table with
+ * linear probing held in direct memory, so a deep book adds nothing the garbage collector has to trace or copy.
+ *
+ * A slot is the orderId followed by the record number plus one, 0 marking an empty slot. Removal shifts the
+ * following entries of the probe sequence back, as in OrderIndex. Not thread safe.
+ */
+final class OffHeapOrderIndex {
+
+	private static final int SLOT_SIZE = 16;
+	private static final int VALUE = 8;
+	private static final int MIN_CAPACITY = 1024;
+	/** largest table a direct buffer holds, 2^25 orders */
+	private static final int MAX_CAPACITY = 1 << 26;
+
+	private ByteBuffer table;
+	private int mask;
+	private int size;
+
+	/**
+	 * @param expectedOrders
+	 * 			number of orders the table holds without growing
+	 */
+	OffHeapOrderIndex(int expectedOrders) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < expectedOrders * 2L && capacity < MAX_CAPACITY) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return
+	 * 		the record of the order, -1 if no order with this id rests in the book
+	 */
+	int get(long orderId) {
+		for (int i = slot(orderId); !isEmpty(i); i = (i + 1) & mask) {
+			if (key(i) == orderId) {
+				return value(i);
+			}
+		}
+		return -1;
+	}
+
+	void put(long orderId, int record) {
+		int i = slot(orderId);
+		for (; !isEmpty(i); i = (i + 1) & mask) {
+			if (key(i) == orderId) {
+				set(i, orderId, record);
+				return;
+			}
+		}
+		set(i, orderId, record);
+		if (++size > (mask + 1) >>> 1) {
+			grow();
+		}
+	}
+
+	/**
+	 * @return
+	 * 		true if the order was indexed
+	 */
+	boolean remove(long orderId) {
+		for (int i = slot(orderId); !isEmpty(i); i = (i + 1) & mask) {
+			if (key(i) == orderId) {
+				shiftBack(i);
+				size--;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	void clear() {
+		for (int i = 0; i <= mask; i++) {
+			table.putInt(i * SLOT_SIZE + VALUE, 0);
+		}
+		size = 0;
+	}
+
+	private void shiftBack(int hole) {
+		int i = hole;
+		while (true) {
+			i = (i + 1) & mask;
+			if (isEmpty(i)) {
+				break;
+			}
+			int home = slot(key(i));
+			// the entry may move to the hole unless its home lies cyclically in (hole, i]
+			if (hole <= i ? (home <= hole || home > i) : (home <= hole && home > i)) {
+				set(hole, key(i), value(i));
+				hole = i;
+			}
+		}
+		table.putInt(hole * SLOT_SIZE + VALUE, 0);
+	}
+
+	private boolean isEmpty(int slot) {
+		return table.getInt(slot * SLOT_SIZE + VALUE) == 0;
+	}
+
+	private long key(int slot) {
+		return table.getLong(slot * SLOT_SIZE);
+	}
+
+	private int value(int slot) {
+		return table.getInt(slot * SLOT_SIZE + VALUE) - 1;
+	}
+
+	private void set(int slot, long orderId, int record) {
+		table.putLong(slot * SLOT_SIZE, orderId);
+		table.putInt(slot * SLOT_SIZE + VALUE, record + 1);
+	}
+
+	private int slot(long orderId) {
+		long hash = orderId * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+
+	private void grow() {
+		ByteBuffer old = table;
+		int oldCapacity = mask + 1;
+		if (oldCapacity == MAX_CAPACITY) {
+			throw new IllegalStateException("the off-heap orderId index is full");
+		}
+		allocate(oldCapacity << 1);
+		for (int i = 0; i < oldCapacity; i++) {
+			int value = old.getInt(i * SLOT_SIZE + VALUE);
+			if (value != 0) {
+				long orderId = old.getLong(i * SLOT_SIZE);
+				int slot = slot(orderId);
+				while (!isEmpty(slot)) {
+					slot = (slot + 1) & mask;
+				}
+				set(slot, orderId, value - 1);
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		table = ByteBuffer.allocateDirect(capacity * SLOT_SIZE).order(ByteOrder.nativeOrder());
+		mask = capacity - 1;
+	}
+}
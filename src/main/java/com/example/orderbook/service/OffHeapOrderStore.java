@@ -0,0 +1,329 @@
+package com.example.orderbook.service;
+
+import com.example.orderbook.model.Order;
+import com.example.orderbook.model.request.OrderType;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static com.example.orderbook.service.OffHeapBookSide.NONE;
+
+/**
+ * The OFF_HEAP OrderStore: every resting order is a fixed-width record in slabs of direct memory,
+ * addressed by its record number, and the book holds no object per order.
+ *
+ * <pre>
+ * record (72 bytes)
+ *   orderId:8 units:8 price:8 priorityTime:8 displayTime:8 client:4 security:4
+ *   prev:4 next:4 (FIFO of the level) clientPrev:4 clientNext:4 (orders of the client on the side) flags:1
+ * </pre>
+ * clientIds and securityIds are stored as their numbers in the SymbolRegistry of the book. Slabs of SLAB_RECORDS records
+ * are added as the book grows and never given back, freed records are reused first through a free list linked
+ * by their next field. The orderId index lives in direct memory as well (see OffHeapOrderIndex).
+ *
+ * The heap only holds the price levels (see OffHeapBookSide) and one slab
+ * buffer object per SLAB_RECORDS orders, so the garbage collector does not see the depth of the book.
+ * Orders handed out by order() are copies. Not thread safe, only used by the matching thread of the book.
+ */
+final class OffHeapOrderStore implements OrderStore {
+
+	static final int RECORD_SIZE = 72;
+	private static final int ORDER_ID = 0;
+	private static final int UNITS = 8;
+	private static final int PRICE = 16;
+	private static final int PRIORITY_TIME = 24;
+	private static final int DISPLAY_TIME = 32;
+	private static final int CLIENT = 40;
+	private static final int SECURITY = 44;
+	private static final int PREV = 48;
+	private static final int NEXT = 52;
+	private static final int CLIENT_PREV = 56;
+	private static final int CLIENT_NEXT = 60;
+	private static final int FLAGS = 64;
+	private static final int BUYING = 1;
+
+	private static final int SLAB_SHIFT = 14;
+	/** records per slab */
+	static final int SLAB_RECORDS = 1 << SLAB_SHIFT;
+	private static final int SLAB_MASK = SLAB_RECORDS - 1;
+	private static final OrderType[] ORDER_TYPES = OrderType.values();
+
+	private ByteBuffer[] slabs = new ByteBuffer[0];
+	/** records of the slabs that were never used */
+	private int unused;
+	private int capacity;
+	private int freeHead = NONE;
+	private final OffHeapOrderIndex index;
+	private final SymbolRegistry symbols;
+	private int current = NONE;
+
+	/**
+	 * @param expectedOrders
+	 * 			number of orders the slabs and the index are sized for up front, they grow beyond
+	 * @param symbols
+	 * 			names of the client and security numbers of the orders
+	 */
+	OffHeapOrderStore(int expectedOrders, SymbolRegistry symbols) {
+		this.symbols = symbols;
+		this.index = new OffHeapOrderIndex(expectedOrders);
+		do {
+			addSlab();
+		} while (capacity < expectedOrders);
+	}
+
+	@Override
+	public BookSide newSide(boolean buying) {
+		return new OffHeapBookSide(buying);
+	}
+
+	@Override
+	public void add(BookSide bookSide, Order order, int client, int security) {
+		OffHeapBookSide side = (OffHeapBookSide) bookSide;
+		int record = allocate();
+		ByteBuffer slab = slab(record);
+		int offset = offset(record);
+		slab.putLong(offset + ORDER_ID, order.getOrderId());
+		slab.putLong(offset + UNITS, order.getUnits());
+		slab.putLong(offset + PRICE, order.getPrice());
+		slab.putLong(offset + PRIORITY_TIME, order.getPriorityTime());
+		slab.putLong(offset + DISPLAY_TIME, order.getDisplayTime());
+		slab.putInt(offset + CLIENT, client);
+		slab.putInt(offset + SECURITY, security);
+		slab.put(offset + FLAGS, (byte) ((order.isBuying() ? BUYING : 0) | order.getOrderType().ordinal() << 1));
+
+		OffHeapBookSide.Level level = side.levelFor(order.getPrice());
+		slab.putInt(offset + PREV, level.tail);
+		slab.putInt(offset + NEXT, NONE);
+		if (level.tail == NONE) {
+			level.head = record;
+		} else {
+			putInt(level.tail, NEXT, record);
+		}
+		level.tail = record;
+		level.size++;
+		level.quantity += order.getUnits();
+		side.added();
+
+		int clientHead = side.clientHead(client);
+		slab.putInt(offset + CLIENT_PREV, NONE);
+		slab.putInt(offset + CLIENT_NEXT, clientHead);
+		if (clientHead != NONE) {
+			putInt(clientHead, CLIENT_PREV, record);
+		}
+		side.setClientHead(client, record);
+		index.put(order.getOrderId(), record);
+	}
+
+	@Override
+	public int size() {
+		return index.size();
+	}
+
+	@Override
+	public void clear() {
+		index.clear();
+		unused = 0;
+		freeHead = NONE;
+		current = NONE;
+	}
+
+	/**
+	 * @return
+	 * 		bytes of direct memory held by the slabs
+	 */
+	long getSlabBytes() {
+		return (long) capacity * RECORD_SIZE;
+	}
+
+	@Override
+	public boolean seek(long orderId) {
+		current = index.get(orderId);
+		return current != NONE;
+	}
+
+	@Override
+	public boolean seekLevel(BookSide side, int index) {
+		current = index < side.depth() ? ((OffHeapBookSide) side).levelAt(index).head : NONE;
+		return current != NONE;
+	}
+
+	@Override
+	public boolean seekClient(BookSide side, int client) {
+		current = ((OffHeapBookSide) side).clientHead(client);
+		return current != NONE;
+	}
+
+	@Override
+	public boolean next() {
+		current = getInt(current, NEXT);
+		return current != NONE;
+	}
+
+	@Override
+	public long orderId() {
+		return getLong(current, ORDER_ID);
+	}
+
+	@Override
+	public String clientId() {
+		return symbols.clientName(client());
+	}
+
+	@Override
+	public String securityId() {
+		return symbols.securityName(security());
+	}
+
+	@Override
+	public int client() {
+		return getInt(current, CLIENT);
+	}
+
+	@Override
+	public int security() {
+		return getInt(current, SECURITY);
+	}
+
+	@Override
+	public long units() {
+		return getLong(current, UNITS);
+	}
+
+	@Override
+	public long price() {
+		return getLong(current, PRICE);
+	}
+
+	@Override
+	public boolean isBuying() {
+		return (flags(current) & BUYING) != 0;
+	}
+
+	@Override
+	public OrderType orderType() {
+		return ORDER_TYPES[flags(current) >>> 1];
+	}
+
+	@Override
+	public long priorityTime() {
+		return getLong(current, PRIORITY_TIME);
+	}
+
+	@Override
+	public long displayTime() {
+		return getLong(current, DISPLAY_TIME);
+	}
+
+	@Override
+	public Order order() {
+		Order order = new Order(orderId(), clientId(), securityId(), units(), price(), isBuying(), orderType(),
+				priorityTime());
+		order.setDisplayTime(displayTime());
+		return order;
+	}
+
+	@Override
+	public void fill(BookSide side, long units) {
+		long remaining = units() - units;
+		putLong(current, UNITS, remaining);
+		((OffHeapBookSide) side).level(price()).quantity -= units;
+		if (remaining == 0) {
+			remove(side);
+		}
+	}
+
+	@Override
+	public void reduce(BookSide side, long units, long displayTime) {
+		((OffHeapBookSide) side).level(price()).quantity -= units() - units;
+		putLong(current, UNITS, units);
+		putLong(current, DISPLAY_TIME, displayTime);
+	}
+
+	@Override
+	public void remove(BookSide bookSide) {
+		OffHeapBookSide side = (OffHeapBookSide) bookSide;
+		int record = current;
+		current = NONE;
+		OffHeapBookSide.Level level = side.level(getLong(record, PRICE));
+		int prev = getInt(record, PREV);
+		int next = getInt(record, NEXT);
+		if (prev == NONE) {
+			level.head = next;
+		} else {
+			putInt(prev, NEXT, next);
+		}
+		if (next == NONE) {
+			level.tail = prev;
+		} else {
+			putInt(next, PREV, prev);
+		}
+		level.size--;
+		level.quantity -= getLong(record, UNITS);
+		side.removed(level);
+
+		int clientPrev = getInt(record, CLIENT_PREV);
+		int clientNext = getInt(record, CLIENT_NEXT);
+		if (clientPrev == NONE) {
+			side.setClientHead(getInt(record, CLIENT), clientNext);
+		} else {
+			putInt(clientPrev, CLIENT_NEXT, clientNext);
+		}
+		if (clientNext != NONE) {
+			putInt(clientNext, CLIENT_PREV, clientPrev);
+		}
+		index.remove(getLong(record, ORDER_ID));
+		putInt(record, NEXT, freeHead);
+		freeHead = record;
+	}
+
+	/**
+	 * @return
+	 * 		a free record, from the free list or the unused part of the slabs, adding a slab when both are empty
+	 */
+	private int allocate() {
+		if (freeHead != NONE) {
+			int record = freeHead;
+			freeHead = getInt(record, NEXT);
+			return record;
+		}
+		if (unused == capacity) {
+			addSlab();
+		}
+		return unused++;
+	}
+
+	private void addSlab() {
+		slabs = Arrays.copyOf(slabs, slabs.length + 1);
+		slabs[slabs.length - 1] = ByteBuffer.allocateDirect(SLAB_RECORDS * RECORD_SIZE).order(ByteOrder.nativeOrder());
+		capacity += SLAB_RECORDS;
+	}
+
+	private ByteBuffer slab(int record) {
+		return slabs[record >>> SLAB_SHIFT];
+	}
+
+	private static int offset(int record) {
+		return (record & SLAB_MASK) * RECORD_SIZE;
+	}
+
+	private long getLong(int record, int field) {
+		return slab(record).getLong(offset(record) + field);
+	}
+
+	private void putLong(int record, int field, long value) {
+		slab(record).putLong(offset(record) + field, value);
+	}
+
+	private int getInt(int record, int field) {
+		return slab(record).getInt(offset(record) + field);
+	}
+
+	private void putInt(int record, int field, int value) {
+		slab(record).putInt(offset(record) + field, value);
+	}
+
+	private int flags(int record) {
+		return slab(record).get(offset(record) + FLAGS);
+	}
+}
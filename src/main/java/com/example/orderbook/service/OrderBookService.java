@@ -1,19 +1,45 @@
 package com.example.orderbook.service;
 
 import com.example.orderbook.*;
+import com.example.orderbook.exception.TradeException;
+import com.example.orderbook.model.BatchResult;
+import com.example.orderbook.model.EngineMetrics;
+import com.example.orderbook.model.ExecutionReport;
+import com.example.orderbook.model.MarketDataEvent;
 import com.example.orderbook.model.Order;
+import com.example.orderbook.model.OrderBookDepth;
+import com.example.orderbook.model.OrderPage;
+import com.example.orderbook.model.PriceScale;
+import com.example.orderbook.model.TopOfBook;
+import com.example.orderbook.model.request.BatchCommand;
+import com.example.orderbook.model.request.OrderFilter;
 import com.example.orderbook.model.request.OrderRequest;
 import com.example.orderbook.model.request.OrderType;
 import com.example.orderbook.model.request.UpdateOrderRequest;
+import com.example.orderbook.pipeline.PipelineStats;
+import com.example.orderbook.replay.OrderFlowRecorder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * OrderBookService is a service class for booking new order, updating an order, list orders, list orders by security , cancel order
+ *
+ * All book operations are submitted to the MatchingEngine and executed by the pipeline of the shard owning the security,
+ * operations only knowing an orderId are routed to the shard encoded in the id (see OrderIdService).
+ *
+ * Prices enter the engine in ticks of the security (see PriceScale) and transaction values are converted back to decimals here.
  */
 
 @Service
@@ -21,83 +47,460 @@ public class OrderBookService {
 
 	Logger logger = LoggerFactory.getLogger(OrderBookService.class);
 	@Autowired
-    PriceTimePriorityOrderBook orders;
-    private static final Double HIGH_VALUE = 9999999999.0;
-    private static final Double LOW_VALUE = 0.0;
+    MatchingEngine engine;
+	@Autowired
+	MarketDataFeed marketData;
+	@Autowired
+	OrderFlowRecorder recorder = OrderFlowRecorder.NONE;
+	@Value("${orderbook.batch.max-commands:100000}")
+	int maxBatchCommands = 100000;
+	@Value("${orderbook.views.retained:4}")
+	int retainedViews = 4;
+	@Value("${orderbook.views.ttl-seconds:60}")
+	long viewTtlSeconds = 60;
+
+	/** largest page of listOrderPage */
+	public static final int MAX_PAGE_SIZE = 10000;
+
+	/** views paged through by listOrderPage, by viewId in the order they were taken */
+	private final Map<Long, Retained> views = new LinkedHashMap<>();
+
+	public OrderBookService() {
+	}
 
+	/**
+	 * for use outside of the Spring context, e.g. by the gateway tests
+	 */
+	public OrderBookService(MatchingEngine engine, MarketDataFeed marketData) {
+		this(engine, marketData, OrderFlowRecorder.NONE);
+	}
+
+	/**
+	 * for use outside of the Spring context, recording the commands received, e.g. by the replay tests
+	 */
+	public OrderBookService(MatchingEngine engine, MarketDataFeed marketData, OrderFlowRecorder recorder) {
+		this.engine = engine;
+		this.marketData = marketData;
+		this.recorder = recorder;
+	}
+
+	/**
+	 * lists the buy orders of every shard followed by their sell orders, each in priority order,
+	 * from a view of every book at one cut of the command flow (see MatchingEngine.viewAll)
+	 */
 	public List<Order> listOrders(){
-		final List<Order> orders =  this.orders.getAllOrders();
-		return orders;
+		return engine.viewAll().orders();
 	}
 
 	public List<Order> listOrdersBySecurity(String securityId){
-		final List<Order> orders =  this.orders.getAllOrdersBySecurity(securityId);
-		return orders;
+		return engine.view(securityId).orders();
 	}
 
+	/**
+	 * Takes a view of the resting orders selected by a filter, to be streamed by the caller: every book at one cut of
+	 * the command flow without a securityId (see MatchingEngine.viewAll).
+	 * @param securityId
+	 * 			the security, null for every security
+	 */
+	public BookView viewOrders(String securityId, OrderFilter filter){
+		return securityId == null ? engine.viewAll(filter) : engine.view(securityId, filter);
+	}
 
-	public String bookOrder(OrderRequest orderRequest)
-	{
-		Double value = null;
-        /**
-         * Setting nominal values in case of Market_order
-         * for buy orders setting a high value and for sell order setting low value,
-         * these are only to maintain their preferable top position in the orderbook,
-         * these nominal values are not used in calculation
-         */
-		if(orderRequest.getOrderType().equals(OrderType.MARKET_ORDER)){
-			if(orderRequest.isBuying()){
-                value = HIGH_VALUE;
-            }else{
-                value = LOW_VALUE;
-            }
+	/**
+	 * Hands the orders selected by a filter to a sink one at a time, in the order of listOrders, from a view taken
+	 * before the first one is sent. Each Order is created just before it is sent, so a sink writing them out holds
+	 * one order at a time besides the view.
+	 * @param securityId
+	 * 			the security, null for every security
+	 * @return number of orders sent
+	 * @throws IOException when the sink fails, the remaining orders are not sent
+	 */
+	public int streamOrders(String securityId, OrderFilter filter, OrderSink sink) throws IOException{
+		BookView view = viewOrders(securityId, filter);
+		for (int i = 0; i < view.size(); i++) {
+			sink.send(view.order(i));
+		}
+		return view.size();
+	}
+
+	/**
+	 * Receiver of the orders of streamOrders, called by the thread streaming them.
+	 */
+	public interface OrderSink {
+
+		void send(Order order) throws IOException;
+	}
+
+	/**
+	 * Lists the resting orders a page at a time. The first page takes a new view of the books, the following pages
+	 * are read from the same view by its id, so the pages fit together whatever matched in between. A view is
+	 * kept for viewTtlSeconds after its last page was read, the most recent retainedViews views at most.
+	 * @param securityId
+	 * 			security of a new view, null for every security, ignored with a viewId
+	 * @param viewId
+	 * 			view of the previous pages, null for a new view
+	 * @param offset
+	 * 			position of the first order of the page in the view
+	 * @param limit
+	 * 			maximum number of orders of the page, at most MAX_PAGE_SIZE
+	 * @return the page, with the id of its view
+	 */
+	public OrderPage listOrderPage(String securityId, Long viewId, int offset, int limit){
+		if(offset < 0){
+			throw new TradeException("offset must not be negative");
+		}
+		if(limit <= 0 || limit > MAX_PAGE_SIZE){
+			throw new TradeException("limit must be between 1 and " + MAX_PAGE_SIZE);
+		}
+		BookView view;
+		if(viewId != null){
+			view = retainedView(viewId);
 		}else{
-			value = orderRequest.getValue();
+			view = securityId == null ? engine.viewAll() : engine.view(securityId);
+		}
+		if(offset + (long) limit < view.size()){
+			retain(view);
+		}
+		return new OrderPage(view.getId(), view.getTakenAt(), offset, view.size(), view.orders(offset, limit));
+	}
+
+	private BookView retainedView(long viewId){
+		synchronized (views) {
+			expireViews();
+			Retained retained = views.get(viewId);
+			if(retained == null){
+				throw new TradeException("View expired or unknown - " + viewId + ", start again without a viewId");
+			}
+			retained.lastRead = System.nanoTime();
+			return retained.view;
+		}
+	}
+
+	private void retain(BookView view){
+		synchronized (views) {
+			expireViews();
+			Retained retained = views.get(view.getId());
+			if(retained == null){
+				views.put(view.getId(), new Retained(view));
+			}
+			while(views.size() > retainedViews){
+				views.remove(views.keySet().iterator().next());
+			}
 		}
+	}
 
+	private void expireViews(){
+		long now = System.nanoTime();
+		views.values().removeIf(retained -> now - retained.lastRead > TimeUnit.SECONDS.toNanos(viewTtlSeconds));
+	}
+
+	/**
+	 * a view being paged through and when its last page was read
+	 */
+	private static final class Retained {
+		private final BookView view;
+		private long lastRead = System.nanoTime();
 
-		Order order = new Order(orderRequest.getClientId(),orderRequest.getSecurityId(),
-				orderRequest.getUnits(), value,
-				orderRequest.isBuying(),orderRequest.getOrderType(), System.currentTimeMillis());
-		Double transactionValue;
+		Retained(BookView view){
+			this.view = view;
+		}
+	}
+
+
+	public String bookOrder(OrderRequest orderRequest)
+	{
+		// market orders sweep the book up to the protection limit and never rest, they carry no price
+		long price = orderRequest.getOrderType().equals(OrderType.MARKET_ORDER) ? 0 : orderRequest.getPrice();
+
+		long orderId = engine.nextOrderId(orderRequest.getSecurityId());
 		if(orderRequest.isBuying()){
-			logger.info("BUY ORDER RECEIVED WITH FOLLOWING DETAILS : {} " , order);
-			transactionValue = orders.buyTrade(order);
+			logger.debug("BUY ORDER {} RECEIVED WITH FOLLOWING DETAILS : {} " , orderId, orderRequest);
 		}else{
-			logger.info("SELL ORDER RECEIVED WITH FOLLOWING DETAILS : {} " , order);
-			transactionValue = orders.sellTrade(order);
+			logger.debug("SELL ORDER {} RECEIVED WITH FOLLOWING DETAILS : {} " , orderId, orderRequest);
 		}
-		return "Order Received - " + transactionValue;
+		recorder.recordAdd(orderId, orderRequest.getClientId(), orderRequest.getSecurityId(),
+				orderRequest.getQuantity(), price, orderRequest.isBuying(), orderRequest.getOrderType());
+		ExecutionReport report = engine.placeOrder(orderId, orderRequest.getClientId(), orderRequest.getSecurityId(),
+				orderRequest.getQuantity(), price, orderRequest.isBuying(), orderRequest.getOrderType(),
+				System.currentTimeMillis());
+		logger.debug("ORDER {} EXECUTED : {}", orderId, report);
+		return "Order Received - " + PriceScale.of(orderRequest.getSecurityId()).toValue(report.getNotional());
+	}
+
+	/**
+	 * Queues a new order without waiting for it, for the binary gateway.
+	 * @param price
+	 * 			limit price in ticks of the security, ignored for market orders
+	 * @return completed with the ExecutionReport of the order, or exceptionally when it is rejected
+	 */
+	public CompletableFuture<Object> placeOrderAsync(String clientId, String securityId, long units, long price,
+													 boolean buying, OrderType orderType){
+		long orderId = engine.nextOrderId(securityId);
+		long limit = orderType == OrderType.MARKET_ORDER ? 0 : price;
+		recorder.recordAdd(orderId, clientId, securityId, units, limit, buying, orderType);
+		return engine.placeOrderAsync(orderId, clientId, securityId, units, limit, buying, orderType,
+				System.currentTimeMillis());
+	}
+
+	/**
+	 * Queues an amendment without waiting for it, for the binary gateway.
+	 * @param price
+	 * 			new price in ticks of the security of the order, 0 to keep the price
+	 * @return completed with the ExecutionReport of the amended order, or null if the order does not rest
+	 */
+	public CompletableFuture<Object> amendOrderAsync(long orderId, long units, long price){
+		recorder.recordUpdate(orderId, null, units, price);
+		return engine.amendOrderAsync(orderId, units, price, System.currentTimeMillis());
+	}
+
+	/**
+	 * Queues a cancellation without waiting for it, for the binary gateway.
+	 * @return completed with true if the order was found
+	 */
+	public CompletableFuture<Object> cancelOrderAsync(long orderId){
+		recorder.recordCancel(orderId);
+		return engine.cancelOrderAsync(orderId);
 	}
 
 	public String updateOrder(UpdateOrderRequest updateOrderRequest)  {
-		Order retrievedOrder = orders.findOrderByOrderId(updateOrderRequest.getOrderId());
-
-		Double value = null;
-		if(retrievedOrder.getOrderType().equals(OrderType.MARKET_ORDER)){
-			if(retrievedOrder.isBuying()){
-				value = HIGH_VALUE;
-			}else{
-				value = LOW_VALUE;
+		// the tick size depends on the security, which only the book holding the order knows
+		Order order = engine.findOrder(updateOrderRequest.getOrderId());
+		if(order == null){
+			throw new TradeException("Order not found - " + updateOrderRequest.getOrderId());
+		}
+		PriceScale scale = PriceScale.of(order.getSecurityId());
+		recorder.recordUpdate(updateOrderRequest.getOrderId(), order.getSecurityId(), updateOrderRequest.getQuantity(),
+				updateOrderRequest.getPrice(scale));
+		ExecutionReport report = engine.amendOrder(updateOrderRequest.getOrderId(), updateOrderRequest.getQuantity(),
+				updateOrderRequest.getPrice(scale), System.currentTimeMillis());
+		if(report == null){
+			throw new TradeException("Order not found - " + updateOrderRequest.getOrderId());
+		}
+		return "Order Received for Update - " + scale.toValue(report.getNotional());
+	}
+
+
+
+	public void cancelOrder(Long orderId){
+		recorder.recordCancel(orderId);
+		engine.cancelOrder(orderId);
+	}
+
+	/**
+	 * Executes a batch of add, update and cancel commands.
+	 *
+	 * Every command is validated and queued to the shard of its security in one pass without waiting for the
+	 * previous one, so the shards match the batch in parallel and the commands of a security keep the batch order.
+	 * A rejected command does not stop the batch.
+	 * @param commands
+	 * 			the commands, at most orderbook.batch.max-commands
+	 * @return one result per command, in the order of the commands
+	 */
+	public List<BatchResult> submitBatch(List<BatchCommand> commands){
+		if(commands == null || commands.isEmpty()){
+			throw new TradeException("the batch has no command");
+		}
+		if(commands.size() > maxBatchCommands){
+			throw new TradeException("a batch holds at most " + maxBatchCommands + " commands");
+		}
+		long timestamp = System.currentTimeMillis();
+		List<CompletableFuture<Object>> futures = new ArrayList<>(commands.size());
+		Long[] orderIds = new Long[commands.size()];
+		String[] rejections = new String[commands.size()];
+		for (int i = 0; i < commands.size(); i++) {
+			BatchCommand command = commands.get(i);
+			try {
+				futures.add(submit(command, orderIds, i, timestamp));
+			} catch (RuntimeException e) {
+				rejections[i] = e.getMessage();
+				futures.add(null);
 			}
-		}else{
-			value = updateOrderRequest.getValue();
 		}
 
-		Order order = new Order(retrievedOrder.getOrderId(), retrievedOrder.getClientId(),retrievedOrder.getSecurityId(),
-				updateOrderRequest.getUnits(), value,
-				retrievedOrder.isBuying(),retrievedOrder.getOrderType(), System.currentTimeMillis());
+		List<BatchResult> results = new ArrayList<>(commands.size());
+		int rejected = 0;
+		for (int i = 0; i < commands.size(); i++) {
+			BatchResult result = result(i, commands.get(i), orderIds[i], futures.get(i), rejections[i]);
+			if(!result.isAccepted()){
+				rejected++;
+			}
+			results.add(result);
+		}
+		logger.info("BATCH OF {} COMMANDS EXECUTED, {} REJECTED", commands.size(), rejected);
+		return results;
+	}
 
-		logger.info("INSTRUCTIONS TO UPDATE AN ORDER RECEIVED WITH FOLLOWING DETAILS : {} " , order);
-		Double transactionValue = orders.update(order);
-		return "Order Received for Update - " + transactionValue;
+	/**
+	 * validates a command of a batch and queues it to its shard
+	 */
+	private CompletableFuture<Object> submit(BatchCommand command, Long[] orderIds, int index, long timestamp){
+		if(command == null || command.getAction() == null){
+			throw new TradeException("action is mandatory, acceptable value is ADD, UPDATE or CANCEL");
+		}
+		if(command.getAction() != BatchCommand.Action.ADD){
+			orderIds[index] = command.getOrderId();
+		}
+		switch (command.getAction()) {
+			case ADD:
+				if(command.getClientId() == null || command.getClientId().trim().isEmpty()){
+					throw new TradeException("clientId is mandatory");
+				}
+				if(command.getSecurityId() == null || command.getSecurityId().trim().isEmpty()){
+					throw new TradeException("securityId is mandatory");
+				}
+				if(command.getIsBuying() == null){
+					throw new TradeException("isBuying is mandatory, acceptable value is true or false");
+				}
+				if(command.getOrderType() == null){
+					throw new TradeException("orderType is mandatory, acceptable value is MARKET_ORDER or LIMIT_ORDER");
+				}
+				checkUnits(command);
+				long price = 0;
+				if(command.getOrderType() == OrderType.LIMIT_ORDER){
+					if(command.getValue() == null || command.getValue() <= 0){
+						throw new TradeException("Value is mandatory for LIMIT ORDERs and must be greater than zero ");
+					}
+					price = PriceScale.of(command.getSecurityId()).toTicks(command.getValue());
+				}
+				long orderId = engine.nextOrderId(command.getSecurityId());
+				orderIds[index] = orderId;
+				recorder.recordAdd(orderId, command.getClientId(), command.getSecurityId(), command.getUnits(), price,
+						command.getIsBuying(), command.getOrderType());
+				return engine.placeOrderAsync(orderId, command.getClientId(), command.getSecurityId(),
+						command.getUnits(), price, command.getIsBuying(), command.getOrderType(), timestamp);
+			case UPDATE:
+				checkOrderId(command);
+				checkUnits(command);
+				if(command.getValue() != null && command.getValue() <= 0){
+					throw new TradeException("Value must be greater than zero, leave it out to keep the price of the order");
+				}
+				// the shard converts the value with the scale of the security the order rests on
+				if(command.getValue() == null){
+					recorder.recordUpdate(command.getOrderId(), command.getSecurityId(), command.getUnits(), 0);
+				}else{
+					recorder.recordUpdateValue(command.getOrderId(), command.getSecurityId(), command.getUnits(),
+							command.getValue());
+				}
+				return engine.amendOrderAsync(command.getOrderId(), command.getSecurityId(), command.getUnits(),
+						command.getValue() == null ? 0 : command.getValue(), timestamp);
+			default:
+				checkOrderId(command);
+				recorder.recordCancel(command.getOrderId());
+				return engine.cancelOrderAsync(command.getOrderId());
+		}
+	}
 
+	private static void checkOrderId(BatchCommand command){
+		if(command.getOrderId() == null || command.getOrderId() < 0){
+			throw new TradeException("orderId is mandatory");
+		}
 	}
 
+	private static void checkUnits(BatchCommand command){
+		if(command.getUnits() == null || command.getUnits() < 1){
+			throw new TradeException("units is mandatory and must be greater than zero");
+		}
+	}
 
+	/**
+	 * waits for the outcome of a queued command of a batch
+	 */
+	private static BatchResult result(int index, BatchCommand command, Long orderId, CompletableFuture<Object> future,
+									  String rejection){
+		BatchCommand.Action action = command == null ? null : command.getAction();
+		if(future == null){
+			return BatchResult.rejected(index, action, orderId, rejection);
+		}
+		Object outcome;
+		try {
+			outcome = future.join();
+		} catch (CompletionException e) {
+			return BatchResult.rejected(index, action, orderId, e.getCause().getMessage());
+		}
+		if(action == BatchCommand.Action.CANCEL){
+			return Boolean.TRUE.equals(outcome) ? BatchResult.cancelled(index, orderId)
+					: BatchResult.rejected(index, action, orderId, "Order not found - " + orderId);
+		}
+		if(outcome == null){
+			return BatchResult.rejected(index, action, orderId, "Order not found - " + orderId);
+		}
+		return BatchResult.executed(index, action, (ExecutionReport) outcome);
+	}
 
-	public void cancelOrder(Long orderId){
-		orders.cancelOrder(orderId);
+	/**
+	 * cancels all resting orders of a client
+	 * @param clientId the client whose orders are cancelled
+	 * @param securityId optional security filter, null for all securities
+	 * @return number of cancelled orders
+	 */
+	public int cancelClientOrders(String clientId, String securityId){
+		return engine.cancelClientOrders(clientId, securityId);
+	}
+
+	/**
+	 * @return number of resting orders held in the orderId index of the book
+	 */
+	public int countOrders(){
+		return engine.executeOnAll(PriceTimePriorityOrderBook::getIndexedOrderCount)
+				.stream().mapToInt(Integer::intValue).sum();
+	}
+
+	/**
+	 * @param levels
+	 * 			maximum number of price levels per side, greater than zero
+	 * @return the best price levels of each side of a security with their aggregate units and order count
+	 */
+	public OrderBookDepth getDepth(String securityId, int levels){
+		if(levels <= 0){
+			throw new TradeException("levels must be greater than zero");
+		}
+		return engine.getDepth(securityId, levels);
+	}
+
+	/**
+	 * @return the best bid and ask of a security, both empty if it never had an order
+	 */
+	public TopOfBook getTopOfBook(String securityId){
+		TopOfBook top = engine.getTopOfBook(securityId);
+		return top == null ? new TopOfBook(securityId, 0, 0, 0, 0, 0, 0, 0) : top;
+	}
+
+	/**
+	 * Subscribes to the market data feed: the subscription starts with the current state of the books, taken on the
+	 * matching threads after the subscription was registered so no change is missed between both.
+	 * @param securityId
+	 * 			the security to follow, null for every security
+	 * @param sink
+	 * 			receiver of the events
+	 * @return the subscription, closed by the subscriber when it leaves
+	 */
+	public MarketDataSubscription subscribeMarketData(String securityId, MarketDataFeed.Sink sink){
+		MarketDataSubscription subscription = marketData.subscribe(securityId, sink);
+		List<MarketDataEvent> snapshot;
+		if(securityId != null){
+			snapshot = engine.execute(securityId, book -> book.getMarketDataSnapshot(securityId));
+		}else{
+			snapshot = new ArrayList<>();
+			for (List<MarketDataEvent> events : engine.executeOnAll(book -> book.getMarketDataSnapshot(null))) {
+				snapshot.addAll(events);
+			}
+		}
+		subscription.start(snapshot);
+		return subscription;
+	}
+
+	/**
+	 * @return ring size and per stage lag of the matching pipeline of every shard
+	 */
+	public List<PipelineStats> pipelineStats(){
+		return engine.getPipelineStats();
+	}
+
+	/**
+	 * @return counters, latencies, queue sizes and book sizes of the matching engine
+	 */
+	public EngineMetrics metrics(){
+		return engine.getMetrics();
 	}
 
 }
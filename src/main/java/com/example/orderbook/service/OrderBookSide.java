@@ -0,0 +1,294 @@
+package com.example.orderbook.service;
+
+import com.example.orderbook.model.Order;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * One side (bids or asks) of the order book of a security, stored as a ladder of price levels.
+ *
+ * Levels are keyed by price in ticks and kept in an array sorted from the worst to the best price, so the best level is always the last
+ * element: reading or removing the best level is O(1), finding the level of a price is a binary search O(log L)
+ * and only the creation of a new price level has to shift the (usually few) levels behind it.
+ *
+ * Inserting a level is therefore O(L) in the worst case rather than the O(log L) of a tree, a deliberate trade-off:
+ * the shift only moves the levels better than the new price, and new prices mostly arrive at or near the top of the
+ * book, so it is a short System.arraycopy over contiguous references. In exchange the n-th best level is an array
+ * read, which depth, the market data snapshots, the order lists and the views rely on, where a tree would
+ * walk n nodes, and no node is allocated per level. A tick-indexed ladder would make the insertion O(1) but its size
+ * follows the price range rather than the number of levels, which is unbounded for the prices this book accepts.
+ *
+ * Within a level orders are queued FIFO, which gives the price-time priority of
+ * {@link PriceTimePriorityOrderBook.BuySideComparator} and {@link PriceTimePriorityOrderBook.SellSideComparator}.
+ *
+ * Orders of a client are additionally linked together, the most recent one indexed by the number of the client
+ * (see SymbolRegistry) in clientHeads, so checking whether a client rests on this side is an array read and removing
+ * all orders of a client only visits that client's orders. Emptied levels are kept for new prices
+ * (up to MAX_SPARE_LEVELS), so orders coming and going at known prices and clients do not allocate.
+ *
+ * The side of the HEAP OrderStore. Not thread safe, callers synchronize on the owning SecurityOrderBook.
+ */
+class OrderBookSide implements BookSide {
+
+	private static final int INITIAL_LEVELS = 16;
+	private static final int MAX_SPARE_LEVELS = 64;
+
+	private final boolean buying;
+	private PriceLevel[] levels = new PriceLevel[INITIAL_LEVELS];
+	private int levelCount;
+	private int orderCount;
+	/** most recent node of each client number, null if the client does not rest on this side */
+	private OrderNode[] clientHeads = new OrderNode[0];
+	private final PriceLevel[] spareLevels = new PriceLevel[MAX_SPARE_LEVELS];
+	private int spareCount;
+
+	OrderBookSide(boolean buying) {
+		this.buying = buying;
+	}
+
+	@Override
+	public boolean isBuying() {
+		return buying;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return orderCount == 0;
+	}
+
+	/**
+	 * @return
+	 * 		number of resting orders on this side
+	 */
+	@Override
+	public int size() {
+		return orderCount;
+	}
+
+	/**
+	 * @return
+	 * 		number of distinct price levels on this side
+	 */
+	@Override
+	public int depth() {
+		return levelCount;
+	}
+
+	/**
+	 * @param index
+	 * 			0 for the best level, 1 for the next best one and so on
+	 * @return
+	 * 		the price level at the given distance from the top of the book
+	 */
+	PriceLevel levelAt(int index) {
+		return levels[levelCount - 1 - index];
+	}
+
+	@Override
+	public long levelPrice(int index) {
+		return levelAt(index).getPrice();
+	}
+
+	@Override
+	public long levelQuantity(int index) {
+		return levelAt(index).getQuantity();
+	}
+
+	@Override
+	public int levelOrders(int index) {
+		return levelAt(index).size();
+	}
+
+	@Override
+	public int levelOf(long price) {
+		int index = search(price);
+		return index < 0 ? -1 : levelCount - 1 - index;
+	}
+
+	/**
+	 * @param price
+	 * 			price of a level that just changed, possibly removed
+	 * @return
+	 * 		true if the level is the best one of this side or was better than the remaining best one
+	 */
+	@Override
+	public boolean isAtOrBetterThanBest(long price) {
+		return levelCount == 0 || compare(price, levels[levelCount - 1].getPrice()) >= 0;
+	}
+
+	/**
+	 * @return
+	 * 		the node with the best price-time priority on this side, or null if the side is empty
+	 */
+	OrderNode bestNode() {
+		return levelCount == 0 ? null : levels[levelCount - 1].peek();
+	}
+
+	/**
+	 * Queues an order at the back of its price level, creating the level if needed.
+	 * @param order
+	 * 			the order to rest in the book
+	 * @return
+	 * 		the handle to be used for removing the order
+	 */
+	OrderNode add(Order order) {
+		return add(new OrderNode(order, null));
+	}
+
+	/**
+	 * Queues an unlinked node at the back of the price level of its order, creating the level if needed.
+	 * @param node
+	 * 			a node holding the order to rest in the book
+	 * @return
+	 * 		the node, to be used for removing the order
+	 */
+	OrderNode add(OrderNode node) {
+		Order order = node.order;
+		long price = order.getPrice();
+		int index = search(price);
+		PriceLevel level;
+		if (index >= 0) {
+			level = levels[index];
+		} else {
+			level = newLevel(price);
+			insertLevel(-(index + 1), level);
+		}
+		orderCount++;
+		level.offer(node);
+		if (node.client >= 0) {
+			if (node.client >= clientHeads.length) {
+				clientHeads = Arrays.copyOf(clientHeads, Math.max(node.client + 1, clientHeads.length << 1));
+			}
+			OrderNode clientHead = clientHeads[node.client];
+			if (clientHead != null) {
+				node.clientNext = clientHead;
+				clientHead.clientPrev = node;
+			}
+			clientHeads[node.client] = node;
+		}
+		return node;
+	}
+
+	/**
+	 * Removes an order from the book in O(1), dropping its price level if it becomes empty.
+	 * @param node
+	 * 			handle returned by add
+	 */
+	void remove(OrderNode node) {
+		PriceLevel level = node.level;
+		level.remove(node);
+		unlinkClient(node);
+		orderCount--;
+		if (level.isEmpty()) {
+			removeLevel(level);
+		}
+	}
+
+	@Override
+	public boolean hasClient(int client) {
+		return clientOrders(client) != null;
+	}
+
+	/**
+	 * @param client
+	 * 			number of the client, negative for an unknown client
+	 * @return
+	 * 		the most recent node of the client on this side, older ones follow through clientNext, or null
+	 */
+	OrderNode clientOrders(int client) {
+		return client < 0 || client >= clientHeads.length ? null : clientHeads[client];
+	}
+
+	/**
+	 * Copies all orders of this side into the collection, best price first and FIFO within a price.
+	 * @param collection
+	 * 			the collection receiving the orders
+	 */
+	void copyTo(Collection<Order> collection) {
+		for (int i = levelCount - 1; i >= 0; i--) {
+			for (OrderNode node = levels[i].peek(); node != null; node = node.next) {
+				collection.add(node.order);
+			}
+		}
+	}
+
+	/**
+	 * Binary search of a price in the ladder.
+	 * @return
+	 * 		index of the level if found, (-(insertion point) - 1) otherwise
+	 */
+	private int search(long price) {
+		int low = 0;
+		int high = levelCount - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compare(levels[mid].getPrice(), price);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * @return
+	 * 		a negative integer if price one is worse than price two for this side, positive if it is better
+	 */
+	private int compare(long one, long two) {
+		return buying ? Long.compare(one, two) : Long.compare(two, one);
+	}
+
+	private void unlinkClient(OrderNode node) {
+		if (node.clientPrev == null) {
+			if (node.client >= 0) {
+				clientHeads[node.client] = node.clientNext;
+			}
+		} else {
+			node.clientPrev.clientNext = node.clientNext;
+		}
+		if (node.clientNext != null) {
+			node.clientNext.clientPrev = node.clientPrev;
+		}
+		node.clientPrev = null;
+		node.clientNext = null;
+	}
+
+	private void insertLevel(int index, PriceLevel level) {
+		if (levelCount == levels.length) {
+			PriceLevel[] grown = new PriceLevel[levels.length << 1];
+			System.arraycopy(levels, 0, grown, 0, levelCount);
+			levels = grown;
+		}
+		System.arraycopy(levels, index, levels, index + 1, levelCount - index);
+		levels[index] = level;
+		levelCount++;
+	}
+
+	private void removeLevel(PriceLevel level) {
+		int index = levels[levelCount - 1] == level ? levelCount - 1 : search(level.getPrice());
+		System.arraycopy(levels, index + 1, levels, index, levelCount - index - 1);
+		levels[--levelCount] = null;
+		if (spareCount < MAX_SPARE_LEVELS) {
+			spareLevels[spareCount++] = level;
+		}
+	}
+
+	/**
+	 * @return
+	 * 		an empty level for the price, reusing a removed one if any
+	 */
+	private PriceLevel newLevel(long price) {
+		if (spareCount == 0) {
+			return new PriceLevel(price);
+		}
+		PriceLevel level = spareLevels[--spareCount];
+		spareLevels[spareCount] = null;
+		level.reset(price);
+		return level;
+	}
+}
@@ -0,0 +1,185 @@
+package com.example.orderbook.service;
+
+import com.example.orderbook.model.request.OrderType;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Reusable entry of the ring buffer of a matching shard.
+ *
+ * Producers fill the primitive fields of a claimed entry instead of allocating a command,
+ * the stages read it in turn and the publication stage clears it for the next lap.
+ * The fillers are public so a journal can rebuild the commands it recorded, see CommandJournal.replay.
+ */
+public class OrderCommand {
+
+	CommandType type;
+	long orderId;
+	String clientId;
+	String securityId;
+	/** numbers of clientId and securityId of an ADD, interned before the matching stage (see SymbolRegistry) */
+	int client = SymbolRegistry.NONE;
+	int security = SymbolRegistry.NONE;
+	long units;
+	long price;
+	/** decimal price of an UPDATE converted by the matching stage, NaN when price is in ticks (see updateValue) */
+	double value = Double.NaN;
+	boolean buying;
+	OrderType orderType;
+	long timestamp;
+	Function<PriceTimePriorityOrderBook, ?> action;
+	/** sequence given by the journal stage, 0 when the command is not journaled */
+	long sequence;
+	/** System.nanoTime when the command was published to the ring, only set when the shard is instrumented */
+	long submitNanos;
+
+	Object result;
+	/** fills of an ADD copied by the matching stage, the publication stage builds the report from them */
+	final FillBatch fills = new FillBatch();
+	RuntimeException error;
+	CompletableFuture<Object> future;
+
+	public void add(long orderId, String clientId, String securityId, long units, long price, boolean buying,
+			 OrderType orderType, long timestamp) {
+		this.type = CommandType.ADD;
+		this.orderId = orderId;
+		this.clientId = clientId;
+		this.securityId = securityId;
+		this.units = units;
+		this.price = price;
+		this.buying = buying;
+		this.orderType = orderType;
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * @param price
+	 * 			new price in ticks, 0 to keep the price of the order
+	 */
+	public void update(long orderId, long units, long price, long timestamp) {
+		this.type = CommandType.UPDATE;
+		this.orderId = orderId;
+		this.units = units;
+		this.price = price;
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * An update with a decimal price, converted by the matching stage with the scale of the security the order
+	 * rests on, so the submitter does not need to know that security.
+	 * @param securityId
+	 * 			the security the order is expected to rest on, the update is rejected if it rests on another one,
+	 * 			null to not check it
+	 * @param value
+	 * 			new decimal price, 0 to keep the price of the order
+	 */
+	public void updateValue(long orderId, String securityId, long units, double value, long timestamp) {
+		update(orderId, units, 0, timestamp);
+		this.securityId = securityId;
+		this.value = value;
+	}
+
+	public void cancel(long orderId) {
+		this.type = CommandType.CANCEL;
+		this.orderId = orderId;
+	}
+
+	/**
+	 * @param securityId
+	 * 			only cancel the orders of this security, null for all securities
+	 */
+	public void cancelClient(String clientId, String securityId) {
+		this.type = CommandType.CANCEL_CLIENT;
+		this.clientId = clientId;
+		this.securityId = securityId;
+	}
+
+	void query(Function<PriceTimePriorityOrderBook, ?> action) {
+		this.type = CommandType.QUERY;
+		this.action = action;
+	}
+
+	/**
+	 * Drops references held by the entry once its result is published.
+	 */
+	void clear() {
+		type = null;
+		clientId = null;
+		securityId = null;
+		client = SymbolRegistry.NONE;
+		security = SymbolRegistry.NONE;
+		price = 0;
+		value = Double.NaN;
+		orderType = null;
+		action = null;
+		sequence = 0;
+		result = null;
+		fills.clear();
+		error = null;
+		future = null;
+	}
+
+	public CommandType getType() {
+		return type;
+	}
+
+	public long getOrderId() {
+		return orderId;
+	}
+
+	public String getClientId() {
+		return clientId;
+	}
+
+	public String getSecurityId() {
+		return securityId;
+	}
+
+	public long getUnits() {
+		return units;
+	}
+
+	/**
+	 * @return
+	 * 		price in ticks of the security
+	 */
+	public long getPrice() {
+		return price;
+	}
+
+	/**
+	 * @return
+	 * 		decimal price of an UPDATE built by updateValue, NaN when the price is in ticks
+	 */
+	public double getValue() {
+		return value;
+	}
+
+	public boolean isBuying() {
+		return buying;
+	}
+
+	public OrderType getOrderType() {
+		return orderType;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return
+	 * 		true if the command was rejected by an earlier stage
+	 */
+	public boolean isRejected() {
+		return error != null;
+	}
+
+	@Override
+	public String toString() {
+		return type + " ORDERID=" + orderId + " CLIENT=" + clientId + " SECURITY=" + securityId
+				+ " UNITS=" + units + " PRICE=" + price + " ISBUYING=" + (buying ? "YES" : "NO")
+				+ " ORDERTYPE=" + orderType;
+	}
+}
@@ -1,33 +1,152 @@
 package com.example.orderbook.service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates system-wide unique orderIds.
+ *
+ * An orderId carries the matching shard of its security in the bits above SHARD_SHIFT and a sequence of that shard
+ * in the low bits, so an order can be routed to its shard from its id alone and the ids of different shards never
+ * collide. Shard 0 ids are plain sequential numbers. Ids stay below 2^53, the REST API sends them as JSON numbers and
+ * clients reading numbers as doubles (JavaScript) get them exactly.
+ *
+ * Each shard has its own atomic counter, taking an id is a lock-free increment and shards never contend.
+ * The counters hand out ids from blocks of BLOCK_SIZE reserved in advance; once persistTo is set the end of every
+ * reserved block is written to a file per shard before any of its ids is used, so after a restart the ids resume
+ * after the last reserved block and stay monotonic, the unused end of that block is skipped.
+ */
 public class OrderIdService {
 
+	public static final int SHARD_SHIFT = 43;
+	public static final int MAX_SHARDS = 1 << (53 - SHARD_SHIFT);
+	static final long BLOCK_SIZE = 1 << 20;
+	private static final long SEQUENCE_MASK = (1L << SHARD_SHIFT) - 1;
+
+	private final ShardIds[] shards = new ShardIds[MAX_SHARDS];
+	private volatile Path directory;
+
+	public OrderIdService(){
+		for (int i = 0; i < MAX_SHARDS; i++) {
+			shards[i] = new ShardIds(i);
+		}
+	}
+
 	/**
-	 * An auto incremented sequential number.
-	 **/
-	private static Long currentOrderId = 0L;
-	private static OrderIdService instance;
-
-	private OrderIdService(){};// private constructor, to prevant instantiation of another copy
-
-	public static OrderIdService getInstance() {
-		if (instance == null) {
-			synchronized (OrderIdService.class){
-				if (instance == null) {
-					instance = new OrderIdService();
-				}
+	 * @return
+	 * 		the shard encoded in an orderId
+	 */
+	public static int shardOf(long orderId) {
+		return (int) (orderId >>> SHARD_SHIFT);
+	}
+
+	/**
+	 * @param shardId
+	 * 			the matching shard owning the security of the order
+	 * @return
+	 * 		a new orderId of the shard, greater than every id it generated before
+	 */
+	public long nextId(int shardId) {
+		return ((long) shardId << SHARD_SHIFT) | shards[shardId].next();
+	}
+
+	/**
+	 * Persists the reserved id blocks to a directory, and resumes every shard after the blocks reserved by the
+	 * previous run.
+	 * @param directory
+	 * 			directory of the reservation files, created if needed
+	 */
+	public void persistTo(Path directory) throws IOException {
+		Files.createDirectories(directory);
+		this.directory = directory;
+		for (ShardIds shard : shards) {
+			Path file = shard.file(directory);
+			if (Files.exists(file)) {
+				shard.advanceTo(ByteBuffer.wrap(Files.readAllBytes(file)).getLong());
 			}
 		}
-		return instance ;
 	}
-	
+
 	/**
-	 * This method generates a system-wide unique orderId, in sequence and auto-incremented
-	 * **/
-	public Long getId() {
-		synchronized(currentOrderId){
-			return currentOrderId++;
+	 * Makes the next id of a shard greater than every id already used, once the books are recovered on startup.
+	 * @param highestOrderId
+	 * 			highest orderId found in the snapshot and the journal of the shard
+	 */
+	public void resumeAfter(int shardId, long highestOrderId) {
+		if (highestOrderId >= 0 && shardOf(highestOrderId) == shardId) {
+			shards[shardId].advanceTo((highestOrderId & SEQUENCE_MASK) + 1);
 		}
 	}
 
+	/**
+	 * Counter of one shard: the lock is only taken to reserve the next block.
+	 */
+	private final class ShardIds {
+
+		private final int shardId;
+		private final AtomicLong next = new AtomicLong();
+		/** end (exclusive) of the reserved block */
+		private volatile long limit;
+
+		ShardIds(int shardId) {
+			this.shardId = shardId;
+		}
+
+		long next() {
+			long sequence = next.getAndIncrement();
+			if (sequence >= limit) {
+				reserve(sequence);
+			}
+			return sequence;
+		}
+
+		/**
+		 * Moves the counter forward to a sequence, never backwards.
+		 */
+		void advanceTo(long sequence) {
+			next.accumulateAndGet(sequence, Math::max);
+			reserve(sequence);
+		}
+
+		private synchronized void reserve(long sequence) {
+			if (sequence < limit) {
+				return;
+			}
+			long reserved = Math.max(limit, sequence - sequence % BLOCK_SIZE) + BLOCK_SIZE;
+			if (reserved > SEQUENCE_MASK) {
+				throw new IllegalStateException("orderIds of shard " + shardId + " exhausted");
+			}
+			Path directory = OrderIdService.this.directory;
+			if (directory != null) {
+				write(directory, reserved);
+			}
+			limit = reserved;
+		}
+
+		private void write(Path directory, long reserved) {
+			Path file = file(directory);
+			Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+			try {
+				try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+						StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+					channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, reserved));
+					channel.force(true);
+				}
+				Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (IOException e) {
+				throw new UncheckedIOException("cannot reserve orderIds of shard " + shardId, e);
+			}
+		}
+
+		Path file(Path directory) {
+			return directory.resolve("shard-" + shardId + ".ids");
+		}
+	}
 }
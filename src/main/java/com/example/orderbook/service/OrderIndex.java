@@ -0,0 +1,146 @@
+package com.example.orderbook.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Resting orders of a PriceTimePriorityOrderBook keyed by their primitive orderId.
+ *
+ * An open addressing hash table with linear probing over parallel arrays: looking up, adding or removing an order
+ * neither boxes its id nor allocates an entry, only growing the table allocates. Removal shifts the following
+ * entries of the probe sequence back, so the table never holds tombstones.
+ * Not thread safe, only used by the matching thread of the book.
+ */
+final class OrderIndex {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private long[] keys;
+	private OrderNode[] values;
+	private int mask;
+	private int size;
+
+	OrderIndex() {
+		allocate(INITIAL_CAPACITY);
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return
+	 * 		the node of the order, or null if no order with this id rests in the book
+	 */
+	OrderNode get(long orderId) {
+		for (int i = slot(orderId); values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == orderId) {
+				return values[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return
+	 * 		the node previously indexed under this id, or null
+	 */
+	OrderNode put(long orderId, OrderNode node) {
+		int i = slot(orderId);
+		for (; values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == orderId) {
+				OrderNode previous = values[i];
+				values[i] = node;
+				return previous;
+			}
+		}
+		keys[i] = orderId;
+		values[i] = node;
+		if (++size > (mask + 1) >>> 1) {
+			grow();
+		}
+		return null;
+	}
+
+	/**
+	 * Removes an order only if it is still indexed with the given node.
+	 * @return
+	 * 		true if the order was removed
+	 */
+	boolean remove(long orderId, OrderNode node) {
+		for (int i = slot(orderId); values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == orderId) {
+				if (values[i] != node) {
+					return false;
+				}
+				shiftBack(i);
+				size--;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	void clear() {
+		allocate(INITIAL_CAPACITY);
+		size = 0;
+	}
+
+	/**
+	 * Visits the node of every indexed order, in no particular order.
+	 */
+	void forEach(Consumer<OrderNode> action) {
+		for (OrderNode node : values) {
+			if (node != null) {
+				action.accept(node);
+			}
+		}
+	}
+
+	/**
+	 * Fills the slot of a removed entry with the next entries of its probe sequence that may not stay where they are.
+	 */
+	private void shiftBack(int hole) {
+		int i = hole;
+		while (true) {
+			i = (i + 1) & mask;
+			if (values[i] == null) {
+				break;
+			}
+			int home = slot(keys[i]);
+			// the entry may move to the hole unless its home lies cyclically in (hole, i]
+			if (hole <= i ? (home <= hole || home > i) : (home <= hole && home > i)) {
+				keys[hole] = keys[i];
+				values[hole] = values[i];
+				hole = i;
+			}
+		}
+		values[hole] = null;
+	}
+
+	private int slot(long orderId) {
+		long hash = orderId * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		OrderNode[] oldValues = values;
+		allocate(oldKeys.length << 1);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != null) {
+				int slot = slot(oldKeys[i]);
+				while (values[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new OrderNode[capacity];
+		mask = capacity - 1;
+	}
+}
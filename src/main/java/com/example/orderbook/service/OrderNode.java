@@ -0,0 +1,34 @@
+package com.example.orderbook.service;
+
+import com.example.orderbook.model.Order;
+
+/**
+ * Handle of a resting order inside its PriceLevel.
+ * Holding the node is enough to unlink the order from the book in O(1), no search is required.
+ * The node is also linked in the list of orders its client rests on the same side of the book.
+ */
+final class OrderNode {
+
+	final Order order;
+	/** numbers of the client and the security of the order (see SymbolRegistry), NONE when not known */
+	int client = SymbolRegistry.NONE;
+	int security = SymbolRegistry.NONE;
+	PriceLevel level;
+	OrderNode prev;
+	OrderNode next;
+	OrderNode clientPrev;
+	OrderNode clientNext;
+
+	OrderNode(Order order, PriceLevel level) {
+		this.order = order;
+		this.level = level;
+	}
+
+	/**
+	 * @return
+	 * 		true while the order is still linked in a price level of the book
+	 */
+	boolean isResting() {
+		return level != null;
+	}
+}
@@ -0,0 +1,82 @@
+package com.example.orderbook.service;
+
+import com.example.orderbook.model.Order;
+
+/**
+ * Pre-sized pool of the nodes the HeapOrderStore rests its orders in, each node holding the Order it is
+ * reused with (see Order.reset), so resting an order in a warm book allocates neither.
+ *
+ * A node is taken for every order resting in the book and given back once the order left the book: filled,
+ * cancelled or replaced by an amendment. When the pool is empty a new node is created and counted as a miss,
+ * the pool keeps at most its initial size of free nodes.
+ * Owned by one store and only used by the matching thread of its book, not thread safe.
+ */
+final class OrderPool {
+
+	private final OrderNode[] free;
+	private int size;
+	private long misses;
+
+	/**
+	 * @param capacity
+	 * 			number of nodes created up front, the number of orders expected to rest at the same time
+	 */
+	OrderPool(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("pool capacity must be greater than zero");
+		}
+		free = new OrderNode[capacity];
+		for (int i = 0; i < capacity; i++) {
+			free[i] = newNode();
+		}
+		size = capacity;
+	}
+
+	/**
+	 * @return
+	 * 		an unlinked node, its order is to be reset by the caller
+	 */
+	OrderNode acquire() {
+		if (size == 0) {
+			misses++;
+			return newNode();
+		}
+		OrderNode node = free[--size];
+		free[size] = null;
+		return node;
+	}
+
+	/**
+	 * Gives back a node that is no longer linked in the book nor indexed.
+	 */
+	void release(OrderNode node) {
+		node.prev = null;
+		node.next = null;
+		node.clientPrev = null;
+		node.clientNext = null;
+		node.level = null;
+		if (size < free.length) {
+			free[size++] = node;
+		}
+	}
+
+	/**
+	 * @return
+	 * 		number of free nodes
+	 */
+	int available() {
+		return size;
+	}
+
+	/**
+	 * @return
+	 * 		number of nodes created because the pool was empty
+	 */
+	long getMisses() {
+		return misses;
+	}
+
+	private static OrderNode newNode() {
+		return new OrderNode(new Order(0, null, null, 0, 0, false, null, 0), null);
+	}
+}
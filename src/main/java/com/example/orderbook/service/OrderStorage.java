@@ -0,0 +1,25 @@
+package com.example.orderbook.service;
+
+import java.util.Locale;
+
+/**
+ * Where a PriceTimePriorityOrderBook keeps its resting orders, see OrderStore.
+ */
+public enum OrderStorage {
+	/** Order objects on the heap, optionally drawn from an OrderPool */
+	HEAP,
+	/** fixed-width records in direct memory, so the size of the book does not weigh on the garbage collector */
+	OFF_HEAP;
+
+	/**
+	 * @param name
+	 * 			name of the storage, case insensitive
+	 */
+	public static OrderStorage of(String name) {
+		try {
+			return valueOf(name.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("unknown order storage " + name);
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package com.example.orderbook.service;
+
+import com.example.orderbook.model.Order;
+import com.example.orderbook.model.request.OrderType;
+
+/**
+ * Storage of the resting orders of a PriceTimePriorityOrderBook, behind its public methods.
+ *
+ * A store creates the sides of the books (see BookSide), queues orders at the back of their price level,
+ * indexes them by orderId and links the orders of a client per side. Orders are reached through a cursor:
+ * the seek methods move it to an order, the accessors read the current order and the mutators change or
+ * remove it, so walking and matching the book does not require an object per order.
+ *
+ * HEAP keeps Order objects linked by OrderNodes (see OrderBookSide), OFF_HEAP keeps fixed-width records in
+ * direct memory (see OffHeapOrderStore). Owned by one book and only used by its matching thread, not thread safe.
+ */
+interface OrderStore {
+
+	BookSide newSide(boolean buying);
+
+	/**
+	 * Queues an order at the back of its price level and indexes it.
+	 * @param order
+	 * 			the order to rest, a store may keep the instance or copy it
+	 * @param client
+	 * 			number of the client of the order (see SymbolRegistry)
+	 * @param security
+	 * 			number of the security of the order
+	 */
+	void add(BookSide side, Order order, int client, int security);
+
+	/**
+	 * @return
+	 * 		number of resting orders indexed by orderId
+	 */
+	int size();
+
+	/**
+	 * Drops every order, the sides created so far are no longer used.
+	 */
+	void clear();
+
+	/**
+	 * @return
+	 * 		true if the order rests in the book, it is then the current order
+	 */
+	boolean seek(long orderId);
+
+	/**
+	 * @param index
+	 * 			0 for the best level, 1 for the next best one and so on
+	 * @return
+	 * 		true if the level exists, its order with time priority is then the current order
+	 */
+	boolean seekLevel(BookSide side, int index);
+
+	/**
+	 * @param client
+	 * 			number of the client, negative for an unknown client
+	 * @return
+	 * 		true if the client rests on the side, its most recent order there is then the current order
+	 */
+	boolean seekClient(BookSide side, int client);
+
+	/**
+	 * @return
+	 * 		true if an order follows the current one in its price level, it is then the current order
+	 */
+	boolean next();
+
+	long orderId();
+
+	String clientId();
+
+	String securityId();
+
+	/**
+	 * @return
+	 * 		number of the client of the current order
+	 */
+	int client();
+
+	/**
+	 * @return
+	 * 		number of the security of the current order
+	 */
+	int security();
+
+	long units();
+
+	/**
+	 * @return
+	 * 		price of the current order in ticks
+	 */
+	long price();
+
+	boolean isBuying();
+
+	OrderType orderType();
+
+	long priorityTime();
+
+	long displayTime();
+
+	/**
+	 * @return
+	 * 		the current order, the resting instance when the store keeps the orders it is given, a copy otherwise
+	 */
+	Order order();
+
+	/**
+	 * Takes filled units from the current order, which leaves the book once nothing remains of it.
+	 */
+	void fill(BookSide side, long units);
+
+	/**
+	 * Reduces the current order in place, keeping its time priority.
+	 * @param units
+	 * 			the new quantity, lower than the current one
+	 */
+	void reduce(BookSide side, long units, long displayTime);
+
+	/**
+	 * Removes the current order from the book and from the index, there is no current order afterwards.
+	 */
+	void remove(BookSide side);
+}
@@ -0,0 +1,120 @@
+package com.example.orderbook.service;
+
+import com.example.orderbook.model.Order;
+
+/**
+ * All resting orders of one side of a security at a single price, in ticks.
+ * Orders are kept in arrival (FIFO) order in an intrusive doubly linked list,
+ * so the head of the list is always the order with time priority at this price.
+ * The units resting at the price are kept up to date with the orders, for depth views and market data.
+ * An emptied level may be kept by its OrderBookSide and reused for another price.
+ */
+class PriceLevel {
+
+	private long price;
+	private OrderNode head;
+	private OrderNode tail;
+	private int size;
+	private long quantity;
+
+	PriceLevel(long price) {
+		this.price = price;
+	}
+
+	/**
+	 * Reuses an empty level for another price.
+	 */
+	void reset(long price) {
+		this.price = price;
+	}
+
+	long getPrice() {
+		return price;
+	}
+
+	/**
+	 * @return
+	 * 		the node with time priority at this price, or null if the level is empty
+	 */
+	OrderNode peek() {
+		return head;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return
+	 * 		sum of the units of the orders resting at this price
+	 */
+	long getQuantity() {
+		return quantity;
+	}
+
+	/**
+	 * Accounts for units of a resting order that were filled or amended away, the order itself is updated by the caller.
+	 */
+	void reduce(long units) {
+		quantity -= units;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Appends an order at the back of the queue, it loses time priority to every order already queued at this price.
+	 * @param order
+	 * 			the order to queue
+	 * @return
+	 * 		the handle to be used for removing the order
+	 */
+	OrderNode offer(Order order) {
+		return offer(new OrderNode(order, null));
+	}
+
+	/**
+	 * Appends an unlinked node at the back of the queue.
+	 * @param node
+	 * 			a node holding the order to queue
+	 * @return
+	 * 		the node, now linked in this level
+	 */
+	OrderNode offer(OrderNode node) {
+		node.level = this;
+		if (tail == null) {
+			head = node;
+		} else {
+			tail.next = node;
+			node.prev = tail;
+		}
+		tail = node;
+		size++;
+		quantity += node.order.getUnits();
+		return node;
+	}
+
+	/**
+	 * Unlinks an order from this level in O(1).
+	 * @param node
+	 * 			handle returned by offer
+	 */
+	void remove(OrderNode node) {
+		if (node.prev == null) {
+			head = node.next;
+		} else {
+			node.prev.next = node.next;
+		}
+		if (node.next == null) {
+			tail = node.prev;
+		} else {
+			node.next.prev = node.prev;
+		}
+		node.prev = null;
+		node.next = null;
+		node.level = null;
+		size--;
+		quantity -= node.order.getUnits();
+	}
+}
@@ -0,0 +1,33 @@
+package com.example.orderbook.service;
+
+import com.example.orderbook.model.PriceScale;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tick sizes of the securities, orderbook.price.decimals.{securityId}=decimals in application.properties.
+ * Securities not listed trade with PriceScale.DEFAULT_DECIMALS.
+ */
+@Component
+@ConfigurationProperties(prefix = "orderbook.price")
+public class PriceScaleProperties {
+
+	private Map<String, Integer> decimals = new HashMap<>();
+
+	public Map<String, Integer> getDecimals() {
+		return decimals;
+	}
+
+	public void setDecimals(Map<String, Integer> decimals) {
+		this.decimals = decimals;
+	}
+
+	@PostConstruct
+	public void register() {
+		decimals.forEach(PriceScale::register);
+	}
+}
@@ -1,205 +1,593 @@
 package com.example.orderbook.service;
 
+import com.example.orderbook.model.request.OrderFilter;
 import com.example.orderbook.model.request.OrderType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.stereotype.Service;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.PriorityBlockingQueue;
-import java.util.stream.Collectors;
+import com.example.orderbook.model.BookSize;
+import com.example.orderbook.model.DepthLevel;
+import com.example.orderbook.model.ExecutionReport;
+import com.example.orderbook.model.MarketDataEvent;
 import com.example.orderbook.model.Order;
+import com.example.orderbook.model.OrderBookDepth;
+import com.example.orderbook.model.PriceScale;
+import com.example.orderbook.model.TopOfBook;
 
 /**
  * PriceTimePriorityOrderBook is an price time order matching engine that automatically matches viable transactions
  * unmatched orders are stored in order
  *
- * uses Java PriorityBlockingQueue
+ * each security has its own SecurityOrderBook, whose bid and ask sides are ladders of price levels
+ * with a FIFO queue of orders per level (see BookSide)
  *
- * For handling concurrent clients, following operations are handled
- * 1. Adding or removing a new order for a given security is handled with the individual PriorityBlockingQueues.
- * 2. Lookup of a given security is handled by ConcurrentHashMap
- * 3. Partial fulfillment of an order is handled with the setUnits method of Order class
+ * The book is not thread safe: each instance is owned by one MatchingShard and only mutated by its thread,
+ * concurrent clients go through MatchingEngine which serializes all commands of a security on its shard.
+ *
+ * The resting orders are kept by an OrderStore, on the heap or off-heap (see OrderStorage), which also indexes them
+ * by orderId, so cancel, amend and lookup never scan the books.
+ *
+ * Security and client ids are interned by a SymbolRegistry, shared with the other shards of the engine, and the book
+ * works with their numbers: the books of the securities are indexed by security number and the orders of a client are
+ * linked per security and side by the store under its client number. clientSecurities remembers in which securities
+ * a client has rested orders, so self-trade checks are an array read and cancelling all orders of a client only
+ * visits that client's orders. Queries by securityId are case insensitive, the case being folded by the registry.
+ *
+ * Prices are in ticks of the security and quantities in units (see PriceScale), transaction values are notionals
+ * in ticks times units, so matching never boxes nor rounds.
+ *
+ * Market orders never rest: they sweep the opposite side down to a protection limit, marketProtectionBps away
+ * from the best opposite price, and the remainder is cancelled (immediate or cancel).
+ *
+ * Every change of a price level and every trade is published to the MarketDataFeed with the next sequence of
+ * the security, a sweep publishes one event per level it touched rather than one per order.
+ * A change at the best price of a side also refreshes the cached top of book of the security, which other threads
+ * read without going through the matching thread.
+ *
+ * With an order pool (see OrderPool) or off-heap storage the orders of place() are traded from a reused instance and
+ * copied into the store when they rest, and together with the primitive orderId index, the recycled price levels
+ * and the fill batch nothing is allocated when a warm book adds, matches or cancels an order, as long as the
+ * INFO logging of this class is off. Such a book does not keep the instances it is given, the queries hand out copies.
  */
-@Service
 public class PriceTimePriorityOrderBook {
 
-	private static final int INITIAL_CAPACITY = 10;
-	private Map<String,PriorityBlockingQueue<Order>> buyMap;
-	private Map<String,PriorityBlockingQueue<Order>> sellMap;
+	private static final int INITIAL_SECURITIES = 64;
+
+	private final SymbolRegistry symbols;
+	/** book of each security number, null for the securities this book never traded */
+	private SecurityOrderBook[] books = new SecurityOrderBook[INITIAL_SECURITIES];
+	/** the books in the order they were created */
+	private final List<SecurityOrderBook> bookList = new ArrayList<>();
+	/** top of book of each security number, written by the matching thread only and republished on every new entry */
+	private volatile TopOfBookCache[] tops = new TopOfBookCache[INITIAL_SECURITIES];
+	/** numbers of the securities each client number has rested orders in, null for a client without any */
+	private BitSet[] clientSecurities = new BitSet[0];
 
 	Logger logger = LoggerFactory.getLogger(PriceTimePriorityOrderBook.class);
 
-    private static final Double HIGH_VALUE = 9999999999.0;
-    private static final Double LOW_VALUE = 0.0;
+	/** default protection of market orders, 5% away from the best opposite price */
+	public static final long DEFAULT_MARKET_PROTECTION_BPS = 500;
+
+	private final long marketProtectionBps;
+	private final MarketDataFeed feed;
+	private final FillBatch fills = new FillBatch();
+	/** audit trail of the executions, NONE until the shard owning the book has recovered it */
+	private ExecutionLog.Recorder executionLog = ExecutionLog.Recorder.NONE;
+	private final OrderStore store;
+	/** true when the store copies the orders it rests, place() then trades a reused order */
+	private final boolean copiesOrders;
+	private final Order incoming = new Order(0, null, null, 0, 0, false, null, 0);
+	/** highest orderId traded by this book, -1 before the first order */
+	private long highestOrderId = -1;
+	/** orders rejected because their client rests orders on the opposite side */
+	private long selfTradeBlocks;
 
     public PriceTimePriorityOrderBook() {
-		this.buyMap = new ConcurrentHashMap<String, PriorityBlockingQueue<Order>>();
-		this.sellMap = new ConcurrentHashMap<String, PriorityBlockingQueue<Order>>();
+		this(DEFAULT_MARKET_PROTECTION_BPS);
+	}
+
+	/**
+	 * @param marketProtectionBps
+	 * 			how far, in basis points of the best opposite price, a market order may sweep the book
+	 */
+	public PriceTimePriorityOrderBook(long marketProtectionBps) {
+		this(marketProtectionBps, new MarketDataFeed());
+	}
+
+	/**
+	 * @param marketProtectionBps
+	 * 			how far, in basis points of the best opposite price, a market order may sweep the book
+	 * @param feed
+	 * 			where the changes of the book are published
+	 */
+	public PriceTimePriorityOrderBook(long marketProtectionBps, MarketDataFeed feed) {
+		this(marketProtectionBps, feed, 0);
+	}
+
+	/**
+	 * @param marketProtectionBps
+	 * 			how far, in basis points of the best opposite price, a market order may sweep the book
+	 * @param feed
+	 * 			where the changes of the book are published
+	 * @param orderPoolSize
+	 * 			number of orders pre-allocated for place(), 0 to allocate every order
+	 */
+	public PriceTimePriorityOrderBook(long marketProtectionBps, MarketDataFeed feed, int orderPoolSize) {
+		this(marketProtectionBps, feed, orderPoolSize, OrderStorage.HEAP);
+	}
+
+	/**
+	 * @param marketProtectionBps
+	 * 			how far, in basis points of the best opposite price, a market order may sweep the book
+	 * @param feed
+	 * 			where the changes of the book are published
+	 * @param orderPoolSize
+	 * 			number of orders pre-allocated, 0 to allocate every order on the heap
+	 * @param storage
+	 * 			where the resting orders are kept
+	 */
+	public PriceTimePriorityOrderBook(long marketProtectionBps, MarketDataFeed feed, int orderPoolSize,
+									  OrderStorage storage) {
+		this(marketProtectionBps, feed, orderPoolSize, storage, new SymbolRegistry());
+	}
+
+	/**
+	 * @param marketProtectionBps
+	 * 			how far, in basis points of the best opposite price, a market order may sweep the book
+	 * @param feed
+	 * 			where the changes of the book are published
+	 * @param orderPoolSize
+	 * 			number of orders pre-allocated, 0 to allocate every order on the heap
+	 * @param storage
+	 * 			where the resting orders are kept
+	 * @param symbols
+	 * 			numbers of the securities and clients, shared by the books of an engine
+	 */
+	public PriceTimePriorityOrderBook(long marketProtectionBps, MarketDataFeed feed, int orderPoolSize,
+									  OrderStorage storage, SymbolRegistry symbols) {
+		if(marketProtectionBps < 0){
+			throw new IllegalArgumentException("market protection must not be negative");
+		}
+		if(orderPoolSize < 0){
+			throw new IllegalArgumentException("order pool size must not be negative");
+		}
+		this.marketProtectionBps = marketProtectionBps;
+		this.feed = feed;
+		this.symbols = symbols;
+		this.store = storage == OrderStorage.OFF_HEAP ? new OffHeapOrderStore(orderPoolSize, symbols)
+				: new HeapOrderStore(orderPoolSize);
+		this.copiesOrders = storage == OrderStorage.OFF_HEAP || orderPoolSize > 0;
+	}
+
+	/**
+	 * @param recorder
+	 * 			where the executions of the book are recorded from now on, ExecutionLog.Recorder.NONE to stop
+	 */
+	public void setExecutionLog(ExecutionLog.Recorder recorder){
+		this.executionLog = recorder;
+	}
+
+	/**
+	 * @return
+	 * 		the registry the security and client numbers of this book come from
+	 */
+	public SymbolRegistry getSymbols(){
+		return symbols;
 	}
 
 	/**
 	 * Attempts to match (sell) an order or queues it until a buyer arrives.
-	 * 
+	 * Market orders are immediate or cancel: they never rest, what is not filled within the protection limit is cancelled.
+	 *
 	 * @param sellOrder
 	 * 			the sell order
 	 * @return
-	 * 		The effective transaction value, or null if queued.
+	 * 		the fills of the order and the fate of its remainder
 	 */
-	public Double sellTrade(Order sellOrder){
+	public ExecutionReport sellTrade(Order sellOrder){
 		if(sellOrder.isBuying() || sellOrder.getUnits() <= 0){
 			throw new IllegalArgumentException("selling a BUY order");
 		}
-		String desiredSecurity = sellOrder.getSecurityId();		
-		Double transactionValue = 0.0;
-		PriorityBlockingQueue<Order> buyQueueForSecurity = buyMap.get(desiredSecurity);
-		if(buyQueueForSecurity != null){
-			sameBuyerSellerCheck(buyQueueForSecurity, sellOrder);
-			transactionValue = matchOrder(buyQueueForSecurity, sellOrder);
-		}
-		//2. If we still have sell units (i.e no match or partially fulfilled it), queue it.
-		if(sellOrder.getUnits() > 0){
-			if(sellMap.containsKey(desiredSecurity)){
-				sellMap.get(desiredSecurity).offer(sellOrder);
-			}else{
-				//Critical section: creating and adding a new queue for an non-existing security.
-				PriorityBlockingQueue<Order> pq = new PriorityBlockingQueue<Order>(INITIAL_CAPACITY, new SellSideComparator());
-				pq.offer(sellOrder);
-				sellMap.put(desiredSecurity, pq);
-			}
-		}
-		if(transactionValue == 0.0){
-			logger.info("SALE ORDER QUEUED {}", sellOrder.getOrderId().toString());
-		}
-		return transactionValue;
+		trade(sellOrder, symbols.internClient(sellOrder.getClientId()), symbols.internSecurity(sellOrder.getSecurityId()));
+		return fills.toReport();
 	}
 
 	/**
 	 * Attempts to match (buy) an order or queues it until a seller arrives.
-	 * 
+	 * Market orders are immediate or cancel: they never rest, what is not filled within the protection limit is cancelled.
+	 *
 	 * @param buyOrder
 	 * 			the order to be bought
 	 * @return
-	 * 		The effective transaction value, or 0 if queued.
+	 * 		the fills of the order and the fate of its remainder
 	 */
-	public Double buyTrade(Order buyOrder) {
+	public ExecutionReport buyTrade(Order buyOrder) {
 		if(!buyOrder.isBuying() || buyOrder.getUnits() <= 0){
 			throw new IllegalArgumentException("buying a SELL order");
 		}
+		trade(buyOrder, symbols.internClient(buyOrder.getClientId()), symbols.internSecurity(buyOrder.getSecurityId()));
+		return fills.toReport();
+	}
 
-		String desiredSecurity = buyOrder.getSecurityId();
-		Double transactionValue = 0.0;
-		PriorityBlockingQueue<Order> sellQueueForSecurity = sellMap.get(desiredSecurity);
-		if(sellQueueForSecurity != null){
-			sameBuyerSellerCheck(sellQueueForSecurity, buyOrder);
-			transactionValue = matchOrder(sellQueueForSecurity, buyOrder);
+	/**
+	 * Matches or queues a new order like buyTrade and sellTrade, from a reused instance when the store copies the
+	 * orders it rests. The outcome is left in the fill batch of the book (see getFills) instead of being returned
+	 * as a report, so a warm pooled or off-heap book allocates nothing for the order.
+	 *
+	 * @param price
+	 * 			price in ticks, ignored for a market order
+	 * @return
+	 * 		true if the order, or what remains of it, rests in the book
+	 */
+	public boolean place(long orderId, String clientId, String securityId, long units, long price, boolean buying,
+						 OrderType orderType, long timestamp){
+		return place(orderId, symbols.internClient(clientId), symbols.internSecurity(securityId), units, price, buying,
+				orderType, timestamp);
+	}
+
+	/**
+	 * Matches or queues a new order like place, for a client and a security already interned by the SymbolRegistry
+	 * of the book, the resting order takes the registered names.
+	 *
+	 * @param client
+	 * 			number of the client
+	 * @param security
+	 * 			number of the security
+	 * @return
+	 * 		true if the order, or what remains of it, rests in the book
+	 */
+	public boolean place(long orderId, int client, int security, long units, long price, boolean buying,
+						 OrderType orderType, long timestamp){
+		if(client < 0 || security < 0){
+			throw new IllegalArgumentException("clientId and securityId are mandatory");
+		}
+		if(units <= 0){
+			throw new IllegalArgumentException("units must be greater than zero");
+		}
+		String clientId = symbols.clientName(client);
+		String securityId = symbols.securityName(security);
+		Order order;
+		if(copiesOrders){
+			order = incoming;
+			order.reset(orderId, clientId, securityId, units, price, buying, orderType, timestamp);
+		}else{
+			order = new Order(orderId, clientId, securityId, units, price, buying, orderType, timestamp);
 		}
-		if(buyOrder.getUnits() > 0){
-			if(buyMap.containsKey(desiredSecurity)){
-				buyMap.get(desiredSecurity).offer(buyOrder);
+		return trade(order, client, security);
+	}
+
+	/**
+	 * Sweeps the opposite side with an order and queues its remainder,
+	 * the fills and the fate of the order are recorded in the fill batch.
+	 * @param client
+	 * 			number of the client of the order
+	 * @param security
+	 * 			number of the security of the order
+	 * @return
+	 * 		true if the order was queued
+	 */
+	private boolean trade(Order order, int client, int security){
+		if(client < 0 || security < 0){
+			throw new IllegalArgumentException("clientId and securityId are mandatory");
+		}
+		SecurityOrderBook book = bookFor(security);
+		highestOrderId = Math.max(highestOrderId, order.getOrderId());
+		BookSide opposite = book.side(!order.isBuying());
+		fills.clear();
+		if(!opposite.isEmpty()){
+			sameBuyerSellerCheck(book, opposite, order, client);
+			sweep(book, opposite, order, client, limitPrice(opposite, order));
+		}
+		//2. If we still have units (i.e no match or partially fulfilled it), queue it.
+		boolean rested = order.getUnits() > 0 && restOrCancel(book, book.side(order.isBuying()), order, client);
+		if(fills.isEmpty() && rested && logger.isInfoEnabled()){
+			logger.info(order.isBuying() ? "BUY ORDER QUEUED {}" : "SALE ORDER QUEUED {}", order.getOrderId());
+		}
+		fills.complete(order, rested);
+		return rested;
+	}
+
+	/**
+	 * @return
+	 * 		the fills of the last order traded and the fate of its remainder, overwritten by the next order
+	 */
+	FillBatch getFills(){
+		return fills;
+	}
+
+	/**
+	 * the worst price an order may trade at: its own price for a limit order, for a market order
+	 * the best opposite price moved by the market protection
+	 */
+	private long limitPrice(BookSide side, Order order){
+		if(order.getOrderType() != OrderType.MARKET_ORDER){
+			return order.getPrice();
+		}
+		long best = side.levelPrice(0);
+		long protection = Math.multiplyExact(best, marketProtectionBps) / 10000;
+		return order.isBuying() ? best + protection : best - protection;
+	}
+
+	/**
+	 * @return
+	 * 		the highest orderId this book has traded, resting or not, -1 if none
+	 */
+	public long getHighestOrderId(){
+		return highestOrderId;
+	}
+
+	/**
+	 * @return
+	 * 		the books of the securities traded by this book
+	 */
+	Collection<SecurityOrderBook> books(){
+		return bookList;
+	}
+
+	/**
+	 * @return
+	 * 		the store of the resting orders, only to be used by the matching thread
+	 */
+	OrderStore store(){
+		return store;
+	}
+
+	/**
+	 * Queues a resting order read from a snapshot as is, behind the orders already restored at its price.
+	 */
+	void restore(Order order){
+		SecurityOrderBook book = bookFor(symbols.internSecurity(order.getSecurityId()));
+		rest(book, book.side(order.isBuying()), order, symbols.internClient(order.getClientId()));
+	}
+
+	/**
+	 * @param orderId
+	 * 			highest orderId recorded by a snapshot
+	 */
+	void restoreHighestOrderId(long orderId){
+		highestOrderId = Math.max(highestOrderId, orderId);
+	}
+
+	/**
+	 * returns the book of a security number, creating it on first use
+	 */
+	private SecurityOrderBook bookFor(int security){
+		if(security >= books.length){
+			books = Arrays.copyOf(books, Math.max(security + 1, books.length << 1));
+		}
+		SecurityOrderBook book = books[security];
+		if(book == null){
+			book = new SecurityOrderBook(security, symbols.securityName(security), store);
+			books[security] = book;
+			bookList.add(book);
+		}
+		return book;
+	}
+
+	/**
+	 * @param securityId
+	 * 			The security id, as spelled by the orders
+	 * @return
+	 * 		the book of a security, null if this book never traded it
+	 */
+	private SecurityOrderBook bookOf(String securityId){
+		int security = symbols.findSecurity(securityId);
+		return security < 0 || security >= books.length ? null : books[security];
+	}
+
+	/**
+	 * @param securityId
+	 * 			The security id, in any case
+	 * @return
+	 * 		the books of every spelling of a security this book traded, in registration order
+	 */
+	private List<SecurityOrderBook> booksOf(String securityId){
+		int[] securities = symbols.findSecurities(securityId);
+		List<SecurityOrderBook> found = new ArrayList<>(securities.length);
+		for (int security : securities) {
+			if(security < books.length && books[security] != null){
+				found.add(books[security]);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * queues the remainder of a limit order, the remainder of a market order is cancelled
+	 * @return
+	 * 		true if the order was queued
+	 */
+	private boolean restOrCancel(SecurityOrderBook book, BookSide side, Order order, int client){
+		if(order.getOrderType() == OrderType.MARKET_ORDER){
+			record(ExecutionLog.Event.CANCELLED, book, order, client);
+			if(logger.isInfoEnabled()){
+				logger.info("MARKET ORDER {} REMAINING {} UNITS CANCELLED", order.getOrderId(), order.getUnits());
+			}
+			return false;
+		}
+		rest(book, side, order, client);
+		record(ExecutionLog.Event.RESTED, book, order, client);
+		return true;
+	}
+
+	private void record(ExecutionLog.Event event, SecurityOrderBook book, Order order, int client){
+		executionLog.record(event, book.getSecurity(), order.getOrderId(), client, order.isBuying(), order.getPrice(),
+				order.getUnits(), 0, SymbolRegistry.NONE);
+	}
+
+	/**
+	 * records an event of the current order of the store
+	 */
+	private void recordCurrent(ExecutionLog.Event event, SecurityOrderBook book, long price, long units){
+		executionLog.record(event, book.getSecurity(), store.orderId(), store.client(), store.isBuying(), price, units,
+				0, SymbolRegistry.NONE);
+	}
+
+	/**
+	 * queues an order in the book, the store indexes it by orderId and client
+	 */
+	private void rest(SecurityOrderBook book, BookSide side, Order order, int client){
+		boolean firstOfClient = !side.hasClient(client);
+		store.add(side, order, client, book.getSecurity());
+		publishLevel(book, side, order.getPrice(), true);
+		if(firstOfClient){
+			// first order of the client on this side of the book
+			securitiesOf(client).set(book.getSecurity());
+		}
+	}
+
+	private BitSet securitiesOf(int client){
+		if(client >= clientSecurities.length){
+			clientSecurities = Arrays.copyOf(clientSecurities, Math.max(client + 1, clientSecurities.length << 1));
+		}
+		BitSet securities = clientSecurities[client];
+		if(securities == null){
+			securities = new BitSet();
+			clientSecurities[client] = securities;
+		}
+		return securities;
+	}
+
+	/**
+	 * removes the current order of the store from the book and publishes the change of its level
+	 */
+	private void removeAndPublish(SecurityOrderBook book, BookSide side){
+		long price = store.price();
+		store.remove(side);
+		publishLevel(book, side, price, false);
+	}
+
+	/**
+	 * takes the next sequence of the security for a change of a level, the event is only built for subscribers
+	 * @param added
+	 * 			true when an order was queued at the price, which may have created the level
+	 */
+	private void publishLevel(SecurityOrderBook book, BookSide side, long price, boolean added){
+		long sequence = book.nextSequence();
+		if(side.isAtOrBetterThanBest(price)){
+			refreshTop(book, sequence);
+		}
+		if(feed.hasSubscribers()){
+			int index = side.levelOf(price);
+			MarketDataEvent.Type type;
+			if(index < 0){
+				type = MarketDataEvent.Type.LEVEL_REMOVED;
 			}else{
-				//creating and adding a new queue for an non-existing security.
-				PriorityBlockingQueue<Order> pq = new PriorityBlockingQueue<Order>(INITIAL_CAPACITY, new BuySideComparator());
-				pq.offer(buyOrder);
-				buyMap.put(desiredSecurity, pq);
+				type = added && side.levelOrders(index) == 1 ? MarketDataEvent.Type.LEVEL_ADDED : MarketDataEvent.Type.LEVEL_CHANGED;
+			}
+			feed.publish(MarketDataEvent.level(type, book.getSecurityId(), sequence, side.isBuying(), price,
+					index < 0 ? 0 : side.levelQuantity(index), index < 0 ? 0 : side.levelOrders(index)));
+		}
+	}
+
+	/**
+	 * updates the cached top of book of a security when one of its best levels changed
+	 */
+	private void refreshTop(SecurityOrderBook book, long sequence){
+		BookSide bids = book.getBids();
+		BookSide asks = book.getAsks();
+		boolean bid = bids.depth() > 0;
+		boolean ask = asks.depth() > 0;
+		TopOfBookCache top = book.getTop();
+		boolean first = top.isEmpty();
+		if(top.update(sequence, bid ? bids.levelPrice(0) : 0, bid ? bids.levelQuantity(0) : 0, bid ? bids.levelOrders(0) : 0,
+				ask ? asks.levelPrice(0) : 0, ask ? asks.levelQuantity(0) : 0, ask ? asks.levelOrders(0) : 0) && first){
+			TopOfBookCache[] array = tops;
+			if(book.getSecurity() >= array.length){
+				array = Arrays.copyOf(array, Math.max(book.getSecurity() + 1, array.length << 1));
 			}
+			array[book.getSecurity()] = top;
+			// the volatile write publishes the new entry to the readers
+			tops = array;
 		}
-		if(transactionValue == 0.0){
-			logger.info("BUY ORDER QUEUED {}", buyOrder.getOrderId().toString());
+	}
+
+	private void publishTrade(SecurityOrderBook book, Order taker, long makerOrderId, long price, long units){
+		long sequence = book.nextSequence();
+		if(feed.hasSubscribers()){
+			feed.publish(MarketDataEvent.trade(book.getSecurityId(), sequence, taker.isBuying(), price, units,
+					makerOrderId, taker.getOrderId()));
 		}
-		return transactionValue;
 	}
 
 	// Buyer and seller cannot be the same person for the same security
-	private void sameBuyerSellerCheck(PriorityBlockingQueue<Order> pq, Order order){
-		List<Order> st = pq.stream()
-				.filter(o -> o.getClientId().equals(order.getClientId())).collect(Collectors.toList());
-		if(st.size() >0){
-			String msg = order.getClientId()+
-					" is Trying to buy and Sell the same security, This is not permitted";
-			System.err.println(msg);
-			logger.warn("msg");
-			throw new IllegalArgumentException(msg);
+	private void sameBuyerSellerCheck(SecurityOrderBook book, BookSide side, Order order, int client){
+		if(side.hasClient(client)){
+			selfTradeBlocks++;
+			record(ExecutionLog.Event.REJECTED, book, order, client);
+			logger.warn("{} is Trying to buy and Sell the same security, This is not permitted", order.getClientId());
+			throw new IllegalArgumentException(order.getClientId()
+					+ " is Trying to buy and Sell the same security, This is not permitted");
 		}
 	}
 
 	/**
-	 * Attempts to match a buy order with sell order and vice versa
+	 * Matches a buy order with sell orders and vice versa, sweeping the price levels of the opposite side
+	 * from the best one while they are within the limit price, FIFO within a level.
+	 * Every execution is recorded in the fill batch and fully filled resting orders are unlinked as the sweep passes them,
+	 * each trade is published and each level touched is published once, after the sweep is done with it.
 	 *
-	 * @param pq
-	 * 			queue holding orders for a given security
+	 * @param book
+	 * 			the book of the security
+	 * @param side
+	 * 			opposite side of the book holding orders for a given security
 	 * @param o
-	 *			buy/sell order
-	 * @return
-	 * 		The effective transaction value, or 0 if queued.
-	 */
-	private Double matchOrder(PriorityBlockingQueue<Order> pq, Order o){
-		Order bestCandidate = pq.peek();
-		if(bestCandidate == null || o.getUnits() == 0){
-			return 0.0;
-		}
-		String security = o.getSecurityId();
-		Double transactionValue = bestCandidate.getValue();	
-		int placedUnits = 0;
-		boolean shouldMakeTransaction = o.isBuying()?
-				(o.getValue() >= transactionValue):
-					(o.getValue() <= transactionValue);
-				//for market_order offer the best trade available at that point in time
-				if(o.getOrderType().equals(OrderType.MARKET_ORDER)){
-					shouldMakeTransaction = true;
-				}
-
-				if(	shouldMakeTransaction){
-					int oUnits = o.getUnits();
-					int bestCandidateUnits = bestCandidate.getUnits();
-                    //
-                    transactionValue = bestCandidate.getValue();
-                    //for bestCandidate is an MARKET_ORDER , values from bid/ask order should be considered
-                    if(bestCandidate.getOrderType().equals(OrderType.MARKET_ORDER)){
-                        if(bestCandidate.getValue().equals(HIGH_VALUE) || bestCandidate.getValue().equals(LOW_VALUE)) {
-                            transactionValue = o.getValue();
-                        }
-                    }
-                    //
-
-                    //If both the bestcandidate and placed order are MARKET_ORDER, then find the security market value based on
-                    //the price of next best limit order from order book
-                    if(bestCandidate.getOrderType().equals(OrderType.MARKET_ORDER) &&
-                            o.getOrderType().equals(OrderType.MARKET_ORDER)){
-                        transactionValue = getMarketPrice(pq);
-                    }
-
-					if(oUnits > bestCandidateUnits){
-						placedUnits = bestCandidateUnits;
-						o.setUnits(oUnits - bestCandidateUnits);
-						logger.info("ORDER MATCHED - security: " + security + "  placedUnits : " + placedUnits + "  transactionValue : " + transactionValue + "  o.isBuying() : " + o.isBuying() );
-						bestCandidate.setUnits(0);				
-						pq.remove(bestCandidate);
-					}else if(oUnits < bestCandidateUnits){
-						placedUnits = oUnits;
-						o.setUnits(0);
-						logger.info("ORDER MATCHED - security: " + security + "  placedUnits : " + placedUnits + "  transactionValue : " + transactionValue + "  o.isBuying() : " + o.isBuying() );
-						bestCandidate.setUnits(bestCandidateUnits - oUnits);				
-					}else{
-						placedUnits = oUnits;//either one... 
-						o.setUnits(0);				
-						logger.info("ORDER MATCHED - security: " + security + "  placedUnits : " + placedUnits + "  transactionValue : " + transactionValue + "  o.isBuying() : " + o.isBuying() );
-						bestCandidate.setUnits(0);
-					pq.remove(bestCandidate);
-					}
-					//If we still have units, attempt to match recursively
-					return transactionValue * placedUnits + matchOrder(pq,o);
-				}
-				return placedUnits > 0 ? transactionValue: 0.0;
+	 *			buy/sell order, its units are reduced to what remains after the sweep
+	 * @param client
+	 * 			number of the client of the order
+	 * @param limitPrice
+	 * 			the worst price the order may trade at
+	 */
+	private void sweep(SecurityOrderBook book, BookSide side, Order o, int client, long limitPrice){
+		long remaining = o.getUnits();
+		while(remaining > 0 && store.seekLevel(side, 0)){
+			long price = store.price();
+			if(o.isBuying() ? price > limitPrice : price < limitPrice){
+				break;
+			}
+			do {
+				long makerOrderId = store.orderId();
+				long placedUnits = Math.min(remaining, store.units());
+				fills.add(makerOrderId, store.clientId(), price, placedUnits);
+				publishTrade(book, o, makerOrderId, price, placedUnits);
+				executionLog.record(ExecutionLog.Event.TRADE, book.getSecurity(), o.getOrderId(), client, o.isBuying(),
+						price, placedUnits, makerOrderId, store.client());
+				remaining -= placedUnits;
+				store.fill(side, placedUnits);
+			} while(remaining > 0 && store.seekLevel(side, 0) && store.price() == price);
+			publishLevel(book, side, price, false);
+		}
+		o.setUnits(remaining);
+		if(!fills.isEmpty() && logger.isInfoEnabled()){
+			logger.info("ORDER MATCHED - security: {}  fills : {}  placedUnits : {}  transactionValue : {}  o.isBuying() : {}",
+					o.getSecurityId(), fills.size(), fills.getFilledUnits(), fills.getNotional(), o.isBuying());
+		}
 	}
 
 	/**
-	 * clear orders when trading session closes
+	 * clear orders when trading session closes, every level is published as removed
 	 */
 	public void clear() {
-		buyMap.clear();
-		sellMap.clear();		
+		for (SecurityOrderBook book : bookList) {
+			publishRemoved(book, book.getBids());
+			publishRemoved(book, book.getAsks());
+		}
+		Arrays.fill(books, null);
+		bookList.clear();
+		tops = new TopOfBookCache[INITIAL_SECURITIES];
+		store.clear();
+		Arrays.fill(clientSecurities, null);
+	}
+
+	private void publishRemoved(SecurityOrderBook book, BookSide side){
+		for (int i = 0; i < side.depth(); i++) {
+			long sequence = book.nextSequence();
+			if(feed.hasSubscribers()){
+				feed.publish(MarketDataEvent.level(MarketDataEvent.Type.LEVEL_REMOVED, book.getSecurityId(), sequence,
+						side.isBuying(), side.levelPrice(i), 0, 0));
+			}
+		}
 	}
 
 	/**
@@ -209,90 +597,122 @@ public class PriceTimePriorityOrderBook {
 	 */
 
 	public void remove(String clientId) {
-		removeFromMap(clientId, buyMap);
-		removeFromMap(clientId, sellMap);
+		cancelClientOrders(clientId, null);
 	}
 
 	/**
-	 * cancels an order for a given orderid
-	 * @param orderId
-	 * 			The orderId
+	 * cancels all resting orders of a client, optionally only for one security
+	 * @param clientId
+	 * 			The clientId
+	 * @param securityId
+	 * 			The security id, or null for every security
+	 * @return
+	 * 			number of cancelled orders
+	 */
+	public int cancelClientOrders(String clientId, String securityId) {
+		int client = symbols.findClient(clientId);
+		BitSet securities = client < 0 || client >= clientSecurities.length ? null : clientSecurities[client];
+		if(securities == null){
+			return 0;
+		}
+		int cancelled = 0;
+		if(securityId == null){
+			for (int security = securities.nextSetBit(0); security >= 0; security = securities.nextSetBit(security + 1)) {
+				cancelled += cancelClientOrders(books[security], client);
+			}
+			securities.clear();
+		}else{
+			int security = symbols.findSecurity(securityId);
+			if(security >= 0 && securities.get(security)){
+				cancelled = cancelClientOrders(books[security], client);
+				securities.clear(security);
+			}
+		}
+		logger.info("cancelled {} orders of client {}", cancelled, clientId);
+		return cancelled;
+	}
+
+	/**
+	 * Removes all orders of a client from both sides of a book
 	 */
-	public void cancelOrder(Long orderId) {
-		logger.info("received cancellation for order id  {} " , orderId);
-		removeOrderFromMap(orderId, buyMap);
-		removeOrderFromMap(orderId, sellMap);
+	private int cancelClientOrders(SecurityOrderBook book, int client){
+		return book == null ? 0 : cancelClientOrders(book, book.getBids(), client)
+				+ cancelClientOrders(book, book.getAsks(), client);
 	}
 
 	/**
-	 * Removes an order from a given map
-	 * @param orderId
-	 * 			The orderId
-	 * @param map
-	 * 			The map from which we want to remove the orderId.
+	 * Removes all orders of a client from one side of a book
 	 */
-	private void removeOrderFromMap(Long orderId, Map<String,PriorityBlockingQueue<Order>> map){
-		Set<String> keys = map.keySet();
-		for (String key : keys) {
-			PriorityBlockingQueue<Order> securitiesForKey = map.get(key);
-			securitiesForKey.removeIf(o -> o.getOrderId().equals(orderId));
+	private int cancelClientOrders(SecurityOrderBook book, BookSide side, int client){
+		int cancelled = 0;
+		while (store.seekClient(side, client)) {
+			recordCurrent(ExecutionLog.Event.CANCELLED, book, store.price(), store.units());
+			removeAndPublish(book, side);
+			cancelled++;
 		}
+		return cancelled;
 	}
 
-
 	/**
-	 * returns an order based on provided orderid
-	 *
+	 * cancels an order for a given orderid
 	 * @param orderId
 	 * 			The orderId
 	 * @return
-	 * 			an order
+	 * 			true if the order was resting in this book
 	 */
-	public Order findOrderByOrderId(Long orderId){
-		Order orderFound = null;
-		boolean success = false;
-		Set<String> keys = buyMap.keySet();
-		for (String key : keys) {
-			PriorityBlockingQueue<Order> securitiesForKey = buyMap.get(key);
-			for (Order order : securitiesForKey) {
-				if(order.getOrderId().equals(orderId)){
-					orderFound = order;
-					success = true;
-					break;
-				}
-			}
+	public boolean cancelOrder(long orderId) {
+		if(logger.isInfoEnabled()){
+			logger.info("received cancellation for order id  {} " , orderId);
 		}
-		if(success) return orderFound;
-		keys = sellMap.keySet();
-		for (String key : keys) {
-			PriorityBlockingQueue<Order> securitiesForKey = sellMap.get(key);
-
-			for (Order order : securitiesForKey) {
-				if(order.getOrderId().equals(orderId)){
-					orderFound = order;
-					success = true;
-					break;
-				}
-			}
+		if(!store.seek(orderId)){
+			return false;
 		}
-		return orderFound;
+		SecurityOrderBook book = books[store.security()];
+		recordCurrent(ExecutionLog.Event.CANCELLED, book, store.price(), store.units());
+		removeAndPublish(book, book.side(store.isBuying()));
+		return true;
+	}
 
+	/**
+	 * @return
+	 * 		number of resting orders currently indexed by orderId, for monitoring
+	 */
+	public int getIndexedOrderCount(){
+		return store.size();
 	}
 
+	/**
+	 * @return
+	 * 		number of orders rejected so far because their client rests orders on the opposite side
+	 */
+	public long getSelfTradeBlockCount(){
+		return selfTradeBlocks;
+	}
 
 	/**
-	 * Removes from a given map, all orders that where placed by a client.
-	 * @param clientId
-	 * 			The clients unique identifier.
-	 * @param map
-	 * 			The map for which we want to remove.
+	 * @return
+	 * 		resting orders and price levels of each side of every book, in the order the books were created
 	 */
-	private void removeFromMap(String clientId, Map<String,PriorityBlockingQueue<Order>> map){
-		Set<String> keys = map.keySet();
-		for (String key : keys) {
-			PriorityBlockingQueue<Order> securitiesForKey = map.get(key);
-			securitiesForKey.removeIf(o -> o.getClientId().equals(clientId));
-		}	
+	public List<BookSize> getBookSizes(){
+		List<BookSize> sizes = new ArrayList<>(bookList.size());
+		for (SecurityOrderBook book : bookList) {
+			sizes.add(new BookSize(book.getSecurityId(), book.getBids().size(), book.getBids().depth(),
+					book.getAsks().size(), book.getAsks().depth()));
+		}
+		return sizes;
+	}
+
+
+	/**
+	 * returns an order based on provided orderid
+	 *
+	 * @param orderId
+	 * 			The orderId
+	 * @return
+	 * 			an order, a copy of it when the book does not keep the instances it is given
+	 */
+	public Order findOrderByOrderId(long orderId){
+		return store.seek(orderId) ? store.order() : null;
 	}
 
 
@@ -303,8 +723,8 @@ public class PriceTimePriorityOrderBook {
 	 */
 	public List<Order> getAllOrders(){
 		List<Order> list = new LinkedList<Order>();
-		createMap(list, buyMap);
-		createMap(list, sellMap);
+		copyOrders(list, true);
+		copyOrders(list, false);
 		return list;
 	}
 
@@ -312,36 +732,175 @@ public class PriceTimePriorityOrderBook {
 	 * returns all orders for a given securityid
 	 *
 	 * @param securityId
-	 * 			The security id
+	 * 			The security id in any case, the orders of every spelling of it are returned
 	 * @return
 	 * 			all orders for a given securityid
 	 */
 	public List<Order> getAllOrdersBySecurity(String securityId){
 		List<Order> list = new LinkedList<Order>();
-		createMapBySecurity(list,securityId, buyMap);
-		createMapBySecurity(list,securityId, sellMap);
+		copyOrdersBySecurity(list,securityId, true);
+		copyOrdersBySecurity(list,securityId, false);
 		return list;
 	}
 
 	/**
-	 * returns market price
+	 * Captures the resting orders into a BookView, in the order of getAllOrders, to be read from any thread.
+	 * @param securityId
+	 * 			The security id in any case, every spelling of it, or null for every security of the book
+	 * @return
+	 * 		the view, empty for a security without orders
+	 */
+	public BookView view(String securityId){
+		return view(securityId, OrderFilter.NONE);
+	}
+
+	/**
+	 * Captures the resting orders selected by a filter into a BookView, in the order of getAllOrders. The price
+	 * levels out of the range of the filter are skipped and the capture stops at the limit of the filter.
+	 * @param securityId
+	 * 			The security id in any case, every spelling of it, or null for every security of the book
+	 * @param filter
+	 * 			the orders to capture
+	 * @return
+	 * 		the view, empty when no order is selected
+	 */
+	public BookView view(String securityId, OrderFilter filter){
+		int client = SymbolRegistry.NONE;
+		if(filter.getClientId() != null){
+			client = symbols.findClient(filter.getClientId());
+			if(client == SymbolRegistry.NONE){
+				return new BookView.Builder(0).build();
+			}
+		}
+		BookView.Builder view = new BookView.Builder(securityId == null && filter == OrderFilter.NONE ? store.size() : 16);
+		if(filter.includes(true)){
+			captureOrders(view, securityId, true, filter, client);
+		}
+		view.endBuys();
+		if(filter.includes(false)){
+			captureOrders(view, securityId, false, filter, client);
+		}
+		return view.build();
+	}
+
+	/**
+	 * Reads the cached top of book, safe from any thread.
+	 * @param securityId
+	 * 			The security id
+	 * @return
+	 * 		the best bid and ask after the last change of either, null if the security never had an order
+	 */
+	public TopOfBook getTopOfBook(String securityId){
+		int security = symbols.findSecurity(securityId);
+		TopOfBookCache[] array = tops;
+		TopOfBookCache top = security < 0 || security >= array.length ? null : array[security];
+		return top == null ? null : top.read();
+	}
+
+	/**
+	 * The L2 view of a security from the aggregates kept by its price levels, no order is visited.
+	 * @param securityId
+	 * 			The security id
+	 * @param levels
+	 * 			maximum number of levels returned per side
+	 */
+	public OrderBookDepth getDepth(String securityId, int levels){
+		SecurityOrderBook book = bookOf(securityId);
+		if(book == null){
+			return new OrderBookDepth(securityId, 0, Collections.emptyList(), Collections.emptyList());
+		}
+		PriceScale scale = PriceScale.of(securityId);
+		return new OrderBookDepth(securityId, book.getSequence(), depth(book.getBids(), levels, scale),
+				depth(book.getAsks(), levels, scale));
+	}
+
+	private List<DepthLevel> depth(BookSide side, int levels, PriceScale scale){
+		int count = Math.min(levels, side.depth());
+		List<DepthLevel> depth = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			long price = side.levelPrice(i);
+			depth.add(new DepthLevel(price, scale.toValue(price), side.levelQuantity(i), side.levelOrders(i)));
+		}
+		return depth;
+	}
+
+	/**
+	 * The state of the books for a new market data subscriber: for each security a SNAPSHOT event with its
+	 * current sequence followed by its levels, bids then asks, best price first.
+	 * @param securityId
+	 * 			The security id in any case, every spelling of it, or null for every security
+	 */
+	public List<MarketDataEvent> getMarketDataSnapshot(String securityId){
+		List<MarketDataEvent> events = new ArrayList<>();
+		Collection<SecurityOrderBook> snapshotBooks = bookList;
+		if(securityId != null){
+			snapshotBooks = booksOf(securityId);
+		}
+		for (SecurityOrderBook book : snapshotBooks) {
+			events.add(MarketDataEvent.snapshot(book.getSecurityId(), book.getSequence()));
+			addLevels(events, book, book.getBids());
+			addLevels(events, book, book.getAsks());
+		}
+		return events;
+	}
+
+	private void addLevels(List<MarketDataEvent> events, SecurityOrderBook book, BookSide side){
+		for (int i = 0; i < side.depth(); i++) {
+			events.add(MarketDataEvent.level(MarketDataEvent.Type.LEVEL_ADDED, book.getSecurityId(), book.getSequence(),
+					side.isBuying(), side.levelPrice(i), side.levelQuantity(i), side.levelOrders(i)));
+		}
+	}
+
+	/**
+	 * Amends a resting order, the price is kept when no new price is given
 	 *
-	 * @param pq
-	 * 			The PriorityBlockingQueue
+	 * @param orderId
+	 * 			The orderId
+	 * @param units
+	 * 			the new quantity
+	 * @param price
+	 * 			the new price in ticks, or 0 to keep the current one
+	 * @param timestamp
+	 * 			time of the amendment
 	 * @return
-	 * 			an market price
+	 * 			the fills of the amended order, or null if the order does not rest in this book
 	 */
-    public Double getMarketPrice(PriorityBlockingQueue<Order> pq){
-        Double returnValue = 0.0;
-        for (Order order : pq) {
-            if(order.getOrderType().equals(OrderType.LIMIT_ORDER)){
-                returnValue  = order.getValue();
-                 break;
-            }
-        }
-        return returnValue;
-    }
+	public ExecutionReport amend(long orderId, long units, long price, long timestamp){
+		if(!store.seek(orderId)){
+			return null;
+		}
+		if(price <= 0){
+			price = store.price();
+		}
+		Order order = new Order(orderId, store.clientId(), store.securityId(), units, price, store.isBuying(),
+				store.orderType(), timestamp);
+		logger.info("INSTRUCTIONS TO UPDATE AN ORDER RECEIVED WITH FOLLOWING DETAILS : {} " , order);
+		return update(order);
+	}
 
+	/**
+	 * Amends a resting order to a decimal price, converted with the scale of the security the order rests on
+	 *
+	 * @param securityId
+	 * 			the security the order is expected to rest on, null to not check it
+	 * @param value
+	 * 			the new decimal price, or 0 to keep the current one
+	 * @return
+	 * 			the fills of the amended order, or null if the order does not rest in this book
+	 * @throws IllegalArgumentException
+	 * 			if the order rests on another security
+	 */
+	public ExecutionReport amend(long orderId, String securityId, long units, double value, long timestamp){
+		if(!store.seek(orderId)){
+			return null;
+		}
+		String restingOn = store.securityId();
+		if(securityId != null && !securityId.equals(restingOn)){
+			throw new IllegalArgumentException("order " + orderId + " rests on security " + restingOn + ", not "
+					+ securityId);
+		}
+		return amend(orderId, units, value <= 0 ? 0 : PriceScale.of(restingOn).toTicks(value), timestamp);
+	}
 
 	/**
 	 * Updates an existing order in the queue following this criteria:
@@ -349,106 +908,145 @@ public class PriceTimePriorityOrderBook {
 	 * 2.	price changes, remove add
      * 3.	quantity increases, price equals, remove add. (lose priority)
 	 * @param orderToUpdate
-	 * @return 
+	 * @return
+	 * 			the fills of the order when it was re-traded, no fills when it was updated in place or not found
 	 */
-	public Double update(Order orderToUpdate){
-		Map<String,PriorityBlockingQueue<Order>> sideToUpdateMap;
-		if(orderToUpdate.isBuying()){
-			sideToUpdateMap = buyMap;
-		}else{
-			sideToUpdateMap = sellMap;
-		}
-		PriorityBlockingQueue<Order> securitiesForKey = sideToUpdateMap.get(orderToUpdate
-				.getSecurityId());
-		Order removeAddOrder = null;
-		Double retVal = 0.0;
+	public ExecutionReport update(Order orderToUpdate){
+		SecurityOrderBook book = bookFor(symbols.internSecurity(orderToUpdate.getSecurityId()));
+		ExecutionReport retVal = null;
 		boolean success = false;
-		for (Order order : securitiesForKey) {
-			if(order.getOrderId().equals(orderToUpdate.getOrderId())){
-				if(orderToUpdate.getValue().equals(order.getValue())){
-					if(orderToUpdate.getUnits() < order.getUnits()){
-						//CASE 1. quantity decreases, price equals, keep priority - in-place
-						order.setUnits(orderToUpdate.getUnits());
-						order.setDisplayTime(orderToUpdate.getDisplayTime());
-						success = true;
-						break;
-					}
-				}
+		BookSide side = book.side(orderToUpdate.isBuying());
+		if(store.seek(orderToUpdate.getOrderId()) && store.isBuying() == orderToUpdate.isBuying()
+				&& store.security() == book.getSecurity()){
+			if(orderToUpdate.getPrice() == store.price()
+					&& orderToUpdate.getUnits() < store.units()){
+				//CASE 1. quantity decreases, price equals, keep priority - in-place
+				recordCurrent(ExecutionLog.Event.AMENDED, book, orderToUpdate.getPrice(), orderToUpdate.getUnits());
+				store.reduce(side, orderToUpdate.getUnits(), orderToUpdate.getDisplayTime());
+				publishLevel(book, side, orderToUpdate.getPrice(), false);
+				success = true;
+			}else{
 				//CASE 2.price changes, remove and add
 				//CASE 3.quantity increases, price equals, remove and add. (lose priority)
-				removeAddOrder = order;
-				break;
+				recordCurrent(ExecutionLog.Event.AMENDED, book, orderToUpdate.getPrice(), orderToUpdate.getUnits());
+				removeAndPublish(book, side);
+				if(orderToUpdate.isBuying()){
+					retVal = buyTrade(orderToUpdate);
+				}else{
+					retVal = sellTrade(orderToUpdate);
+				}
+				success = true;
 			}
 		}
-		if(removeAddOrder != null){
-			securitiesForKey.remove(removeAddOrder);
-			if(orderToUpdate.isBuying()){
-				retVal = buyTrade(orderToUpdate);
-			}else{
-				retVal = sellTrade(orderToUpdate);
-			}
-			success = true;
+		logger.info("ORDER UPDATED : orderid - {} success - {}", orderToUpdate.getOrderId(), success);
+		if(retVal == null){
+			fills.clear();
+			fills.complete(orderToUpdate, success);
+			retVal = fills.toReport();
 		}
-		logger.info("ORDER UPDATED : orderid - " + orderToUpdate.getOrderId().toString() + " success - " + success);
 		return retVal;
 	}
 
 
 
 	/**
-	 * clones all orders from map into Collection respecting it's actual priority in the queue.
-	 * Note that doing this requires duplicating each queue given that the only real way
-	 * to know the ordering is by using poll, which is destructive is used in our internal state.
+	 * copies all orders of one side of every book into Collection respecting their priority in the book.
 	 * @param collection
-	 * 			a set to add all orders contained by the map
-	 * @param map
-	 * 			buy/sell map to be dumped.
-	 */
-	private void createMap(Collection<Order> collection , Map<String,PriorityBlockingQueue<Order>> map){
-		Set<String> keys = map.keySet();
-		for (String key : keys) {
-			PriorityBlockingQueue<Order> securitiesForKey = map.get(key);
-			PriorityBlockingQueue<Order> securitiesForKeyClone = new PriorityBlockingQueue<Order>(INITIAL_CAPACITY, 
-					securitiesForKey.comparator());
-			for (Order order : securitiesForKey) {
-				securitiesForKeyClone.offer(order);
-			}
-			while(!securitiesForKeyClone.isEmpty()){
-				Order polled = securitiesForKeyClone.poll();
-				collection.add(polled);
-			}
+	 * 			a collection to add all orders of the side
+	 * @param buying
+	 * 			true for the buy side, false for the sell side
+	 */
+	private void copyOrders(Collection<Order> collection , boolean buying){
+		for (SecurityOrderBook book : bookList) {
+			copyOrders(collection, book.side(buying));
 		}
 	}
 
 
 	/**
-	 * clones all orders from map into Collection respecting it's actual priority in the queue for a given securityid
-	 * Note that doing this requires duplicating each queue given that the only real way
-	 * to know the ordering is by using poll, which is destructive is used in our internal state.
+	 * copies all orders of one side into Collection respecting their priority in the book for a given securityid
 	 * @param collection
-	 * 			a set to add all orders contained by the map
+	 * 			a collection to add all orders of the side
 	 * @param securityId
-	 * 			securityId for which the map to be created
-	 *  @param map
-	 * 			buy/sell map to be dumped.
-	 */
-
-	private void createMapBySecurity(Collection<Order> collection , String securityId, Map<String,PriorityBlockingQueue<Order>> map){
-		Set<String> keys = map.keySet();
-		for (String key : keys) {
-			if(key.equalsIgnoreCase(securityId)) {
-				PriorityBlockingQueue<Order> securitiesForKey = map.get(key);
-				PriorityBlockingQueue<Order> securitiesForKeyClone = new PriorityBlockingQueue<Order>(INITIAL_CAPACITY,
-						securitiesForKey.comparator());
-				for (Order order : securitiesForKey) {
-					securitiesForKeyClone.offer(order);
+	 * 			securityId for which the orders are copied
+	 * @param buying
+	 * 			true for the buy side, false for the sell side
+	 */
+
+	private void copyOrdersBySecurity(Collection<Order> collection , String securityId, boolean buying){
+		for (SecurityOrderBook book : booksOf(securityId)) {
+			copyOrders(collection, book.side(buying));
+		}
+	}
+
+	/**
+	 * copies the orders of a side, best price first and FIFO within a price
+	 */
+	private void copyOrders(Collection<Order> collection, BookSide side){
+		for (int i = 0; i < side.depth(); i++) {
+			for (boolean more = store.seekLevel(side, i); more; more = store.next()) {
+				collection.add(store.order());
+			}
+		}
+	}
+
+	/**
+	 * captures the orders of one side of a security, or of every security when securityId is null, into a view
+	 * @param client
+	 * 			number of the client of the filter, SymbolRegistry.NONE for every client
+	 */
+	private void captureOrders(BookView.Builder view, String securityId, boolean buying, OrderFilter filter,
+							   int client){
+		if(securityId == null){
+			for (SecurityOrderBook book : bookList) {
+				if(!captureOrders(view, book, buying, filter, client)){
+					return;
 				}
-				while (!securitiesForKeyClone.isEmpty()) {
-					Order polled = securitiesForKeyClone.poll();
-					collection.add(polled);
+			}
+		}else{
+			for (SecurityOrderBook book : booksOf(securityId)) {
+				if(!captureOrders(view, book, buying, filter, client)){
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * captures the orders of a side into a view, in the order of copyOrders, from the first level in the price
+	 * range of the filter to the last one
+	 * @return
+	 * 		false once the view holds as many orders as the limit of the filter
+	 */
+	private boolean captureOrders(BookView.Builder view, SecurityOrderBook book, boolean buying, OrderFilter filter,
+								  int client){
+		BookSide side = book.side(buying);
+		int decimals = PriceScale.of(book.getSecurityId()).getDecimals();
+		long min = filter.minTicks(decimals);
+		long max = filter.maxTicks(decimals);
+		int limit = filter.getLimit();
+		if(view.size() >= limit){
+			return false;
+		}
+		for (int i = 0; i < side.depth(); i++) {
+			long price = side.levelPrice(i);
+			if(price < min || price > max){
+				// the levels go away from the best price, bids downwards and asks upwards
+				if(buying ? price < min : price > max){
+					break;
+				}
+				continue;
+			}
+			for (boolean more = store.seekLevel(side, i); more; more = store.next()) {
+				if(client == SymbolRegistry.NONE || store.client() == client){
+					view.add(store);
+					if(view.size() == limit){
+						return false;
+					}
 				}
 			}
 		}
+		return true;
 	}
 
 
@@ -459,13 +1057,13 @@ public class PriceTimePriorityOrderBook {
 		sb.append("----------toString----------\n");
 		sb.append("BUYING: \n");
 		List<Order> buyingOrders = new LinkedList<Order>();
-		createMap(buyingOrders, buyMap);
+		copyOrders(buyingOrders, true);
 		for (Order order : buyingOrders) {
 			sb.append(order.toString()+"\n");
 		}
 		sb.append("SELLING: \n");
 		List<Order> sellingOrders = new LinkedList<Order>();
-		createMap(sellingOrders, sellMap);
+		copyOrders(sellingOrders, false);
 		for (Order order : sellingOrders) {
 			sb.append(order.toString()+"\n");
 		}
@@ -473,19 +1071,19 @@ public class PriceTimePriorityOrderBook {
 		return sb.toString();
 	}
 
+	/**
+	 * Defines the priority of bids, the order in which OrderBookSide keeps its levels and orders for the buy side.
+	 * Orders are only compared within the book of their security, which is found by security number.
+	 */
 	static class BuySideComparator implements Comparator<Order> {
 		/**
 		 * The orders are listed Highest to Lowest on the Buy Side, we do the opposite of natural order on the value.
 		 * Returns: a positive integer if Order one is of LESS value than Order two.
 		 * A negative integer if Order one is of GREATER value than Order two.
-		 * or, if they are of the same value, it prioritizes orders that arrived earlier. 
+		 * or, if they are of the same value, it prioritizes orders that arrived earlier.
 		 */
 		public int compare(Order one, Order two) {
-			if(!one.getSecurityId().equals(two.getSecurityId())){
-				System.err.println("These orders are not comparable, they need to be for the same security");
-				new IllegalArgumentException();
-			}
-			int naturalOrder = Double.compare(one.getValue() , two.getValue());
+			int naturalOrder = Long.compare(one.getPrice() , two.getPrice());
 			if(naturalOrder == 0){
 				return   Long.compare(one.getPriorityTime(), two.getPriorityTime());
 			}
@@ -493,20 +1091,20 @@ public class PriceTimePriorityOrderBook {
 		}
 	}
 
+	/**
+	 * Defines the priority of asks, the order in which OrderBookSide keeps its levels and orders for the sell side.
+	 * Orders are only compared within the book of their security, which is found by security number.
+	 */
 	static class SellSideComparator implements Comparator<Order> {
 
 		/**
 		 * Because orders are listed Lowest to Highest on the Sell Side, we use natural ordering.
 		 * Returns: a positive integer if Order one is of GREATER value than Order two.
 		 * a negative integer if Order one is of LESS value than Order two.
-		 * or, if they are of the same value, it prioritizes orders that arrived earlier. 
+		 * or, if they are of the same value, it prioritizes orders that arrived earlier.
 		 */
 		public int compare(Order one, Order two) {
-			if(!one.getSecurityId().equals(two.getSecurityId())){
-				System.err.println("These orders are not comparable, they need to be for the same security");
-				new IllegalArgumentException();
-			}
-			int naturalOrder = Double.compare(one.getValue() , two.getValue());
+			int naturalOrder = Long.compare(one.getPrice() , two.getPrice());
 			if(naturalOrder == 0){
 				return   Long.compare(one.getPriorityTime(), two.getPriorityTime());
 			}
@@ -0,0 +1,73 @@
+package com.example.orderbook.service;
+
+/**
+ * The order book of a single security, bids and asks stored as price ladders by the OrderStore of its book.
+ * Each change of the book takes the next market data sequence of the security.
+ */
+class SecurityOrderBook {
+
+	private final int security;
+	private final String securityId;
+	private final BookSide bids;
+	private final BookSide asks;
+	private long sequence;
+	private final TopOfBookCache top;
+
+	/**
+	 * @param security
+	 * 			number of the security in the SymbolRegistry of the book
+	 */
+	SecurityOrderBook(int security, String securityId, OrderStore store) {
+		this.security = security;
+		this.securityId = securityId;
+		this.bids = store.newSide(true);
+		this.asks = store.newSide(false);
+		this.top = new TopOfBookCache(securityId);
+	}
+
+	int getSecurity() {
+		return security;
+	}
+
+	String getSecurityId() {
+		return securityId;
+	}
+
+	/**
+	 * @return
+	 * 		sequence of the last market data event of the security
+	 */
+	long getSequence() {
+		return sequence;
+	}
+
+	long nextSequence() {
+		return ++sequence;
+	}
+
+	/**
+	 * @return
+	 * 		the best levels of the security, updated in place on every change
+	 */
+	TopOfBookCache getTop() {
+		return top;
+	}
+
+	BookSide getBids() {
+		return bids;
+	}
+
+	BookSide getAsks() {
+		return asks;
+	}
+
+	/**
+	 * @param buying
+	 * 			true for the bid side, false for the ask side
+	 * @return
+	 * 		the requested side of the book
+	 */
+	BookSide side(boolean buying) {
+		return buying ? bids : asks;
+	}
+}
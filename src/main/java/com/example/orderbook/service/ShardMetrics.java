@@ -0,0 +1,59 @@
+package com.example.orderbook.service;
+
+import com.example.orderbook.metrics.LatencyHistogram;
+import com.example.orderbook.model.ExecutionReport;
+
+/**
+ * Counters and latency histograms of one MatchingShard.
+ *
+ * Written by the matching thread of the shard only, plain fields without any synchronization so the instrumentation
+ * costs the matching thread a few increments and two System.nanoTime calls per command. Other threads read them
+ * at any time, a reader may miss the last few commands.
+ */
+final class ShardMetrics {
+
+	/** time spent by the book on a new order, matching and resting it */
+	final LatencyHistogram add = new LatencyHistogram();
+	final LatencyHistogram amend = new LatencyHistogram();
+	final LatencyHistogram cancel = new LatencyHistogram();
+	/** time from the submission of a command to the end of its matching: queuing, validation, journal and book */
+	final LatencyHistogram match = new LatencyHistogram();
+
+	long orders;
+	long fills;
+	long rejects;
+	long selfTradeBlocks;
+
+	/**
+	 * Records the outcome of a command once the matching stage is done with it.
+	 * @param startNanos
+	 * 			when the matching stage handed the command to the book
+	 * @param endNanos
+	 * 			when the book returned
+	 */
+	void record(OrderCommand command, long startNanos, long endNanos) {
+		if (command.isRejected()) {
+			rejects++;
+		} else {
+			switch (command.type) {
+				case ADD:
+					orders++;
+					fills += command.fills.size();
+					add.record(endNanos - startNanos);
+					break;
+				case UPDATE:
+					amend.record(endNanos - startNanos);
+					if (command.result instanceof ExecutionReport) {
+						fills += ((ExecutionReport) command.result).getFills().size();
+					}
+					break;
+				case CANCEL:
+					cancel.record(endNanos - startNanos);
+					break;
+				default:
+					return;
+			}
+		}
+		match.record(endNanos - command.submitNanos);
+	}
+}
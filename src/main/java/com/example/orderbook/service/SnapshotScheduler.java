@@ -0,0 +1,73 @@
+package com.example.orderbook.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snapshots the books every orderbook.snapshot.interval-seconds and once more on shutdown,
+ * so a restart only replays the journal written since the last snapshot.
+ */
+@Component
+public class SnapshotScheduler {
+
+	private final Logger logger = LoggerFactory.getLogger(SnapshotScheduler.class);
+
+	private final MatchingEngine engine;
+	private final SnapshotStore snapshots;
+	private final long intervalSeconds;
+	private ScheduledExecutorService executor;
+
+	@Autowired
+	public SnapshotScheduler(MatchingEngine engine, SnapshotStore snapshots,
+							 @Value("${orderbook.snapshot.interval-seconds:300}") long intervalSeconds) {
+		this.engine = engine;
+		this.snapshots = snapshots;
+		this.intervalSeconds = intervalSeconds;
+	}
+
+	@PostConstruct
+	public void start() {
+		if (!snapshots.isEnabled() || intervalSeconds <= 0) {
+			return;
+		}
+		executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "snapshot");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.scheduleWithFixedDelay(this::snapshot, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Takes the last snapshot while the engine, which is stopped after this bean, still runs.
+	 */
+	@PreDestroy
+	public void stop() throws InterruptedException {
+		if (executor != null) {
+			executor.shutdown();
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		}
+		if (snapshots.isEnabled()) {
+			snapshot();
+		}
+	}
+
+	private void snapshot() {
+		long start = System.nanoTime();
+		try {
+			engine.snapshot();
+			logger.info("books snapshot taken in {} ms", (System.nanoTime() - start) / 1000000);
+		} catch (Exception e) {
+			logger.error("books snapshot failed", e);
+		}
+	}
+}
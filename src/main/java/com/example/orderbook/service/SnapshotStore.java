@@ -0,0 +1,306 @@
+package com.example.orderbook.service;
+
+import com.example.orderbook.model.Order;
+import com.example.orderbook.model.request.OrderFilter;
+import com.example.orderbook.model.request.OrderType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Binary snapshots of the books of the matching shards, one directory per shard under the snapshot directory.
+ *
+ * The matching thread of a shard only captures its book between two commands, into the flat arrays of a BookView,
+ * and goes on matching: encoding the capture, writing the file, forcing it to the disk and publishing it are left to
+ * the caller. A snapshot holds every security of the shard, each side as its price levels from the worst to the best
+ * with their orders in FIFO order, and the journal sequence of the last command applied, from which the journal
+ * is replayed on startup. Client ids are written once per snapshot and referenced by index afterwards.
+ *
+ * The last two snapshots of a shard are kept, so a snapshot damaged by a crash falls back to the previous one.
+ */
+public class SnapshotStore {
+
+	/** store of a matching engine taking no snapshot */
+	public static final SnapshotStore NONE = new SnapshotStore(null);
+
+	private static final String SUFFIX = ".snapshot";
+	private static final String TEMPORARY_SUFFIX = ".tmp";
+	private static final int MAGIC = 0x4F42534E;
+	private static final int VERSION = 1;
+	private static final int KEPT_SNAPSHOTS = 2;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final Logger logger = LoggerFactory.getLogger(SnapshotStore.class);
+
+	private final Path directory;
+
+	/**
+	 * @param directory
+	 * 			root directory of the snapshots, null to take none
+	 */
+	public SnapshotStore(Path directory) {
+		this.directory = directory;
+	}
+
+	public boolean isEnabled() {
+		return directory != null;
+	}
+
+	/**
+	 * @return
+	 * 		the directory holding the snapshots of a shard
+	 */
+	public Path shardDirectory(int shardId) {
+		return directory.resolve("shard-" + shardId);
+	}
+
+	/**
+	 * Captures the book, to be called by the matching thread owning the book between two commands.
+	 * @param sequence
+	 * 			journal sequence of the last command applied to the book
+	 * @return
+	 * 		the capture, see write
+	 */
+	Capture capture(long sequence, PriceTimePriorityOrderBook book) {
+		return new Capture(sequence, book.getHighestOrderId(), book.view(null, OrderFilter.NONE));
+	}
+
+	/**
+	 * Streams a capture into a temporary file, off the matching thread.
+	 * @return
+	 * 		the temporary file, see publish
+	 */
+	Path write(int shardId, Capture capture) throws IOException {
+		Path shardDirectory = shardDirectory(shardId);
+		Files.createDirectories(shardDirectory);
+		Path file = shardDirectory.resolve(String.format("%020d%s%s", capture.sequence, SUFFIX, TEMPORARY_SUFFIX));
+		BookView orders = capture.orders;
+		// positions of the bids and of the asks of every security in the view, as [from, to) pairs
+		Map<String, int[]> securities = new LinkedHashMap<>();
+		int i = 0;
+		while (i < orders.size()) {
+			int from = i;
+			int end = from < orders.getBuyCount() ? orders.getBuyCount() : orders.size();
+			String securityId = orders.securityId(from);
+			do {
+				i++;
+			} while (i < end && securityId.equals(orders.securityId(i)));
+			int[] sides = securities.computeIfAbsent(securityId, k -> new int[4]);
+			int side = from < orders.getBuyCount() ? 0 : 2;
+			sides[side] = from;
+			sides[side + 1] = i;
+		}
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(capture.sequence);
+			out.writeLong(capture.highestOrderId);
+			Map<String, Integer> clients = new HashMap<>();
+			int[] levels = new int[16];
+			out.writeInt(securities.size());
+			for (Map.Entry<String, int[]> security : securities.entrySet()) {
+				int[] sides = security.getValue();
+				out.writeUTF(security.getKey());
+				levels = writeSide(out, orders, sides[0], sides[1], levels, clients);
+				levels = writeSide(out, orders, sides[2], sides[3], levels, clients);
+			}
+			out.writeInt(MAGIC);
+		}
+		return file;
+	}
+
+	/**
+	 * Forces a snapshot written by write to the disk, makes it the latest one of its shard and drops older ones.
+	 * @return
+	 * 		the journal sequence covered by the oldest snapshot kept, the journal is still needed after it
+	 */
+	long publish(int shardId, Path temporaryFile) throws IOException {
+		try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+			channel.force(true);
+		}
+		String name = temporaryFile.getFileName().toString();
+		Path file = temporaryFile.resolveSibling(name.substring(0, name.length() - TEMPORARY_SUFFIX.length()));
+		Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		List<Path> snapshots = list(shardId);
+		for (int i = 0; i < snapshots.size() - KEPT_SNAPSHOTS; i++) {
+			Files.deleteIfExists(snapshots.get(i));
+		}
+		return sequenceOf(snapshots.get(Math.max(0, snapshots.size() - KEPT_SNAPSHOTS)));
+	}
+
+	/**
+	 * Loads the latest readable snapshot of a shard into an empty book.
+	 * @return
+	 * 		the journal sequence covered by the snapshot, 0 when there is none
+	 */
+	long load(int shardId, PriceTimePriorityOrderBook book) throws IOException {
+		if (!isEnabled()) {
+			return 0;
+		}
+		List<Path> snapshots = list(shardId);
+		for (int i = snapshots.size() - 1; i >= 0; i--) {
+			try {
+				long sequence = read(snapshots.get(i), book);
+				logger.info("shard {} loaded {} orders from {}", shardId, book.getIndexedOrderCount(), snapshots.get(i));
+				return sequence;
+			} catch (IOException | RuntimeException e) {
+				logger.warn("unreadable snapshot {}, trying the previous one", snapshots.get(i), e);
+				book.clear();
+			}
+		}
+		return 0;
+	}
+
+	private long read(Path file, PriceTimePriorityOrderBook book) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException("not a snapshot " + file);
+			}
+			long sequence = in.readLong();
+			book.restoreHighestOrderId(in.readLong());
+			List<String> clients = new ArrayList<>();
+			int securities = in.readInt();
+			for (int i = 0; i < securities; i++) {
+				String securityId = in.readUTF();
+				readSide(in, book, securityId, true, clients);
+				readSide(in, book, securityId, false, clients);
+			}
+			if (in.readInt() != MAGIC) {
+				throw new IOException("truncated snapshot " + file);
+			}
+			return sequence;
+		}
+	}
+
+	/**
+	 * Writes the orders of a side captured from the best to the worst level. Levels are written from the worst to the
+	 * best price, so reading them back always appends to the ladder.
+	 * @param from
+	 * 			position of the first order of the side in the view
+	 * @param to
+	 * 			position after its last order
+	 * @param levels
+	 * 			buffer for the positions of the levels, grown when too short
+	 * @return
+	 * 		the buffer
+	 */
+	private static int[] writeSide(DataOutputStream out, BookView orders, int from, int to, int[] levels,
+								   Map<String, Integer> clients) throws IOException {
+		int depth = 0;
+		for (int i = from; i < to; i++) {
+			if (i == from || orders.price(i) != orders.price(i - 1)) {
+				if (depth == levels.length) {
+					levels = Arrays.copyOf(levels, depth << 1);
+				}
+				levels[depth++] = i;
+			}
+		}
+		out.writeInt(depth);
+		for (int level = depth - 1; level >= 0; level--) {
+			int start = levels[level];
+			int end = level + 1 < depth ? levels[level + 1] : to;
+			out.writeLong(orders.price(start));
+			out.writeInt(end - start);
+			for (int i = start; i < end; i++) {
+				out.writeLong(orders.orderId(i));
+				Integer client = clients.get(orders.clientId(i));
+				if (client == null) {
+					clients.put(orders.clientId(i), clients.size());
+					out.writeInt(-1);
+					out.writeUTF(orders.clientId(i));
+				} else {
+					out.writeInt(client);
+				}
+				out.writeLong(orders.units(i));
+				out.writeLong(orders.priorityTime(i));
+				out.writeLong(orders.displayTime(i));
+				out.writeByte(orders.orderType(i).ordinal());
+			}
+		}
+		return levels;
+	}
+
+	private static void readSide(DataInputStream in, PriceTimePriorityOrderBook book, String securityId, boolean buying,
+								 List<String> clients) throws IOException {
+		OrderType[] orderTypes = OrderType.values();
+		int levels = in.readInt();
+		for (int i = 0; i < levels; i++) {
+			long price = in.readLong();
+			int orders = in.readInt();
+			for (int j = 0; j < orders; j++) {
+				long orderId = in.readLong();
+				int client = in.readInt();
+				String clientId;
+				if (client < 0) {
+					clientId = in.readUTF();
+					clients.add(clientId);
+				} else {
+					clientId = clients.get(client);
+				}
+				long units = in.readLong();
+				long priorityTime = in.readLong();
+				long displayTime = in.readLong();
+				Order order = new Order(orderId, clientId, securityId, units, price, buying, orderTypes[in.readByte()],
+						priorityTime);
+				order.setDisplayTime(displayTime);
+				book.restore(order);
+			}
+		}
+	}
+
+	/**
+	 * @return
+	 * 		the published snapshots of a shard, oldest first
+	 */
+	private List<Path> list(int shardId) throws IOException {
+		Path shardDirectory = shardDirectory(shardId);
+		if (!Files.isDirectory(shardDirectory)) {
+			return Collections.emptyList();
+		}
+		List<Path> snapshots = new ArrayList<>();
+		try (Stream<Path> files = Files.list(shardDirectory)) {
+			files.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).forEach(snapshots::add);
+		}
+		Collections.sort(snapshots);
+		return snapshots;
+	}
+
+	private static long sequenceOf(Path snapshot) {
+		String name = snapshot.getFileName().toString();
+		return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+	}
+
+	/**
+	 * Book of a shard captured by its matching thread, written by write.
+	 */
+	static final class Capture {
+
+		private final long sequence;
+		private final long highestOrderId;
+		private final BookView orders;
+
+		private Capture(long sequence, long highestOrderId, BookView orders) {
+			this.sequence = sequence;
+			this.highestOrderId = highestOrderId;
+			this.orders = orders;
+		}
+	}
+}
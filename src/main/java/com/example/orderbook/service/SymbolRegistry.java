@@ -0,0 +1,198 @@
+package com.example.orderbook.service;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns securityIds and clientIds into dense int numbers, 0 for the first one registered and so on, so the books
+ * index their securities and clients by number and compare ints instead of Strings.
+ *
+ * SecurityIds are interned as they are spelled, so the books only match orders of the same spelling. Queries are case
+ * insensitive: the spellings differing only by case form a group, resolved when a spelling is registered, and every
+ * spelling looked up is remembered as an alias of its group, so the case is only folded the first time a spelling is
+ * seen. ClientIds are case sensitive.
+ *
+ * Numbers are given at the boundary of the engine by the threads submitting commands and read by the matching threads,
+ * registration is serialized, lookups do not lock. Numbers are never reused and are not stable across restarts,
+ * only the names are persisted.
+ */
+public final class SymbolRegistry {
+
+	/** number of a symbol that is not registered */
+	public static final int NONE = -1;
+	private static final int INITIAL_CAPACITY = 64;
+
+	private static final int[] NO_SECURITIES = new int[0];
+
+	private final Map<String, Integer> securityNumbers = new ConcurrentHashMap<>();
+	/** groups of the securities by upper case securityId */
+	private final Map<String, SecurityGroup> securityGroups = new ConcurrentHashMap<>();
+	/** groups by every spelling looked up */
+	private final Map<String, SecurityGroup> securityAliases = new ConcurrentHashMap<>();
+	/** names by number, grown by doubling, a number is published through the maps once its entries are written */
+	private volatile String[] securities = new String[INITIAL_CAPACITY];
+	/** case insensitive hash of each security, the one MatchingEngine routes it with */
+	private volatile int[] securityHashes = new int[INITIAL_CAPACITY];
+	private volatile int securityCount;
+
+	private final Map<String, Integer> clientNumbers = new ConcurrentHashMap<>();
+	private volatile String[] clients = new String[INITIAL_CAPACITY];
+	private volatile int clientCount;
+
+	/**
+	 * @param securityId
+	 * 			The security id, as spelled by the order
+	 * @return
+	 * 		the number of the security, registered on first use, NONE for a null securityId
+	 */
+	public int internSecurity(String securityId) {
+		if (securityId == null) {
+			return NONE;
+		}
+		Integer security = securityNumbers.get(securityId);
+		return security != null ? security : registerSecurity(securityId);
+	}
+
+	/**
+	 * @param securityId
+	 * 			The security id, as spelled by the order
+	 * @return
+	 * 		the number of the security, NONE if it was never registered
+	 */
+	public int findSecurity(String securityId) {
+		Integer security = securityId == null ? null : securityNumbers.get(securityId);
+		return security == null ? NONE : security;
+	}
+
+	/**
+	 * @param securityId
+	 * 			The security id, in any case
+	 * @return
+	 * 		the numbers of every spelling of the security in registration order, empty if none was registered
+	 */
+	public int[] findSecurities(String securityId) {
+		if (securityId == null) {
+			return NO_SECURITIES;
+		}
+		SecurityGroup group = securityAliases.get(securityId);
+		if (group == null) {
+			group = securityGroups.get(securityId.toUpperCase(Locale.ROOT));
+			if (group == null) {
+				return NO_SECURITIES;
+			}
+			securityAliases.put(securityId, group);
+		}
+		return group.securities;
+	}
+
+	/**
+	 * @return
+	 * 		the securityId the security was registered with
+	 */
+	public String securityName(int security) {
+		return securities[security];
+	}
+
+	/**
+	 * @return
+	 * 		hash of the upper case securityId, the same for every spelling of the security, see findSecurities
+	 */
+	public int securityHash(int security) {
+		return securityHashes[security];
+	}
+
+	public int getSecurityCount() {
+		return securityCount;
+	}
+
+	/**
+	 * @return
+	 * 		the number of the client, registered on first use, NONE for a null clientId
+	 */
+	public int internClient(String clientId) {
+		if (clientId == null) {
+			return NONE;
+		}
+		Integer client = clientNumbers.get(clientId);
+		return client != null ? client : registerClient(clientId);
+	}
+
+	/**
+	 * @return
+	 * 		the number of the client, NONE if it was never registered
+	 */
+	public int findClient(String clientId) {
+		Integer client = clientId == null ? null : clientNumbers.get(clientId);
+		return client == null ? NONE : client;
+	}
+
+	public String clientName(int client) {
+		return clients[client];
+	}
+
+	public int getClientCount() {
+		return clientCount;
+	}
+
+	/**
+	 * @return
+	 * 		the hash a security is routed with, the same for every spelling of the security
+	 */
+	static int hash(String securityId) {
+		return securityId.toUpperCase(Locale.ROOT).hashCode();
+	}
+
+	/**
+	 * Registers a spelling seen for the first time and adds it to the group of its upper case securityId.
+	 */
+	private synchronized int registerSecurity(String securityId) {
+		Integer security = securityNumbers.get(securityId);
+		if (security != null) {
+			return security;
+		}
+		String folded = securityId.toUpperCase(Locale.ROOT);
+		security = securityCount;
+		if (security == securities.length) {
+			securities = Arrays.copyOf(securities, security << 1);
+			securityHashes = Arrays.copyOf(securityHashes, security << 1);
+		}
+		securities[security] = securityId;
+		securityHashes[security] = folded.hashCode();
+		securityCount = security + 1;
+		SecurityGroup group = securityGroups.get(folded);
+		if (group == null) {
+			group = new SecurityGroup();
+			securityGroups.put(folded, group);
+		}
+		int[] grouped = Arrays.copyOf(group.securities, group.securities.length + 1);
+		grouped[grouped.length - 1] = security;
+		group.securities = grouped;
+		securityNumbers.put(securityId, security);
+		return security;
+	}
+
+	private synchronized int registerClient(String clientId) {
+		Integer client = clientNumbers.get(clientId);
+		if (client != null) {
+			return client;
+		}
+		client = clientCount;
+		if (client == clients.length) {
+			clients = Arrays.copyOf(clients, client << 1);
+		}
+		clients[client] = clientId;
+		clientCount = client + 1;
+		clientNumbers.put(clientId, client);
+		return client;
+	}
+
+	/**
+	 * Securities whose securityIds only differ by case, replaced as a whole when a spelling joins.
+	 */
+	private static final class SecurityGroup {
+
+		private volatile int[] securities = NO_SECURITIES;
+	}
+}
@@ -0,0 +1,79 @@
+package com.example.orderbook.service;
+
+import com.example.orderbook.model.TopOfBook;
+
+/**
+ * The best levels of one security, written by the matching thread and read by any thread without locking.
+ *
+ * The writer updates the fields in place and never allocates: a version that is odd while a write is in progress
+ * (a sequence lock) lets a reader retry until it read the fields of a single write, the reader then builds its own
+ * immutable TopOfBook.
+ */
+final class TopOfBookCache {
+
+	private final String securityId;
+	private volatile long version;
+	private volatile long sequence;
+	private volatile long bidPrice;
+	private volatile long bidUnits;
+	private volatile int bidOrders;
+	private volatile long askPrice;
+	private volatile long askUnits;
+	private volatile int askOrders;
+
+	TopOfBookCache(String securityId) {
+		this.securityId = securityId;
+	}
+
+	/**
+	 * @return
+	 * 		true before the first update
+	 */
+	boolean isEmpty() {
+		return version == 0;
+	}
+
+	/**
+	 * Records the best levels if either changed, only called by the matching thread.
+	 * @param sequence
+	 * 			market data sequence of the change
+	 * @return
+	 * 		true if the best levels changed
+	 */
+	boolean update(long sequence, long bidPrice, long bidUnits, int bidOrders, long askPrice, long askUnits,
+				   int askOrders) {
+		long current = version;
+		if (current != 0 && this.bidPrice == bidPrice && this.bidUnits == bidUnits && this.bidOrders == bidOrders
+				&& this.askPrice == askPrice && this.askUnits == askUnits && this.askOrders == askOrders) {
+			return false;
+		}
+		version = current + 1;
+		this.sequence = sequence;
+		this.bidPrice = bidPrice;
+		this.bidUnits = bidUnits;
+		this.bidOrders = bidOrders;
+		this.askPrice = askPrice;
+		this.askUnits = askUnits;
+		this.askOrders = askOrders;
+		version = current + 2;
+		return true;
+	}
+
+	/**
+	 * @return
+	 * 		a consistent copy of the best levels, safe from any thread
+	 */
+	TopOfBook read() {
+		while (true) {
+			long before = version;
+			if ((before & 1) == 0) {
+				TopOfBook top = new TopOfBook(securityId, sequence, bidPrice, bidUnits, bidOrders, askPrice, askUnits,
+						askOrders);
+				if (version == before) {
+					return top;
+				}
+			}
+			Thread.yield();
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package com.example.orderbook.audit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.example.orderbook.model.Order;
+import com.example.orderbook.model.request.OrderType;
+import com.example.orderbook.service.ExecutionLog;
+import com.example.orderbook.service.PriceTimePriorityOrderBook;
+import com.example.orderbook.service.SymbolRegistry;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the asynchronous execution log
+ */
+public class AsyncExecutionLogTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Every execution of a book is written as one line, in the order of the book
+	 */
+	@Test
+	public void testExecutionsAreLogged() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("audit").resolve("execution.log");
+		AsyncExecutionLog log = new AsyncExecutionLog(file, 64, 4096);
+		PriceTimePriorityOrderBook book = new PriceTimePriorityOrderBook();
+		book.setExecutionLog(log.recorder(0, book.getSymbols()));
+
+		book.sellTrade(new Order(1, "SELLER", "REL", 10, 10050, false, OrderType.LIMIT_ORDER, 1));
+		book.buyTrade(new Order(2, "BUYER", "REL", 4, 10050, true, OrderType.LIMIT_ORDER, 2));
+		book.amend(1, 3, 0, 3);
+		try {
+			book.buyTrade(new Order(3, "SELLER", "REL", 1, 10050, true, OrderType.LIMIT_ORDER, 4));
+		} catch (IllegalArgumentException e) {
+			// the seller cannot buy its own security
+		}
+		book.cancelOrder(1);
+		log.close();
+
+		List<String> lines = Files.readAllLines(file, StandardCharsets.US_ASCII);
+		assertEquals(5, lines.size());
+		assertEquals("event=RESTED security=REL order=1 client=SELLER side=SELL price=100.50 units=10", event(lines.get(0)));
+		assertEquals("event=TRADE security=REL order=2 client=BUYER side=BUY price=100.50 units=4 counterparty=1 "
+				+ "counterpartyClient=SELLER", event(lines.get(1)));
+		assertEquals("event=AMENDED security=REL order=1 client=SELLER side=SELL price=100.50 units=3", event(lines.get(2)));
+		assertEquals("event=REJECTED security=REL order=3 client=SELLER side=BUY price=100.50 units=1", event(lines.get(3)));
+		assertEquals("event=CANCELLED security=REL order=1 client=SELLER side=SELL price=100.50 units=3", event(lines.get(4)));
+		assertTrue(lines.get(0).startsWith("time="));
+		assertEquals(5, log.getRecordedCount());
+	}
+
+	/**
+	 * A matching thread recording faster than the writer waits for it rather than losing events
+	 */
+	@Test
+	public void testFullRingWaitsForTheWriter() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("execution.log");
+		AsyncExecutionLog log = new AsyncExecutionLog(file, 4, 1024);
+		SymbolRegistry symbols = new SymbolRegistry();
+		int security = symbols.internSecurity("REL");
+		int client = symbols.internClient("CLIENT");
+		ExecutionLog.Recorder recorder = log.recorder(3, symbols);
+		for (int i = 0; i < 10000; i++) {
+			recorder.record(ExecutionLog.Event.RESTED, security, i, client, true, 1, 1, 0, SymbolRegistry.NONE);
+		}
+		log.close();
+
+		List<String> lines = Files.readAllLines(file, StandardCharsets.US_ASCII);
+		assertEquals(10000, lines.size());
+		for (int i = 0; i < lines.size(); i++) {
+			assertEquals("shard=3 event=RESTED security=REL order=" + i + " client=CLIENT side=BUY price=0.01 units=1",
+					lines.get(i).substring(lines.get(i).indexOf(' ') + 1));
+		}
+		assertEquals(0, log.getWriteErrors());
+	}
+
+	/**
+	 * @return
+	 * 		the line without its time and shard
+	 */
+	private static String event(String line) {
+		return line.substring(line.indexOf("event="));
+	}
+}
@@ -3,6 +3,10 @@ package com.example.orderbook.controller;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Map;
+
+import com.example.orderbook.model.Order;
+import com.example.orderbook.model.request.OrderFilter;
 import com.example.orderbook.model.request.OrderRequest;
 import com.example.orderbook.model.request.OrderType;
 import com.example.orderbook.model.request.UpdateOrderRequest;
@@ -10,6 +14,7 @@ import com.example.orderbook.service.OrderBookService;
 import com.example.orderbook.service.PriceTimePriorityOrderBook;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MvcResult;
@@ -147,4 +152,52 @@ public class OrderBookControllerTest extends AbstractTest {
         assertEquals(200, status);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void getOrdersStreamsNdjson() throws Exception {
+        Mockito.doAnswer(invocation -> {
+            OrderBookService.OrderSink sink = invocation.getArgument(2);
+            sink.send(new Order(1, "CLIENT001", "TATA", 5, 10000, true, OrderType.LIMIT_ORDER, 1));
+            sink.send(new Order(2, "CLIENT001", "TATA", 5, 9900, true, OrderType.LIMIT_ORDER, 2));
+            return 2;
+        }).when(orderBookService).streamOrders(Mockito.eq("TATA"), Mockito.any(OrderFilter.class), Mockito.any());
+
+        MvcResult mvcResult = mvc.perform(MockMvcRequestBuilders.get("/getOrders/{securityId}", "TATA")
+                .param("side", "BUY")
+                .accept("application/x-ndjson")).andReturn();
+
+        assertEquals(200, mvcResult.getResponse().getStatus());
+        String[] lines = mvcResult.getResponse().getContentAsString().trim().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{") && lines[0].contains("\"orderId\":1"));
+        assertTrue(lines[1].contains("\"orderId\":2"));
+    }
+
+    @Test
+    public void getOrdersStreamsAJsonArray() throws Exception {
+        Mockito.doAnswer(invocation -> {
+            OrderBookService.OrderSink sink = invocation.getArgument(2);
+            sink.send(new Order(1, "CLIENT001", "TATA", 5, 10000, true, OrderType.LIMIT_ORDER, 1));
+            sink.send(new Order(2, "CLIENT002", "INFY", 5, 9900, false, OrderType.LIMIT_ORDER, 2));
+            return 2;
+        }).when(orderBookService).streamOrders(Mockito.isNull(), Mockito.any(OrderFilter.class), Mockito.any());
+
+        MvcResult mvcResult = mvc.perform(MockMvcRequestBuilders.get("/getOrders")
+                .accept(MediaType.APPLICATION_JSON)).andReturn();
+
+        assertEquals(200, mvcResult.getResponse().getStatus());
+        assertTrue(mvcResult.getResponse().getContentType().startsWith(MediaType.APPLICATION_JSON_VALUE));
+        Map<?, ?>[] orders = super.mapFromJson(mvcResult.getResponse().getContentAsString(), Map[].class);
+        assertEquals(2, orders.length);
+        assertEquals(1, ((Number) orders[0].get("orderId")).intValue());
+        assertEquals("INFY", orders[1].get("securityId"));
+    }
+
+    @Test
+    public void getOrdersRejectsAnUnknownSide() throws Exception {
+        MvcResult mvcResult = mvc.perform(MockMvcRequestBuilders.get("/getOrders")
+                .param("side", "BOTH")).andReturn();
+
+        assertEquals(400, mvcResult.getResponse().getStatus());
+    }
+
+}
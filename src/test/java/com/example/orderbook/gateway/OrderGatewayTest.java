@@ -0,0 +1,140 @@
+package com.example.orderbook.gateway;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import com.example.orderbook.service.EngineSettings;
+import com.example.orderbook.service.MarketDataFeed;
+import com.example.orderbook.service.MatchingEngine;
+import com.example.orderbook.service.OrderBookService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the binary order entry gateway, prices are given in ticks of 0.01
+ */
+public class OrderGatewayTest {
+
+	private MatchingEngine engine;
+	private OrderGateway gateway;
+	private SocketChannel channel;
+	private final ByteBuffer out = ByteBuffer.allocate(1024);
+	private final ByteBuffer in = ByteBuffer.allocate(1024);
+
+	@Before
+	public void setUp() throws IOException {
+		engine = new MatchingEngine(new EngineSettings().shards(2).ringSize(64));
+		engine.start();
+		gateway = new OrderGateway(new OrderBookService(engine, new MarketDataFeed()), true, 0, 4096);
+		gateway.start();
+		channel = SocketChannel.open(new InetSocketAddress("localhost", gateway.getPort()));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		channel.close();
+		gateway.stop();
+		engine.stop();
+	}
+
+	/**
+	 * A resting sell is filled by a buy, each request is answered with the execution of its order
+	 */
+	@Test
+	public void testNewOrdersAreMatched() throws IOException {
+		GatewayProtocol.putNewOrder(out, 1, "SELLER", "REL", 10, 8000, false, false);
+		GatewayProtocol.putNewOrder(out, 2, "BUYER", "REL", 4, 8000, true, false);
+		send();
+
+		int type = receive();
+		assertEquals(GatewayProtocol.EXECUTION, in.get(type));
+		assertEquals(1, in.getLong(type + 1));
+		long sellOrderId = in.getLong(type + 9);
+		assertEquals(GatewayProtocol.STATUS_RESTED, in.get(type + 41));
+		next(type);
+
+		type = receive();
+		assertEquals(2, in.getLong(type + 1));
+		assertEquals(4, in.getLong(type + 17));
+		assertEquals(0, in.getLong(type + 25));
+		assertEquals(4 * 8000, in.getLong(type + 33));
+		assertEquals(GatewayProtocol.STATUS_DONE, in.get(type + 41));
+		next(type);
+
+		GatewayProtocol.putAmend(out, 3, sellOrderId, 2, 0);
+		GatewayProtocol.putCancel(out, 4, sellOrderId);
+		GatewayProtocol.putCancel(out, 5, sellOrderId);
+		send();
+		type = receive();
+		assertEquals(GatewayProtocol.EXECUTION, in.get(type));
+		assertEquals(2, in.getLong(type + 25));
+		next(type);
+		type = receive();
+		assertEquals(GatewayProtocol.STATUS_CANCELLED, in.get(type + 41));
+		next(type);
+		type = receive();
+		assertEquals(GatewayProtocol.REJECT, in.get(type));
+		assertEquals(5, in.getLong(type + 1));
+		assertEquals("Order not found - " + sellOrderId, GatewayProtocol.getRejectText(in, type));
+	}
+
+	/**
+	 * An invalid order is rejected with the reason given by the engine
+	 */
+	@Test
+	public void testInvalidOrderIsRejected() throws IOException {
+		GatewayProtocol.putNewOrder(out, 7, "BUYER", "REL", 0, 8000, true, false);
+		send();
+		int type = receive();
+		assertEquals(GatewayProtocol.REJECT, in.get(type));
+		assertEquals(7, in.getLong(type + 1));
+		assertEquals("units must be greater than zero", GatewayProtocol.getRejectText(in, type));
+	}
+
+	/**
+	 * The load client gets an answer for every order it sends
+	 */
+	@Test
+	public void testLoadClient() throws Exception {
+		GatewayLoadClient.Result result = new GatewayLoadClient("localhost", gateway.getPort(), 2, 2000, 32).run();
+		assertEquals(4000, result.getOrders());
+		assertEquals(0, result.getRejected());
+		assertTrue(result.getOrdersPerSecond() > 0);
+	}
+
+	private void send() throws IOException {
+		out.flip();
+		while (out.hasRemaining()) {
+			channel.write(out);
+		}
+		out.clear();
+	}
+
+	/**
+	 * Reads until a whole frame is available.
+	 * @return the position of its type byte
+	 */
+	private int receive() throws IOException {
+		while (in.position() < GatewayProtocol.HEADER_LENGTH
+				|| in.position() < GatewayProtocol.HEADER_LENGTH + (in.getShort(0) & 0xffff)) {
+			assertTrue(channel.read(in) >= 0);
+		}
+		return GatewayProtocol.HEADER_LENGTH;
+	}
+
+	/**
+	 * Drops the frame just read, keeping the bytes of the next ones.
+	 */
+	private void next(int type) {
+		int length = GatewayProtocol.HEADER_LENGTH + (in.getShort(type - GatewayProtocol.HEADER_LENGTH) & 0xffff);
+		in.flip();
+		in.position(length);
+		in.compact();
+	}
+}
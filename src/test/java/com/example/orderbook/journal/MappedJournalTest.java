@@ -0,0 +1,160 @@
+package com.example.orderbook.journal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.orderbook.model.request.OrderType;
+import com.example.orderbook.service.EngineSettings;
+import com.example.orderbook.service.MatchingEngine;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the write-ahead journal of the matching engine
+ */
+public class MappedJournalTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path directory;
+
+	@Before
+	public void setUp() {
+		directory = folder.getRoot().toPath().resolve("journal");
+	}
+
+	@Test
+	public void testAcceptedCommandsAreJournaled() throws Exception {
+		MappedJournal journal = new MappedJournal(directory, 1, 1 << 16, FsyncPolicy.BATCH, 10);
+		MatchingEngine engine = new MatchingEngine(new EngineSettings().shards(1).ringSize(64).journal(journal));
+		engine.start();
+		engine.placeOrder(1, "BUYER", "REL", 100, 1000, true, OrderType.LIMIT_ORDER, 1);
+		engine.placeOrder(2, "SELLER", "REL", 40, 0, false, OrderType.MARKET_ORDER, 2);
+		engine.amendOrder(1, 50, 990, 3);
+		engine.cancelOrder(1);
+		engine.cancelClientOrders("BUYER", null);
+		// rejected by validation, never journaled
+		try {
+			engine.placeOrder(3, "BUYER", "REL", 100, 0, true, OrderType.LIMIT_ORDER, 4);
+		} catch (RuntimeException expected) {
+			// limit order without a price
+		}
+		engine.stop();
+		journal.close();
+
+		List<String> records = readAll(1);
+		assertEquals(5, records.size());
+		assertEquals("1 ADD ORDERID=1 CLIENT=BUYER SECURITY=REL UNITS=100 PRICE=1000 ISBUYING=YES ORDERTYPE=LIMIT_ORDER",
+				records.get(0));
+		assertEquals("2 ADD ORDERID=2 CLIENT=SELLER SECURITY=REL UNITS=40 PRICE=0 ISBUYING=NO ORDERTYPE=MARKET_ORDER",
+				records.get(1));
+		assertEquals("3 UPDATE ORDERID=1 CLIENT=null SECURITY=null UNITS=50 PRICE=990 ISBUYING=NO ORDERTYPE=null",
+				records.get(2));
+		assertTrue(records.get(3).startsWith("4 CANCEL ORDERID=1 "));
+		assertTrue(records.get(4).startsWith("5 CANCEL_CLIENT ORDERID=0 CLIENT=BUYER SECURITY=null "));
+	}
+
+	@Test
+	public void testDecimalUpdatesAreReplayedWithTheTickOfTheOrder() throws Exception {
+		MappedJournal journal = new MappedJournal(directory, 1, 1 << 16, FsyncPolicy.BATCH, 10);
+		MatchingEngine engine = new MatchingEngine(new EngineSettings().shards(1).ringSize(64).journal(journal));
+		engine.start();
+		engine.placeOrder(1, "BUYER", "REL", 100, 1000, true, OrderType.LIMIT_ORDER, 1);
+		engine.amendOrderAsync(1, "REL", 50, 9.9, 2).join();
+		engine.stop();
+		journal.close();
+
+		List<Double> values = new ArrayList<>();
+		new JournalReader(MappedJournal.shardDirectory(directory, 0)).read(2,
+				record -> values.add(record.getValue()));
+		assertEquals(9.9, values.get(0), 0);
+
+		journal = new MappedJournal(directory, 1, 1 << 16, FsyncPolicy.BATCH, 10);
+		engine = new MatchingEngine(new EngineSettings().shards(1).ringSize(64).journal(journal));
+		engine.start();
+		assertEquals(990, engine.findOrder(1).getPrice());
+		assertEquals(50, engine.findOrder(1).getUnits());
+		engine.stop();
+		journal.close();
+	}
+
+	@Test
+	public void testSegmentsRollAndSequenceResumes() throws Exception {
+		MappedJournal journal = new MappedJournal(directory, 1, 512, FsyncPolicy.EVERY_COMMAND, 10);
+		MatchingEngine engine = new MatchingEngine(new EngineSettings().shards(1).ringSize(64).journal(journal));
+		engine.start();
+		for (int i = 1; i <= 50; i++) {
+			engine.placeOrder(i, "BUYER", "REL", 1, 1000 - i, true, OrderType.LIMIT_ORDER, i);
+		}
+		engine.stop();
+		journal.close();
+		assertTrue(JournalSegment.list(MappedJournal.shardDirectory(directory, 0)).size() > 1);
+
+		journal = new MappedJournal(directory, 1, 512, FsyncPolicy.ASYNC, 10);
+		assertEquals(51, journal.getNextSequence(0));
+		engine = new MatchingEngine(new EngineSettings().shards(1).ringSize(64).journal(journal));
+		engine.start();
+		engine.cancelOrder(50);
+		engine.stop();
+		journal.close();
+
+		List<String> records = readAll(1);
+		assertEquals(51, records.size());
+		for (int i = 0; i < 50; i++) {
+			assertTrue(records.get(i).startsWith((i + 1) + " ADD ORDERID=" + (i + 1) + " "));
+		}
+		assertTrue(records.get(50).startsWith("51 CANCEL ORDERID=50 "));
+		// segments entirely before the sequence are skipped
+		assertEquals(11, readAll(41).size());
+	}
+
+	@Test
+	public void testTornRecordEndsTheJournal() throws Exception {
+		MappedJournal journal = new MappedJournal(directory, 2, 1 << 16, FsyncPolicy.BATCH, 10);
+		MatchingEngine engine = new MatchingEngine(new EngineSettings().shards(1).ringSize(64).journal(journal));
+		engine.start();
+		for (int i = 1; i <= 3; i++) {
+			engine.placeOrder(i, "BUYER", "REL", 1, 1000, true, OrderType.LIMIT_ORDER, i);
+		}
+		engine.stop();
+		journal.close();
+
+		// a crash in the middle of the last record leaves a body that does not match its checksum
+		Path segment = JournalSegment.list(MappedJournal.shardDirectory(directory, 0)).get(0);
+		byte[] bytes = Files.readAllBytes(segment);
+		int last = bytes.length - 1;
+		while (bytes[last] == 0) {
+			last--;
+		}
+		bytes[last] ^= 0x7F;
+		Files.write(segment, bytes);
+
+		assertEquals(2, readAll(1).size());
+		journal = new MappedJournal(directory, 2, 1 << 16, FsyncPolicy.BATCH, 10);
+		assertEquals(3, journal.getNextSequence(0));
+		assertEquals(1, journal.getNextSequence(1));
+		journal.close();
+	}
+
+	@Test
+	public void testEmptyJournal() throws Exception {
+		new MappedJournal(directory, 1, 1 << 16, FsyncPolicy.ASYNC, 10).close();
+		assertTrue(readAll(1).isEmpty());
+	}
+
+	private List<String> readAll(long fromSequence) throws IOException {
+		List<String> records = new ArrayList<>();
+		new JournalReader(MappedJournal.shardDirectory(directory, 0)).read(fromSequence,
+				record -> records.add(record.toString()));
+		return records;
+	}
+}
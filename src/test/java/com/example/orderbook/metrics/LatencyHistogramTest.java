@@ -0,0 +1,57 @@
+package com.example.orderbook.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for the latency histogram
+ */
+public class LatencyHistogramTest {
+
+	/**
+	 * Small values are exact, large ones within 1/64 of themselves
+	 */
+	@Test
+	public void testPercentilesKeepTheirPrecision() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long value = 1; value <= 100; value++) {
+			histogram.record(value);
+		}
+		assertEquals(50, histogram.getValueAtPercentile(50));
+		assertEquals(99, histogram.getValueAtPercentile(99));
+		assertEquals(100, histogram.getValueAtPercentile(100));
+		assertEquals(50.5, histogram.getMean(), 1e-9);
+
+		histogram.record(1_000_000_000L);
+		long max = histogram.getValueAtPercentile(100);
+		assertEquals(1_000_000_000L, max);
+		assertEquals(1_000_000_000L, histogram.getMax());
+		for (long value = 1000; value < Long.MAX_VALUE / 3; value = value * 3 + 1) {
+			long highest = LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(value));
+			assertTrue(value + " in " + highest, highest >= value && highest - value <= value / 64);
+		}
+		assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(Long.MAX_VALUE)));
+	}
+
+	/**
+	 * Histograms of several writers add up
+	 */
+	@Test
+	public void testHistogramsAddUp() {
+		LatencyHistogram first = new LatencyHistogram();
+		LatencyHistogram second = new LatencyHistogram();
+		first.record(10);
+		first.record(-5);
+		second.record(5000);
+		LatencyHistogram total = new LatencyHistogram();
+		total.add(first);
+		total.add(second);
+		assertEquals(3, total.getCount());
+		assertEquals(5000, total.getMax());
+		assertEquals(0, total.getValueAtPercentile(0));
+		assertEquals(10, total.getValueAtPercentile(50));
+		assertEquals(0, new LatencyHistogram().getValueAtPercentile(99));
+	}
+}
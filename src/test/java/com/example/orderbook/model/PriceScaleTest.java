@@ -0,0 +1,59 @@
+package com.example.orderbook.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.example.orderbook.exception.TradeException;
+import org.junit.Test;
+
+/**
+ * Tests for the conversion of decimal prices to ticks
+ */
+public class PriceScaleTest {
+
+	/**
+	 * Securities trade in cents by default, decimal prices convert to ticks without rounding
+	 */
+	@Test
+	public void defaultScaleIsCents() {
+		PriceScale scale = PriceScale.of("REL");
+		assertEquals(2, scale.getDecimals());
+		assertEquals(43550, scale.toTicks(435.5));
+		assertEquals(29, scale.toTicks(0.29));
+		assertEquals(435.5, scale.toValue(43550), 0.0);
+		assertEquals(0.29, scale.toValue(29), 0.0);
+	}
+
+	/**
+	 * A registered tick size applies to its security only, whatever the case of the security id
+	 */
+	@Test
+	public void registeredScale() {
+		PriceScale.register("PRICESCALETEST", 4);
+		assertEquals(12345, PriceScale.of("PriceScaleTest").toTicks(1.2345));
+		assertEquals(2, PriceScale.of("OTHER").getDecimals());
+	}
+
+	/**
+	 * Prices finer than the tick are rejected instead of rounded
+	 */
+	@Test(expected = TradeException.class)
+	public void subTickPriceIsRejected() {
+		PriceScale.of("REL").toTicks(10.005);
+	}
+
+	/**
+	 * A price beyond the range of the ticks is reported as such, not as a price finer than the tick
+	 */
+	@Test
+	public void overflowingPriceIsRejected() {
+		try {
+			PriceScale.of("REL").toTicks(1e18);
+			fail("a price of 10^20 ticks must be rejected");
+		} catch (TradeException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("exceeds the highest price"));
+		}
+		assertEquals(100000000000000000L, PriceScale.of("REL").toTicks(1e15));
+	}
+}
@@ -0,0 +1,95 @@
+package com.example.orderbook.pipeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * Tests for the ring buffer pipeline
+ */
+public class PipelineTest {
+
+	private static final int PRODUCERS = 3;
+	private static final int EVENTS_PER_PRODUCER = 20000;
+
+	static class LongEvent {
+		long value;
+		long doubled;
+	}
+
+	/**
+	 * Many producers publish through a small ring, every entry goes through both stages in sequence order
+	 */
+	@Test
+	public void entriesFlowThroughStagesInOrder() throws Exception {
+		for (String waitStrategy : new String[]{"BLOCKING", "YIELDING", "BUSY_SPIN"}) {
+			AtomicLong sum = new AtomicLong();
+			AtomicLong lastSequence = new AtomicLong(-1);
+			Pipeline<LongEvent> pipeline = new Pipeline<>("test", LongEvent::new, 64, WaitStrategy.of(waitStrategy))
+					.then("double", (event, sequence, endOfBatch) -> event.doubled = event.value * 2)
+					.then("sum", (event, sequence, endOfBatch) -> {
+						assertEquals(lastSequence.get() + 1, sequence);
+						lastSequence.set(sequence);
+						sum.addAndGet(event.doubled);
+					});
+			pipeline.start();
+
+			List<Thread> producers = new ArrayList<>();
+			for (int p = 0; p < PRODUCERS; p++) {
+				Thread producer = new Thread(() -> {
+					for (int i = 1; i <= EVENTS_PER_PRODUCER; i++) {
+						long sequence = pipeline.next();
+						pipeline.get(sequence).value = i;
+						pipeline.publish(sequence);
+					}
+				});
+				producers.add(producer);
+				producer.start();
+			}
+			for (Thread producer : producers) {
+				producer.join();
+			}
+			pipeline.halt();
+
+			long expected = 2L * PRODUCERS * ((long) EVENTS_PER_PRODUCER * (EVENTS_PER_PRODUCER + 1) / 2);
+			assertEquals(waitStrategy, expected, sum.get());
+			assertEquals(PRODUCERS * EVENTS_PER_PRODUCER - 1, lastSequence.get());
+			for (Long lag : pipeline.getStageLag().values()) {
+				assertEquals(0L, lag.longValue());
+			}
+		}
+	}
+
+	/**
+	 * Ring sizes must be powers of two
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void ringSizeIsAPowerOfTwo() {
+		new RingBuffer<>(LongEvent::new, 100, new BlockingWaitStrategy());
+	}
+
+	/**
+	 * Stage lag counts claimed entries a stage has not processed yet
+	 */
+	@Test
+	public void lagIsReportedPerStage() throws Exception {
+		Pipeline<LongEvent> pipeline = new Pipeline<>("test", LongEvent::new, 8, new YieldingWaitStrategy())
+				.then("first", (event, sequence, endOfBatch) -> { })
+				.then("second", (event, sequence, endOfBatch) -> { });
+		long sequence = pipeline.next();
+		PipelineStats stats = pipeline.getStats();
+		assertEquals(8, stats.getRingSize());
+		assertEquals(1L, stats.getStageLag().get("first").longValue());
+		assertTrue(stats.getStageLag().containsKey("second"));
+
+		pipeline.start();
+		pipeline.publish(sequence);
+		pipeline.halt();
+		assertEquals(0L, pipeline.getStageLag().get("second").longValue());
+	}
+}
@@ -0,0 +1,93 @@
+package com.example.orderbook.replay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.example.orderbook.model.request.BatchCommand;
+import com.example.orderbook.model.request.OrderType;
+import com.example.orderbook.service.PriceTimePriorityOrderBook;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+/**
+ * Tests for the synthetic order flow
+ */
+public class OrderFlowGeneratorTest {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	/**
+	 * The flow depends on the seed only
+	 */
+	@Test
+	public void testSameSeedGivesSameFlow() throws Exception {
+		String first = MAPPER.writeValueAsString(new OrderFlowGenerator(7, 100, 50).next(5000));
+		String second = MAPPER.writeValueAsString(new OrderFlowGenerator(7, 100, 50).next(5000));
+		String other = MAPPER.writeValueAsString(new OrderFlowGenerator(8, 100, 50).next(5000));
+		assertEquals(first, second);
+		assertFalse(first.equals(other));
+	}
+
+	/**
+	 * Popular securities get most of the orders, the commands follow the mix and bursts raise the mean rate
+	 */
+	@Test
+	public void testFlowFollowsTheSettings() {
+		int count = 100_000;
+		List<RecordedCommand> flow = new OrderFlowGenerator(42, 100, 50)
+				.mix(60, 5, 15, 20)
+				.arrivals(10_000, 10, 1_000_000, 50_000)
+				.next(count);
+		Map<String, Integer> perSecurity = new HashMap<>();
+		Map<BatchCommand.Action, Integer> perAction = new HashMap<>();
+		int market = 0;
+		for (int i = 0; i < count; i++) {
+			RecordedCommand command = flow.get(i);
+			perAction.merge(command.getAction(), 1, Integer::sum);
+			if (command.getAction() == BatchCommand.Action.ADD) {
+				perSecurity.merge(command.getSecurityId(), 1, Integer::sum);
+				if (command.getOrderType() == OrderType.MARKET_ORDER) {
+					market++;
+					assertEquals(0, command.getPrice());
+				} else {
+					assertTrue(command.getPrice() > 0);
+				}
+			}
+			if (i > 0) {
+				assertTrue(command.getTime() >= flow.get(i - 1).getTime());
+			}
+		}
+		// 1 / H(100) of the orders for the most popular security, about 19%
+		int adds = perAction.get(BatchCommand.Action.ADD);
+		assertEquals(0.19, perSecurity.get("SYN1") / (double) adds, 0.02);
+		assertTrue(perSecurity.get("SYN1") > 5 * perSecurity.getOrDefault("SYN10", 0));
+		assertEquals(0.65, adds / (double) count, 0.02);
+		assertEquals(0.05, market / (double) count, 0.01);
+		assertEquals(0.15, perAction.get(BatchCommand.Action.UPDATE) / (double) count, 0.02);
+		assertTrue(flow.get(count - 1).getTime() < count * 100L);
+	}
+
+	/**
+	 * Applied to a book the flow trades and the resting orders stay within the live orders of the flow
+	 */
+	@Test
+	public void testFlowRunsAgainstABook() {
+		OrderFlowGenerator generator = new OrderFlowGenerator(1, 20, 200).maxLiveOrders(500);
+		PriceTimePriorityOrderBook book = new PriceTimePriorityOrderBook();
+		int accepted = 0;
+		for (int i = 0; i < 20_000; i++) {
+			if (OrderFlowGenerator.execute(generator.next(), book)) {
+				accepted++;
+			}
+		}
+		assertTrue(accepted > 10_000);
+		assertTrue(book.getIndexedOrderCount() > 0);
+		assertTrue(book.getIndexedOrderCount() <= 500);
+		assertTrue(book.getHighestOrderId() > 5_000);
+	}
+}
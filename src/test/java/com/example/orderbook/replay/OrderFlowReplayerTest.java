@@ -0,0 +1,132 @@
+package com.example.orderbook.replay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.example.orderbook.model.BatchResult;
+import com.example.orderbook.model.request.BatchCommand;
+import com.example.orderbook.model.request.OrderType;
+import com.example.orderbook.service.EngineSettings;
+import com.example.orderbook.service.MarketDataFeed;
+import com.example.orderbook.service.MatchingEngine;
+import com.example.orderbook.service.OrderBookService;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for recording the order flow and replaying it
+ */
+public class OrderFlowReplayerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private List<RecordedCommand> recording;
+
+	/**
+	 * Records a flow of adds, amendments and cancellations through the batch and the gateway methods of the service
+	 */
+	@Before
+	public void setUp() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("recording.ndjson");
+		OrderFlowRecorder recorder = new OrderFlowRecorder(file);
+		MatchingEngine engine = new MatchingEngine(new EngineSettings().shards(2).ringSize(64));
+		engine.start();
+		try {
+			OrderBookService service = new OrderBookService(engine, new MarketDataFeed(), recorder);
+			List<BatchResult> results = service.submitBatch(Arrays.asList(
+					BatchCommand.add("SELLER", "REL", 10, 100.5, false, OrderType.LIMIT_ORDER),
+					BatchCommand.add("SELLER", "TATA", 5, 20.0, false, OrderType.LIMIT_ORDER),
+					BatchCommand.add("BUYER", "REL", 4, 100.5, true, OrderType.LIMIT_ORDER)));
+			service.submitBatch(Arrays.asList(
+					BatchCommand.update(results.get(0).getOrderId(), 3, 101.0),
+					BatchCommand.cancel(results.get(1).getOrderId())));
+			service.placeOrderAsync("BUYER", "INFY", 7, 5000, true, OrderType.LIMIT_ORDER).join();
+			service.cancelOrderAsync(Long.MAX_VALUE - 1).join();
+		} finally {
+			engine.stop();
+			recorder.close();
+		}
+		recording = OrderFlowRecorder.read(file);
+	}
+
+	/**
+	 * Every command is recorded with the orderId the engine gave it and its price in ticks,
+	 * an UPDATE of a batch with the decimal value the engine converts
+	 */
+	@Test
+	public void testCommandsAreRecorded() {
+		assertEquals(7, recording.size());
+		RecordedCommand add = recording.get(0);
+		assertEquals(BatchCommand.Action.ADD, add.getAction());
+		assertEquals("SELLER", add.getClientId());
+		assertEquals(10050, add.getPrice());
+		assertFalse(add.getIsBuying());
+		RecordedCommand update = recording.get(3);
+		assertEquals(BatchCommand.Action.UPDATE, update.getAction());
+		assertEquals(add.getOrderId(), update.getOrderId());
+		assertEquals(0, update.getPrice());
+		assertEquals(101.0, update.getValue(), 0);
+		assertEquals(recording.get(1).getOrderId(), recording.get(4).getOrderId());
+		for (int i = 1; i < recording.size(); i++) {
+			assertTrue(recording.get(i).getTime() >= recording.get(i - 1).getTime());
+		}
+	}
+
+	/**
+	 * Replays on new engines trade the same and leave the same book, a different flow does not
+	 */
+	@Test
+	public void testReplaysAreIdentical() throws Exception {
+		OrderFlowReplayer.Result first = replay(recording, 0);
+		OrderFlowReplayer.Result second = replay(recording, 0);
+		assertEquals(7, first.getCommands());
+		assertEquals(1, first.getRejected());
+		assertTrue(first.isIdenticalTo(second));
+		assertEquals(7, first.getLatency().getCount());
+
+		List<RecordedCommand> withoutCancel = new ArrayList<>(recording);
+		withoutCancel.remove(4);
+		OrderFlowReplayer.Result other = replay(withoutCancel, 0);
+		assertFalse(first.getBookDigest().equals(other.getBookDigest()));
+	}
+
+	/**
+	 * A paced replay keeps the timing of the recording
+	 */
+	@Test
+	public void testPacedReplayKeepsTheTiming() throws Exception {
+		List<RecordedCommand> spaced = new ArrayList<>();
+		for (int i = 0; i < recording.size(); i++) {
+			RecordedCommand command = recording.get(i);
+			spaced.add(new RecordedCommand(i * 20_000L, command.getAction(), command.getOrderId(),
+					command.getClientId(), command.getSecurityId(), command.getUnits(), command.getPrice(),
+					command.getIsBuying(), command.getOrderType(), command.getValue()));
+		}
+		long start = System.nanoTime();
+		OrderFlowReplayer.Result paced = replay(spaced, 2);
+		assertTrue(System.nanoTime() - start >= 60_000_000L);
+		assertTrue(paced.isIdenticalTo(replay(recording, 0)));
+	}
+
+	private static OrderFlowReplayer.Result replay(List<RecordedCommand> commands, double speed)
+			throws IOException, InterruptedException {
+		MatchingEngine engine = new MatchingEngine(new EngineSettings().shards(2).ringSize(64));
+		engine.start();
+		try {
+			OrderBookService service = new OrderBookService(engine, new MarketDataFeed());
+			return new OrderFlowReplayer(commands, speed).replay(OrderFlowReplayer.inProcess(service));
+		} finally {
+			engine.stop();
+		}
+	}
+}
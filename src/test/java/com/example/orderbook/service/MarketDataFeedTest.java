@@ -0,0 +1,254 @@
+package com.example.orderbook.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.example.orderbook.model.MarketDataEvent;
+import com.example.orderbook.model.MarketDataEvent.Type;
+import com.example.orderbook.model.Order;
+import com.example.orderbook.model.request.OrderType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the market data feed, prices are given in ticks of 0.01
+ */
+public class MarketDataFeedTest {
+
+	private static final String SECURITY = "REL";
+
+	private MarketDataFeed feed;
+	private PriceTimePriorityOrderBook orderbook;
+	private long nextOrderId = 1;
+
+	@Before
+	public void setUp() {
+		feed = new MarketDataFeed(2);
+		orderbook = new PriceTimePriorityOrderBook(PriceTimePriorityOrderBook.DEFAULT_MARKET_PROTECTION_BPS, feed);
+	}
+
+	@After
+	public void tearDown() {
+		feed.close();
+	}
+
+	/**
+	 * The subscriber gets the state of the book first, then every change with the next sequence of the security
+	 */
+	@Test
+	public void testSnapshotThenDeltas() throws Exception {
+		orderbook.buyTrade(order("BUYER", 5, 5000, true));
+		orderbook.sellTrade(order("SELLER", 3, 5100, false));
+
+		CollectingSink sink = new CollectingSink();
+		subscribe(SECURITY, sink);
+		List<MarketDataEvent> snapshot = sink.next();
+		assertEquals(3, snapshot.size());
+		assertEquals(Type.SNAPSHOT, snapshot.get(0).getType());
+		assertEquals(2, snapshot.get(0).getSequence());
+		assertLevel(snapshot.get(1), Type.LEVEL_ADDED, true, 5000, 5, 1);
+		assertLevel(snapshot.get(2), Type.LEVEL_ADDED, false, 5100, 3, 1);
+
+		orderbook.buyTrade(order("BUYER", 2, 5000, true));
+		orderbook.buyTrade(order("BUYER", 1, 4900, true));
+		List<MarketDataEvent> events = sink.drain(2);
+		assertLevel(events.get(0), Type.LEVEL_CHANGED, true, 5000, 7, 2);
+		assertEquals(3, events.get(0).getSequence());
+		assertLevel(events.get(1), Type.LEVEL_ADDED, true, 4900, 1, 1);
+		assertEquals(4, events.get(1).getSequence());
+	}
+
+	/**
+	 * A sweep publishes every trade, then the levels it emptied or reduced
+	 */
+	@Test
+	public void testSweepPublishesTradesAndLevels() throws Exception {
+		Order first = order("SELLER", 2, 5000, false);
+		Order second = order("SELLER", 2, 5100, false);
+		orderbook.sellTrade(first);
+		orderbook.sellTrade(second);
+
+		CollectingSink sink = new CollectingSink();
+		subscribe(SECURITY, sink);
+		sink.next();
+
+		Order buyOrder = order("BUYER", 3, 5100, true);
+		orderbook.buyTrade(buyOrder);
+		List<MarketDataEvent> events = sink.drain(4);
+		assertEquals(Type.TRADE, events.get(0).getType());
+		assertEquals(first.getOrderId(), events.get(0).getMakerOrderId());
+		assertEquals(buyOrder.getOrderId(), events.get(0).getTakerOrderId());
+		assertEquals(2, events.get(0).getUnits());
+		assertLevel(events.get(1), Type.LEVEL_REMOVED, false, 5000, 0, 0);
+		assertEquals(Type.TRADE, events.get(2).getType());
+		assertEquals(5100, events.get(2).getPrice());
+		assertLevel(events.get(3), Type.LEVEL_CHANGED, false, 5100, 1, 1);
+		for (int i = 1; i < events.size(); i++) {
+			assertEquals(events.get(i - 1).getSequence() + 1, events.get(i).getSequence());
+		}
+
+		orderbook.cancelOrder(second.getOrderId());
+		assertLevel(sink.drain(1).get(0), Type.LEVEL_REMOVED, false, 5100, 0, 0);
+	}
+
+	/**
+	 * Changes of a level made while the subscriber is busy are sent as its latest state
+	 */
+	@Test
+	public void testLevelChangesAreConflated() throws Exception {
+		CollectingSink sink = new CollectingSink();
+		subscribe(SECURITY, sink);
+		sink.next();
+		CountDownLatch gate = sink.hold();
+		orderbook.buyTrade(order("BUYER", 1, 5000, true));
+		// the delivery thread is blocked sending the first change, the next ones wait for it
+		sink.awaitSending();
+		for (int i = 0; i < 10; i++) {
+			orderbook.buyTrade(order("BUYER", 1, 5000, true));
+		}
+		gate.countDown();
+
+		assertLevel(sink.drain(1).get(0), Type.LEVEL_ADDED, true, 5000, 1, 1);
+		List<MarketDataEvent> conflated = sink.next();
+		assertEquals(1, conflated.size());
+		assertLevel(conflated.get(0), Type.LEVEL_CHANGED, true, 5000, 11, 11);
+		assertEquals(11, conflated.get(0).getSequence());
+	}
+
+	/**
+	 * A conflated level change is sent after the trade queued between the changes it replaces,
+	 * so the events keep increasing sequences
+	 */
+	@Test
+	public void testConflatedLevelFollowsTheEventsQueuedBeforeIt() throws Exception {
+		CollectingSink sink = new CollectingSink();
+		subscribe(SECURITY, sink);
+		sink.next();
+		CountDownLatch gate = sink.hold();
+		orderbook.buyTrade(order("BUYER", 1, 5000, true));
+		sink.awaitSending();
+		orderbook.buyTrade(order("BUYER", 1, 5000, true));
+		orderbook.sellTrade(order("SELLER", 1, 5000, false));
+		gate.countDown();
+
+		assertLevel(sink.drain(1).get(0), Type.LEVEL_ADDED, true, 5000, 1, 1);
+		List<MarketDataEvent> events = sink.next();
+		assertEquals(2, events.size());
+		assertEquals(Type.TRADE, events.get(0).getType());
+		assertLevel(events.get(1), Type.LEVEL_CHANGED, true, 5000, 1, 1);
+		assertTrue(events.get(1).getSequence() > events.get(0).getSequence());
+	}
+
+	/**
+	 * Trades are not conflated, a subscriber too many trades behind is disconnected
+	 */
+	@Test
+	public void testSlowConsumerIsDisconnected() throws Exception {
+		for (int i = 0; i < 4; i++) {
+			orderbook.sellTrade(order("SELLER", 1, 5000, false));
+		}
+		CollectingSink sink = new CollectingSink();
+		CountDownLatch gate = sink.hold();
+		MarketDataSubscription subscription = feed.subscribe(SECURITY, sink);
+		orderbook.buyTrade(order("BUYER", 1, 5000, true));
+		new Thread(() -> subscription.start(orderbook.getMarketDataSnapshot(SECURITY))).start();
+		sink.awaitSending();
+
+		orderbook.buyTrade(order("BUYER", 3, 5000, true));
+		assertTrue(subscription.isClosed());
+		assertNotNull(sink.closed);
+		assertEquals(0, feed.getSubscriberCount());
+		gate.countDown();
+	}
+
+	private MarketDataSubscription subscribe(String securityId, CollectingSink sink) {
+		MarketDataSubscription subscription = feed.subscribe(securityId, sink);
+		subscription.start(orderbook.getMarketDataSnapshot(securityId));
+		assertFalse(subscription.isClosed());
+		return subscription;
+	}
+
+	private Order order(String clientId, long units, long price, boolean buying) {
+		return new Order(nextOrderId++, clientId, SECURITY, units, price, buying, OrderType.LIMIT_ORDER, System.currentTimeMillis());
+	}
+
+	private static void assertLevel(MarketDataEvent event, Type type, boolean buying, long price, long units, int orders) {
+		assertEquals(type, event.getType());
+		assertEquals(buying, event.isBuying());
+		assertEquals(price, event.getPrice());
+		assertEquals(units, event.getUnits());
+		assertEquals(orders, event.getOrders());
+	}
+
+	/**
+	 * Collects the batches sent, once held the next send waits for the gate to open
+	 */
+	private static final class CollectingSink implements MarketDataFeed.Sink {
+
+		private final BlockingQueue<List<MarketDataEvent>> batches = new LinkedBlockingQueue<>();
+		private volatile CountDownLatch sending = new CountDownLatch(1);
+		private volatile CountDownLatch gate;
+		private volatile String closed;
+
+		/**
+		 * @return the gate the next send waits for
+		 */
+		CountDownLatch hold() {
+			sending = new CountDownLatch(1);
+			gate = new CountDownLatch(1);
+			return gate;
+		}
+
+		@Override
+		public void send(List<MarketDataEvent> events) throws IOException {
+			CountDownLatch held = gate;
+			gate = null;
+			sending.countDown();
+			if (held != null) {
+				try {
+					held.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+			}
+			batches.add(new ArrayList<>(events));
+		}
+
+		@Override
+		public void close(String reason) {
+			closed = reason;
+		}
+
+		void awaitSending() throws InterruptedException {
+			assertTrue(sending.await(10, TimeUnit.SECONDS));
+		}
+
+		List<MarketDataEvent> next() throws InterruptedException {
+			List<MarketDataEvent> batch = batches.poll(10, TimeUnit.SECONDS);
+			assertNotNull(batch);
+			return batch;
+		}
+
+		/**
+		 * @return the events of the next batches, at least count of them
+		 */
+		List<MarketDataEvent> drain(int count) throws InterruptedException {
+			List<MarketDataEvent> events = new ArrayList<>();
+			while (events.size() < count) {
+				events.addAll(next());
+			}
+			return events;
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package com.example.orderbook.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.example.orderbook.exception.TradeException;
+import com.example.orderbook.model.EngineMetrics;
+import com.example.orderbook.model.Order;
+import com.example.orderbook.model.request.OrderType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the sharded matching engine
+ */
+public class MatchingEngineTest {
+
+	private static final String[] SECURITIES = {"REL", "TATA", "INFY"};
+	private static final int ORDERS_PER_THREAD = 2000;
+
+	private MatchingEngine engine;
+
+	@Before
+	public void setUp() {
+		engine = new MatchingEngine(new EngineSettings().shards(2).ringSize(64));
+		engine.start();
+	}
+
+	@After
+	public void tearDown() throws InterruptedException {
+		engine.stop();
+	}
+
+	/**
+	 * Buyers and sellers submit concurrently for the same securities.
+	 * Every order is matched by the single writer of its security, so equal buy and sell flows leave an empty book.
+	 */
+	@Test
+	public void concurrentOrdersAreFullyMatched() throws Exception {
+		ExecutorService clients = Executors.newFixedThreadPool(4);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			final boolean buying = t % 2 == 0;
+			final int thread = t;
+			futures.add(clients.submit(() -> {
+				for (int i = 0; i < ORDERS_PER_THREAD; i++) {
+					String securityId = SECURITIES[i % SECURITIES.length];
+					Order order = new Order(engine.nextOrderId(securityId), "CLIENT_" + thread + "_" + i, securityId, 1,
+							1000, buying, OrderType.LIMIT_ORDER, i);
+					engine.execute(order.getSecurityId(), book -> buying ? book.buyTrade(order) : book.sellTrade(order));
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get(30, TimeUnit.SECONDS);
+		}
+		clients.shutdown();
+
+		int resting = engine.executeOnAll(PriceTimePriorityOrderBook::getIndexedOrderCount)
+				.stream().mapToInt(Integer::intValue).sum();
+		assertEquals(0, resting);
+	}
+
+	/**
+	 * Exceptions thrown by the book on the shard thread are rethrown to the submitter
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void bookExceptionsAreRethrown() {
+		Order buyOrder = new Order(engine.nextOrderId("REL"), "CLIENT", "REL", 0, 1000, true, OrderType.LIMIT_ORDER, 1);
+		engine.execute("REL", book -> book.buyTrade(buyOrder));
+	}
+
+	/**
+	 * Securities only differing by case are owned by the same shard
+	 */
+	@Test
+	public void securitiesAreShardedCaseInsensitively() {
+		assertEquals(engine.shardOf("rel"), engine.shardOf("REL"));
+	}
+
+	/**
+	 * The shards count the commands they match and measure them, rejected commands included
+	 */
+	@Test
+	public void metricsCountTheMatchedCommands() {
+		long sell = engine.nextOrderId("REL");
+		engine.placeOrder(sell, "SELLER", "REL", 10, 1000, false, OrderType.LIMIT_ORDER, 1);
+		engine.placeOrder(engine.nextOrderId("REL"), "BUYER", "REL", 4, 1000, true, OrderType.LIMIT_ORDER, 2);
+		engine.amendOrder(sell, 3, 0, 3);
+		try {
+			engine.placeOrder(engine.nextOrderId("REL"), "SELLER", "REL", 1, 1000, true, OrderType.LIMIT_ORDER, 4);
+			fail("a client cannot trade against itself");
+		} catch (IllegalArgumentException e) {
+			// blocked by the book
+		}
+		try {
+			engine.placeOrder(engine.nextOrderId("REL"), "BUYER", "REL", 0, 1000, true, OrderType.LIMIT_ORDER, 5);
+			fail("units are mandatory");
+		} catch (TradeException e) {
+			// rejected by the validation stage
+		}
+		engine.cancelOrder(sell);
+
+		EngineMetrics metrics = engine.getMetrics();
+		assertEquals(2, metrics.getOrders());
+		assertEquals(1, metrics.getFills());
+		assertEquals(2, metrics.getRejects());
+		assertEquals(1, metrics.getSelfTradeBlocks());
+		assertEquals(2, metrics.getLatency().get("add").getCount());
+		assertEquals(1, metrics.getLatency().get("amend").getCount());
+		assertEquals(1, metrics.getLatency().get("cancel").getCount());
+		assertEquals(6, metrics.getLatency().get("match").getCount());
+		assertTrue(metrics.getLatency().get("match").getMax() >= metrics.getLatency().get("add").getMax());
+		assertEquals(2, metrics.getQueueSizes().size());
+		assertEquals(1, metrics.getBooks().size());
+		assertEquals("REL", metrics.getBooks().get(0).getSecurityId());
+		assertEquals(0, metrics.getBooks().get(0).getAskOrders());
+	}
+
+	/**
+	 * Views of every book taken concurrently with each other and with matching never wait for one another,
+	 * and hold every order acknowledged before they were requested
+	 */
+	@Test
+	public void concurrentViewsOfEveryBookComplete() throws Exception {
+		ExecutorService clients = Executors.newFixedThreadPool(4);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			final int thread = t;
+			futures.add(clients.submit(() -> {
+				for (int i = 0; i < 200; i++) {
+					if (thread % 2 == 0) {
+						String securityId = SECURITIES[i % SECURITIES.length];
+						long orderId = engine.nextOrderId(securityId);
+						engine.placeOrder(orderId, "CLIENT_" + thread, securityId, 1, 1000 + i, true,
+								OrderType.LIMIT_ORDER, i);
+						assertTrue(engine.viewAll().orders().stream().anyMatch(o -> o.getOrderId() == orderId));
+					} else {
+						engine.viewAll();
+					}
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get(30, TimeUnit.SECONDS);
+		}
+		clients.shutdown();
+
+		assertEquals(400, engine.viewAll().size());
+	}
+}
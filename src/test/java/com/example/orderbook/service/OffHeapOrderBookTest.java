@@ -0,0 +1,52 @@
+package com.example.orderbook.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import com.example.orderbook.model.Order;
+import com.example.orderbook.model.request.OrderType;
+import org.junit.Test;
+
+/**
+ * Runs the tests of the book against the off-heap storage of the orders, plus tests of its slabs
+ */
+public class OffHeapOrderBookTest extends PriceTimePriorityOrderBookTest {
+
+	@Override
+	protected PriceTimePriorityOrderBook newOrderBook() {
+		return new PriceTimePriorityOrderBook(PriceTimePriorityOrderBook.DEFAULT_MARKET_PROTECTION_BPS,
+				new MarketDataFeed(), 0, OrderStorage.OFF_HEAP);
+	}
+
+	/**
+	 * A book deeper than a slab grows new slabs, keeps price-time priority and reuses the records it frees
+	 */
+	@Test
+	public void testBookGrowsAcrossSlabs() {
+		PriceTimePriorityOrderBook book = new PriceTimePriorityOrderBook(
+				PriceTimePriorityOrderBook.DEFAULT_MARKET_PROTECTION_BPS, new MarketDataFeed(), 0, OrderStorage.OFF_HEAP);
+		int orders = OffHeapOrderStore.SLAB_RECORDS * 2 + 10;
+		for (int i = 0; i < orders; i++) {
+			book.place(i, "SELLER" + i % 7, "REL", 10, 10000 + i % 50, false, OrderType.LIMIT_ORDER, i);
+		}
+		assertEquals(orders, book.getIndexedOrderCount());
+		assertEquals(50, book.getDepth("REL", 100).getAsks().size());
+
+		// the buyer takes the 7 oldest orders at the best price
+		assertFalse(book.place(orders, "BUYER", "REL", 70, 10000, true, OrderType.LIMIT_ORDER, orders));
+		assertEquals(7, book.getFills().size());
+		List<Order> asks = book.getAllOrdersBySecurity("REL");
+		assertEquals(orders - 7, asks.size());
+		assertEquals(350, asks.get(0).getOrderId());
+		assertEquals("SELLER0", asks.get(0).getClientId());
+
+		int sellerZeroOrders = (orders + 6) / 7;
+		assertEquals(sellerZeroOrders - 1, book.cancelClientOrders("SELLER0", null));
+		assertTrue(book.place(orders + 1, "SELLER0", "REL", 5, 10000, false, OrderType.LIMIT_ORDER, orders + 1));
+		assertEquals(5, book.findOrderByOrderId(orders + 1).getUnits());
+		assertEquals(orders - 7 - (sellerZeroOrders - 1) + 1, book.getIndexedOrderCount());
+	}
+}
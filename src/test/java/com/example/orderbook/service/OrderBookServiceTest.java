@@ -0,0 +1,246 @@
+package com.example.orderbook.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.example.orderbook.exception.TradeException;
+import com.example.orderbook.model.BatchResult;
+import com.example.orderbook.model.Order;
+import com.example.orderbook.model.OrderPage;
+import com.example.orderbook.model.PriceScale;
+import com.example.orderbook.model.request.BatchCommand;
+import com.example.orderbook.model.request.OrderFilter;
+import com.example.orderbook.model.request.OrderType;
+import com.example.orderbook.model.request.UpdateOrderRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the batch commands of OrderBookService
+ */
+public class OrderBookServiceTest {
+
+	private OrderBookService service;
+
+	@Before
+	public void setUp() {
+		service = new OrderBookService();
+		service.engine = new MatchingEngine(new EngineSettings().shards(2).ringSize(64));
+		service.engine.start();
+	}
+
+	@After
+	public void tearDown() throws InterruptedException {
+		service.engine.stop();
+	}
+
+	/**
+	 * Results come back in the order of the commands, a rejected command does not stop the batch
+	 */
+	@Test
+	public void testBatchResultsInOrder() {
+		List<BatchResult> results = service.submitBatch(Arrays.asList(
+				BatchCommand.add("SELLER", "REL", 10, 80.0, false, OrderType.LIMIT_ORDER),
+				BatchCommand.add("SELLER", "REL", 10, 80.015, false, OrderType.LIMIT_ORDER),
+				BatchCommand.add("BUYER", "REL", 4, null, true, OrderType.MARKET_ORDER),
+				BatchCommand.add("BUYER", "TATA", 5, null, true, OrderType.LIMIT_ORDER),
+				BatchCommand.cancel(12345)));
+
+		assertEquals(5, results.size());
+		for (int i = 0; i < results.size(); i++) {
+			assertEquals(i, results.get(i).getIndex());
+		}
+		assertTrue(results.get(0).isAccepted());
+		assertTrue(results.get(0).isRested());
+		assertFalse(results.get(1).isAccepted());
+		assertTrue(results.get(2).isAccepted());
+		assertEquals(4, results.get(2).getFilledUnits());
+		assertEquals(320.0, results.get(2).getValue(), 0.0001);
+		assertFalse(results.get(3).isAccepted());
+		assertFalse(results.get(4).isAccepted());
+		assertEquals(6, service.listOrdersBySecurity("REL").get(0).getUnits());
+	}
+
+	/**
+	 * Updates and cancels of a batch apply to resting orders after the commands queued before them
+	 */
+	@Test
+	public void testBatchUpdatesAndCancels() {
+		List<BatchResult> added = service.submitBatch(Arrays.asList(
+				BatchCommand.add("SELLER", "REL", 10, 80.0, false, OrderType.LIMIT_ORDER),
+				BatchCommand.add("SELLER", "INFY", 10, 90.0, false, OrderType.LIMIT_ORDER)));
+		long rel = added.get(0).getOrderId();
+		long infy = added.get(1).getOrderId();
+
+		List<BatchResult> results = service.submitBatch(Arrays.asList(
+				BatchCommand.update(rel, 5, 81.0),
+				BatchCommand.add("BUYER", "REL", 5, 81.0, true, OrderType.LIMIT_ORDER),
+				BatchCommand.cancel(infy),
+				BatchCommand.cancel(infy)));
+		assertTrue(results.get(0).isAccepted());
+		assertEquals(5, results.get(1).getFilledUnits());
+		assertFalse(results.get(1).isRested());
+		assertTrue(results.get(2).isAccepted());
+		assertFalse(results.get(3).isAccepted());
+		assertEquals(0, service.countOrders());
+	}
+
+	/**
+	 * The value of an UPDATE is converted with the tick of the security the order rests on,
+	 * an UPDATE naming another security is rejected
+	 */
+	@Test
+	public void testBatchUpdatesUseTheTickOfTheRestingOrder() {
+		PriceScale.register("BATCHTICK", 3);
+		long orderId = service.submitBatch(Collections.singletonList(
+				BatchCommand.add("SELLER", "BATCHTICK", 10, 80.0, false, OrderType.LIMIT_ORDER))).get(0).getOrderId();
+
+		List<BatchResult> results = service.submitBatch(Arrays.asList(
+				new BatchCommand(BatchCommand.Action.UPDATE, orderId, null, "REL", 10, 70.0, null, null),
+				BatchCommand.update(orderId, 10, 80.125),
+				new BatchCommand(BatchCommand.Action.UPDATE, orderId, null, "BATCHTICK", 8, null, null, null)));
+		assertFalse(results.get(0).isAccepted());
+		assertTrue(results.get(1).isAccepted());
+		assertTrue(results.get(2).isAccepted());
+		Order order = service.listOrdersBySecurity("BATCHTICK").get(0);
+		assertEquals(80125, order.getPrice());
+		assertEquals(8, order.getUnits());
+	}
+
+	/**
+	 * An update to a price of zero or less is rejected instead of keeping the price of the order
+	 */
+	@Test
+	public void testNonPositiveUpdateValuesAreRejected() {
+		long orderId = service.submitBatch(Collections.singletonList(
+				BatchCommand.add("SELLER", "REL", 10, 80.0, false, OrderType.LIMIT_ORDER))).get(0).getOrderId();
+
+		List<BatchResult> results = service.submitBatch(Arrays.asList(
+				BatchCommand.update(orderId, 8, -5.0),
+				BatchCommand.update(orderId, 8, 0.0)));
+		assertFalse(results.get(0).isAccepted());
+		assertFalse(results.get(1).isAccepted());
+		try {
+			service.updateOrder(new UpdateOrderRequest(orderId, 8, -5.0));
+			fail("a negative value must be rejected");
+		} catch (TradeException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("greater than zero"));
+		}
+		Order order = service.listOrdersBySecurity("REL").get(0);
+		assertEquals(8000, order.getPrice());
+		assertEquals(10, order.getUnits());
+	}
+
+	/**
+	 * A large batch is queued in one pass and every order is matched
+	 */
+	@Test
+	public void testLargeBatch() {
+		List<BatchCommand> commands = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			String securityId = "SEC" + i % 7;
+			commands.add(BatchCommand.add("SELLER", securityId, 1, 10.0, false, OrderType.LIMIT_ORDER));
+			commands.add(BatchCommand.add("BUYER", securityId, 1, 10.0, true, OrderType.LIMIT_ORDER));
+		}
+		List<BatchResult> results = service.submitBatch(commands);
+		assertEquals(10000, results.size());
+		for (BatchResult result : results) {
+			assertTrue(result.isAccepted());
+		}
+		assertEquals(0, service.countOrders());
+	}
+
+	/**
+	 * The pages of a view list the orders as they were when the view was taken, whatever matched in between
+	 */
+	@Test
+	public void testOrderPagesComeFromOneView() {
+		List<BatchResult> added = service.submitBatch(Arrays.asList(
+				BatchCommand.add("SELLER", "REL", 10, 80.0, false, OrderType.LIMIT_ORDER),
+				BatchCommand.add("SELLER", "TATA", 10, 90.0, false, OrderType.LIMIT_ORDER),
+				BatchCommand.add("SELLER", "INFY", 10, 70.0, false, OrderType.LIMIT_ORDER),
+				BatchCommand.add("BUYER", "REL", 5, 79.0, true, OrderType.LIMIT_ORDER),
+				BatchCommand.add("BUYER", "TATA", 5, 89.0, true, OrderType.LIMIT_ORDER)));
+
+		OrderPage first = service.listOrderPage(null, null, 0, 2);
+		assertEquals(5, first.getTotal());
+		assertEquals(2, first.getOrders().size());
+		assertTrue(first.getOrders().get(0).isBuying());
+		assertTrue(first.getOrders().get(1).isBuying());
+		assertFalse(first.isLast());
+
+		service.submitBatch(Arrays.asList(
+				BatchCommand.cancel(added.get(0).getOrderId()),
+				BatchCommand.add("BUYER", "INFY", 10, 70.0, true, OrderType.LIMIT_ORDER)));
+
+		OrderPage second = service.listOrderPage(null, first.getViewId(), 2, 2);
+		OrderPage third = service.listOrderPage(null, first.getViewId(), 4, 2);
+		assertEquals(first.getViewId(), third.getViewId());
+		assertEquals(2, second.getOrders().size());
+		assertEquals(1, third.getOrders().size());
+		assertTrue(third.isLast());
+		List<Long> listed = new ArrayList<>();
+		for (OrderPage page : Arrays.asList(first, second, third)) {
+			page.getOrders().forEach(order -> listed.add(order.getOrderId()));
+		}
+		for (BatchResult result : added) {
+			assertTrue(listed.contains(result.getOrderId()));
+		}
+
+		assertEquals(3, service.listOrders().size());
+		assertEquals(2, service.listOrderPage("TATA", null, 0, 10).getTotal());
+	}
+
+	/**
+	 * Streamed orders are selected by side, client and price range while the books are read, up to the limit
+	 */
+	@Test
+	public void testStreamedOrdersAreFiltered() throws Exception {
+		service.submitBatch(Arrays.asList(
+				BatchCommand.add("BUYER", "REL", 10, 80.0, true, OrderType.LIMIT_ORDER),
+				BatchCommand.add("BUYER", "REL", 10, 79.0, true, OrderType.LIMIT_ORDER),
+				BatchCommand.add("OTHER", "REL", 10, 78.5, true, OrderType.LIMIT_ORDER),
+				BatchCommand.add("BUYER", "REL", 10, 77.0, true, OrderType.LIMIT_ORDER),
+				BatchCommand.add("BUYER", "TATA", 10, 79.5, true, OrderType.LIMIT_ORDER),
+				BatchCommand.add("SELLER", "REL", 10, 81.0, false, OrderType.LIMIT_ORDER)));
+
+		List<Order> streamed = new ArrayList<>();
+		int sent = service.streamOrders(null, new OrderFilter(true, "BUYER", 78.0, 79.5, 0), streamed::add);
+		assertEquals(2, sent);
+		for (Order order : streamed) {
+			assertTrue(order.isBuying());
+			assertEquals("BUYER", order.getClientId());
+			assertTrue(order.getValue() >= 78.0 && order.getValue() <= 79.5);
+		}
+
+		streamed.clear();
+		assertEquals(2, service.streamOrders("REL", new OrderFilter(null, null, null, null, 2), streamed::add));
+		assertEquals(80.0, streamed.get(0).getValue(), 0.0001);
+		assertEquals(79.0, streamed.get(1).getValue(), 0.0001);
+
+		streamed.clear();
+		assertEquals(1, service.streamOrders(null, new OrderFilter(OrderFilter.side("sell"), null, null, null, 0),
+				streamed::add));
+		assertEquals("SELLER", streamed.get(0).getClientId());
+		assertEquals(0, service.streamOrders(null, new OrderFilter(null, "NOBODY", null, null, 0), streamed::add));
+	}
+
+	@Test(expected = TradeException.class)
+	public void testUnknownViewIsRejected() {
+		service.listOrderPage(null, 12345L, 0, 10);
+	}
+
+	@Test(expected = TradeException.class)
+	public void testBatchSizeIsLimited() {
+		service.maxBatchCommands = 1;
+		service.submitBatch(Arrays.asList(BatchCommand.cancel(1), BatchCommand.cancel(2)));
+	}
+}
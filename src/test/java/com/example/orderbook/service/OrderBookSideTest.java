@@ -0,0 +1,97 @@
+package com.example.orderbook.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.orderbook.model.Order;
+import com.example.orderbook.model.request.OrderType;
+import org.junit.Test;
+
+/**
+ * Tests for the price level ladder backing each side of a security order book
+ */
+public class OrderBookSideTest {
+
+	private static final String SECURITY_1 = "REL";
+
+	private long nextOrderId = 1;
+
+	/**
+	 * Bids are ordered from the highest price to the lowest one, and FIFO within a price
+	 */
+	@Test
+	public void bidsArePriceThenTimeOrdered() {
+		OrderBookSide bids = new OrderBookSide(true);
+		Order first = buy(1000, 1);
+		Order second = buy(1000, 2);
+		Order best = buy(1100, 3);
+		Order worst = buy(900, 4);
+		bids.add(first);
+		bids.add(second);
+		bids.add(best);
+		bids.add(worst);
+
+		List<Order> orders = new ArrayList<>();
+		bids.copyTo(orders);
+
+		assertEquals(4, bids.size());
+		assertEquals(3, bids.depth());
+		assertEquals(best, orders.get(0));
+		assertEquals(first, orders.get(1));
+		assertEquals(second, orders.get(2));
+		assertEquals(worst, orders.get(3));
+		assertEquals(best, bids.bestNode().order);
+	}
+
+	/**
+	 * Asks are ordered from the lowest price to the highest one
+	 */
+	@Test
+	public void asksAreLowestPriceFirst() {
+		OrderBookSide asks = new OrderBookSide(false);
+		asks.add(sell(1000, 1));
+		Order best = sell(950, 2);
+		asks.add(best);
+		asks.add(sell(1200, 3));
+
+		assertEquals(best, asks.bestNode().order);
+		assertEquals(950, asks.levelAt(0).getPrice());
+		assertEquals(1200, asks.levelAt(2).getPrice());
+	}
+
+	/**
+	 * Removing the last order of a level drops the level, removing by handle keeps the FIFO of the others
+	 */
+	@Test
+	public void removeByHandle() {
+		OrderBookSide asks = new OrderBookSide(false);
+		OrderNode one = asks.add(sell(1000, 1));
+		OrderNode two = asks.add(sell(1000, 2));
+		OrderNode three = asks.add(sell(1000, 3));
+		OrderNode other = asks.add(sell(1100, 4));
+
+		asks.remove(two);
+		assertEquals(one, asks.bestNode());
+		assertEquals(three, one.next);
+
+		asks.remove(one);
+		asks.remove(three);
+		assertEquals(1, asks.depth());
+		assertEquals(other, asks.bestNode());
+
+		asks.remove(other);
+		assertEquals(0, asks.depth());
+		assertNull(asks.bestNode());
+	}
+
+	private Order buy(long price, long time) {
+		return new Order(nextOrderId++, "TRADER_BUYER_" + time, SECURITY_1, 1, price, true, OrderType.LIMIT_ORDER, time);
+	}
+
+	private Order sell(long price, long time) {
+		return new Order(nextOrderId++, "TRADER_SELLER_" + time, SECURITY_1, 1, price, false, OrderType.LIMIT_ORDER, time);
+	}
+}
@@ -0,0 +1,112 @@
+package com.example.orderbook.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.example.orderbook.journal.JournalConfiguration;
+
+/**
+ * Tests for the orderId generator
+ */
+public class OrderIdServiceTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testIdsAreUniqueUnderConcurrency() throws Exception {
+		OrderIdService orderIds = new OrderIdService();
+		Set<Long> ids = ConcurrentHashMap.newKeySet();
+		ExecutorService threads = Executors.newFixedThreadPool(8);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			final int shard = t % 2;
+			futures.add(threads.submit(() -> {
+				for (int i = 0; i < 200000; i++) {
+					ids.add(orderIds.nextId(shard));
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get(30, TimeUnit.SECONDS);
+		}
+		threads.shutdown();
+		assertEquals(1600000, ids.size());
+	}
+
+	@Test
+	public void testIdsEncodeTheirShard() {
+		OrderIdService orderIds = new OrderIdService();
+		assertEquals(0, orderIds.nextId(0));
+		assertEquals(1, orderIds.nextId(0));
+		long id = orderIds.nextId(3);
+		assertEquals(3, OrderIdService.shardOf(id));
+		assertTrue(orderIds.nextId(3) > id);
+		assertEquals(OrderIdService.MAX_SHARDS - 1, OrderIdService.shardOf(orderIds.nextId(OrderIdService.MAX_SHARDS - 1)));
+		// ids of every shard stay exact as doubles, as JSON numbers read by JavaScript clients
+		long highest = orderIds.nextId(OrderIdService.MAX_SHARDS - 1);
+		assertTrue(highest > 0 && highest < 1L << 53);
+		assertEquals(highest, (long) (double) highest);
+	}
+
+	@Test
+	public void testIdsKeepIncreasingAfterRestart() throws Exception {
+		Path directory = folder.getRoot().toPath();
+		OrderIdService before = new OrderIdService();
+		before.persistTo(directory);
+		long last = 0;
+		for (long i = 0; i < OrderIdService.BLOCK_SIZE + 10; i++) {
+			last = before.nextId(1);
+		}
+
+		// a new process resumes after the last reserved block
+		OrderIdService after = new OrderIdService();
+		after.persistTo(directory);
+		assertTrue(after.nextId(1) > last);
+		assertEquals(0, after.nextId(2) & ((1L << OrderIdService.SHARD_SHIFT) - 1));
+	}
+
+	@Test
+	public void testResumeAfterRecoveredIds() {
+		OrderIdService orderIds = new OrderIdService();
+		long recovered = (2L << OrderIdService.SHARD_SHIFT) | 5 * OrderIdService.BLOCK_SIZE;
+		orderIds.resumeAfter(2, recovered);
+		assertEquals(recovered + 1, orderIds.nextId(2));
+		// ids of another shard or none at all change nothing
+		orderIds.resumeAfter(1, recovered);
+		orderIds.resumeAfter(0, -1);
+		assertEquals(0, orderIds.nextId(0));
+		assertEquals(1L << OrderIdService.SHARD_SHIFT, orderIds.nextId(1));
+	}
+
+	/**
+	 * Every context gets a generator of its own, ids are only persisted to the configured directory
+	 */
+	@Test
+	public void testEveryContextHasItsOwnGenerator() throws Exception {
+		JournalConfiguration configuration = new JournalConfiguration();
+		OrderIdService persisted = configuration.orderIdService(folder.getRoot().toString());
+		OrderIdService inMemory = configuration.orderIdService("");
+		assertNotSame(persisted, inMemory);
+
+		persisted.nextId(1);
+		assertEquals(0, inMemory.nextId(1) & ((1L << OrderIdService.SHARD_SHIFT) - 1));
+		assertTrue(Files.exists(folder.getRoot().toPath().resolve("shard-1.ids")));
+	}
+}
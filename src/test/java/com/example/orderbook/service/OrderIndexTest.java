@@ -0,0 +1,69 @@
+package com.example.orderbook.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import com.example.orderbook.model.Order;
+import com.example.orderbook.model.request.OrderType;
+import org.junit.Test;
+
+/**
+ * Tests for the primitive orderId index of the book
+ */
+public class OrderIndexTest {
+
+	/**
+	 * Random puts and removes keep the index in line with a HashMap, through growth and backward shifts
+	 */
+	@Test
+	public void testIndexMatchesHashMap() {
+		OrderIndex index = new OrderIndex();
+		Map<Long, OrderNode> expected = new HashMap<>();
+		SplittableRandom random = new SplittableRandom(7);
+		for (int i = 0; i < 100000; i++) {
+			long orderId = random.nextInt(5000) + ((long) random.nextInt(4) << 56);
+			if (random.nextInt(3) == 0) {
+				OrderNode node = expected.get(orderId);
+				assertEquals(node != null, index.remove(orderId, node));
+				expected.remove(orderId);
+			} else {
+				OrderNode node = node(orderId);
+				assertSame(expected.put(orderId, node), index.put(orderId, node));
+			}
+		}
+		assertEquals(expected.size(), index.size());
+		for (long orderId = 0; orderId < 5000; orderId++) {
+			for (long shard = 0; shard < 4; shard++) {
+				long key = orderId + (shard << 56);
+				assertSame(expected.get(key), index.get(key));
+			}
+		}
+	}
+
+	/**
+	 * A node replaced by another one under the same orderId is not removed
+	 */
+	@Test
+	public void testRemoveChecksTheNode() {
+		OrderIndex index = new OrderIndex();
+		OrderNode first = node(1);
+		OrderNode second = node(1);
+		index.put(1, first);
+		index.put(1, second);
+		assertFalse(index.remove(1, first));
+		assertTrue(index.remove(1, second));
+		assertNull(index.get(1));
+		assertEquals(0, index.size());
+	}
+
+	private static OrderNode node(long orderId) {
+		return new OrderNode(new Order(orderId, "CLIENT", "REL", 1, 100, true, OrderType.LIMIT_ORDER, 0), null);
+	}
+}
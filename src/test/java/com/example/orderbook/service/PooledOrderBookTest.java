@@ -0,0 +1,151 @@
+package com.example.orderbook.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import com.example.orderbook.audit.AsyncExecutionLog;
+import com.example.orderbook.model.ExecutionReport;
+import com.example.orderbook.model.Order;
+import com.example.orderbook.model.request.OrderType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.helpers.NOPLogger;
+
+/**
+ * Tests for the books drawing their orders from an OrderPool
+ */
+public class PooledOrderBookTest {
+
+	private static final String SECURITY_1 = "REL";
+	private static final String BUYER = "BUYER";
+	private static final String SELLER = "SELLER";
+	private static final int WARM_UP_TRADES = 200000;
+	private static final int WINDOWS = 10;
+	private static final int WINDOW_TRADES = 10000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final PriceTimePriorityOrderBook book =
+			new PriceTimePriorityOrderBook(PriceTimePriorityOrderBook.DEFAULT_MARKET_PROTECTION_BPS, new MarketDataFeed(), 64);
+	private long nextOrderId = 1;
+
+	/**
+	 * Pooled orders match like allocated ones and the queries hand out copies of them
+	 */
+	@Test
+	public void testPooledOrdersAreMatched() {
+		assertTrue(book.place(1, SELLER, SECURITY_1, 10, 10000, false, OrderType.LIMIT_ORDER, 1));
+		assertFalse(book.place(2, BUYER, SECURITY_1, 4, 10000, true, OrderType.LIMIT_ORDER, 2));
+		ExecutionReport report = book.getFills().toReport();
+		assertEquals(2, report.getOrderId());
+		assertEquals(4, report.getFilledUnits());
+		assertEquals(1, report.getFills().size());
+		assertEquals(1, report.getFills().get(0).getMakerOrderId());
+
+		Order resting = book.findOrderByOrderId(1);
+		assertEquals(6, resting.getUnits());
+		assertNotSame(resting, book.findOrderByOrderId(1));
+		assertEquals(resting, book.getAllOrders().get(0));
+
+		assertTrue(book.cancelOrder(1));
+		assertEquals(0, book.getIndexedOrderCount());
+		assertEquals(0, book.getDepth(SECURITY_1, 10).getAsks().size());
+	}
+
+	/**
+	 * Clearing the book gives the nodes of its resting orders back to the pool, the orders added afterwards reuse them
+	 */
+	@Test
+	public void testClearReleasesThePooledOrders() {
+		HeapOrderStore store = (HeapOrderStore) book.store();
+		for (int i = 0; i < 64; i++) {
+			assertTrue(book.place(nextOrderId++, SELLER, SECURITY_1, 10, 10000 + i, false, OrderType.LIMIT_ORDER, i));
+		}
+		assertEquals(0, store.getPoolMisses());
+		book.clear();
+		assertEquals(0, book.getIndexedOrderCount());
+
+		for (int i = 0; i < 64; i++) {
+			assertTrue(book.place(nextOrderId++, BUYER, SECURITY_1, 10, 9000 + i, true, OrderType.LIMIT_ORDER, i));
+		}
+		assertEquals(0, store.getPoolMisses());
+		assertTrue(book.place(nextOrderId++, BUYER, SECURITY_1, 10, 8000, true, OrderType.LIMIT_ORDER, 64));
+		assertEquals(1, store.getPoolMisses());
+	}
+
+	/**
+	 * Once warm, a pooled book adds, matches and cancels orders without allocating
+	 */
+	@Test
+	public void testSteadyStateDoesNotAllocate() {
+		assertSteadyStateDoesNotAllocate();
+	}
+
+	/**
+	 * Recording the executions to the asynchronous execution log allocates nothing on the matching thread either
+	 */
+	@Test
+	public void testExecutionLogDoesNotAllocate() throws Exception {
+		AsyncExecutionLog log = new AsyncExecutionLog(folder.getRoot().toPath().resolve("execution.log"), 1 << 16, 1 << 16);
+		try {
+			book.setExecutionLog(log.recorder(0, book.getSymbols()));
+			assertSteadyStateDoesNotAllocate();
+			assertTrue(log.getRecordedCount() > 0);
+		} finally {
+			log.close();
+		}
+	}
+
+	private void assertSteadyStateDoesNotAllocate() {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		assumeTrue(threads instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported());
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+		long thread = Thread.currentThread().getId();
+		book.logger = NOPLogger.NOP_LOGGER;
+
+		// until the JIT settled, recompilations and deoptimizations materialize a few objects it had scalar
+		// replaced, the warm-up runs well past that before anything is measured
+		for (int i = 0; i < WARM_UP_TRADES; i++) {
+			trade();
+		}
+		long overhead = -allocations.getThreadAllocatedBytes(thread) + allocations.getThreadAllocatedBytes(thread);
+		long[] allocated = new long[WINDOWS];
+		for (int window = 0; window < WINDOWS; window++) {
+			long before = allocations.getThreadAllocatedBytes(thread);
+			for (int i = 0; i < WINDOW_TRADES; i++) {
+				trade();
+			}
+			allocated[window] = allocations.getThreadAllocatedBytes(thread) - before - overhead;
+		}
+
+		assertArrayEquals("bytes allocated by each window of " + WINDOW_TRADES + " trades", new long[WINDOWS], allocated);
+		assertEquals(0, book.getIndexedOrderCount());
+	}
+
+	/**
+	 * Rests two levels of asks, sweeps them partially, cancels the remainder,
+	 * then a market order takes a new ask and a bid is added and cancelled.
+	 */
+	private void trade() {
+		long first = nextOrderId++;
+		long second = nextOrderId++;
+		book.place(first, SELLER, SECURITY_1, 10, 10000, false, OrderType.LIMIT_ORDER, first);
+		book.place(second, SELLER, SECURITY_1, 10, 10100, false, OrderType.LIMIT_ORDER, second);
+		book.place(nextOrderId++, BUYER, SECURITY_1, 15, 10100, true, OrderType.LIMIT_ORDER, second);
+		book.cancelOrder(second);
+		book.place(nextOrderId++, SELLER, SECURITY_1, 5, 10000, false, OrderType.LIMIT_ORDER, second);
+		book.place(nextOrderId++, BUYER, SECURITY_1, 10, 0, true, OrderType.MARKET_ORDER, second);
+		long bid = nextOrderId++;
+		book.place(bid, BUYER, SECURITY_1, 5, 9900, true, OrderType.LIMIT_ORDER, bid);
+		book.cancelOrder(bid);
+	}
+}
@@ -1,6 +1,7 @@
 package com.example.orderbook.service;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.rmi.RemoteException;
 import java.util.List;
@@ -9,11 +10,16 @@ import com.example.orderbook.model.request.OrderType;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.example.orderbook.model.ExecutionReport;
+import com.example.orderbook.model.Fill;
 import com.example.orderbook.model.Order;
+import com.example.orderbook.model.OrderBookDepth;
+import com.example.orderbook.model.TopOfBook;
 import org.junit.runner.RunWith;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 /**
+ * prices are given in ticks of 0.01, the default PriceScale
  */
 @RunWith(SpringJUnit4ClassRunner.class)
 public class PriceTimePriorityOrderBookTest {
@@ -26,10 +32,19 @@ public class PriceTimePriorityOrderBookTest {
 	private static final String SECURITY_1 = "REL";
 	private static final String SECURITY_2 = "TATA";
 	private PriceTimePriorityOrderBook orderbook;
+	private long nextOrderId = 1;
 
 	@Before
 	public final void setUp() {
-		orderbook = new PriceTimePriorityOrderBook();
+		orderbook = newOrderBook();
+	}
+
+	/**
+	 * @return
+	 * 		the book under test, overridden to run these tests against another storage
+	 */
+	protected PriceTimePriorityOrderBook newOrderBook() {
+		return new PriceTimePriorityOrderBook();
 	}
 	/**
 	 * Two similar sale orders are placed, wait for a valid buyer arrival.
@@ -38,15 +53,15 @@ public class PriceTimePriorityOrderBookTest {
 	 */
 	@Test
 	public void testSaleOrders() {
-		Order saleOrder1 = new Order(TRADER_SELLER_1, SECURITY_1, 5, 50.0,
+		Order saleOrder1 = new Order(nextOrderId++, TRADER_SELLER_1, SECURITY_1, 5, 5000,
 				false , OrderType.LIMIT_ORDER, System.currentTimeMillis());
-		Order saleOrder2 = new Order(TRADER_SELLER_2, SECURITY_1, 5, 50.0,
+		Order saleOrder2 = new Order(nextOrderId++, TRADER_SELLER_2, SECURITY_1, 5, 5000,
 				false, OrderType.LIMIT_ORDER , System.currentTimeMillis());
 
 		orderbook.sellTrade(saleOrder1);
 		orderbook.sellTrade(saleOrder2);
 
-		Order buyOrder = new Order(TRADER_BUYER_1, SECURITY_1, 5, 50.0,
+		Order buyOrder = new Order(nextOrderId++, TRADER_BUYER_1, SECURITY_1, 5, 5000,
 				true , OrderType.LIMIT_ORDER , System.currentTimeMillis());
 		orderbook.buyTrade(buyOrder);
 
@@ -65,9 +80,9 @@ public class PriceTimePriorityOrderBookTest {
 	 */
 	@Test
 	public void testPurchaseOrders()  {
-		Order buyOrder1 = new Order(TRADER_BUYER_1, SECURITY_1, 5, 50.0,
+		Order buyOrder1 = new Order(nextOrderId++, TRADER_BUYER_1, SECURITY_1, 5, 5000,
 				true , OrderType.LIMIT_ORDER, System.currentTimeMillis());
-		Order buyOrder2 = new Order(TRADER_BUYER_2, SECURITY_1, 5, 50.0,
+		Order buyOrder2 = new Order(nextOrderId++, TRADER_BUYER_2, SECURITY_1, 5, 5000,
 				true, OrderType.LIMIT_ORDER , System.currentTimeMillis());
 
 
@@ -75,7 +90,7 @@ public class PriceTimePriorityOrderBookTest {
 		orderbook.buyTrade(buyOrder1);
 		orderbook.buyTrade(buyOrder2);
 
-		Order sellOrder = new Order(TRADER_SELLER_1, SECURITY_1, 5, 50.0,
+		Order sellOrder = new Order(nextOrderId++, TRADER_SELLER_1, SECURITY_1, 5, 5000,
 				false , OrderType.LIMIT_ORDER , System.currentTimeMillis());
 
 		orderbook.sellTrade(sellOrder);
@@ -92,16 +107,16 @@ public class PriceTimePriorityOrderBookTest {
 	 */
 	@Test
 	public void testSellerGetsMore() {
-		Order buyOrder = new Order(TRADER_BUYER_1, SECURITY_1, 1, 150.0,
+		Order buyOrder = new Order(nextOrderId++, TRADER_BUYER_1, SECURITY_1, 1, 15000,
 				true , OrderType.LIMIT_ORDER, System.currentTimeMillis());
 
-		assertEquals(new Double(0.0), orderbook.buyTrade(buyOrder));
+		assertEquals(0, orderbook.buyTrade(buyOrder).getNotional());
 
-		Order sellOrder = new Order(TRADER_SELLER_1, SECURITY_1, 1, 100.0,
+		Order sellOrder = new Order(nextOrderId++, TRADER_SELLER_1, SECURITY_1, 1, 10000,
 				false ,OrderType.LIMIT_ORDER, System.currentTimeMillis());
 
-		Double transactionValue = orderbook.sellTrade(sellOrder);
-		assertEquals(new Double(150.0), transactionValue);
+		long transactionValue = orderbook.sellTrade(sellOrder).getNotional();
+		assertEquals(15000, transactionValue);
 	}
 
 	/**
@@ -115,18 +130,18 @@ public class PriceTimePriorityOrderBookTest {
 	 */
 	@Test
 	public void testPartialSale()  {
-		Order sellOrder = new Order(TRADER_SELLER_1, SECURITY_1, 200, 9.0,
+		Order sellOrder = new Order(nextOrderId++, TRADER_SELLER_1, SECURITY_1, 200, 900,
 				false , OrderType.LIMIT_ORDER, System.currentTimeMillis() );
 
 		orderbook.sellTrade(sellOrder);
 
-		Order buyOrder = new Order(TRADER_BUYER_1, SECURITY_1, 100, 10.0,
+		Order buyOrder = new Order(nextOrderId++, TRADER_BUYER_1, SECURITY_1, 100, 1000,
 				true , OrderType.LIMIT_ORDER, System.currentTimeMillis() );
 		orderbook.buyTrade(buyOrder);
 		List<Order> remainingOrders = orderbook.getAllOrders();
 		assertEquals(1, remainingOrders.size());
 		Order remainingOrder = remainingOrders.iterator().next();
-		assertEquals(new Integer(100), remainingOrder.getUnits());
+		assertEquals(100, remainingOrder.getUnits());
 	}
 
 
@@ -136,16 +151,16 @@ public class PriceTimePriorityOrderBookTest {
 	 */
 	@Test
 	public void testBuyerPaysLess() {
-		Order sellOrder = new Order(TRADER_SELLER_1, SECURITY_1, 1, 100.0,
+		Order sellOrder = new Order(nextOrderId++, TRADER_SELLER_1, SECURITY_1, 1, 10000,
 				false ,OrderType.LIMIT_ORDER, System.currentTimeMillis());
 
-		assertEquals(new Double(0.0), orderbook.sellTrade(sellOrder));
+		assertEquals(0, orderbook.sellTrade(sellOrder).getNotional());
 
-		Order buyOrder = new Order(TRADER_BUYER_1, SECURITY_1, 1, 150.0,
+		Order buyOrder = new Order(nextOrderId++, TRADER_BUYER_1, SECURITY_1, 1, 15000,
 				true , OrderType.LIMIT_ORDER,System.currentTimeMillis());
 
-		Double transactionValue = orderbook.buyTrade(buyOrder);
-		assertEquals(new Double(100.0), transactionValue);
+		long transactionValue = orderbook.buyTrade(buyOrder).getNotional();
+		assertEquals(10000, transactionValue);
 	}
 
 
@@ -158,12 +173,12 @@ public class PriceTimePriorityOrderBookTest {
 	 */
 	@Test
 	public void testPartialBuy() {
-		Order buyOrder = new Order(TRADER_BUYER_1, SECURITY_1, 200, 10.0,
+		Order buyOrder = new Order(nextOrderId++, TRADER_BUYER_1, SECURITY_1, 200, 1000,
 				true ,OrderType.LIMIT_ORDER, System.currentTimeMillis());
 
 		orderbook.buyTrade(buyOrder);
 
-		Order sellOrder = new Order(TRADER_SELLER_1, SECURITY_1, 100, 10.0,
+		Order sellOrder = new Order(nextOrderId++, TRADER_SELLER_1, SECURITY_1, 100, 1000,
 				false , OrderType.LIMIT_ORDER, System.currentTimeMillis());
 		orderbook.sellTrade(sellOrder);
 
@@ -172,7 +187,7 @@ public class PriceTimePriorityOrderBookTest {
 		assertEquals(1, remainingOrders.size());
 
 		Order remainingOrder = remainingOrders.iterator().next();
-		assertEquals(new Integer(100), remainingOrder.getUnits());
+		assertEquals(100, remainingOrder.getUnits());
 	}
 
 
@@ -182,11 +197,11 @@ public class PriceTimePriorityOrderBookTest {
 	 */
 	@Test(expected = IllegalArgumentException.class)
 	public void TestSelfBuy() throws RuntimeException {
-		Order sellOrder = new Order(TRADER_SELLER_1, SECURITY_1, 1, 1.0,
+		Order sellOrder = new Order(nextOrderId++, TRADER_SELLER_1, SECURITY_1, 1, 100,
 				false ,OrderType.LIMIT_ORDER, System.currentTimeMillis() );
 		orderbook.sellTrade(sellOrder);
 
-		Order buyOrder = new Order(TRADER_SELLER_1, SECURITY_1, 1, 1.0,
+		Order buyOrder = new Order(nextOrderId++, TRADER_SELLER_1, SECURITY_1, 1, 100,
 				true , OrderType.LIMIT_ORDER,System.currentTimeMillis() );
 		orderbook.buyTrade(buyOrder);
 	}
@@ -196,11 +211,11 @@ public class PriceTimePriorityOrderBookTest {
 	 */
 	@Test(expected = IllegalArgumentException.class)
 	public void TestSelfSell() throws RuntimeException {
-		Order buyOrder = new Order(TRADER_SELLER_1, SECURITY_1, 1, 10.0,
+		Order buyOrder = new Order(nextOrderId++, TRADER_SELLER_1, SECURITY_1, 1, 1000,
 				true ,OrderType.LIMIT_ORDER, System.currentTimeMillis());
 		orderbook.buyTrade(buyOrder);
 
-		Order sellOrder = new Order(TRADER_SELLER_1, SECURITY_1, 1, 9.0,
+		Order sellOrder = new Order(nextOrderId++, TRADER_SELLER_1, SECURITY_1, 1, 900,
 				false ,OrderType.LIMIT_ORDER, System.currentTimeMillis());
 		orderbook.sellTrade(sellOrder);
 	}
@@ -215,10 +230,10 @@ public class PriceTimePriorityOrderBookTest {
 	@Test
 	public void buySideComparator()  {
 		PriceTimePriorityOrderBook.BuySideComparator comp = new PriceTimePriorityOrderBook.BuySideComparator();
-		Order one = new Order(TRADER_BUYER_1, SECURITY_1, 1, 10.0,
+		Order one = new Order(nextOrderId++, TRADER_BUYER_1, SECURITY_1, 1, 1000,
 				true , OrderType.LIMIT_ORDER, 1);
 
-		Order two = new Order(TRADER_BUYER_2, SECURITY_1, 1, 10.0,
+		Order two = new Order(nextOrderId++, TRADER_BUYER_2, SECURITY_1, 1, 1000,
 				true , OrderType.LIMIT_ORDER, 2);
 
 		int equalButTimeWins = comp.compare(one, two);
@@ -226,20 +241,20 @@ public class PriceTimePriorityOrderBookTest {
 		assertEquals(true, new Boolean(equalButTimeWins < 0 ) );
 
 
-		one = new Order(TRADER_BUYER_1, SECURITY_1, 1, 10.0,
+		one = new Order(nextOrderId++, TRADER_BUYER_1, SECURITY_1, 1, 1000,
 				true , OrderType.LIMIT_ORDER, 1);
 
-		two = new Order(TRADER_BUYER_2, SECURITY_1, 1, 9.0,
+		two = new Order(nextOrderId++, TRADER_BUYER_2, SECURITY_1, 1, 900,
 				true , OrderType.LIMIT_ORDER, 1);
 
 		int greaterThan = comp.compare(one, two);
 		assertEquals(true, new Boolean(greaterThan < 0 ) );
 
 
-		one = new Order(TRADER_BUYER_1, SECURITY_1, 1, 9.0,
+		one = new Order(nextOrderId++, TRADER_BUYER_1, SECURITY_1, 1, 900,
 				true ,OrderType.LIMIT_ORDER, 1);
 
-		two = new Order(TRADER_BUYER_2, SECURITY_1, 1, 10.0,
+		two = new Order(nextOrderId++, TRADER_BUYER_2, SECURITY_1, 1, 1000,
 				true , OrderType.LIMIT_ORDER, 1);
 
 		int lessThan = comp.compare(one, two);
@@ -255,30 +270,30 @@ public class PriceTimePriorityOrderBookTest {
 	public void sellSideComparator()  {
 		PriceTimePriorityOrderBook.SellSideComparator comp = new PriceTimePriorityOrderBook.SellSideComparator();
 
-		Order one = new Order(TRADER_SELLER_1, SECURITY_1, 1, 9.0,
+		Order one = new Order(nextOrderId++, TRADER_SELLER_1, SECURITY_1, 1, 900,
 				false , OrderType.LIMIT_ORDER, 1 );
 
-		Order two = new Order(TRADER_SELLER_1, SECURITY_1, 1, 10.0,
+		Order two = new Order(nextOrderId++, TRADER_SELLER_1, SECURITY_1, 1, 1000,
 				false , OrderType.LIMIT_ORDER,1 );
 
 		int lessThan = comp.compare(one, two);
 
 		assertEquals(true, new Boolean(lessThan < 0 ) );
 
-		one = new Order(TRADER_SELLER_1, SECURITY_1, 1, 10.0,
+		one = new Order(nextOrderId++, TRADER_SELLER_1, SECURITY_1, 1, 1000,
 				false ,OrderType.LIMIT_ORDER, 1 );
 
-		two = new Order(TRADER_SELLER_2, SECURITY_1, 1, 10.0,
+		two = new Order(nextOrderId++, TRADER_SELLER_2, SECURITY_1, 1, 1000,
 				false ,OrderType.LIMIT_ORDER, 2 );
 
 		int equalButTimeWins = comp.compare(one, two);
 		assertEquals(true, new Boolean(equalButTimeWins < 0 ) );
 
 
-		one = new Order(TRADER_SELLER_1, SECURITY_1, 1, 10.0,
+		one = new Order(nextOrderId++, TRADER_SELLER_1, SECURITY_1, 1, 1000,
 				false , OrderType.LIMIT_ORDER,1 );
 
-		two = new Order(TRADER_SELLER_1, SECURITY_1, 1, 9.0,
+		two = new Order(nextOrderId++, TRADER_SELLER_1, SECURITY_1, 1, 900,
 				false ,OrderType.LIMIT_ORDER, 1);
 
 		int greaterThan = comp.compare(one, two);
@@ -295,19 +310,19 @@ public class PriceTimePriorityOrderBookTest {
 	 */
 	@Test
 	public void testPartialSaleWithMulipleOrders() {
-		Order one = new Order(TRADER_BUYER_1, SECURITY_1, 500, 430.0,
+		Order one = new Order(nextOrderId++, TRADER_BUYER_1, SECURITY_1, 500, 43000,
 				true , OrderType.LIMIT_ORDER, 1 );
 
 		orderbook.buyTrade(one);
 
-		Order two = new Order(TRADER_BUYER_2, SECURITY_1, 1000, 435.5,
+		Order two = new Order(nextOrderId++, TRADER_BUYER_2, SECURITY_1, 1000, 43550,
 				true ,OrderType.LIMIT_ORDER, 2 );
 		orderbook.buyTrade(two);
 
-		Order three = new Order(TRADER_SELLER_1, SECURITY_1, 1200, 429.0,
+		Order three = new Order(nextOrderId++, TRADER_SELLER_1, SECURITY_1, 1200, 42900,
 				false ,OrderType.LIMIT_ORDER, 3);
 
-		Double transactionValue = orderbook.sellTrade(three);
+		long transactionValue = orderbook.sellTrade(three).getNotional();
 
 		List<Order> remainingOrders = orderbook.getAllOrders();
 		//order book should contain 1 order only
@@ -316,9 +331,9 @@ public class PriceTimePriorityOrderBookTest {
 		Order remainingOrder = remainingOrders.iterator().next();
 		assertEquals(one , remainingOrder);
 		//300 units are still pending in the order
-		assertEquals(new Integer(300) , remainingOrder.getUnits());
-		//trasaction value assertion
-		assertEquals(new Double((435.5*1000) + (430.0*200)) ,transactionValue);
+		assertEquals(300 , remainingOrder.getUnits());
+		//trasaction value assertion, in ticks of 0.01 times units
+		assertEquals((43550*1000) + (43000*200) ,transactionValue);
 	}
 
 
@@ -331,17 +346,17 @@ public class PriceTimePriorityOrderBookTest {
 
 		int orderUnits = 20;
 
-		Order one = new Order(TRADER_BUYER_1, SECURITY_1, orderUnits, 20.0,
+		Order one = new Order(nextOrderId++, TRADER_BUYER_1, SECURITY_1, orderUnits, 2000,
 				true , OrderType.LIMIT_ORDER, System.currentTimeMillis());
 
 		orderbook.buyTrade(one);
 
-		Order two = new Order(TRADER_BUYER_2, SECURITY_1, orderUnits, 20.0,
+		Order two = new Order(nextOrderId++, TRADER_BUYER_2, SECURITY_1, orderUnits, 2000,
 				true , OrderType.LIMIT_ORDER, System.currentTimeMillis());
 
 		orderbook.buyTrade(two);
 
-		Order oneUpdate = new Order(one.getOrderId(), TRADER_BUYER_1, SECURITY_1, orderUnits/2, 19.0,
+		Order oneUpdate = new Order(one.getOrderId(), TRADER_BUYER_1, SECURITY_1, orderUnits/2, 1900,
 				true , OrderType.LIMIT_ORDER, System.currentTimeMillis() + 1000);
 		orderbook.update(oneUpdate);
 
@@ -354,4 +369,254 @@ public class PriceTimePriorityOrderBookTest {
 
 	}
 
+
+	/**
+	 * Cancelling an order removes it from the book and from the orderId index
+	 */
+	@Test
+	public void testCancelOrder() {
+		Order one = new Order(nextOrderId++, TRADER_BUYER_1, SECURITY_1, 10, 2000,
+				true , OrderType.LIMIT_ORDER, 1);
+		Order two = new Order(nextOrderId++, TRADER_BUYER_2, SECURITY_2, 10, 2000,
+				true , OrderType.LIMIT_ORDER, 2);
+		orderbook.buyTrade(one);
+		orderbook.buyTrade(two);
+		assertEquals(2, orderbook.getIndexedOrderCount());
+
+		orderbook.cancelOrder(one.getOrderId());
+
+		assertEquals(1, orderbook.getIndexedOrderCount());
+		assertEquals(null, orderbook.findOrderByOrderId(one.getOrderId()));
+		assertEquals(two, orderbook.findOrderByOrderId(two.getOrderId()));
+		assertEquals(1, orderbook.getAllOrders().size());
+	}
+
+	/**
+	 * Fully filled orders leave the orderId index, partially filled ones stay indexed
+	 */
+	@Test
+	public void testIndexFollowsFills() {
+		Order one = new Order(nextOrderId++, TRADER_SELLER_1, SECURITY_1, 10, 2000,
+				false , OrderType.LIMIT_ORDER, 1);
+		Order two = new Order(nextOrderId++, TRADER_SELLER_2, SECURITY_1, 10, 2100,
+				false , OrderType.LIMIT_ORDER, 2);
+		orderbook.sellTrade(one);
+		orderbook.sellTrade(two);
+
+		Order buy = new Order(nextOrderId++, TRADER_BUYER_1, SECURITY_1, 15, 2100,
+				true , OrderType.LIMIT_ORDER, 3);
+		orderbook.buyTrade(buy);
+
+		assertEquals(1, orderbook.getIndexedOrderCount());
+		assertEquals(null, orderbook.findOrderByOrderId(one.getOrderId()));
+		assertEquals(5, orderbook.findOrderByOrderId(two.getOrderId()).getUnits());
+	}
+
+	/**
+	 * Mass cancel removes every order of the client, optionally restricted to one security
+	 */
+	@Test
+	public void testCancelClientOrders() {
+		orderbook.buyTrade(new Order(nextOrderId++, TRADER_BUYER_1, SECURITY_1, 10, 2000,
+				true , OrderType.LIMIT_ORDER, 1));
+		orderbook.buyTrade(new Order(nextOrderId++, TRADER_BUYER_1, SECURITY_1, 10, 1900,
+				true , OrderType.LIMIT_ORDER, 2));
+		orderbook.buyTrade(new Order(nextOrderId++, TRADER_BUYER_1, SECURITY_2, 10, 1900,
+				true , OrderType.LIMIT_ORDER, 3));
+		Order other = new Order(nextOrderId++, TRADER_BUYER_2, SECURITY_1, 10, 2000,
+				true , OrderType.LIMIT_ORDER, 4);
+		orderbook.buyTrade(other);
+
+		assertEquals(2, orderbook.cancelClientOrders(TRADER_BUYER_1, SECURITY_1));
+		assertEquals(2, orderbook.getAllOrders().size());
+
+		assertEquals(1, orderbook.cancelClientOrders(TRADER_BUYER_1, null));
+		List<Order> remainingOrders = orderbook.getAllOrders();
+		assertEquals(1, remainingOrders.size());
+		assertEquals(other, remainingOrders.iterator().next());
+
+		//the client no longer rests in the book, it may now sell
+		orderbook.sellTrade(new Order(nextOrderId++, TRADER_BUYER_1, SECURITY_1, 10, 2000,
+				false , OrderType.LIMIT_ORDER, 5));
+		assertEquals(0, orderbook.getAllOrders().size());
+	}
+
+	/**
+	 * A market buy sweeps the asks level by level at their own prices,
+	 * it stops at the protection limit (5% above the best ask) and its remainder is cancelled instead of resting
+	 */
+	@Test
+	public void testMarketOrderSweepsUpToProtection() {
+		orderbook.sellTrade(new Order(nextOrderId++, TRADER_SELLER_1, SECURITY_1, 10, 10000,
+				false , OrderType.LIMIT_ORDER, 1));
+		orderbook.sellTrade(new Order(nextOrderId++, TRADER_SELLER_1, SECURITY_1, 10, 10400,
+				false , OrderType.LIMIT_ORDER, 2));
+		Order outOfProtection = new Order(nextOrderId++, TRADER_SELLER_2, SECURITY_1, 10, 10600,
+				false , OrderType.LIMIT_ORDER, 3);
+		orderbook.sellTrade(outOfProtection);
+
+		Order marketBuy = new Order(nextOrderId++, TRADER_BUYER_1, SECURITY_1, 25, 0,
+				true , OrderType.MARKET_ORDER, 4);
+		long transactionValue = orderbook.buyTrade(marketBuy).getNotional();
+
+		assertEquals(10000*10 + 10400*10, transactionValue);
+		assertEquals(5, marketBuy.getUnits());
+		List<Order> remainingOrders = orderbook.getAllOrders();
+		assertEquals(1, remainingOrders.size());
+		assertEquals(outOfProtection, remainingOrders.iterator().next());
+		assertEquals(null, orderbook.findOrderByOrderId(marketBuy.getOrderId()));
+	}
+
+	/**
+	 * A market order arriving on an empty side does not trade and does not rest
+	 */
+	@Test
+	public void testMarketOrderNeverRests() {
+		Order marketSell = new Order(nextOrderId++, TRADER_SELLER_1, SECURITY_1, 10, 0,
+				false , OrderType.MARKET_ORDER, 1);
+
+		assertEquals(0, orderbook.sellTrade(marketSell).getNotional());
+		assertEquals(0, orderbook.getAllOrders().size());
+
+		//a later buyer does not meet the cancelled market order
+		orderbook.buyTrade(new Order(nextOrderId++, TRADER_BUYER_1, SECURITY_1, 10, 10000,
+				true , OrderType.LIMIT_ORDER, 2));
+		assertEquals(1, orderbook.getAllOrders().size());
+	}
+
+	/**
+	 * The execution report lists every fill with the counterparty order, the price of its level and the quantity
+	 */
+	@Test
+	public void testExecutionReport() {
+		Order one = new Order(nextOrderId++, TRADER_SELLER_1, SECURITY_1, 10, 10000,
+				false , OrderType.LIMIT_ORDER, 1);
+		Order two = new Order(nextOrderId++, TRADER_SELLER_2, SECURITY_1, 10, 10000,
+				false , OrderType.LIMIT_ORDER, 2);
+		Order three = new Order(nextOrderId++, TRADER_SELLER_1, SECURITY_1, 10, 10100,
+				false , OrderType.LIMIT_ORDER, 3);
+		orderbook.sellTrade(one);
+		orderbook.sellTrade(two);
+		orderbook.sellTrade(three);
+
+		Order buy = new Order(nextOrderId++, TRADER_BUYER_1, SECURITY_1, 40, 10100,
+				true , OrderType.LIMIT_ORDER, 4);
+		ExecutionReport report = orderbook.buyTrade(buy);
+
+		assertEquals(3, report.getFills().size());
+		Fill first = report.getFills().get(0);
+		assertEquals(one.getOrderId(), first.getMakerOrderId());
+		assertEquals(10000, first.getPrice());
+		assertEquals(10, first.getUnits());
+		assertEquals(two.getOrderId(), report.getFills().get(1).getMakerOrderId());
+		assertEquals(three.getOrderId(), report.getFills().get(2).getMakerOrderId());
+		assertEquals(10100, report.getFills().get(2).getPrice());
+		assertEquals(30, report.getFilledUnits());
+		assertEquals(10, report.getRemainingUnits());
+		assertEquals(10000*20 + 10100*10, report.getNotional());
+		assertEquals(true, report.isRested());
+		assertEquals(buy, orderbook.findOrderByOrderId(buy.getOrderId()));
+	}
+
+	/**
+	 * One order sweeping a hundred thousand resting orders is matched iteratively, without deep recursion
+	 */
+	@Test
+	public void testSweepOfManySmallOrders() {
+		int resting = 100000;
+		for (int i = 0; i < resting; i++) {
+			orderbook.sellTrade(new Order(nextOrderId++, TRADER_SELLER_1, SECURITY_1, 1, 10000 + i % 100,
+					false , OrderType.LIMIT_ORDER, i));
+		}
+		ExecutionReport report = orderbook.buyTrade(new Order(nextOrderId++, TRADER_BUYER_1, SECURITY_1, resting, 10099,
+				true , OrderType.LIMIT_ORDER, resting));
+
+		assertEquals(resting, report.getFills().size());
+		assertEquals(resting, report.getFilledUnits());
+		assertEquals(false, report.isRested());
+		assertEquals(0, orderbook.getIndexedOrderCount());
+	}
+
+	/**
+	 * The depth aggregates the resting orders of each price, best price first and limited to the requested levels
+	 */
+	@Test
+	public void testDepthAggregatesLevels() {
+		orderbook.buyTrade(new Order(nextOrderId++, TRADER_BUYER_1, SECURITY_1, 5, 9900, true, OrderType.LIMIT_ORDER, 1));
+		orderbook.buyTrade(new Order(nextOrderId++, TRADER_BUYER_2, SECURITY_1, 7, 9900, true, OrderType.LIMIT_ORDER, 2));
+		orderbook.buyTrade(new Order(nextOrderId++, TRADER_BUYER_1, SECURITY_1, 3, 9800, true, OrderType.LIMIT_ORDER, 3));
+		orderbook.buyTrade(new Order(nextOrderId++, TRADER_BUYER_1, SECURITY_1, 1, 9700, true, OrderType.LIMIT_ORDER, 4));
+		orderbook.sellTrade(new Order(nextOrderId++, TRADER_SELLER_1, SECURITY_1, 4, 10000, false, OrderType.LIMIT_ORDER, 5));
+
+		OrderBookDepth depth = orderbook.getDepth(SECURITY_1, 2);
+		assertEquals(2, depth.getBids().size());
+		assertEquals(9900, depth.getBids().get(0).getPrice());
+		assertEquals(12, depth.getBids().get(0).getUnits());
+		assertEquals(2, depth.getBids().get(0).getOrders());
+		assertEquals(9800, depth.getBids().get(1).getPrice());
+		assertEquals(1, depth.getAsks().size());
+		assertEquals(4, depth.getAsks().get(0).getUnits());
+		assertEquals(0, orderbook.getDepth(SECURITY_2, 10).getBids().size());
+	}
+
+	/**
+	 * The cached top of book follows fills, amends and cancels at the best prices
+	 */
+	@Test
+	public void testTopOfBookIsMaintained() {
+		Order bid = new Order(nextOrderId++, TRADER_BUYER_1, SECURITY_1, 5, 9900, true, OrderType.LIMIT_ORDER, 1);
+		orderbook.buyTrade(bid);
+		orderbook.buyTrade(new Order(nextOrderId++, TRADER_BUYER_2, SECURITY_1, 2, 9800, true, OrderType.LIMIT_ORDER, 2));
+		orderbook.sellTrade(new Order(nextOrderId++, TRADER_SELLER_1, SECURITY_1, 4, 10000, false, OrderType.LIMIT_ORDER, 3));
+		TopOfBook top = orderbook.getTopOfBook(SECURITY_1);
+		assertEquals(9900, top.getBidPrice());
+		assertEquals(5, top.getBidUnits());
+		assertEquals(10000, top.getAskPrice());
+		assertEquals(4, top.getAskUnits());
+
+		// a change behind the best levels leaves the cached top of book as it was
+		orderbook.buyTrade(new Order(nextOrderId++, TRADER_BUYER_2, SECURITY_1, 1, 9800, true, OrderType.LIMIT_ORDER, 4));
+		assertEquals(top.getSequence(), orderbook.getTopOfBook(SECURITY_1).getSequence());
+
+		orderbook.sellTrade(new Order(nextOrderId++, TRADER_SELLER_2, SECURITY_1, 2, 9900, false, OrderType.LIMIT_ORDER, 5));
+		assertEquals(3, orderbook.getTopOfBook(SECURITY_1).getBidUnits());
+
+		orderbook.amend(bid.getOrderId(), 1, 9900, 6);
+		assertEquals(1, orderbook.getTopOfBook(SECURITY_1).getBidUnits());
+
+		orderbook.cancelOrder(bid.getOrderId());
+		top = orderbook.getTopOfBook(SECURITY_1);
+		assertEquals(9800, top.getBidPrice());
+		assertEquals(3, top.getBidUnits());
+		assertEquals(2, top.getBidOrders());
+		assertNull(orderbook.getTopOfBook(SECURITY_2));
+	}
+
+	/**
+	 * Security ids differing only by case are separate books that never match each other, the queries listing
+	 * orders by security fold the case and list every spelling
+	 */
+	@Test
+	public void testSecurityIdsAreCaseInsensitive() {
+		orderbook.sellTrade(new Order(nextOrderId++, TRADER_SELLER_1, SECURITY_1, 5, 10000, false, OrderType.LIMIT_ORDER, 1));
+		ExecutionReport report = orderbook.buyTrade(new Order(nextOrderId++, TRADER_BUYER_1, "rel", 2, 10000, true,
+				OrderType.LIMIT_ORDER, 2));
+		assertEquals(0, report.getFills().size());
+
+		List<Order> orders = orderbook.getAllOrdersBySecurity("Rel");
+		assertEquals(2, orders.size());
+		assertEquals("rel", orders.get(0).getSecurityId());
+		assertEquals(SECURITY_1, orders.get(1).getSecurityId());
+		assertEquals(2, orderbook.view("Rel").size());
+		assertEquals(5, orderbook.getTopOfBook(SECURITY_1).getAskUnits());
+		assertEquals(0, orderbook.getTopOfBook(SECURITY_1).getBidUnits());
+		assertNull(orderbook.getTopOfBook("rEL"));
+		assertEquals(1, orderbook.getDepth("rel", 10).getBids().size());
+		assertEquals(0, orderbook.getDepth("rel", 10).getAsks().size());
+
+		assertEquals(0, orderbook.cancelClientOrders(TRADER_SELLER_1, "rel"));
+		assertEquals(1, orderbook.cancelClientOrders(TRADER_SELLER_1, SECURITY_1));
+		assertEquals(1, orderbook.getAllOrdersBySecurity(SECURITY_1).size());
+		assertEquals(0, orderbook.cancelClientOrders("UNKNOWN", null));
+	}
 }
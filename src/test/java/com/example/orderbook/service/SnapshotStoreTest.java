@@ -0,0 +1,172 @@
+package com.example.orderbook.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.example.orderbook.journal.FsyncPolicy;
+import com.example.orderbook.journal.MappedJournal;
+import com.example.orderbook.model.Order;
+import com.example.orderbook.model.request.OrderType;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the recovery of the books from snapshots and the journal
+ */
+public class SnapshotStoreTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path journalDirectory;
+	private SnapshotStore snapshots;
+	private MappedJournal journal;
+	private MatchingEngine engine;
+
+	@Before
+	public void setUp() {
+		journalDirectory = folder.getRoot().toPath().resolve("journal");
+		snapshots = new SnapshotStore(folder.getRoot().toPath().resolve("snapshot"));
+	}
+
+	private void startEngine(int segmentSize) throws Exception {
+		journal = new MappedJournal(journalDirectory, 2, segmentSize, FsyncPolicy.BATCH, 10);
+		// a new generator, as in a new process
+		engine = new MatchingEngine(new EngineSettings().shards(2).ringSize(64).journal(journal).snapshots(snapshots)
+				.orderIds(new OrderIdService()));
+		engine.start();
+	}
+
+	private void stopEngine() throws Exception {
+		engine.stop();
+		journal.close();
+	}
+
+	private long place(String clientId, String securityId, long units, long price, boolean buying, long timestamp) {
+		long orderId = engine.nextOrderId(securityId);
+		engine.placeOrder(orderId, clientId, securityId, units, price, buying, OrderType.LIMIT_ORDER, timestamp);
+		return orderId;
+	}
+
+	private List<String> orders() {
+		return engine.executeOnAll(PriceTimePriorityOrderBook::getAllOrders).stream()
+				.flatMap(List::stream)
+				.map(order -> order + " PRIORITY=" + order.getPriorityTime())
+				.collect(Collectors.toList());
+	}
+
+	@Test
+	public void testSnapshotAndJournalTailAreRecovered() throws Exception {
+		startEngine(1 << 16);
+		long first = place("BUYER", "REL", 100, 1000, true, 1);
+		place("BUYER2", "REL", 50, 1000, true, 2);
+		long third = place("BUYER", "REL", 10, 990, true, 3);
+		place("SELLER", "TATA", 20, 2000, false, 4);
+		engine.amendOrder(first, 80, 0, 5);
+		engine.snapshot();
+		// the tail only lives in the journal
+		place("SELLER", "REL", 30, 1000, false, 6);
+		long last = place("SELLER2", "INFY", 5, 500, false, 7);
+		engine.cancelOrder(third);
+		List<String> expected = orders();
+		stopEngine();
+
+		startEngine(1 << 16);
+		assertEquals(expected, orders());
+		assertEquals(50, engine.findOrder(first).getUnits());
+		assertTrue(engine.nextOrderId("INFY") > last);
+		stopEngine();
+	}
+
+	@Test
+	public void testRecoveryWithoutJournalTail() throws Exception {
+		startEngine(1 << 16);
+		for (int i = 1; i <= 1000; i++) {
+			boolean buying = i % 2 == 0;
+			place((buying ? "BUYER" : "SELLER") + i % 7, "SEC" + i % 5, i, (buying ? 900 : 1000) + i % 13, buying, i);
+		}
+		List<String> expected = orders();
+		engine.snapshot();
+		stopEngine();
+
+		startEngine(1 << 16);
+		assertEquals(expected, orders());
+		stopEngine();
+	}
+
+	@Test
+	public void testSnapshotTruncatesJournal() throws Exception {
+		startEngine(1024);
+		for (int i = 1; i <= 200; i++) {
+			place("BUYER", "REL", 1, 1000 - i, true, i);
+		}
+		engine.snapshot();
+		engine.snapshot();
+		List<String> expected = orders();
+		stopEngine();
+		int shard = engine.shardOf("REL");
+		try (Stream<Path> segments = Files.list(MappedJournal.shardDirectory(journalDirectory, shard))) {
+			assertEquals(1, segments.count());
+		}
+
+		startEngine(1024);
+		assertEquals(expected, orders());
+		stopEngine();
+	}
+
+	@Test
+	public void testDamagedSnapshotFallsBackToThePreviousOne() throws Exception {
+		startEngine(1 << 16);
+		place("BUYER", "REL", 100, 1000, true, 1);
+		engine.snapshot();
+		long second = place("BUYER", "REL", 100, 1010, true, 2);
+		engine.snapshot();
+		List<String> expected = orders();
+		stopEngine();
+
+		Path shardDirectory = snapshots.shardDirectory(engine.shardOf("REL"));
+		Path latest;
+		try (Stream<Path> files = Files.list(shardDirectory)) {
+			latest = files.sorted().reduce((older, newer) -> newer).get();
+		}
+		byte[] bytes = Files.readAllBytes(latest);
+		Files.write(latest, Arrays.copyOf(bytes, bytes.length - 10));
+
+		startEngine(1 << 16);
+		assertEquals(expected, orders());
+		Order order = engine.findOrder(second);
+		assertEquals(1010, order.getPrice());
+		stopEngine();
+	}
+
+	@Test
+	public void testCaptureIsWrittenAsTakenWhileTheBookMovesOn() throws Exception {
+		PriceTimePriorityOrderBook book = new PriceTimePriorityOrderBook();
+		book.buyTrade(new Order(1, "BUYER", "REL", 100, 990, true, OrderType.LIMIT_ORDER, 1));
+		book.buyTrade(new Order(2, "BUYER2", "REL", 50, 1000, true, OrderType.LIMIT_ORDER, 2));
+		book.buyTrade(new Order(3, "BUYER", "REL", 10, 1000, true, OrderType.LIMIT_ORDER, 3));
+		book.sellTrade(new Order(4, "SELLER", "TATA", 20, 2000, false, OrderType.LIMIT_ORDER, 4));
+		book.sellTrade(new Order(5, "SELLER", "REL", 30, 1020, false, OrderType.LIMIT_ORDER, 5));
+		book.sellTrade(new Order(6, "SELLER2", "REL", 5, 1010, false, OrderType.LIMIT_ORDER, 6));
+		List<String> expected = book.getAllOrders().stream().map(Order::toString).collect(Collectors.toList());
+		SnapshotStore.Capture capture = snapshots.capture(42, book);
+		// matching goes on while the capture is written
+		book.sellTrade(new Order(7, "SELLER", "REL", 60, 1000, false, OrderType.LIMIT_ORDER, 7));
+		book.cancelOrder(4);
+		snapshots.publish(0, snapshots.write(0, capture));
+
+		PriceTimePriorityOrderBook restored = new PriceTimePriorityOrderBook();
+		assertEquals(42, snapshots.load(0, restored));
+		assertEquals(expected, restored.getAllOrders().stream().map(Order::toString).collect(Collectors.toList()));
+		assertEquals(6, restored.getHighestOrderId());
+	}
+}
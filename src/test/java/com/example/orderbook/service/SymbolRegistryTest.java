@@ -0,0 +1,92 @@
+package com.example.orderbook.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Tests for the interning of security and client ids
+ */
+public class SymbolRegistryTest {
+
+	/**
+	 * Securities are numbered densely in registration order, each spelling on its own, and a lookup in any case
+	 * finds every spelling of a security
+	 */
+	@Test
+	public void testSecuritiesAreGroupedByCase() {
+		SymbolRegistry symbols = new SymbolRegistry();
+		assertEquals(SymbolRegistry.NONE, symbols.findSecurity("REL"));
+		assertEquals(0, symbols.findSecurities("REL").length);
+		assertEquals(0, symbols.internSecurity("REL"));
+		assertEquals(1, symbols.internSecurity("TATA"));
+		assertEquals(0, symbols.internSecurity("REL"));
+		assertEquals(SymbolRegistry.NONE, symbols.findSecurity("rel"));
+		assertArrayEquals(new int[] {0}, symbols.findSecurities("Rel"));
+		assertEquals(2, symbols.internSecurity("rel"));
+		assertArrayEquals(new int[] {0, 2}, symbols.findSecurities("Rel"));
+		assertArrayEquals(new int[] {0, 2}, symbols.findSecurities("REL"));
+		assertEquals("REL", symbols.securityName(0));
+		assertEquals("rel", symbols.securityName(2));
+		assertEquals(3, symbols.getSecurityCount());
+		assertEquals(symbols.securityHash(0), symbols.securityHash(2));
+		assertEquals(SymbolRegistry.hash("rel"), symbols.securityHash(0));
+		assertEquals(SymbolRegistry.NONE, symbols.findSecurity(null));
+		assertEquals(0, symbols.findSecurities(null).length);
+		assertEquals(SymbolRegistry.NONE, symbols.internSecurity(null));
+	}
+
+	/**
+	 * Clients are case sensitive
+	 */
+	@Test
+	public void testClientsKeepCase() {
+		SymbolRegistry symbols = new SymbolRegistry();
+		int client = symbols.internClient("TRADER_1");
+		assertEquals(client, symbols.findClient("TRADER_1"));
+		assertEquals(SymbolRegistry.NONE, symbols.findClient("trader_1"));
+		assertEquals(client + 1, symbols.internClient("trader_1"));
+		assertEquals("trader_1", symbols.clientName(1));
+		assertEquals(2, symbols.getClientCount());
+	}
+
+	/**
+	 * Threads registering the same names concurrently agree on their numbers, and the names survive the growth
+	 * of the registry
+	 */
+	@Test
+	public void testConcurrentRegistration() throws Exception {
+		SymbolRegistry symbols = new SymbolRegistry();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<int[]>> futures = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				futures.add(executor.submit(() -> {
+					int[] numbers = new int[1000];
+					for (int i = 0; i < numbers.length; i++) {
+						numbers[i] = symbols.internClient("CLIENT_" + i);
+					}
+					return numbers;
+				}));
+			}
+			int[] first = futures.get(0).get();
+			for (Future<int[]> future : futures) {
+				int[] numbers = future.get();
+				for (int i = 0; i < numbers.length; i++) {
+					assertEquals(first[i], numbers[i]);
+					assertEquals("CLIENT_" + i, symbols.clientName(numbers[i]));
+				}
+			}
+			assertEquals(1000, symbols.getClientCount());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}